@@ -0,0 +1,43 @@
+package com.ledger.Benchmark;
+
+import com.ledger.DomainModel.Account;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+//in-memory balance arithmetic, no database involved
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccountBenchmark {
+    private Account account;
+    private final BigDecimal amount = new BigDecimal("12.34");
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        account = new Account("Benchmark", new BigDecimal("1000.00"), null, true, true);
+    }
+
+    @Benchmark
+    public BigDecimal credit() {
+        account.credit(amount);
+        return account.getBalance();
+    }
+
+    @Benchmark
+    public BigDecimal debit() {
+        account.debit(amount);
+        return account.getBalance();
+    }
+
+    @Benchmark
+    public BigDecimal creditThenDebit() {
+        account.credit(amount);
+        account.debit(amount);
+        return account.getBalance();
+    }
+}
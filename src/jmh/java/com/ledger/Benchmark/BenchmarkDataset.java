@@ -0,0 +1,103 @@
+package com.ledger.Benchmark;
+
+import com.ledger.BusinessLogic.*;
+import com.ledger.DomainModel.*;
+import com.ledger.ORM.*;
+import com.ledger.Session.UserSession;
+import com.ledger.Util.LedgerDataGenerator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//fresh schema with one synthetic user whose main ledger holds about N transactions over the last two years
+public class BenchmarkDataset {
+    private final Connection connection;
+    private final TransactionDAO transactionDAO;
+    private final BudgetDAO budgetDAO;
+    private final LedgerCategoryDAO ledgerCategoryDAO;
+    private final TransactionController transactionController;
+    private final ReportController reportController;
+    private final BudgetController budgetController;
+
+    private Ledger ledger;
+    private List<Account> accounts;
+    private List<LedgerCategory> categories;
+
+    private BenchmarkDataset(int transactionCount) {
+        connection = ConnectionManager.getInstance().getConnection();
+        transactionDAO = new TransactionDAO(connection);
+        AccountDAO accountDAO = new AccountDAO(connection);
+        budgetDAO = new BudgetDAO(connection);
+        ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
+        reportController = new ReportController(transactionDAO, accountDAO, budgetDAO, ledgerCategoryDAO, new SpendingStatsDAO(connection), new NetWorthDAO(connection));
+        budgetController = new BudgetController(budgetDAO, ledgerCategoryDAO);
+
+        executeSqlFile("src/test/resources/reset.sql");
+        executeSqlFile("src/test/resources/schema.sql");
+        executeSqlFile("src/test/resources/data.sql");
+
+        try {
+            LedgerDataGenerator.GeneratedData data = new LedgerDataGenerator(connection, 42L, LocalDate.now())
+                    .generate(1, transactionCount);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+            ledger = data.ledgers().get(0);
+            accounts = data.accounts();
+            UserSession.getInstance().login(data.users().get(0));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to generate benchmark dataset", e);
+        }
+        categories = ledgerCategoryDAO.getTreeByLedger(ledger);
+    }
+
+    public static BenchmarkDataset create(int transactionCount) {
+        return new BenchmarkDataset(transactionCount);
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    public LedgerCategory category(String name) {
+        return categories.stream()
+                .filter(c -> c.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    public Ledger ledger() { return ledger; }
+    public List<Account> accounts() { return accounts; }
+    public TransactionDAO transactionDAO() { return transactionDAO; }
+    public LedgerCategoryDAO ledgerCategoryDAO() { return ledgerCategoryDAO; }
+    public BudgetDAO budgetDAO() { return budgetDAO; }
+    public TransactionController transactionController() { return transactionController; }
+    public ReportController reportController() { return reportController; }
+    public BudgetController budgetController() { return budgetController; }
+}
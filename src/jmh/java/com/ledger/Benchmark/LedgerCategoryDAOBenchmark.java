@@ -0,0 +1,28 @@
+package com.ledger.Benchmark;
+
+import com.ledger.DomainModel.LedgerCategory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LedgerCategoryDAOBenchmark {
+    private BenchmarkDataset dataset;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        //the category tree does not depend on the number of transactions
+        dataset = BenchmarkDataset.create(1000);
+    }
+
+    @Benchmark
+    public List<LedgerCategory> getTreeByLedger() {
+        return dataset.ledgerCategoryDAO().getTreeByLedger(dataset.ledger());
+    }
+}
@@ -0,0 +1,69 @@
+package com.ledger.Benchmark;
+
+import com.ledger.DomainModel.Account;
+import com.ledger.DomainModel.Budget;
+import com.ledger.DomainModel.Period;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportControllerBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int transactions;
+
+    private BenchmarkDataset dataset;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Account account;
+    private Budget ledgerBudget;
+    private Budget categoryBudget;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = BenchmarkDataset.create(transactions);
+        endDate = LocalDate.now();
+        startDate = endDate.minusYears(1);
+        account = dataset.accounts().get(0);
+
+        ledgerBudget = dataset.budgetController().getActiveBudgetByLedger(dataset.ledger(), Period.YEARLY);
+        dataset.budgetController().editBudget(ledgerBudget, BigDecimal.valueOf(50000));
+        ledgerBudget.setLedger(dataset.ledger());
+        categoryBudget = dataset.budgetController().getActiveBudgetByCategory(dataset.category("Food"), Period.YEARLY);
+        dataset.budgetController().editBudget(categoryBudget, BigDecimal.valueOf(5000));
+        categoryBudget.setLedger(dataset.ledger());
+    }
+
+    @Benchmark
+    public BigDecimal getTotalExpenseByLedger() {
+        return dataset.reportController().getTotalExpenseByLedger(dataset.ledger(), startDate, endDate);
+    }
+
+    @Benchmark
+    public BigDecimal getTotalIncomeByLedger() {
+        return dataset.reportController().getTotalIncomeByLedger(dataset.ledger(), startDate, endDate);
+    }
+
+    @Benchmark
+    public BigDecimal getTotalExpenseByAccount() {
+        return dataset.reportController().getTotalExpenseByAccount(account, startDate, endDate);
+    }
+
+    @Benchmark
+    public boolean isOverBudget_Ledger() {
+        return dataset.reportController().isOverBudget(ledgerBudget);
+    }
+
+    //category budget: parent category plus its sub-categories
+    @Benchmark
+    public boolean isOverBudget_Category() {
+        return dataset.reportController().isOverBudget(categoryBudget);
+    }
+}
@@ -0,0 +1,39 @@
+package com.ledger.Benchmark;
+
+import com.ledger.DomainModel.Account;
+import com.ledger.DomainModel.Transfer;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+//commit latency of a single transfer: insert + two balance updates in one database transaction
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransactionControllerBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int transactions;
+
+    private BenchmarkDataset dataset;
+    private Account from;
+    private Account to;
+    private final BigDecimal amount = BigDecimal.valueOf(1, 2);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = BenchmarkDataset.create(transactions);
+        from = dataset.accounts().get(0);
+        to = dataset.accounts().get(1);
+    }
+
+    @Benchmark
+    public Transfer createTransfer() {
+        return dataset.transactionController().createTransfer(dataset.ledger(), from, to, "benchmark transfer",
+                LocalDate.now(), amount);
+    }
+}
@@ -0,0 +1,31 @@
+package com.ledger.Benchmark;
+
+import com.ledger.DomainModel.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransactionDAOBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int transactions;
+
+    private BenchmarkDataset dataset;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = BenchmarkDataset.create(transactions);
+    }
+
+    //full mapping of every row of the ledger, including nested account/ledger/category lookups
+    @Benchmark
+    public List<Transaction> getByLedgerId() {
+        return dataset.transactionDAO().getByLedgerId(dataset.ledger().getId());
+    }
+}
@@ -1,17 +1,28 @@
 package com.ledger.BusinessLogic;
 
+import com.ledger.DbTransaction.DbTransactionManager;
 import com.ledger.DomainModel.Account;
-import com.ledger.DomainModel.Transaction;
+import com.ledger.DomainModel.StatementLine;
 import com.ledger.DomainModel.User;
 import com.ledger.ORM.AccountDAO;
 import com.ledger.ORM.TransactionDAO;
 import com.ledger.Session.UserSession;
-import com.ledger.DbTransaction.DbTransactionManager;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 
 public class AccountController {
+    private static final OperationMetrics GET_ACCOUNTS = MetricsRegistry.getInstance().controller("AccountController.getAccounts");
+    private static final OperationMetrics GET_SELECTABLE_ACCOUNTS = MetricsRegistry.getInstance().controller("AccountController.getSelectableAccounts");
+    private static final OperationMetrics CREATE_ACCOUNT = MetricsRegistry.getInstance().controller("AccountController.createAccount");
+    private static final OperationMetrics DELETE_ACCOUNT = MetricsRegistry.getInstance().controller("AccountController.deleteAccount");
+    private static final OperationMetrics EDIT_ACCOUNT = MetricsRegistry.getInstance().controller("AccountController.editAccount");
+    private static final OperationMetrics GET_STATEMENT = MetricsRegistry.getInstance().controller("AccountController.getStatement");
+    private static final OperationMetrics GET_BALANCE_AS_OF = MetricsRegistry.getInstance().controller("AccountController.getBalanceAsOf");
+
     private final AccountDAO accountDAO;
     private final TransactionDAO transactionDAO;
 
@@ -21,53 +32,105 @@ public class AccountController {
     }
 
     public List<Account> getAccounts(User user) {
-        return accountDAO.getAccountsByOwner(user);
+        long start = GET_ACCOUNTS.begin();
+        try {
+            return accountDAO.getAccountsByOwner(user);
+        } finally {
+            GET_ACCOUNTS.end(start);
+        }
     }
     public List<Account> getSelectableAccounts(User user) {
-        return getAccounts(user).stream()
-                .filter(Account::getSelectable)
-                .toList();
+        long start = GET_SELECTABLE_ACCOUNTS.begin();
+        try {
+            return getAccounts(user).stream()
+                    .filter(Account::getSelectable)
+                    .toList();
+        } finally {
+            GET_SELECTABLE_ACCOUNTS.end(start);
+        }
     }
 
     public Account createAccount(String name, BigDecimal balance, boolean includedInAsset, boolean selectable) {
-        if(!UserSession.getInstance().isLoggedIn()) return null;
-        if (name == null || name.isEmpty() || name.length() > 50) return null;
-        if (balance == null ) balance = BigDecimal.ZERO;
-        User owner = UserSession.getInstance().getCurrentUser();
-        Account account = new Account(name, balance, owner, includedInAsset, selectable);
-        if(accountDAO.insert(account)){
-            return account;
-        } else {
-            return null;
+        long start = CREATE_ACCOUNT.begin();
+        try {
+            if(!UserSession.getInstance().isLoggedIn()) return null;
+            if (name == null || name.isEmpty() || name.length() > 50) return null;
+            if (balance == null ) balance = BigDecimal.ZERO;
+            User owner = UserSession.getInstance().getCurrentUser();
+            Account account = new Account(name, balance, owner, includedInAsset, selectable);
+            if(accountDAO.insert(account)){
+                return account;
+            } else {
+                return null;
+            }
+        } finally {
+            CREATE_ACCOUNT.end(start);
         }
     }
 
     public boolean deleteAccount(Account account) {
-        Boolean deleted = DbTransactionManager.getInstance().execute(() -> {
-            List<Transaction> linkedTransactions = transactionDAO.getByAccountId(account.getId());
-            for (Transaction tx : linkedTransactions) {
-                Account fromAccount = tx.getFromAccount();
-                Account toAccount = tx.getToAccount();
-                    if(fromAccount == null && toAccount.getId() == account.getId()){
-                        if(!transactionDAO.delete(tx)) throw new Exception("Failed to delete linked transaction");
-                    }
-                    if(toAccount == null && fromAccount.getId() == account.getId()){
-                        if(!transactionDAO.delete(tx)) throw new Exception("Failed to delete linked transaction");
-                    }
-            }
-            if(!accountDAO.delete(account)) throw new Exception("Failed to delete account");
-            return true;
-        });
-        return deleted != null && deleted;
+        long start = DELETE_ACCOUNT.begin();
+        try {
+            if (account == null) return false;
+            // hidden at once together with the transactions that only it was part of, the balances of other
+            // accounts do not change; DeletionPurger removes the rows later
+            return accountDAO.softDelete(account);
+        } finally {
+            DELETE_ACCOUNT.end(start);
+        }
     }
 
     public boolean editAccount(Account account, String newName, BigDecimal newBalance, boolean newIncludedInAsset, boolean newSelectable) {
-        if(newName == null || newBalance == null) return false;
-        if(newName.isEmpty() || newName.length() > 50) return false;
-        account.setName(newName);
-        account.setBalance(newBalance);
-        account.setIncludedInAsset(newIncludedInAsset);
-        account.setSelectable(newSelectable);
-        return accountDAO.update(account);
+        long start = EDIT_ACCOUNT.begin();
+        try {
+            if(newName == null || newBalance == null) return false;
+            if(newName.isEmpty() || newName.length() > 50) return false;
+            account.setName(newName);
+            account.setIncludedInAsset(newIncludedInAsset);
+            account.setSelectable(newSelectable);
+            Boolean edited = DbTransactionManager.getInstance().execute(() -> {
+                //moves the opening balance too, so a balance set by hand is not reported as drift
+                if (!accountDAO.setBalance(account, newBalance)) throw new Exception("Set balance failed");
+                account.setBalance(newBalance);
+                if (!accountDAO.update(account)) throw new Exception("Update account failed");
+                return true;
+            });
+            return edited != null && edited;
+        } finally {
+            EDIT_ACCOUNT.end(start);
+        }
+    }
+
+    //startDate and endDate are inclusive, null means unbounded; each line has the balance after its transaction
+    public List<StatementLine> getStatement(Account account, LocalDate startDate, LocalDate endDate) {
+        long start = GET_STATEMENT.begin();
+        List<StatementLine> lines = List.of();
+        try {
+            if (account == null) return lines;
+            if (startDate != null) refreshCheckpoints(account, startDate.minusDays(1));
+            lines = transactionDAO.getStatement(account.getId(), startDate, endDate);
+            return lines;
+        } finally {
+            GET_STATEMENT.end(start, lines.size());
+        }
+    }
+
+    //balance at the end of date; null on error
+    public BigDecimal getBalanceAsOf(Account account, LocalDate date) {
+        long start = GET_BALANCE_AS_OF.begin();
+        try {
+            if (account == null || date == null) return null;
+            refreshCheckpoints(account, date);
+            return accountDAO.getBalanceAsOf(account.getId(), date);
+        } finally {
+            GET_BALANCE_AS_OF.end(start);
+        }
+    }
+
+    // checkpoints up to the last month end before date, so that at most a month of transactions is summed on top.
+    // A failed refresh only makes the read slower, it does not change its result
+    private void refreshCheckpoints(Account account, LocalDate date) {
+        LocalDate monthEnd = date.withDayOfMonth(date.lengthOfMonth()).equals(date) ? date : date.withDayOfMonth(1).minusDays(1);
+        accountDAO.refreshCheckpoints(account.getId(), monthEnd);
     }
 }
@@ -0,0 +1,193 @@
+package com.ledger.BusinessLogic;
+
+import com.ledger.DomainModel.BalanceDrift;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+import com.ledger.ORM.AccountDAO;
+import com.ledger.ORM.ConnectionManager;
+import com.ledger.ORM.TransactionDAO;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// checks every account balance against its opening balance plus the net of its transactions.
+// The transactions are split by id into ledger.reconcile.shards ranges (default 4 per thread) and summed per
+// account by ledger.reconcile.threads workers (default one per processor), each on a connection of its own
+// with one grouped statement per range. All of them read the same exported snapshot, so the partial sums
+// and the balances they are compared with are consistent even while users keep writing.
+// Drifted accounts can then be repaired in a single db transaction.
+public class BalanceReconciler {
+    private static final OperationMetrics RECONCILE = MetricsRegistry.getInstance().controller("BalanceReconciler.reconcile");
+    private static final OperationMetrics REPAIR = MetricsRegistry.getInstance()
+            .operation("BalanceReconciler.repair", OperationMetrics.Kind.DB_TRANSACTION);
+
+    private final Supplier<Connection> connections;
+    private final int threads;
+    private final int shards;
+
+    public BalanceReconciler() {
+        this(ConnectionManager.getInstance()::openConnection,
+                Integer.getInteger("ledger.reconcile.threads", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("ledger.reconcile.shards", 0));
+    }
+
+    // connections opens a new connection, closed by the reconciler after use; shards 0 means 4 per thread
+    public BalanceReconciler(Supplier<Connection> connections, int threads, int shards) {
+        this.connections = connections;
+        this.threads = Math.max(threads, 1);
+        this.shards = shards > 0 ? shards : this.threads * 4;
+    }
+
+    // the drifted accounts by id, empty when every balance adds up, null on error
+    public List<BalanceDrift> reconcile() {
+        long start = RECONCILE.begin();
+        List<BalanceDrift> drifts = null;
+        try {
+            drifts = withConnection(coordinator -> {
+                try {
+                    String snapshot = beginSnapshot(coordinator, null);
+                    long[] range = new TransactionDAO(coordinator).getIdRange();
+                    if (range == null) return null;
+                    Map<Long, BigDecimal> net = range.length == 0 ? Map.of() : sumShards(snapshot, range[0], range[1]);
+                    if (net == null) return null;
+                    List<BalanceDrift> found = new AccountDAO(coordinator).findDrift(net);
+                    coordinator.commit();
+                    return found;
+                } catch (SQLException e) {
+                    System.err.println("SQL Exception during reconcile: " + e.getMessage());
+                    return null;
+                }
+            });
+            return drifts;
+        } finally {
+            RECONCILE.end(start, drifts != null ? drifts.size() : 0);
+        }
+    }
+
+    // net of the transactions with id in [fromId, toId] per account, summed over the shards in parallel
+    private Map<Long, BigDecimal> sumShards(String snapshot, long fromId, long toId) {
+        long shardSize = Math.max((toId - fromId + 1 + shards - 1) / shards, 1);
+        List<Future<Map<Long, BigDecimal>>> futures = new ArrayList<>();
+        try (ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "ledger-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        })) {
+            for (long from = fromId; from <= toId; from += shardSize) {
+                long shardFrom = from;
+                long shardTo = Math.min(from + shardSize - 1, toId);
+                futures.add(workers.submit(() -> withConnection(connection -> {
+                    try {
+                        beginSnapshot(connection, snapshot);
+                        Map<Long, BigDecimal> shard = new TransactionDAO(connection).netByAccount(shardFrom, shardTo);
+                        connection.commit();
+                        return shard;
+                    } catch (SQLException e) {
+                        System.err.println("SQL Exception during reconcile: " + e.getMessage());
+                        return null;
+                    }
+                })));
+            }
+        }
+        Map<Long, BigDecimal> net = new HashMap<>();
+        try {
+            for (Future<Map<Long, BigDecimal>> future : futures) {
+                Map<Long, BigDecimal> shard = future.get();
+                if (shard == null) return null;
+                shard.forEach((accountId, amount) -> net.merge(accountId, amount, BigDecimal::add));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.err.println("Balance reconciliation failed: " + e.getCause());
+            return null;
+        }
+        return net;
+    }
+
+    // starts a repeatable read transaction: on the snapshot exported by another one, or exporting its own
+    // when snapshot is null; returns the snapshot id
+    private static String beginSnapshot(Connection connection, String snapshot) throws SQLException {
+        connection.setAutoCommit(false);
+        connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        try (Statement stmt = connection.createStatement()) {
+            if (snapshot != null) {
+                //the id comes from pg_export_snapshot(), it cannot be a bind parameter
+                stmt.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+                return snapshot;
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT pg_export_snapshot()")) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+
+    // sets the drifted accounts back to their expected balance, all or none of them. The expected balance is
+    // computed again under row locks, so transactions recorded since reconcile() are taken into account.
+    // Returns the number of accounts changed, or -1 on error
+    public int repair(List<BalanceDrift> drifts) {
+        long start = REPAIR.begin();
+        int repaired = 0;
+        try {
+            if (drifts == null || drifts.isEmpty()) return 0;
+            List<Long> ids = drifts.stream().map(BalanceDrift::accountId).toList();
+            Integer rows = withConnection(connection -> {
+                AccountDAO accountDAO = new AccountDAO(connection);
+                try {
+                    connection.setAutoCommit(false);
+                    if (!accountDAO.lock(ids)) throw new SQLException("Could not lock accounts");
+                    int changed = accountDAO.repairBalances(ids);
+                    if (changed < 0) throw new SQLException("Balance repair failed");
+                    connection.commit();
+                    return changed;
+                } catch (SQLException e) {
+                    try {
+                        connection.rollback();
+                    } catch (SQLException rollbackEx) {
+                        System.err.println("Critical Error: Rollback failed! " + rollbackEx.getMessage());
+                    }
+                    System.err.println("Balance repair rolled back due to: " + e.getMessage());
+                    return null;
+                }
+            });
+            if (rows == null) {
+                REPAIR.error();
+                return -1;
+            }
+            repaired = rows;
+            return repaired;
+        } finally {
+            REPAIR.end(start, repaired);
+        }
+    }
+
+    // null when no connection could be opened
+    private <T> T withConnection(Function<Connection, T> work) {
+        Connection connection = connections.get();
+        if (connection == null) return null;
+        try {
+            return work.apply(connection);
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("SQL Exception while closing reconciler connection: " + e.getMessage());
+            }
+        }
+    }
+}
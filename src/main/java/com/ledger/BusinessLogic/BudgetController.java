@@ -3,12 +3,24 @@ package com.ledger.BusinessLogic;
 import com.ledger.DomainModel.*;
 import com.ledger.ORM.BudgetDAO;
 import com.ledger.ORM.LedgerCategoryDAO;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+import com.ledger.Metrics.ReportComputationEvent;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class BudgetController {
+    private static final OperationMetrics GET_ACTIVE_BUDGET_BY_LEDGER = MetricsRegistry.getInstance().controller("BudgetController.getActiveBudgetByLedger");
+    private static final OperationMetrics GET_ACTIVE_BUDGET_BY_CATEGORY = MetricsRegistry.getInstance().controller("BudgetController.getActiveBudgetByCategory");
+    private static final OperationMetrics GET_ACTIVE_BUDGETS = MetricsRegistry.getInstance().controller("BudgetController.getActiveBudgets");
+    private static final OperationMetrics EDIT_BUDGET = MetricsRegistry.getInstance().controller("BudgetController.editBudget");
+    private static final OperationMetrics MERGE_BUDGETS = MetricsRegistry.getInstance().controller("BudgetController.mergeBudgets");
+
     private final BudgetDAO budgetDAO;
     private final LedgerCategoryDAO ledgerCategoryDAO;
 
@@ -18,87 +30,143 @@ public class BudgetController {
     }
 
     public Budget getActiveBudgetByLedger(Ledger ledger, Period period) {
-        Budget budget = budgetDAO.getBudgetByLedger(ledger, period);
-        if(budget != null){
-            budget.refreshIfExpired();
-            budgetDAO.update(budget);
+        long start = GET_ACTIVE_BUDGET_BY_LEDGER.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("BudgetController.getActiveBudgetByLedger");
+        try {
+            Budget budget = budgetDAO.getBudgetByLedger(ledger, period);
+            if(budget != null){
+                budget.refreshIfExpired();
+                budgetDAO.update(budget);
+            }
+            return budget;
+        } finally {
+            event.finish(ledger.getId(), 0);
+            GET_ACTIVE_BUDGET_BY_LEDGER.end(start);
         }
-        return budget;
     }
 
     public Budget getActiveBudgetByCategory(LedgerCategory category, Period period) {
-        Budget budget = budgetDAO.getBudgetByCategory(category, period);
-        if(budget != null){
-            budget.refreshIfExpired();
-            budgetDAO.update(budget);
+        long start = GET_ACTIVE_BUDGET_BY_CATEGORY.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("BudgetController.getActiveBudgetByCategory");
+        try {
+            Budget budget = budgetDAO.getBudgetByCategory(category, period);
+            if(budget != null){
+                budget.refreshIfExpired();
+                budgetDAO.update(budget);
+            }
+            return budget;
+        } finally {
+            event.finish(category.getLedger() != null ? category.getLedger().getId() : 0, 0);
+            GET_ACTIVE_BUDGET_BY_CATEGORY.end(start);
         }
-        return budget;
     }
 
+    //the ledger budget, then the category budgets in the order of the category tree (each top-level category
+    //followed by its subcategories), in one query; expired ones are moved to the current period
+    public List<Budget> getActiveBudgets(Ledger ledger, Period period) {
+        long start = GET_ACTIVE_BUDGETS.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("BudgetController.getActiveBudgets");
+        List<Budget> tree = new ArrayList<>();
+        try {
+            Map<Long, Budget> byCategory = new HashMap<>();
+            for (Budget budget : budgetDAO.getBudgetsByLedger(ledger, period)) {
+                if (budget.getCategory() == null) {
+                    tree.add(budget);
+                } else {
+                    byCategory.put(budget.getCategory().getId(), budget);
+                }
+            }
+            for (LedgerCategory category : ledgerCategoryDAO.getTreeByLedger(ledger)) {
+                Budget budget = byCategory.get(category.getId());
+                if (budget != null) {
+                    budget.setCategory(category);
+                    tree.add(budget);
+                }
+            }
+            for (Budget budget : tree) {
+                LocalDate endDate = budget.getEndDate();
+                budget.refreshIfExpired();
+                if (!budget.getEndDate().equals(endDate)) {
+                    budgetDAO.update(budget);
+                }
+            }
+            return tree;
+        } finally {
+            event.finish(ledger.getId(), 0);
+            GET_ACTIVE_BUDGETS.end(start, tree.size());
+        }
+    }
 
     public boolean editBudget(Budget budget, BigDecimal newAmount) {
-        if(budget == null || newAmount == null) {
-            return false;
-        }
-        if (newAmount.compareTo(BigDecimal.ZERO) < 0) {
-            return false;
+        long start = EDIT_BUDGET.begin();
+        try {
+            if(budget == null || newAmount == null) {
+                return false;
+            }
+            if (newAmount.compareTo(BigDecimal.ZERO) < 0) {
+                return false;
+            }
+            budget.setAmount(newAmount);
+            return budgetDAO.update(budget);
+        } finally {
+            EDIT_BUDGET.end(start);
         }
-        budget.setAmount(newAmount);
-        return budgetDAO.update(budget);
     }
 
     public boolean mergeBudgets(Budget targetBudget) {
-        if (targetBudget == null) return false;
-        targetBudget.refreshIfExpired();
-        if (targetBudget.getCategory() != null) {
-            if (targetBudget.getCategory().getParent() != null) {
-                return false; //targetBudget's category must be a top-level category or null
-            }
-        }
+        long start = MERGE_BUDGETS.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("BudgetController.mergeBudgets");
+        try {
+            if (targetBudget == null) return false;
+            targetBudget.refreshIfExpired();
 
-        Ledger ledger = targetBudget.getLedger();
-        if (targetBudget.getCategory() == null) { //merge category-level budget into ledger-level budget
-            List<LedgerCategory> expenseCategories = ledgerCategoryDAO.getTreeByLedger(ledger).stream()
-                    .filter(c -> c.getType().equals(CategoryType.EXPENSE)) //only expense categories
-                    .filter(c -> c.getParent() == null) //only top-level categories
-                    .toList();
-            List<Budget> sourceBudgets = new ArrayList<>();
-            for (LedgerCategory cat : expenseCategories) {
-                Budget catBudget = budgetDAO.getBudgetByCategory(cat, targetBudget.getPeriod());
-                if (catBudget != null) {
-                    //refreshBudget(catBudget);
-                    catBudget.refreshIfExpired();
-                    budgetDAO.update(catBudget);
-                    sourceBudgets.add(catBudget); //add to source budgets to merge
+            Ledger ledger = targetBudget.getLedger();
+            if (targetBudget.getCategory() == null) { //merge category-level budget into ledger-level budget
+                List<LedgerCategory> expenseCategories = ledgerCategoryDAO.getTreeByLedger(ledger).stream()
+                        .filter(c -> c.getType().equals(CategoryType.EXPENSE)) //only expense categories
+                        .filter(c -> c.getDepth() == 0) //only top-level categories
+                        .toList();
+                List<Budget> sourceBudgets = new ArrayList<>();
+                for (LedgerCategory cat : expenseCategories) {
+                    Budget catBudget = budgetDAO.getBudgetByCategory(cat, targetBudget.getPeriod());
+                    if (catBudget != null) {
+                        //refreshBudget(catBudget);
+                        catBudget.refreshIfExpired();
+                        budgetDAO.update(catBudget);
+                        sourceBudgets.add(catBudget); //add to source budgets to merge
+                    }
                 }
-            }
 
-            BigDecimal mergedAmount = sourceBudgets.stream()
-                    .map(Budget::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            targetBudget.setAmount(targetBudget.getAmount().add(mergedAmount));
-        } else { //merge subcategory budget into category budget
-            if (targetBudget.getCategory().getParent() != null) {
-                return false; //targetBudget category must be a top-level category
-            }
-            List<LedgerCategory> subcategories = ledgerCategoryDAO.getCategoriesByParentId(targetBudget.getCategory().getId(), ledger).stream()
-                    .filter(c -> c.getType().equals(CategoryType.EXPENSE)) //only expense categories
-                    .toList();
-            List<Budget> sourceBudgets = new ArrayList<>();
-            for (LedgerCategory subcat : subcategories) {
-                Budget subcatBudget = budgetDAO.getBudgetByCategory(subcat, targetBudget.getPeriod());
-                if (subcatBudget != null) {
-                    subcatBudget.refreshIfExpired();
-                    budgetDAO.update(subcatBudget);
-                    sourceBudgets.add(subcatBudget);
+                BigDecimal mergedAmount = sourceBudgets.stream()
+                        .map(Budget::getAmount)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                targetBudget.setAmount(targetBudget.getAmount().add(mergedAmount));
+            } else { //merge the budgets of all its subcategories, at any depth, into category budget
+                List<LedgerCategory> subcategories = ledgerCategoryDAO.getSubtree(targetBudget.getCategory()).stream()
+                        .filter(c -> c.getType().equals(CategoryType.EXPENSE)) //only expense categories
+                        .toList();
+                if (subcategories.isEmpty()) {
+                    return false; //nothing to merge
+                }
+                List<Budget> sourceBudgets = new ArrayList<>();
+                for (LedgerCategory subcat : subcategories) {
+                    Budget subcatBudget = budgetDAO.getBudgetByCategory(subcat, targetBudget.getPeriod());
+                    if (subcatBudget != null) {
+                        subcatBudget.refreshIfExpired();
+                        budgetDAO.update(subcatBudget);
+                        sourceBudgets.add(subcatBudget);
+                    }
                 }
+                BigDecimal mergedAmount = sourceBudgets.stream()
+                        .map(Budget::getAmount)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                targetBudget.setAmount(targetBudget.getAmount().add(mergedAmount));
             }
-            BigDecimal mergedAmount = sourceBudgets.stream()
-                    .map(Budget::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            targetBudget.setAmount(targetBudget.getAmount().add(mergedAmount));
+            return budgetDAO.update(targetBudget);
+        } finally {
+            event.finish(targetBudget != null && targetBudget.getLedger() != null ? targetBudget.getLedger().getId() : 0, 0);
+            MERGE_BUDGETS.end(start);
         }
-        return budgetDAO.update(targetBudget);
     }
 }
 
@@ -0,0 +1,135 @@
+package com.ledger.BusinessLogic;
+
+import com.ledger.DomainModel.Account;
+import com.ledger.DomainModel.Ledger;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+import com.ledger.ORM.AccountDAO;
+import com.ledger.ORM.LedgerDAO;
+import com.ledger.ORM.TransactionDAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+// removes soft deleted ledgers and accounts in the background.
+// Rows go in chunks of ledger.purge.chunkSize (default 500), each committed on its own, with a pause of
+// ledger.purge.pauseMillis (default 20) between chunks, so the purge never holds many locks or keeps a
+// long transaction open while users keep working. The ledger or account row itself goes last, once
+// nothing references it any more. The purger owns its connection.
+public class DeletionPurger implements AutoCloseable {
+    private static final OperationMetrics PURGE = MetricsRegistry.getInstance().controller("DeletionPurger.purge");
+
+    private final Connection connection;
+    private final LedgerDAO ledgerDAO;
+    private final AccountDAO accountDAO;
+    private final TransactionDAO transactionDAO;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    public DeletionPurger(Connection connection) {
+        this(connection, Integer.getInteger("ledger.purge.chunkSize", 500),
+                Long.getLong("ledger.purge.pauseMillis", 20));
+    }
+
+    // connection is used only by the purger and closed with it
+    public DeletionPurger(Connection connection, int chunkSize, long pauseMillis) {
+        this.connection = connection;
+        this.ledgerDAO = new LedgerDAO(connection);
+        this.accountDAO = new AccountDAO(connection);
+        this.transactionDAO = new TransactionDAO(connection);
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.pauseMillis = Math.max(pauseMillis, 0);
+    }
+
+    //runs purge() every intervalMillis on a background thread
+    public synchronized void start(long intervalMillis) {
+        if (scheduler != null || closed) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-purger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purge, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // one pass over everything soft deleted so far; returns the number of rows removed or detached.
+    // Stops early, to continue on the next pass, on error or when the purger is closed
+    public synchronized long purge() {
+        long start = PURGE.begin();
+        long rows = 0;
+        try {
+            for (long ledgerId : ledgerDAO.getDeletedIds()) {
+                long purged = inChunks(() -> transactionDAO.purgeLedgerChunk(ledgerId, chunkSize));
+                if (purged < 0) return rows;
+                rows += purged;
+                Ledger ledger = new Ledger();
+                ledger.setId(ledgerId);
+                if (!ledgerDAO.delete(ledger)) return rows;
+                rows++;
+            }
+            for (long accountId : accountDAO.getDeletedIds()) {
+                long purged = inChunks(() -> transactionDAO.purgeAccountChunk(accountId, chunkSize));
+                if (purged < 0) return rows;
+                rows += purged;
+                long detached = inChunks(() -> transactionDAO.detachAccountChunk(accountId, chunkSize));
+                if (detached < 0) return rows;
+                rows += detached;
+                Account account = new Account();
+                account.setId(accountId);
+                if (!accountDAO.delete(account)) return rows;
+                rows++;
+            }
+            return rows;
+        } finally {
+            PURGE.end(start, rows);
+        }
+    }
+
+    // repeats a chunk until it changes nothing; the total, or -1 if a chunk failed or the purger was closed
+    private long inChunks(IntSupplier chunk) {
+        long total = 0;
+        while (!closed) {
+            int rows = chunk.getAsInt();
+            if (rows < 0) return -1;
+            total += rows;
+            if (rows < chunkSize) return total;
+            if (pauseMillis > 0) {
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = scheduler;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("SQL Exception while closing purger connection: " + e.getMessage());
+        }
+    }
+}
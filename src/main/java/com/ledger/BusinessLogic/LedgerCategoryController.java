@@ -6,11 +6,22 @@ import com.ledger.ORM.BudgetDAO;
 import com.ledger.ORM.LedgerCategoryDAO;
 import com.ledger.ORM.TransactionDAO;
 import com.ledger.DbTransaction.DbTransactionManager;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
 import java.math.BigDecimal;
 import java.util.List;
 
 public class LedgerCategoryController {
+    private static final OperationMetrics GET_CATEGORY_TREE_BY_LEDGER = MetricsRegistry.getInstance().controller("LedgerCategoryController.getCategoryTreeByLedger");
+    private static final OperationMetrics CREATE_CATEGORY = MetricsRegistry.getInstance().controller("LedgerCategoryController.createCategory");
+    private static final OperationMetrics CREATE_SUB_CATEGORY = MetricsRegistry.getInstance().controller("LedgerCategoryController.createSubCategory");
+    private static final OperationMetrics PROMOTE_SUB_CATEGORY = MetricsRegistry.getInstance().controller("LedgerCategoryController.promoteSubCategory");
+    private static final OperationMetrics DEMOTE_CATEGORY = MetricsRegistry.getInstance().controller("LedgerCategoryController.demoteCategory");
+    private static final OperationMetrics RENAME = MetricsRegistry.getInstance().controller("LedgerCategoryController.rename");
+    private static final OperationMetrics DELETE_CATEGORY = MetricsRegistry.getInstance().controller("LedgerCategoryController.deleteCategory");
+    private static final OperationMetrics CHANGE_PARENT = MetricsRegistry.getInstance().controller("LedgerCategoryController.changeParent");
+
     private final LedgerCategoryDAO ledgerCategoryDAO;
     private final TransactionDAO transactionDAO;
     private final BudgetDAO budgetDAO;
@@ -25,143 +36,162 @@ public class LedgerCategoryController {
     }
 
     public List<LedgerCategory> getCategoryTreeByLedger(Ledger ledger) {
-        return ledgerCategoryDAO.getTreeByLedger(ledger).stream()
-                .filter(category -> !category.getName().equals("Claim Income"))
-                .toList();
+        long start = GET_CATEGORY_TREE_BY_LEDGER.begin();
+        try {
+            return ledgerCategoryDAO.getTreeByLedger(ledger).stream()
+                    .filter(category -> !category.getName().equals("Claim Income"))
+                    .toList();
+        } finally {
+            GET_CATEGORY_TREE_BY_LEDGER.end(start);
+        }
     }
 
     public LedgerCategory createCategory(String name, Ledger ledger, CategoryType type) {
-        if(ledger == null) return null;
-        if(name == null || name.isEmpty() || name.length() > 50) return null;
-        if(type == null) return null;
-        LedgerCategory existingCategory = ledgerCategoryDAO.getByNameAndLedger(name, ledger);
-        if(existingCategory!= null && existingCategory.getType() == type) return null;
-        LedgerCategory category = new LedgerCategory(name, type, ledger);
-        return DbTransactionManager.getInstance().execute(() -> {
-            if (!ledgerCategoryDAO.insert(category)) throw new Exception("Failed to insert category");
-            //create budget for ledgerCategory
-            for (Period period : Period.values()) {
-                Budget budget = new Budget(BigDecimal.ZERO, period, category, ledger);
-                if(!budgetDAO.insert(budget)) throw new Exception("Failed to insert budget for category");
-            }
-            return category;
-        });
+        long start = CREATE_CATEGORY.begin();
+        try {
+            if(ledger == null) return null;
+            if(name == null || name.isEmpty() || name.length() > 50) return null;
+            if(type == null) return null;
+            LedgerCategory existingCategory = ledgerCategoryDAO.getByNameAndLedger(name, ledger);
+            if(existingCategory!= null && existingCategory.getType() == type) return null;
+            LedgerCategory category = new LedgerCategory(name, type, ledger);
+            return DbTransactionManager.getInstance().execute(() -> {
+                if (!ledgerCategoryDAO.insert(category)) throw new Exception("Failed to insert category");
+                //create budget for ledgerCategory
+                for (Period period : Period.values()) {
+                    Budget budget = new Budget(BigDecimal.ZERO, period, category, ledger);
+                    if(!budgetDAO.insert(budget)) throw new Exception("Failed to insert budget for category");
+                }
+                return category;
+            });
+        } finally {
+            CREATE_CATEGORY.end(start);
+        }
     }
 
     public LedgerCategory createSubCategory(String name, LedgerCategory parentCategory) {
-        if(parentCategory == null) return null;
-        if(parentCategory.getParent() != null) return null;
-        if(name == null || name.isEmpty() || name.length() > 50) return null;
-        Ledger ledger= parentCategory.getLedger();
-        LedgerCategory existingCategory = ledgerCategoryDAO.getByNameAndLedger(name, ledger);
-        if (existingCategory != null && existingCategory.getType() == parentCategory.getType()) return null;
-        LedgerCategory category = new LedgerCategory(name, parentCategory.getType(), ledger);
-        category.setParent(parentCategory);
-        return  DbTransactionManager.getInstance().execute(() -> {
-            if (!ledgerCategoryDAO.insert(category)) throw new Exception("Failed to insert sub-category");
-            //create budget for ledgerCategory
-            for (Period period : Period.values()) {
-                Budget budget = new Budget(BigDecimal.ZERO, period, category, ledger);
-                if(!budgetDAO.insert(budget)) throw new Exception("Failed to insert budget for sub-category");
-            }
-            return category;
-        });
+        long start = CREATE_SUB_CATEGORY.begin();
+        try {
+            if(parentCategory == null) return null;
+            if(name == null || name.isEmpty() || name.length() > 50) return null;
+            Ledger ledger= parentCategory.getLedger();
+            LedgerCategory existingCategory = ledgerCategoryDAO.getByNameAndLedger(name, ledger);
+            if (existingCategory != null && existingCategory.getType() == parentCategory.getType()) return null;
+            LedgerCategory category = new LedgerCategory(name, parentCategory.getType(), ledger);
+            category.setParent(parentCategory);
+            return  DbTransactionManager.getInstance().execute(() -> {
+                if (!ledgerCategoryDAO.insert(category)) throw new Exception("Failed to insert sub-category");
+                //create budget for ledgerCategory
+                for (Period period : Period.values()) {
+                    Budget budget = new Budget(BigDecimal.ZERO, period, category, ledger);
+                    if(!budgetDAO.insert(budget)) throw new Exception("Failed to insert budget for sub-category");
+                }
+                return category;
+            });
+        } finally {
+            CREATE_SUB_CATEGORY.end(start);
+        }
     }
 
     public boolean promoteSubCategory(LedgerCategory subCategory) {
-        if (subCategory == null) {
-            return false;
-        }
-        if (subCategory.getParent() == null) {
-            return false;
+        long start = PROMOTE_SUB_CATEGORY.begin();
+        try {
+            if (subCategory == null) {
+                return false;
+            }
+            if (subCategory.getParent() == null) {
+                return false;
+            }
+            subCategory.setParent(null);
+            return moved(subCategory); //update parent_id in database
+        } finally {
+            PROMOTE_SUB_CATEGORY.end(start);
         }
-        subCategory.setParent(null);
-        return ledgerCategoryDAO.update(subCategory); //update parent_id in database
     }
 
     public boolean demoteCategory(LedgerCategory category, LedgerCategory parent) {
-        if (category == null) return false;
-        if (parent == null) return false;
-        if (parent.getParent() != null) return false;
-        if (category.getId() == parent.getId()) return false;
-        if (category.getParent() != null) return false;
-        if(!ledgerCategoryDAO.getCategoriesByParentId(category.getId(), category.getLedger()).isEmpty()) return false;
-        if (category.getType() != parent.getType()) return false;
-        category.setParent(parent);
-        return ledgerCategoryDAO.update(category); //update parent_id in database
+        long start = DEMOTE_CATEGORY.begin();
+        try {
+            if (category == null) return false;
+            if (parent == null) return false;
+            if (category.getId() == parent.getId()) return false;
+            if (category.getParent() != null) return false;
+            if (category.getType() != parent.getType()) return false;
+            if (ledgerCategoryDAO.isInSubtree(category, parent)) return false; //not below itself
+            category.setParent(parent); //its subcategories come along
+            return moved(category); //update parent_id in database
+        } finally {
+            DEMOTE_CATEGORY.end(start);
+        }
     }
 
     public boolean rename(LedgerCategory category, String newName) {
-        if(category == null){
-            return false;
-        }
-        if(newName == null || newName.isEmpty()) {
-            return false;
-        }
-        Ledger ledger = category.getLedger();
+        long start = RENAME.begin();
+        try {
+            if(category == null){
+                return false;
+            }
+            if(newName == null || newName.isEmpty()) {
+                return false;
+            }
+            Ledger ledger = category.getLedger();
 
-        LedgerCategory existingCategory = ledgerCategoryDAO.getByNameAndLedger(newName, ledger);
-        if(existingCategory != null && existingCategory.getId() != category.getId()) {
-            return false;
+            LedgerCategory existingCategory = ledgerCategoryDAO.getByNameAndLedger(newName, ledger);
+            if(existingCategory != null && existingCategory.getId() != category.getId()) {
+                return false;
+            }
+            category.setName(newName);
+            return ledgerCategoryDAO.update(category);
+        } finally {
+            RENAME.end(start);
         }
-        category.setName(newName);
-        return ledgerCategoryDAO.update(category);
     }
 
     public boolean deleteCategory(LedgerCategory category) {
-        if(category == null) return false;
-        if(!ledgerCategoryDAO.getCategoriesByParentId(category.getId(), category.getLedger()).isEmpty()) return false;
-        Ledger ledger = category.getLedger();
-        Boolean deleted = DbTransactionManager.getInstance().execute(() -> {
-            List<Transaction> transactionsToDelete = transactionDAO.getByLedgerId(ledger.getId());
-            for (Transaction tx : transactionsToDelete) {
-                Account to = null;
-                Account from = null;
-                if(tx.getToAccount() != null) to = accountDAO.getAccountById(tx.getToAccount().getId());
-                if(tx.getFromAccount() != null) from = accountDAO.getAccountById(tx.getFromAccount().getId());
-                switch (tx.getType()) {
-                    case INCOME:
-                        if (to != null) {
-                            to.debit(tx.getAmount());
-                            if (!accountDAO.update(to)) throw new Exception("Failed to update account during ledger deletion");
-                        }
-                        break;
-                    case EXPENSE:
-                        if (from != null) {
-                            from.credit(tx.getAmount());
-                            if (!accountDAO.update(from)) throw new Exception("Failed to update account during ledger deletion");
-                        }
-                        break;
-                    case TRANSFER:
-                        if (from != null) {
-                            from.credit(tx.getAmount());
-                            if (!accountDAO.update(from)) throw new Exception("Failed to update account during ledger deletion");
-                        }
-                        if (to != null) {
-                            to.debit(tx.getAmount());
-                            if(!accountDAO.update(to)) throw new Exception("Failed to update account during ledger deletion");
-                            break;
-                        }
-                }
-            }
-            if(!ledgerCategoryDAO.delete(category)) throw new Exception("Failed to delete category");
-            return true;
-        });
-        return deleted != null && deleted;
+        long start = DELETE_CATEGORY.begin();
+        try {
+            if(category == null) return false;
+            if(!ledgerCategoryDAO.getCategoriesByParentId(category.getId(), category.getLedger()).isEmpty()) return false;
+            Boolean deleted = DbTransactionManager.getInstance().execute(() -> {
+                //through the DAO first, so balances, checkpoints, net worth history and spending statistics follow;
+                //the category's budgets then go with it
+                if (transactionDAO.deleteByCategory(category.getId()) == null) throw new Exception("Failed to delete category transactions");
+                if(!ledgerCategoryDAO.delete(category)) throw new Exception("Failed to delete category");
+                return true;
+            });
+            return deleted != null && deleted;
+        } finally {
+            DELETE_CATEGORY.end(start);
+        }
     }
 
     public boolean changeParent (LedgerCategory category, LedgerCategory newParent) {
-        if (category == null) return false;
-        if (category.getParent() == null) return false;
-        if (newParent != null) {
-            if (newParent.getParent() != null) return false;
-            if (category.getId() == newParent.getId()) return false;
-            if (category.getType() != newParent.getType()) return false;
-        } else {
-            return false; //cannot set parent to null with this method
+        long start = CHANGE_PARENT.begin();
+        try {
+            if (category == null) return false;
+            if (category.getParent() == null) return false;
+            if (newParent != null) {
+                if (category.getId() == newParent.getId()) return false;
+                if (category.getType() != newParent.getType()) return false;
+                if (ledgerCategoryDAO.isInSubtree(category, newParent)) return false; //not below itself
+            } else {
+                return false; //cannot set parent to null with this method
+            }
+            category.setParent(newParent);
+            return moved(category);
+        } finally {
+            CHANGE_PARENT.end(start);
         }
-        category.setParent(newParent);
-        return ledgerCategoryDAO.update(category);
+    }
+
+    //the budgets of the old and new ancestors count different categories from now on
+    private boolean moved(LedgerCategory category) {
+        Boolean updated = DbTransactionManager.getInstance().execute(() -> {
+            if (!ledgerCategoryDAO.update(category)) throw new Exception("Failed to update category");
+            if (budgetDAO.recount(category.getLedger().getId()) < 0) throw new Exception("Failed to recount budgets");
+            return true;
+        });
+        return updated != null && updated;
     }
 
 }
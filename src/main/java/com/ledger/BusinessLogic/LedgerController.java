@@ -4,12 +4,19 @@ import com.ledger.DomainModel.*;
 import com.ledger.ORM.*;
 import com.ledger.DbTransaction.DbTransactionManager;
 import com.ledger.Session.UserSession;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
 public class LedgerController {
+    private static final OperationMetrics GET_LEDGERS_BY_USER = MetricsRegistry.getInstance().controller("LedgerController.getLedgersByUser");
+    private static final OperationMetrics CREATE_LEDGER = MetricsRegistry.getInstance().controller("LedgerController.createLedger");
+    private static final OperationMetrics DELETE_LEDGER = MetricsRegistry.getInstance().controller("LedgerController.deleteLedger");
+    private static final OperationMetrics RENAME_LEDGER = MetricsRegistry.getInstance().controller("LedgerController.renameLedger");
+
     private final LedgerDAO ledgerDAO;
     private final TransactionDAO transactionDAO;
     private final CategoryDAO categoryDAO;
@@ -28,105 +35,68 @@ public class LedgerController {
     }
 
     public List<Ledger> getLedgersByUser(User user) {
-        return ledgerDAO.getLedgersByUserId(user.getId());
+        long start = GET_LEDGERS_BY_USER.begin();
+        try {
+            return ledgerDAO.getLedgersByUserId(user.getId());
+        } finally {
+            GET_LEDGERS_BY_USER.end(start);
+        }
     }
 
     public Ledger createLedger(String name) {
-        if(name == null || name.isEmpty() || name.length() > 50) return null;
-        if(!UserSession.getInstance().isLoggedIn()) return null;
-        User owner = UserSession.getInstance().getCurrentUser();
-        if (ledgerDAO.getByNameAndOwnerId(name, owner.getId()) != null) return null;
-        Ledger ledger = new Ledger(name, owner);
-        return DbTransactionManager.getInstance().execute(() -> {
-            if(!ledgerDAO.insert(ledger)) throw new Exception("Failed to create ledger");
-            List<Category> templateCategories = new ArrayList<>(categoryDAO.getParentCategories()); //get only parents
-            List<LedgerCategory> allCategories = new ArrayList<>();
-            for (Category template : templateCategories) {
-                allCategories.addAll(copyCategoryTree(template, ledger, null));
-            }
-            //create Budget for ledger level for each Period
-            for (Period period : Period.values()) {
-                Budget ledgerBudget = new Budget(BigDecimal.ZERO, period, null, ledger);
-                if(!budgetDAO.insert(ledgerBudget)) throw new Exception("Failed to create ledger budget");
-            }
-            //create Budget for each default category
-            for (LedgerCategory cat : allCategories) {
-                if (cat.getType() == CategoryType.EXPENSE) {
-                    for (Period period : Period.values()) {
-                        Budget categoryBudget = new Budget(BigDecimal.ZERO, period, cat, ledger);
-                        if(!budgetDAO.insert(categoryBudget)) throw new Exception("Failed to create category budget");
-                    }
+        long start = CREATE_LEDGER.begin();
+        try {
+            if(name == null || name.isEmpty() || name.length() > 50) return null;
+            if(!UserSession.getInstance().isLoggedIn()) return null;
+            User owner = UserSession.getInstance().getCurrentUser();
+            if (ledgerDAO.getByNameAndOwnerId(name, owner.getId()) != null) return null;
+            Ledger ledger = new Ledger(name, owner);
+            return DbTransactionManager.getInstance().execute(() -> {
+                if(!ledgerDAO.insert(ledger)) throw new Exception("Failed to create ledger");
+                //copy the default categories, then create Budget for ledger level and each expense category
+                if (categoryDAO.copyToLedger(ledger.getId()) <= 0) throw new Exception("Failed to copy default categories");
+                List<Budget> ledgerBudgets = new ArrayList<>();
+                for (Period period : Period.values()) {
+                    ledgerBudgets.add(new Budget(BigDecimal.ZERO, period, null, ledger));
                 }
-            }
-            return ledger;
-        });
-    }
-
-    private List<LedgerCategory> copyCategoryTree(Category template, Ledger ledger, LedgerCategory parent) {
-        List<LedgerCategory> result = new ArrayList<>();
-
-        LedgerCategory copy = new LedgerCategory();
-        copy.setName(template.getName());
-        copy.setType(template.getType());
-        copy.setLedger(ledger);
-        copy.setParent(parent);
-
-        if (!ledgerCategoryDAO.insert(copy)) throw new RuntimeException("cannot insert category: " + template.getName());
-        result.add(copy);
-        for (Category childTemplate : categoryDAO.getCategoriesByParentId(template.getId())) {
-            List<LedgerCategory> childCopies = copyCategoryTree(childTemplate, ledger, copy);
-            result.addAll(childCopies);
+                if (budgetDAO.insertForExpenseCategories(ledger, ledgerBudgets) < 0) throw new Exception("Failed to create budgets");
+                return ledger;
+            });
+        } finally {
+            CREATE_LEDGER.end(start);
         }
-        return result;
     }
 
     public boolean deleteLedger(Ledger ledger) {
-        if(ledger == null) return false;
-        Boolean deleted = DbTransactionManager.getInstance().execute(() -> {
-            List<Transaction> transactionsToDelete = transactionDAO.getByLedgerId(ledger.getId());
-            for (Transaction tx : transactionsToDelete) {
-                Account to = null;
-                Account from = null;
-                if (tx.getToAccount() != null) to = accountDAO.getAccountById(tx.getToAccount().getId());
-                if (tx.getFromAccount() != null) from = accountDAO.getAccountById(tx.getFromAccount().getId());
-                switch (tx.getType()) {
-                    case INCOME:
-                        if (to != null) {
-                            to.debit(tx.getAmount());
-                            if(!accountDAO.update(to)) throw new Exception("Failed to update account during ledger deletion");
-                        }
-                        break;
-                    case EXPENSE:
-                        if (from != null) {
-                            from.credit(tx.getAmount());
-                            if(!accountDAO.update(from)) throw new Exception("Failed to update account during ledger deletion");
-                        }
-                        break;
-                    case TRANSFER:
-                        if (from != null) {
-                            from.credit(tx.getAmount());
-                            if(!accountDAO.update(from)) throw new Exception("Failed to update account during ledger deletion");
-                        }
-                        if (to != null) {
-                            to.debit(tx.getAmount());
-                            if(!accountDAO.update(to)) throw new Exception("Failed to update account during ledger deletion");
-                        }
-                        break;
-                }
-            }
-            return ledgerDAO.delete(ledger);
-        });
-        return deleted != null && deleted;
+        long start = DELETE_LEDGER.begin();
+        try {
+            if(ledger == null) return false;
+            // hidden and out of the balances at once, with two statements whatever its size;
+            // DeletionPurger removes the rows later
+            Boolean deleted = DbTransactionManager.getInstance().execute(() -> {
+                if (!ledgerDAO.softDelete(ledger)) throw new Exception("Failed to delete ledger");
+                if (!accountDAO.reverseLedger(ledger.getId())) throw new Exception("Failed to update accounts during ledger deletion");
+                return true;
+            });
+            return deleted != null && deleted;
+        } finally {
+            DELETE_LEDGER.end(start);
+        }
     }
 
     public boolean renameLedger(Ledger ledger, String newName) {
-        if(ledger == null) return false;
-        if(newName == null || newName.isEmpty()) return false;
-        if(!UserSession.getInstance().isLoggedIn()) return false;
-        User user = UserSession.getInstance().getCurrentUser();
-        Ledger existingLedger = ledgerDAO.getByNameAndOwnerId(newName, user.getId());
-        if (existingLedger != null && existingLedger.getId() != ledger.getId()) return false;
-        ledger.setName(newName);
-        return ledgerDAO.update(ledger);
+        long start = RENAME_LEDGER.begin();
+        try {
+            if(ledger == null) return false;
+            if(newName == null || newName.isEmpty()) return false;
+            if(!UserSession.getInstance().isLoggedIn()) return false;
+            User user = UserSession.getInstance().getCurrentUser();
+            Ledger existingLedger = ledgerDAO.getByNameAndOwnerId(newName, user.getId());
+            if (existingLedger != null && existingLedger.getId() != ledger.getId()) return false;
+            ledger.setName(newName);
+            return ledgerDAO.update(ledger);
+        } finally {
+            RENAME_LEDGER.end(start);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+package com.ledger.BusinessLogic;
+
+import com.ledger.DbTransaction.DbTransactionManager;
+import com.ledger.DomainModel.*;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+import com.ledger.ORM.RecurringRuleDAO;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecurringController {
+    private static final OperationMetrics CREATE_RULE = MetricsRegistry.getInstance().controller("RecurringController.createRule");
+    private static final OperationMetrics DELETE_RULE = MetricsRegistry.getInstance().controller("RecurringController.deleteRule");
+    private static final OperationMetrics GET_RULES_BY_LEDGER = MetricsRegistry.getInstance().controller("RecurringController.getRulesByLedger");
+    private static final OperationMetrics GENERATE_DUE_OCCURRENCES = MetricsRegistry.getInstance().controller("RecurringController.generateDueOccurrences");
+
+    private final RecurringRuleDAO recurringRuleDAO;
+    private LocalDate lastRun; //day of the last successful generateIfNotRunToday
+
+    public RecurringController(RecurringRuleDAO recurringRuleDAO) {
+        this.recurringRuleDAO = recurringRuleDAO;
+    }
+
+    //same account and category rules as the one-off transactions of TransactionController
+    public RecurringRule createRule(TransactionType type, Ledger ledger, Account fromAccount, Account toAccount,
+                                    LedgerCategory category, BigDecimal amount, String note,
+                                    Frequency frequency, int interval, LocalDate startDate,
+                                    LocalDate endDate, Integer maxOccurrences) {
+        long start = CREATE_RULE.begin();
+        try {
+            if (type == null || ledger == null || frequency == null) return null;
+            if (interval <= 0) return null;
+            if (maxOccurrences != null && maxOccurrences <= 0) return null;
+            if (amount == null) amount = BigDecimal.ZERO;
+            if (amount.compareTo(BigDecimal.ZERO) < 0) return null;
+            if (startDate == null) startDate = LocalDate.now();
+            if (endDate != null && endDate.isBefore(startDate)) return null;
+            switch (type) {
+                case INCOME:
+                    if (category == null || category.getType() != CategoryType.INCOME) return null;
+                    if (toAccount == null || !toAccount.getSelectable()) return null;
+                    fromAccount = null;
+                    break;
+                case EXPENSE:
+                    if (category == null || category.getType() != CategoryType.EXPENSE) return null;
+                    if (fromAccount == null || !fromAccount.getSelectable()) return null;
+                    toAccount = null;
+                    break;
+                case TRANSFER:
+                    if (fromAccount == null && toAccount == null) return null;
+                    if (fromAccount != null && toAccount != null && fromAccount.getId() == toAccount.getId()) return null;
+                    if (fromAccount != null && !fromAccount.getSelectable()) return null;
+                    if (toAccount != null && !toAccount.getSelectable()) return null;
+                    category = null;
+                    break;
+            }
+            RecurringRule rule = new RecurringRule(type, ledger, fromAccount, toAccount, category, amount, note,
+                    frequency, interval, startDate);
+            rule.setEndDate(endDate);
+            rule.setMaxOccurrences(maxOccurrences);
+            rule.advance(0);
+            return recurringRuleDAO.insert(rule) ? rule : null;
+        } finally {
+            CREATE_RULE.end(start);
+        }
+    }
+
+    //stops future occurrences, the transactions already generated stay
+    public boolean deleteRule(RecurringRule rule) {
+        long start = DELETE_RULE.begin();
+        try {
+            if (rule == null) return false;
+            return recurringRuleDAO.delete(rule);
+        } finally {
+            DELETE_RULE.end(start);
+        }
+    }
+
+    public List<RecurringRule> getRulesByLedger(Ledger ledger) {
+        long start = GET_RULES_BY_LEDGER.begin();
+        try {
+            if (ledger == null) return List.of();
+            return recurringRuleDAO.getByLedgerId(ledger.getId());
+        } finally {
+            GET_RULES_BY_LEDGER.end(start);
+        }
+    }
+
+    // generates every occurrence due up to today, for all rules, catching up on missed days.
+    // All occurrences go in with one insert and one balance update per account, inside one db transaction;
+    // occurrences that already exist are skipped by the (rule, date) unique index, so a repeated or
+    // interrupted run never books anything twice. Returns the number of transactions created, -1 on failure
+    public int generateDueOccurrences(LocalDate today) {
+        long start = GENERATE_DUE_OCCURRENCES.begin();
+        try {
+            List<RecurringRule> due = recurringRuleDAO.getDue(today);
+            if (due.isEmpty()) return 0;
+
+            List<Long> ruleIds = new ArrayList<>();
+            List<LocalDate> dates = new ArrayList<>();
+            List<RecurringRule> advanced = new ArrayList<>();
+            for (RecurringRule rule : due) {
+                List<LocalDate> occurrences = rule.dueOccurrences(today);
+                for (LocalDate date : occurrences) {
+                    ruleIds.add(rule.getId());
+                    dates.add(date);
+                }
+                rule.advance(occurrences.size());
+                advanced.add(rule);
+            }
+
+            Integer created = DbTransactionManager.getInstance().execute(() -> {
+                int inserted = ruleIds.isEmpty() ? 0 : recurringRuleDAO.insertOccurrences(ruleIds, dates);
+                if (inserted < 0) throw new Exception("Failed to insert recurring occurrences");
+                if (!recurringRuleDAO.updateProgress(advanced)) throw new Exception("Failed to update recurring rules");
+                return inserted;
+            });
+            return created != null ? created : -1;
+        } finally {
+            GENERATE_DUE_OCCURRENCES.end(start);
+        }
+    }
+
+    //at most one successful run per day, for callers that poll
+    public int generateIfNotRunToday(LocalDate today) {
+        if (today.equals(lastRun)) return 0;
+        int created = generateDueOccurrences(today);
+        if (created >= 0) lastRun = today;
+        return created;
+    }
+}
@@ -3,99 +3,283 @@ package com.ledger.BusinessLogic;
 
 import com.ledger.DomainModel.*;
 import com.ledger.ORM.*;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+import com.ledger.Metrics.ReportComputationEvent;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class ReportController {
+    private static final OperationMetrics GET_TOTAL_EXPENSE_BY_LEDGER = MetricsRegistry.getInstance().readController("ReportController.getTotalExpenseByLedger");
+    private static final OperationMetrics GET_TOTAL_INCOME_BY_LEDGER = MetricsRegistry.getInstance().readController("ReportController.getTotalIncomeByLedger");
+    private static final OperationMetrics GET_TOTAL_EXPENSE_BY_ACCOUNT = MetricsRegistry.getInstance().readController("ReportController.getTotalExpenseByAccount");
+    private static final OperationMetrics GET_TOTAL_INCOME_BY_ACCOUNT = MetricsRegistry.getInstance().readController("ReportController.getTotalIncomeByAccount");
+    private static final OperationMetrics GET_TOTAL_ASSETS = MetricsRegistry.getInstance().readController("ReportController.getTotalAssets");
+    private static final OperationMetrics IS_OVER_BUDGET = MetricsRegistry.getInstance().controller("ReportController.isOverBudget");
+    private static final OperationMetrics GET_CATEGORY_MONTH_REPORT = MetricsRegistry.getInstance().readController("ReportController.getCategoryMonthReport");
+    private static final OperationMetrics GET_TOP_CATEGORIES = MetricsRegistry.getInstance().readController("ReportController.getTopCategories");
+    private static final OperationMetrics GET_TOP_ACCOUNTS = MetricsRegistry.getInstance().readController("ReportController.getTopAccounts");
+    private static final OperationMetrics GET_LARGEST_EXPENSES = MetricsRegistry.getInstance().readController("ReportController.getLargestExpenses");
+    private static final OperationMetrics GET_SPENDING_STATS = MetricsRegistry.getInstance().readController("ReportController.getSpendingStats");
+    private static final OperationMetrics GET_NET_WORTH_HISTORY = MetricsRegistry.getInstance().controller("ReportController.getNetWorthHistory");
+    private static final OperationMetrics GET_BUDGET_FORECASTS = MetricsRegistry.getInstance().readController("ReportController.getBudgetForecasts");
+
     private final TransactionDAO transactionDAO;
     private final AccountDAO accountDAO;
     private final BudgetDAO budgetDAO;
     private final LedgerCategoryDAO ledgerCategoryDAO;
+    private final SpendingStatsDAO spendingStatsDAO;
+    private final NetWorthDAO netWorthDAO;
 
-    public ReportController(TransactionDAO transactionDAO, AccountDAO accountDAO, BudgetDAO budgetDAO, LedgerCategoryDAO ledgerCategoryDAO) {
+    public ReportController(TransactionDAO transactionDAO, AccountDAO accountDAO, BudgetDAO budgetDAO, LedgerCategoryDAO ledgerCategoryDAO,
+                            SpendingStatsDAO spendingStatsDAO, NetWorthDAO netWorthDAO) {
         this.transactionDAO = transactionDAO;
         this.accountDAO = accountDAO;
         this.budgetDAO = budgetDAO;
         this.ledgerCategoryDAO = ledgerCategoryDAO;
+        this.spendingStatsDAO = spendingStatsDAO;
+        this.netWorthDAO = netWorthDAO;
     }
 
     public BigDecimal getTotalExpenseByLedger(Ledger ledger, LocalDate startDate, LocalDate endDate) {
-        return transactionDAO.getByLedgerId(ledger.getId()).stream()
-                .filter(t -> t.getType() == TransactionType.EXPENSE)
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long start = GET_TOTAL_EXPENSE_BY_LEDGER.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getTotalExpenseByLedger");
+        try {
+            return transactionDAO.sumAmount(TransactionQuery.create()
+                    .ledger(ledger)
+                    .types(TransactionType.EXPENSE)
+                    .between(startDate, endDate));
+        } finally {
+            event.finish(ledger.getId(), 0);
+            GET_TOTAL_EXPENSE_BY_LEDGER.end(start);
+        }
     }
 
     public BigDecimal getTotalIncomeByLedger(Ledger ledger, LocalDate startDate, LocalDate endDate) {
-        return transactionDAO.getByLedgerId(ledger.getId()).stream()
-                .filter(t -> t.getType() == TransactionType.INCOME)
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long start = GET_TOTAL_INCOME_BY_LEDGER.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getTotalIncomeByLedger");
+        try {
+            return transactionDAO.sumAmount(TransactionQuery.create()
+                    .ledger(ledger)
+                    .types(TransactionType.INCOME)
+                    .between(startDate, endDate));
+        } finally {
+            event.finish(ledger.getId(), 0);
+            GET_TOTAL_INCOME_BY_LEDGER.end(start);
+        }
     }
 
     public BigDecimal getTotalExpenseByAccount(Account account, LocalDate startDate, LocalDate endDate) {
-        return transactionDAO.getByAccountId(account.getId()).stream()
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .filter(t -> t.getFromAccount() != null &&
-                        t.getFromAccount().getId()==account.getId())
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long start = GET_TOTAL_EXPENSE_BY_ACCOUNT.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getTotalExpenseByAccount");
+        try {
+            return transactionDAO.sumAmount(TransactionQuery.create()
+                    .fromAccount(account)
+                    .between(startDate, endDate));
+        } finally {
+            event.finish(0, account.getId());
+            GET_TOTAL_EXPENSE_BY_ACCOUNT.end(start);
+        }
     }
 
     public BigDecimal getTotalIncomeByAccount(Account account,LocalDate startDate, LocalDate endDate) {
-        return transactionDAO.getByAccountId(account.getId()).stream()
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .filter(t -> t.getToAccount() != null &&
-                        t.getToAccount().getId() == account.getId())
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long start = GET_TOTAL_INCOME_BY_ACCOUNT.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getTotalIncomeByAccount");
+        try {
+            return transactionDAO.sumAmount(TransactionQuery.create()
+                    .toAccount(account)
+                    .between(startDate, endDate));
+        } finally {
+            event.finish(0, account.getId());
+            GET_TOTAL_INCOME_BY_ACCOUNT.end(start);
+        }
     }
 
     public BigDecimal getTotalAssets(User user) {
-        return accountDAO.getAccountsByOwner(user).stream()
-                .filter(Account::getIncludedInAsset)
-                .map(Account::getBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long start = GET_TOTAL_ASSETS.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getTotalAssets");
+        try {
+            return accountDAO.getAccountsByOwner(user).stream()
+                    .filter(Account::getIncludedInAsset)
+                    .map(Account::getBalance)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        } finally {
+            event.finish(0, 0);
+            GET_TOTAL_ASSETS.end(start);
+        }
     }
 
     public boolean isOverBudget(Budget budget) {
-        budget.refreshIfExpired();
-        budgetDAO.update(budget);
-
-        Ledger ledger = budget.getLedger();
-        if (budget.getCategory() == null) { //ledger-level budget
-            List<Transaction> transactions = transactionDAO.getByLedgerId(ledger.getId()).stream()
-                    .filter(t -> t.getType() == TransactionType.EXPENSE)
-                    .filter(t -> t.getDate().isAfter(budget.getStartDate().minusDays(1))) //inclusive start date
-                    .filter(t -> t.getDate().isBefore(budget.getEndDate().plusDays(1))) //inclusive end date
-                    .toList();
-            BigDecimal totalExpenses = transactions.stream()
-                    .map(Transaction::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            return totalExpenses.compareTo(budget.getAmount()) > 0;
-        } else { //budget is a category-level budget
-            LedgerCategory category= budget.getCategory();
-            List<Transaction> transactions = new ArrayList<>(transactionDAO.getByCategoryId(category.getId()).stream()
-                    .filter(t -> t.getDate().isAfter(budget.getStartDate().minusDays(1))) //inclusive start date
-                    .filter(t -> t.getDate().isBefore(budget.getEndDate().plusDays(1))) //inclusive end date
-                    .toList());
-
-            List<LedgerCategory> childCategories = ledgerCategoryDAO.getCategoriesByParentId(category.getId(), category.getLedger());
-            for (LedgerCategory childCategory : childCategories) {
-                transactions.addAll(transactionDAO.getByCategoryId(childCategory.getId()).stream()
-                        .filter(t -> t.getDate().isAfter(budget.getStartDate().minusDays(1))) //inclusive start date
-                        .filter(t -> t.getDate().isBefore(budget.getEndDate().plusDays(1))) //inclusive end date
-                        .toList());
+        long start = IS_OVER_BUDGET.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.isOverBudget");
+        try {
+            //moving an expired budget to the current period counts its spending again; the counter is then
+            //up to date, whatever the budget covers (ledger, category and its subcategories)
+            budget.refreshIfExpired();
+            if (!budgetDAO.update(budget)) return false;
+            return budget.getSpent().compareTo(budget.getAmount()) > 0; //>0: over budget
+        } finally {
+            event.finish(budget.getLedger() != null ? budget.getLedger().getId() : 0, 0);
+            IS_OVER_BUDGET.end(start);
+        }
+    }
+
+    //whole months from the month of startDate to the month of endDate, in one query; null on error
+    public CategoryMonthReport getCategoryMonthReport(Ledger ledger, CategoryType type, LocalDate startDate, LocalDate endDate) {
+        long start = GET_CATEGORY_MONTH_REPORT.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getCategoryMonthReport");
+        try {
+            if (ledger == null || type == null || startDate == null || endDate == null) return null;
+            if (endDate.isBefore(startDate)) return null;
+            return transactionDAO.getCategoryMonthReport(ledger.getId(), type,
+                    startDate.withDayOfMonth(1), endDate.withDayOfMonth(endDate.lengthOfMonth()));
+        } finally {
+            event.finish(ledger != null ? ledger.getId() : 0, 0);
+            GET_CATEGORY_MONTH_REPORT.end(start);
+        }
+    }
+
+    //top-level categories by expense total, highest first
+    public List<RankedTotal> getTopCategories(Ledger ledger, LocalDate startDate, LocalDate endDate, int n) {
+        long start = GET_TOP_CATEGORIES.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getTopCategories");
+        try {
+            if (ledger == null || n <= 0) return List.of();
+            return transactionDAO.topCategories(ledger.getId(), CategoryType.EXPENSE, startDate, endDate, n);
+        } finally {
+            event.finish(ledger != null ? ledger.getId() : 0, 0);
+            GET_TOP_CATEGORIES.end(start);
+        }
+    }
+
+    //accounts by expense total, highest first
+    public List<RankedTotal> getTopAccounts(Ledger ledger, LocalDate startDate, LocalDate endDate, int n) {
+        long start = GET_TOP_ACCOUNTS.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getTopAccounts");
+        try {
+            if (ledger == null || n <= 0) return List.of();
+            return transactionDAO.topAccounts(ledger.getId(), startDate, endDate, n);
+        } finally {
+            event.finish(ledger != null ? ledger.getId() : 0, 0);
+            GET_TOP_ACCOUNTS.end(start);
+        }
+    }
+
+    public List<TransactionRow> getLargestExpenses(Ledger ledger, LocalDate startDate, LocalDate endDate, int n) {
+        long start = GET_LARGEST_EXPENSES.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getLargestExpenses");
+        try {
+            if (ledger == null || n <= 0) return List.of();
+            return transactionDAO.findRows(TransactionQuery.create()
+                    .ledger(ledger)
+                    .types(TransactionType.EXPENSE)
+                    .between(startDate, endDate)
+                    .sort(TransactionQuery.Sort.LARGEST_FIRST)
+                    .limit(n));
+        } finally {
+            event.finish(ledger != null ? ledger.getId() : 0, 0);
+            GET_LARGEST_EXPENSES.end(start);
+        }
+    }
+
+    // count, mean, variance and quantiles of the transactions of a category and its subcategories in the months
+    // from startDate to endDate, read from the stored per-month statistics without scanning the transactions.
+    // Null on error
+    public SpendingStats getSpendingStats(LedgerCategory category, LocalDate startDate, LocalDate endDate) {
+        long start = GET_SPENDING_STATS.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getSpendingStats");
+        try {
+            if (category == null || category.getLedger() == null || startDate == null || endDate == null) return null;
+            if (endDate.isBefore(startDate)) return null;
+            return spendingStatsDAO.getStats(category.getLedger().getId(), category.getId(), startDate, endDate);
+        } finally {
+            event.finish(category != null && category.getLedger() != null ? category.getLedger().getId() : 0, 0);
+            GET_SPENDING_STATS.end(start);
+        }
+    }
+
+    // net worth of the user's accounts in assets from startDate to endDate, at DAYS, WEEKS, MONTHS or YEARS
+    // resolution. Only the days since the last change that is still stored are computed; null on error
+    public List<NetWorthPoint> getNetWorthHistory(User user, LocalDate startDate, LocalDate endDate, ChronoUnit resolution) {
+        long start = GET_NET_WORTH_HISTORY.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getNetWorthHistory");
+        try {
+            if (user == null || startDate == null || endDate == null || endDate.isBefore(startDate)) return null;
+            if (resolution != ChronoUnit.DAYS && resolution != ChronoUnit.WEEKS
+                    && resolution != ChronoUnit.MONTHS && resolution != ChronoUnit.YEARS) return null;
+            if (netWorthDAO.refresh(user.getId(), endDate) < 0) return null;
+            return netWorthDAO.getHistory(user.getId(), startDate, endDate, resolution);
+        } finally {
+            event.finish(0, 0);
+            GET_NET_WORTH_HISTORY.end(start);
+        }
+    }
+
+    public List<BudgetForecast> getBudgetForecasts(List<Budget> budgets) {
+        return getBudgetForecasts(budgets, LocalDate.now());
+    }
+
+    // end-of-period projection of each budget (as from BudgetController.getActiveBudgets), in the same order,
+    // from the daily spending cells in one query: no transaction is read. Null on error
+    public List<BudgetForecast> getBudgetForecasts(List<Budget> budgets, LocalDate today) {
+        long start = GET_BUDGET_FORECASTS.begin();
+        ReportComputationEvent event = ReportComputationEvent.start("ReportController.getBudgetForecasts");
+        List<BudgetForecast> forecasts = null;
+        try {
+            if (budgets == null || today == null) return null;
+            if (budgets.isEmpty()) return List.of();
+            Map<Long, BudgetSpending> spending = spendingStatsDAO.getBudgetSpending(
+                    budgets.stream().map(Budget::getId).toList(), today);
+            if (spending == null) return null;
+            List<BudgetForecast> projected = new ArrayList<>(budgets.size());
+            for (Budget budget : budgets) {
+                BudgetSpending s = spending.get(budget.getId());
+                if (s == null) return null; //deleted meanwhile
+                projected.add(forecast(budget, s, today));
             }
-            BigDecimal totalCategoryBudget = transactions.stream()
-                    .map(Transaction::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            return totalCategoryBudget.compareTo(budget.getAmount()) > 0; //>0: over budget
+            forecasts = projected;
+            return forecasts;
+        } finally {
+            Ledger ledger = budgets != null && !budgets.isEmpty() ? budgets.get(0).getLedger() : null;
+            event.finish(ledger != null ? ledger.getId() : 0, 0);
+            GET_BUDGET_FORECASTS.end(start, forecasts != null ? forecasts.size() : 0);
+        }
+    }
+
+    // the rest of the period is expected to spend what this period's pace gives for the days left, averaged with
+    // what the same period last year still spent after the same day when there is one, and at least what is
+    // already recorded for later days. The crossing day assumes that rest is spread evenly
+    private static BudgetForecast forecast(Budget budget, BudgetSpending spending, LocalDate today) {
+        LocalDate from = today.isBefore(budget.getStartDate()) ? budget.getStartDate().minusDays(1) : today;
+        long elapsed = Math.max(ChronoUnit.DAYS.between(budget.getStartDate(), from.isAfter(budget.getEndDate()) ? budget.getEndDate() : from) + 1, 0);
+        long remaining = Math.max(ChronoUnit.DAYS.between(from, budget.getEndDate()), 0);
+        BigDecimal spent = spending.spent();
+
+        BigDecimal rest = BigDecimal.ZERO;
+        if (remaining > 0) {
+            if (elapsed > 0) {
+                rest = spent.multiply(BigDecimal.valueOf(remaining)).divide(BigDecimal.valueOf(elapsed), 2, RoundingMode.HALF_UP);
+            }
+            if (spending.lastYearTotal().signum() > 0) {
+                BigDecimal lastYearRest = spending.lastYearTotal().subtract(spending.lastYearToDate());
+                rest = elapsed > 0 ? rest.add(lastYearRest).divide(BigDecimal.TWO, 2, RoundingMode.HALF_UP) : lastYearRest;
+            }
+        }
+        rest = rest.max(spending.scheduled());
+        BigDecimal projected = spent.add(rest);
+
+        LocalDate exceedsOn = spending.exceededOn();
+        if (exceedsOn == null && remaining > 0 && projected.compareTo(budget.getAmount()) > 0) {
+            BigDecimal perDay = rest.divide(BigDecimal.valueOf(remaining), 10, RoundingMode.HALF_UP);
+            long days = budget.getAmount().subtract(spent).divide(perDay, 0, RoundingMode.FLOOR).longValue() + 1;
+            exceedsOn = from.plusDays(Math.min(days, remaining));
         }
+        return new BudgetForecast(budget, spent, projected, exceedsOn);
     }
 }
@@ -0,0 +1,238 @@
+package com.ledger.BusinessLogic;
+
+import com.ledger.DomainModel.*;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+import com.ledger.ORM.AccountDAO;
+import com.ledger.ORM.TransactionDAO;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// asynchronous capture of new transactions for high-rate ingestion.
+// Callers get a future right away; a single writer thread drains the bounded queue and commits up to
+// ledger.capture.maxBatch transactions (default 100), or whatever arrived within
+// ledger.capture.maxDelayMillis (default 5) of the first one, as one db transaction: one batched insert
+// and one balance update per account. The future completes with the stored transaction after that commit,
+// or with null if it was invalid or could not be stored; if writing its group threw, the group's futures complete
+// exceptionally and the writer goes on with the next group. The writer owns its connection, and the balances
+// of the caller's Account objects are not touched, read them again when needed.
+public class TransactionCapture implements AutoCloseable {
+    private static final OperationMetrics GROUP_COMMIT = MetricsRegistry.getInstance()
+            .operation("TransactionCapture.groupCommit", OperationMetrics.Kind.DB_TRANSACTION);
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private record Pending<T extends Transaction>(T transaction, CompletableFuture<T> future) {
+        void complete(boolean stored) {
+            future.complete(stored ? transaction : null);
+        }
+
+        //no effect on a future that is already complete
+        void fail(Throwable cause) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    private final Connection connection;
+    private final TransactionDAO transactionDAO;
+    private final AccountDAO accountDAO;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending<?>> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public TransactionCapture(Connection connection) {
+        this(connection, Integer.getInteger("ledger.capture.maxBatch", 100),
+                Long.getLong("ledger.capture.maxDelayMillis", 5),
+                Integer.getInteger("ledger.capture.capacity", 10000));
+    }
+
+    // connection is used only by the writer thread and closed with this capture
+    public TransactionCapture(Connection connection, int maxBatch, long maxDelayMillis, int capacity) {
+        this.connection = connection;
+        this.transactionDAO = new TransactionDAO(connection);
+        this.accountDAO = new AccountDAO(connection);
+        this.maxBatch = Math.max(maxBatch, 1);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxDelayMillis, 0));
+        this.queue = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+        this.writer = new Thread(this::drain, "ledger-capture-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // same checks as TransactionController.createIncome
+    public CompletableFuture<Income> captureIncome(Ledger ledger, Account toAccount, LedgerCategory category, String note, LocalDate date, BigDecimal amount) {
+        if (ledger == null || category == null || category.getType() != CategoryType.INCOME) return CompletableFuture.completedFuture(null);
+        if (amount == null) amount = BigDecimal.ZERO;
+        if (amount.compareTo(BigDecimal.ZERO) < 0) return CompletableFuture.completedFuture(null);
+        if (toAccount == null || !toAccount.getSelectable()) return CompletableFuture.completedFuture(null);
+        Income income = new Income(date != null ? date : LocalDate.now(), amount, note, toAccount, ledger, category);
+        return submit(income);
+    }
+
+    // same checks as TransactionController.createExpense
+    public CompletableFuture<Expense> captureExpense(Ledger ledger, Account fromAccount, LedgerCategory category, String note, LocalDate date, BigDecimal amount) {
+        if (ledger == null || category == null || category.getType() != CategoryType.EXPENSE) return CompletableFuture.completedFuture(null);
+        if (amount == null) amount = BigDecimal.ZERO;
+        if (amount.compareTo(BigDecimal.ZERO) < 0) return CompletableFuture.completedFuture(null);
+        if (fromAccount == null || !fromAccount.getSelectable()) return CompletableFuture.completedFuture(null);
+        Expense expense = new Expense(date != null ? date : LocalDate.now(), amount, note, fromAccount, ledger, category);
+        return submit(expense);
+    }
+
+    // same checks as TransactionController.createTransfer
+    public CompletableFuture<Transfer> captureTransfer(Ledger ledger, Account fromAccount, Account toAccount, String note, LocalDate date, BigDecimal amount) {
+        if (ledger == null) return CompletableFuture.completedFuture(null);
+        if (fromAccount == null && toAccount == null) return CompletableFuture.completedFuture(null);
+        if (fromAccount != null && toAccount != null && fromAccount.getId() == toAccount.getId()) return CompletableFuture.completedFuture(null);
+        if (fromAccount != null && !fromAccount.getSelectable()) return CompletableFuture.completedFuture(null);
+        if (toAccount != null && !toAccount.getSelectable()) return CompletableFuture.completedFuture(null);
+        if (amount != null && amount.compareTo(BigDecimal.ZERO) < 0) return CompletableFuture.completedFuture(null);
+        Transfer transfer = new Transfer(date != null ? date : LocalDate.now(), note, fromAccount, toAccount,
+                amount == null ? BigDecimal.ZERO : amount, ledger);
+        return submit(transfer);
+    }
+
+    //transactions waiting for the writer
+    public int getPending() {
+        return queue.size();
+    }
+
+    // stops accepting new transactions, commits everything already queued and closes the connection
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //submitted while closing, after the writer's last look at the queue
+        List<Pending<?>> late = new ArrayList<>();
+        queue.drainTo(late);
+        late.forEach(p -> p.complete(false));
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("SQL Exception while closing capture connection: " + e.getMessage());
+        }
+    }
+
+    // blocks while the queue is full, so a producer faster than the database is slowed down
+    private <T extends Transaction> CompletableFuture<T> submit(T transaction) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (closed) {
+            future.complete(null);
+            return future;
+        }
+        try {
+            queue.put(new Pending<>(transaction, future));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.complete(null);
+        }
+        return future;
+    }
+
+    private void drain() {
+        List<Pending<?>> group = new ArrayList<>(maxBatch);
+        try {
+            while (true) {
+                Pending<?> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed) return;
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < maxBatch) {
+                    long wait = deadline - System.nanoTime();
+                    Pending<?> next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    group.add(next);
+                }
+                commit(group);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            group.forEach(p -> p.complete(false));
+        }
+    }
+
+    private void commit(List<Pending<?>> group) {
+        long start = GROUP_COMMIT.begin();
+        try {
+            if (write(group)) return;
+            GROUP_COMMIT.error();
+            //one bad transaction must not fail the rest of the group: retry them one by one
+            if (group.size() > 1) {
+                for (Pending<?> pending : group) {
+                    if (!write(List.of(pending))) {
+                        pending.complete(false);
+                    }
+                }
+            } else {
+                group.get(0).complete(false);
+            }
+        } catch (RuntimeException e) {
+            GROUP_COMMIT.error();
+            System.err.println("Group commit of " + group.size() + " transaction(s) failed: " + e);
+            group.forEach(p -> p.fail(e));
+        } finally {
+            GROUP_COMMIT.end(start, group.size());
+        }
+    }
+
+    // one db transaction for the group; completes the futures only once it is committed
+    private boolean write(List<Pending<?>> group) {
+        List<Transaction> transactions = new ArrayList<>(group.size());
+        Map<Long, BigDecimal> deltas = new LinkedHashMap<>();
+        for (Pending<?> pending : group) {
+            Transaction tx = pending.transaction();
+            transactions.add(tx);
+            if (tx.getFromAccount() != null) deltas.merge(tx.getFromAccount().getId(), tx.getAmount().negate(), BigDecimal::add);
+            if (tx.getToAccount() != null) deltas.merge(tx.getToAccount().getId(), tx.getAmount(), BigDecimal::add);
+        }
+        try {
+            connection.setAutoCommit(false);
+            if (!transactionDAO.insertBatch(transactions)) throw new SQLException("Failed to insert captured transactions");
+            if (!accountDAO.applyDeltas(deltas)) throw new SQLException("Account balance update failed");
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            System.err.println("Group commit of " + group.size() + " transaction(s) rolled back due to: " + e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            //rolled back before auto-commit is turned on again, which would commit the partial work
+            rollback();
+            throw e;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                System.err.println("Could not reset auto-commit: " + e.getMessage());
+            }
+        }
+        group.forEach(p -> p.complete(true));
+        return true;
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException rollbackEx) {
+            System.err.println("Critical Error: Rollback failed! " + rollbackEx.getMessage());
+        }
+    }
+}
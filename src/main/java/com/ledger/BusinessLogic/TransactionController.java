@@ -2,234 +2,496 @@ package com.ledger.BusinessLogic;
 
 import com.ledger.DomainModel.*;
 import com.ledger.ORM.AccountDAO;
+import com.ledger.ORM.BudgetDAO;
 import com.ledger.ORM.TransactionDAO;
+import com.ledger.ORM.TransactionQuery;
+import com.ledger.DbTransaction.DbTransactionAction;
 import com.ledger.DbTransaction.DbTransactionManager;
+import com.ledger.Metrics.BudgetAlertEvent;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationContext;
+import com.ledger.Metrics.OperationMetrics;
+import com.ledger.Session.UserSession;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
-
-import static java.util.Comparator.comparing;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class TransactionController {
+    private static final OperationMetrics GET_TRANSACTIONS_BY_LEDGER_IN_RANGE_DATE = MetricsRegistry.getInstance().readController("TransactionController.getTransactionsByLedgerInRangeDate");
+    private static final OperationMetrics GET_TRANSACTIONS_BY_ACCOUNT_IN_RANGE_DATE = MetricsRegistry.getInstance().readController("TransactionController.getTransactionsByAccountInRangeDate");
+    private static final OperationMetrics GET_TRANSACTION_ROWS_BY_LEDGER = MetricsRegistry.getInstance().readController("TransactionController.getTransactionRowsByLedger");
+    private static final OperationMetrics GET_TRANSACTION_ROWS_BY_ACCOUNT = MetricsRegistry.getInstance().readController("TransactionController.getTransactionRowsByAccount");
+    private static final OperationMetrics FIND_TRANSACTIONS = MetricsRegistry.getInstance().readController("TransactionController.findTransactions");
+    private static final OperationMetrics FIND_TRANSACTION_ROWS = MetricsRegistry.getInstance().readController("TransactionController.findTransactionRows");
+    private static final OperationMetrics SEARCH_TRANSACTIONS = MetricsRegistry.getInstance().readController("TransactionController.searchTransactions");
+    private static final OperationMetrics GET_TRANSACTION_BY_ID = MetricsRegistry.getInstance().controller("TransactionController.getTransactionById");
+    private static final OperationMetrics CREATE_INCOME = MetricsRegistry.getInstance().controller("TransactionController.createIncome");
+    private static final OperationMetrics CREATE_EXPENSE = MetricsRegistry.getInstance().controller("TransactionController.createExpense");
+    private static final OperationMetrics CREATE_TRANSFER = MetricsRegistry.getInstance().controller("TransactionController.createTransfer");
+    private static final OperationMetrics DELETE_TRANSACTION = MetricsRegistry.getInstance().controller("TransactionController.deleteTransaction");
+    private static final OperationMetrics UPDATE_INCOME = MetricsRegistry.getInstance().controller("TransactionController.updateIncome");
+    private static final OperationMetrics UPDATE_EXPENSE = MetricsRegistry.getInstance().controller("TransactionController.updateExpense");
+    private static final OperationMetrics UPDATE_TRANSFER = MetricsRegistry.getInstance().controller("TransactionController.updateTransfer");
+    private static final OperationMetrics BULK_RECATEGORIZE = MetricsRegistry.getInstance().controller("TransactionController.bulkRecategorize");
+    private static final OperationMetrics BULK_MOVE_TO_LEDGER = MetricsRegistry.getInstance().controller("TransactionController.bulkMoveToLedger");
+    private static final OperationMetrics BULK_REASSIGN_ACCOUNT = MetricsRegistry.getInstance().controller("TransactionController.bulkReassignAccount");
+    private static final OperationMetrics BULK_DELETE = MetricsRegistry.getInstance().controller("TransactionController.bulkDelete");
+
     private final TransactionDAO transactionDAO;
     private final AccountDAO accountDAO;
+    private final BudgetDAO budgetDAO;
+    private final List<Consumer<BudgetAlert>> alertListeners = new CopyOnWriteArrayList<>();
 
-    public TransactionController(TransactionDAO transactionDAO, AccountDAO accountDAO) {
+    public TransactionController(TransactionDAO transactionDAO, AccountDAO accountDAO, BudgetDAO budgetDAO) {
         this.transactionDAO = transactionDAO;
         this.accountDAO = accountDAO;
+        this.budgetDAO = budgetDAO;
+    }
+
+    // called after the commit of each write that took a budget over a threshold (ledger.budget.alertThresholds);
+    // the budget counters are updated by the same statements as the transactions, so no write rescans anything
+    public void addBudgetAlertListener(Consumer<BudgetAlert> listener) {
+        alertListeners.add(listener);
+    }
+
+    public void removeBudgetAlertListener(Consumer<BudgetAlert> listener) {
+        alertListeners.remove(listener);
     }
 
     public List<Transaction> getTransactionsByLedgerInRangeDate(Ledger ledger, LocalDate startDate, LocalDate endDate){
-        return transactionDAO.getByLedgerId(ledger.getId()).stream()
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .sorted((comparing(Transaction::getDate).reversed()))
-                .toList();
+        long start = GET_TRANSACTIONS_BY_LEDGER_IN_RANGE_DATE.begin();
+        try {
+            return transactionDAO.find(TransactionQuery.create()
+                    .ledger(ledger)
+                    .between(startDate, endDate));
+        } finally {
+            GET_TRANSACTIONS_BY_LEDGER_IN_RANGE_DATE.end(start);
+        }
     }
     public List<Transaction> getTransactionsByAccountInRangeDate(Account account, LocalDate startDate, LocalDate endDate) {
-        return transactionDAO.getByAccountId(account.getId()).stream()
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .sorted((comparing(Transaction::getDate).reversed()))
-                .toList();
+        long start = GET_TRANSACTIONS_BY_ACCOUNT_IN_RANGE_DATE.begin();
+        try {
+            return transactionDAO.find(TransactionQuery.create()
+                    .account(account)
+                    .between(startDate, endDate));
+        } finally {
+            GET_TRANSACTIONS_BY_ACCOUNT_IN_RANGE_DATE.end(start);
+        }
+    }
+
+    //list views: null dates mean unbounded
+    public List<TransactionRow> getTransactionRowsByLedger(Ledger ledger, LocalDate startDate, LocalDate endDate) {
+        long start = GET_TRANSACTION_ROWS_BY_LEDGER.begin();
+        try {
+            if (ledger == null) return List.of();
+            return transactionDAO.getRowsByLedgerId(ledger.getId(), startDate, endDate);
+        } finally {
+            GET_TRANSACTION_ROWS_BY_LEDGER.end(start);
+        }
+    }
+
+    public List<TransactionRow> getTransactionRowsByAccount(Account account, LocalDate startDate, LocalDate endDate) {
+        long start = GET_TRANSACTION_ROWS_BY_ACCOUNT.begin();
+        try {
+            if (account == null) return List.of();
+            return transactionDAO.getRowsByAccountId(account.getId(), startDate, endDate);
+        } finally {
+            GET_TRANSACTION_ROWS_BY_ACCOUNT.end(start);
+        }
+    }
+
+    //arbitrary filtered views, evaluated by the database in one statement
+    public List<Transaction> findTransactions(TransactionQuery query) {
+        long start = FIND_TRANSACTIONS.begin();
+        try {
+            return transactionDAO.find(query);
+        } finally {
+            FIND_TRANSACTIONS.end(start);
+        }
+    }
+
+    public List<TransactionRow> findTransactionRows(TransactionQuery query) {
+        long start = FIND_TRANSACTION_ROWS.begin();
+        try {
+            return transactionDAO.findRows(query);
+        } finally {
+            FIND_TRANSACTION_ROWS.end(start);
+        }
+    }
+
+    //one page of note search results, newest first; pass the last row of a page as after to get the next one
+    public List<TransactionRow> searchTransactions(TransactionSearch search, TransactionRow after, int pageSize) {
+        long start = SEARCH_TRANSACTIONS.begin();
+        try {
+            if (search == null || search.text() == null || search.text().isBlank() || pageSize <= 0) return List.of();
+            if (!UserSession.getInstance().isLoggedIn()) return List.of();
+            long userId = UserSession.getInstance().getCurrentUser().getId();
+            return transactionDAO.searchRows(userId, search, after, pageSize);
+        } finally {
+            SEARCH_TRANSACTIONS.end(start);
+        }
+    }
+
+    //full entity of a row picked from a list, for editing or deleting
+    public Transaction getTransactionById(long id) {
+        long start = GET_TRANSACTION_BY_ID.begin();
+        try {
+            return transactionDAO.getById(id);
+        } finally {
+            GET_TRANSACTION_BY_ID.end(start);
+        }
     }
 
     public Income createIncome(Ledger ledger, Account toAccount, LedgerCategory category, String note, LocalDate date, BigDecimal amount) {
-        if (ledger == null) return null;
-        if (category == null) return null;
-        if (category.getType() != CategoryType.INCOME) return null;
-        if (amount == null) amount = BigDecimal.ZERO;
-        if (amount.compareTo(BigDecimal.ZERO) < 0) return null;
-        if( toAccount == null || !toAccount.getSelectable()) return null;
-        Income incomeTransaction = new Income(date != null ? date : LocalDate.now(), amount, note, toAccount, ledger, category);
-        toAccount.credit(amount);
-        return DbTransactionManager.getInstance().execute(() -> {
-            if (!transactionDAO.insert(incomeTransaction)) throw new Exception("Failed to insert income transaction");
-            if(!accountDAO.update(toAccount)) throw new Exception("Account balance update failed");
-            return incomeTransaction;
-        });
+        long start = CREATE_INCOME.begin();
+        try {
+            if (ledger == null) return null;
+            if (category == null) return null;
+            if (category.getType() != CategoryType.INCOME) return null;
+            if (amount == null) amount = BigDecimal.ZERO;
+            if (amount.compareTo(BigDecimal.ZERO) < 0) return null;
+            if( toAccount == null || !toAccount.getSelectable()) return null;
+            Income incomeTransaction = new Income(date != null ? date : LocalDate.now(), amount, note, toAccount, ledger, category);
+            toAccount.credit(amount);
+            return write(() -> {
+                if (!transactionDAO.insert(incomeTransaction)) throw new Exception("Failed to insert income transaction");
+                if(!accountDAO.update(toAccount)) throw new Exception("Account balance update failed");
+                return incomeTransaction;
+            });
+        } finally {
+            CREATE_INCOME.end(start);
+        }
     }
 
     public Expense createExpense(Ledger ledger, Account fromAccount, LedgerCategory category, String note, LocalDate date, BigDecimal amount) {
-        if (ledger == null) return null;
-        if (category == null) return null;
-        if (category.getType() != CategoryType.EXPENSE) return null;
-        if (amount == null) amount = BigDecimal.ZERO;
-        if (amount.compareTo(BigDecimal.ZERO) < 0) return null;
-        if( fromAccount == null || !fromAccount.getSelectable()) return null;
-        Expense expenseTransaction = new Expense(date != null ? date : LocalDate.now(), amount, note, fromAccount, ledger, category);
-        fromAccount.debit(amount);
-        return DbTransactionManager.getInstance().execute(() -> {
-            if(!transactionDAO.insert(expenseTransaction)) throw new Exception("Failed to insert expense transaction");
-            if(!accountDAO.update(fromAccount)) throw new Exception("Account balance update failed");
-            return expenseTransaction;
-        });
+        long start = CREATE_EXPENSE.begin();
+        try {
+            if (ledger == null) return null;
+            if (category == null) return null;
+            if (category.getType() != CategoryType.EXPENSE) return null;
+            if (amount == null) amount = BigDecimal.ZERO;
+            if (amount.compareTo(BigDecimal.ZERO) < 0) return null;
+            if( fromAccount == null || !fromAccount.getSelectable()) return null;
+            Expense expenseTransaction = new Expense(date != null ? date : LocalDate.now(), amount, note, fromAccount, ledger, category);
+            fromAccount.debit(amount);
+            return write(() -> {
+                if(!transactionDAO.insert(expenseTransaction)) throw new Exception("Failed to insert expense transaction");
+                if(!accountDAO.update(fromAccount)) throw new Exception("Account balance update failed");
+                return expenseTransaction;
+            });
+        } finally {
+            CREATE_EXPENSE.end(start);
+        }
     }
 
     public Transfer createTransfer(Ledger ledger, Account fromAccount, Account toAccount, String note, LocalDate date, BigDecimal amount) {
-        if( ledger == null) return null;
-        if (fromAccount != null && toAccount != null && fromAccount.getId() == toAccount.getId()) return null;
-        if( fromAccount == null && toAccount == null) return null;
-        if( fromAccount != null && !fromAccount.getSelectable()) return null;
-        if( toAccount != null && !toAccount.getSelectable()) return null;
-        if (amount != null && amount.compareTo(BigDecimal.ZERO) < 0) return null;
-        final BigDecimal finalAmount = (amount == null) ? BigDecimal.ZERO : amount;
-        Transfer transferTransaction = new Transfer(date != null ? date : LocalDate.now(), note, fromAccount, toAccount, finalAmount, ledger);
-
-        return DbTransactionManager.getInstance().execute(() -> {
-            if(!transactionDAO.insert(transferTransaction)) throw new Exception("Failed to insert transfer transaction");
-            if (fromAccount != null) {
-                fromAccount.debit(finalAmount);
-                if(!accountDAO.update(fromAccount)) throw new Exception("Account balance update failed");
-            }
-            if (toAccount != null) {
-                toAccount.credit(finalAmount);
-                if(!accountDAO.update(toAccount)) throw new Exception("Account balance update failed");
-            }
-            return transferTransaction;
-        });
+        long start = CREATE_TRANSFER.begin();
+        try {
+            if( ledger == null) return null;
+            if (fromAccount != null && toAccount != null && fromAccount.getId() == toAccount.getId()) return null;
+            if( fromAccount == null && toAccount == null) return null;
+            if( fromAccount != null && !fromAccount.getSelectable()) return null;
+            if( toAccount != null && !toAccount.getSelectable()) return null;
+            if (amount != null && amount.compareTo(BigDecimal.ZERO) < 0) return null;
+            final BigDecimal finalAmount = (amount == null) ? BigDecimal.ZERO : amount;
+            Transfer transferTransaction = new Transfer(date != null ? date : LocalDate.now(), note, fromAccount, toAccount, finalAmount, ledger);
+
+            return write(() -> {
+                if(!transactionDAO.insert(transferTransaction)) throw new Exception("Failed to insert transfer transaction");
+                if (fromAccount != null) {
+                    fromAccount.debit(finalAmount);
+                    if(!accountDAO.update(fromAccount)) throw new Exception("Account balance update failed");
+                }
+                if (toAccount != null) {
+                    toAccount.credit(finalAmount);
+                    if(!accountDAO.update(toAccount)) throw new Exception("Account balance update failed");
+                }
+                return transferTransaction;
+            });
+        } finally {
+            CREATE_TRANSFER.end(start);
+        }
     }
 
     public boolean deleteTransaction(Transaction tx) {
-        if (tx == null) return false;
-        Boolean deleted = DbTransactionManager.getInstance().execute(() -> {
-            if (!transactionDAO.delete(tx)) throw new Exception("Delete transaction failed");
-            Account toAccount = null;
-            Account fromAccount = null;
-            if( tx.getToAccount() != null) {
-                toAccount = accountDAO.getAccountById(tx.getToAccount().getId());
+        long start = DELETE_TRANSACTION.begin();
+        try {
+            if (tx == null) return false;
+            Boolean deleted = write(() -> {
+                if (!transactionDAO.delete(tx)) throw new Exception("Delete transaction failed");
+                Account toAccount = null;
+                Account fromAccount = null;
+                if( tx.getToAccount() != null) {
+                    toAccount = accountDAO.getAccountById(tx.getToAccount().getId());
+                }
+                if( tx.getFromAccount() != null) {
+                    fromAccount = accountDAO.getAccountById(tx.getFromAccount().getId());
+                }
+                switch (tx.getType()) {
+                    case INCOME:
+                        if(toAccount != null) {
+                            toAccount.debit(tx.getAmount());
+                            if (!accountDAO.update(toAccount)) throw new Exception("Update toAccount failed");
+                        }
+                        break;
+                    case EXPENSE:
+                        if (fromAccount != null) {
+                            fromAccount.credit(tx.getAmount());
+                            if (!accountDAO.update(fromAccount)) throw new Exception("Update fromAccount failed");
+                        }
+                        break;
+                    case TRANSFER:
+                        //rollback fromAccount
+                        if (fromAccount != null) {
+                            fromAccount.credit(tx.getAmount());
+                            if(!accountDAO.update(fromAccount)) throw new Exception("Update fromAccount failed");
+                        }
+                        //rollback toAccount
+                        if (toAccount != null) {
+                            toAccount.debit(tx.getAmount());
+                            if(!accountDAO.update(toAccount)) throw new Exception("Update toAccount failed");
+                        }
+                        break;
+                }
+                return true;
+            });
+            return deleted != null && deleted;
+        } finally {
+            DELETE_TRANSACTION.end(start);
+        }
+    }
+
+    public boolean updateIncome(Income income, Account toAccount, LedgerCategory category, String note, LocalDate date, BigDecimal amount, Ledger ledger) {
+        long start = UPDATE_INCOME.begin();
+        try {
+            if (income == null || toAccount == null || category == null || ledger == null || amount == null || date == null || !toAccount.getSelectable()) {
+                return false;
             }
-            if( tx.getFromAccount() != null) {
-                fromAccount = accountDAO.getAccountById(tx.getFromAccount().getId());
+            if (amount.compareTo(BigDecimal.ZERO) < 0) return false;
+            BigDecimal oldAmount = income.getAmount();
+            Account oldToAccount = income.getToAccount();
+            LedgerCategory oldCategory = income.getCategory();
+            Ledger oldLedger = income.getLedger();
+
+            if (ledger.getId() != oldLedger.getId()) income.setLedger(ledger);
+            if (category.getId() != oldCategory.getId()) { //change category
+                if (category.getType() != CategoryType.INCOME) return false;
+                income.setCategory(category);
             }
-            switch (tx.getType()) {
-                case INCOME:
-                    if(toAccount != null) {
-                        toAccount.debit(tx.getAmount());
-                        if (!accountDAO.update(toAccount)) throw new Exception("Update toAccount failed");
-                    }
-                    break;
-                case EXPENSE:
-                    if (fromAccount != null) {
-                        fromAccount.credit(tx.getAmount());
-                        if (!accountDAO.update(fromAccount)) throw new Exception("Update fromAccount failed");
-                    }
-                    break;
-                case TRANSFER:
-                    //rollback fromAccount
-                    if (fromAccount != null) {
-                        fromAccount.credit(tx.getAmount());
-                        if(!accountDAO.update(fromAccount)) throw new Exception("Update fromAccount failed");
-                    }
-                    //rollback toAccount
-                    if (toAccount != null) {
-                        toAccount.debit(tx.getAmount());
-                        if(!accountDAO.update(toAccount)) throw new Exception("Update toAccount failed");
-                    }
-                    break;
+            Boolean updated = write(() -> {
+                oldToAccount.debit(oldAmount);
+                if (!accountDAO.update(oldToAccount)) throw new Exception("Failed to rollback old account");
+                toAccount.credit(amount);
+                income.setToAccount(toAccount);
+                if (!accountDAO.update(toAccount)) throw new Exception("Failed to apply new account");
+                income.setAmount(amount);
+                income.setDate(date);
+                income.setNote(note);
+                if(!transactionDAO.update(income)) throw new Exception("Failed to update income transaction");
+                return true;
+            });
+            return updated != null && updated;
+        } finally {
+            UPDATE_INCOME.end(start);
+        }
+    }
+
+    public boolean updateExpense(Expense expense, Account fromAccount, LedgerCategory category, String note, LocalDate date, BigDecimal amount, Ledger ledger) {
+        long start = UPDATE_EXPENSE.begin();
+        try {
+            if (expense == null || fromAccount == null || ledger == null || date == null || category == null || amount == null || !fromAccount.getSelectable()) {
+                return false;
             }
-            return true;
-        });
-        return deleted != null && deleted;
+            if (amount.compareTo(BigDecimal.ZERO) < 0) return false;
+            BigDecimal oldAmount = expense.getAmount();
+            Account oldFromAccount = expense.getFromAccount();
+            LedgerCategory oldCategory = expense.getCategory();
+            Ledger oldLedger = expense.getLedger();
+            if (ledger.getId() != oldLedger.getId()) expense.setLedger(ledger);
+            if (category.getId() != oldCategory.getId()) {
+                if (category.getType() != CategoryType.EXPENSE) return false;
+                expense.setCategory(category);
+            }
+            Boolean updated = write(() -> {
+                oldFromAccount.credit(oldAmount);
+                if (!accountDAO.update(oldFromAccount)) throw new Exception("Failed to rollback old account");
+                fromAccount.debit(amount);
+                expense.setFromAccount(fromAccount);
+                if (!accountDAO.update(fromAccount)) throw new Exception("Failed to apply new account");
+                expense.setAmount(amount);
+                expense.setDate(date);
+                expense.setNote(note);
+                if (!transactionDAO.update(expense)) throw new Exception("Failed to update expense transaction");
+                return true;
+            });
+            return updated != null && updated;
+        } finally {
+            UPDATE_EXPENSE.end(start);
+        }
     }
 
-    public boolean updateIncome(Income income, Account toAccount, LedgerCategory category, String note, LocalDate date, BigDecimal amount, Ledger ledger) {
-        if (income == null || toAccount == null || category == null || ledger == null || amount == null || date == null || !toAccount.getSelectable()) {
-            return false;
-        }
-        if (amount.compareTo(BigDecimal.ZERO) < 0) return false;
-        BigDecimal oldAmount = income.getAmount();
-        Account oldToAccount = income.getToAccount();
-        LedgerCategory oldCategory = income.getCategory();
-        Ledger oldLedger = income.getLedger();
-
-        if (ledger.getId() != oldLedger.getId()) income.setLedger(ledger);
-        if (category.getId() != oldCategory.getId()) { //change category
-            if (category.getType() != CategoryType.INCOME) return false;
-            income.setCategory(category);
-        }
-        Boolean updated = DbTransactionManager.getInstance().execute(() -> {
-            oldToAccount.debit(oldAmount);
-            if (!accountDAO.update(oldToAccount)) throw new Exception("Failed to rollback old account");
-            toAccount.credit(amount);
-            income.setToAccount(toAccount);
-            if (!accountDAO.update(toAccount)) throw new Exception("Failed to apply new account");
-            income.setAmount(amount);
-            income.setDate(date);
-            income.setNote(note);
-            if(!transactionDAO.update(income)) throw new Exception("Failed to update income transaction");
-            return true;
-        });
-        return updated != null && updated;
+    public boolean updateTransfer(Transfer transfer, Account newFromAccount, Account newToAccount, String note, LocalDate date, BigDecimal amount, Ledger ledger) {
+        long start = UPDATE_TRANSFER.begin();
+        try {
+            if (transfer == null || ledger == null || date == null) return false;
+            if( newFromAccount == null && newToAccount == null) return false;
+            if (newFromAccount != null && newToAccount != null && newFromAccount.getId() == newToAccount.getId()) return false;
+            if(newFromAccount != null && !newFromAccount.getSelectable()) return false;
+            if(newToAccount != null && !newToAccount.getSelectable()) return false;
+            if (amount.compareTo(BigDecimal.ZERO) < 0) return false;
+            BigDecimal oldAmount = transfer.getAmount();
+            Account oldFromAccount = transfer.getFromAccount();
+            Account oldToAccount = transfer.getToAccount();
+            Ledger oldLedger = transfer.getLedger();
+            if (ledger.getId() != oldLedger.getId()) transfer.setLedger(ledger);
+            Boolean updated = write(() -> {
+                //rollback old accounts
+                if (oldFromAccount != null) {
+                    oldFromAccount.credit(oldAmount);
+                    if (!accountDAO.update(oldFromAccount)) throw new Exception("Failed to rollback old from account");
+                }
+                if (oldToAccount != null) {
+                    oldToAccount.debit(oldAmount);
+                    if (!accountDAO.update(oldToAccount)) throw new Exception("Failed to rollback old to account");
+                }
+                //apply new accounts
+                if (newFromAccount != null) {
+                    newFromAccount.debit(amount);
+                    if (!accountDAO.update(newFromAccount)) throw new Exception("Failed to apply new from account");
+                }
+                if (newToAccount != null) {
+                    newToAccount.credit(amount);
+                    if (!accountDAO.update(newToAccount)) throw new Exception("Failed to apply new to account");
+                }
+                transfer.setFromAccount(newFromAccount);
+                transfer.setToAccount(newToAccount);
+                transfer.setAmount(amount);
+                transfer.setDate(date);
+                transfer.setNote(note);
+                if (!transactionDAO.update(transfer)) throw new Exception("Failed to update Transfer record");
+                return true;
+            });
+            return updated != null && updated;
+        } finally {
+            UPDATE_TRANSFER.end(start);
+        }
     }
 
-    public boolean updateExpense(Expense expense, Account fromAccount, LedgerCategory category, String note, LocalDate date, BigDecimal amount, Ledger ledger) {
-        if (expense == null || fromAccount == null || ledger == null || date == null || category == null || amount == null || !fromAccount.getSelectable()) {
-            return false;
-        }
-        if (amount.compareTo(BigDecimal.ZERO) < 0) return false;
-        BigDecimal oldAmount = expense.getAmount();
-        Account oldFromAccount = expense.getFromAccount();
-        LedgerCategory oldCategory = expense.getCategory();
-        Ledger oldLedger = expense.getLedger();
-        if (ledger.getId() != oldLedger.getId()) expense.setLedger(ledger);
-        if (category.getId() != oldCategory.getId()) {
-            if (category.getType() != CategoryType.EXPENSE) return false;
-            expense.setCategory(category);
-        }
-        Boolean updated = DbTransactionManager.getInstance().execute(() -> {
-            oldFromAccount.credit(oldAmount);
-            if (!accountDAO.update(oldFromAccount)) throw new Exception("Failed to rollback old account");
-            fromAccount.debit(amount);
-            expense.setFromAccount(fromAccount);
-            if (!accountDAO.update(fromAccount)) throw new Exception("Failed to apply new account");
-            expense.setAmount(amount);
-            expense.setDate(date);
-            expense.setNote(note);
-            if (!transactionDAO.update(expense)) throw new Exception("Failed to update expense transaction");
-            return true;
+    // bulk edits of every transaction matching query, limited to the current user's ledgers.
+    // Each runs as a single statement that also applies the net balance change of every account involved,
+    // so it happens entirely or not at all. They return the counts of changed transactions and accounts,
+    // or null when the input is invalid or the statement failed
+
+    //only transactions of the category's ledger and type are changed
+    public BulkResult bulkRecategorize(TransactionQuery query, LedgerCategory category) {
+        long start = BULK_RECATEGORIZE.begin();
+        try {
+            if (query == null || category == null || category.getLedger() == null) return null;
+            if (!UserSession.getInstance().isLoggedIn()) return null;
+            long userId = UserSession.getInstance().getCurrentUser().getId();
+            BulkResult result = transactionDAO.bulkRecategorize(query, userId, category);
+            if (result != null) deliverAlerts();
+            return result;
+        } finally {
+            BULK_RECATEGORIZE.end(start);
+        }
+    }
+
+    //each transaction takes the category of the same name and type in ledger; those without one are left alone
+    public BulkResult bulkMoveToLedger(TransactionQuery query, Ledger ledger) {
+        long start = BULK_MOVE_TO_LEDGER.begin();
+        try {
+            if (query == null || ledger == null) return null;
+            if (!UserSession.getInstance().isLoggedIn()) return null;
+            long userId = UserSession.getInstance().getCurrentUser().getId();
+            BulkResult result = transactionDAO.bulkMove(query, userId, ledger);
+            if (result != null) deliverAlerts();
+            return result;
+        } finally {
+            BULK_MOVE_TO_LEDGER.end(start);
+        }
+    }
+
+    //newAccount takes the place of oldAccount on whichever side it is
+    public BulkResult bulkReassignAccount(TransactionQuery query, Account oldAccount, Account newAccount) {
+        long start = BULK_REASSIGN_ACCOUNT.begin();
+        try {
+            if (query == null || oldAccount == null || newAccount == null) return null;
+            if (oldAccount.getId() == newAccount.getId() || !newAccount.getSelectable()) return null;
+            if (!UserSession.getInstance().isLoggedIn()) return null;
+            long userId = UserSession.getInstance().getCurrentUser().getId();
+            BulkResult result = transactionDAO.bulkReassignAccount(query, userId, oldAccount, newAccount);
+            if (result != null) deliverAlerts();
+            return result;
+        } finally {
+            BULK_REASSIGN_ACCOUNT.end(start);
+        }
+    }
+
+    public BulkResult bulkDelete(TransactionQuery query) {
+        long start = BULK_DELETE.begin();
+        try {
+            if (query == null) return null;
+            if (!UserSession.getInstance().isLoggedIn()) return null;
+            long userId = UserSession.getInstance().getCurrentUser().getId();
+            BulkResult result = transactionDAO.bulkDelete(query, userId);
+            if (result != null) deliverAlerts();
+            return result;
+        } finally {
+            BULK_DELETE.end(start);
+        }
+    }
+
+    // runs action in one db transaction; the budget alerts raised on the current user's budgets are taken in
+    // the same transaction and delivered once it is committed
+    private <T> T write(DbTransactionAction<T> action) {
+        List<BudgetAlert> alerts = new ArrayList<>();
+        T result = DbTransactionManager.getInstance().execute(() -> {
+            T written = action.execute();
+            List<BudgetAlert> raised = takeAlerts();
+            if (raised == null) throw new Exception("Failed to take budget alerts");
+            alerts.addAll(raised);
+            return written;
         });
-        return updated != null && updated;
+        if (result != null) publish(alerts);
+        return result;
     }
 
-    public boolean updateTransfer(Transfer transfer, Account newFromAccount, Account newToAccount, String note, LocalDate date, BigDecimal amount, Ledger ledger) {
-        if (transfer == null || ledger == null || date == null) return false;
-        if( newFromAccount == null && newToAccount == null) return false;
-        if (newFromAccount != null && newToAccount != null && newFromAccount.getId() == newToAccount.getId()) return false;
-        if(newFromAccount != null && !newFromAccount.getSelectable()) return false;
-        if(newToAccount != null && !newToAccount.getSelectable()) return false;
-        if (amount.compareTo(BigDecimal.ZERO) < 0) return false;
-        BigDecimal oldAmount = transfer.getAmount();
-        Account oldFromAccount = transfer.getFromAccount();
-        Account oldToAccount = transfer.getToAccount();
-        Ledger oldLedger = transfer.getLedger();
-        if (ledger.getId() != oldLedger.getId()) transfer.setLedger(ledger);
-        Boolean updated = DbTransactionManager.getInstance().execute(() -> {
-            //rollback old accounts
-            if (oldFromAccount != null) {
-                oldFromAccount.credit(oldAmount);
-                if (!accountDAO.update(oldFromAccount)) throw new Exception("Failed to rollback old from account");
-            }
-            if (oldToAccount != null) {
-                oldToAccount.debit(oldAmount);
-                if (!accountDAO.update(oldToAccount)) throw new Exception("Failed to rollback old to account");
-            }
-            //apply new accounts
-            if (newFromAccount != null) {
-                newFromAccount.debit(amount);
-                if (!accountDAO.update(newFromAccount)) throw new Exception("Failed to apply new from account");
+    //for single-statement writes, already committed
+    private void deliverAlerts() {
+        List<BudgetAlert> alerts = takeAlerts();
+        if (alerts != null) publish(alerts);
+    }
+
+    //alerts of other users' budgets, and those raised without a user (capture, recurring rules) until their
+    //owner writes again, stay queued
+    private List<BudgetAlert> takeAlerts() {
+        User user = UserSession.getInstance().getCurrentUser();
+        return user == null ? List.of() : budgetDAO.takeAlerts(user.getId());
+    }
+
+    private void publish(List<BudgetAlert> alerts) {
+        for (BudgetAlert alert : alerts) {
+            BudgetAlertEvent event = new BudgetAlertEvent();
+            if (event.shouldCommit()) {
+                event.budgetId = alert.budgetId();
+                event.threshold = alert.threshold();
+                event.spent = alert.spent().doubleValue();
+                event.amount = alert.amount().doubleValue();
+                event.operation = OperationContext.current();
+                event.commit();
             }
-            if (newToAccount != null) {
-                newToAccount.credit(amount);
-                if (!accountDAO.update(newToAccount)) throw new Exception("Failed to apply new to account");
+            for (Consumer<BudgetAlert> listener : alertListeners) {
+                try {
+                    listener.accept(alert);
+                } catch (RuntimeException e) {
+                    System.err.println("Budget alert listener failed: " + e.getMessage());
+                }
             }
-            transfer.setFromAccount(newFromAccount);
-            transfer.setToAccount(newToAccount);
-            transfer.setAmount(amount);
-            transfer.setDate(date);
-            transfer.setNote(note);
-            if (!transactionDAO.update(transfer)) throw new Exception("Failed to update Transfer record");
-            return true;
-        });
-        return updated != null && updated;
+        }
     }
 }
@@ -4,8 +4,16 @@ import com.ledger.Util.PasswordUtils;
 import com.ledger.DomainModel.User;
 import com.ledger.ORM.UserDAO;
 import com.ledger.Session.UserSession;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
 public class UserController {
+    private static final OperationMetrics LOGIN = MetricsRegistry.getInstance().controller("UserController.login");
+    private static final OperationMetrics REGISTER = MetricsRegistry.getInstance().controller("UserController.register");
+    private static final OperationMetrics UPDATE_USERNAME = MetricsRegistry.getInstance().controller("UserController.updateUsername");
+    private static final OperationMetrics UPDATE_PASSWORD = MetricsRegistry.getInstance().controller("UserController.updatePassword");
+    private static final OperationMetrics LOGOUT = MetricsRegistry.getInstance().controller("UserController.logout");
+
     private final UserDAO userDAO;
 
     public UserController(UserDAO userDAO) {
@@ -13,46 +21,66 @@ public class UserController {
     }
 
     public User login(String username, String password) {
-        User user = userDAO.getUserByUsername(username);
-        if (user != null && PasswordUtils.verify(password, user.getPassword())) {
-            UserSession.getInstance().login(user);
-            return user;
+        long start = LOGIN.begin();
+        try {
+            User user = userDAO.getUserByUsername(username);
+            if (user != null && PasswordUtils.verify(password, user.getPassword())) {
+                UserSession.getInstance().login(user);
+                return user;
+            }
+            return null;
+        } finally {
+            LOGIN.end(start);
         }
-        return null;
     }
 
     public boolean register(String username, String password) {
-        if(username == null || password == null) return false;
-        if (password.isEmpty() || username.isEmpty()) return false;
-        if(password.length() < 6 || password.length() > 50) return false;
-        if(username.length() > 50) return false;
-        if (userDAO.getUserByUsername(username) == null) {
-            User user = new User(username, PasswordUtils.hash(password));
-            return userDAO.register(user);
+        long start = REGISTER.begin();
+        try {
+            if(username == null || password == null) return false;
+            if (password.isEmpty() || username.isEmpty()) return false;
+            if(password.length() < 6 || password.length() > 50) return false;
+            if(username.length() > 50) return false;
+            if (userDAO.getUserByUsername(username) == null) {
+                User user = new User(username, PasswordUtils.hash(password));
+                return userDAO.register(user);
+            }
+            return false;
+        } finally {
+            REGISTER.end(start);
         }
-        return false;
     }
 
-     public boolean updateUsername(String newUsername) {
-        if(!UserSession.getInstance().isLoggedIn()) return false;
-        User currentUser = UserSession.getInstance().getCurrentUser();
-        if(newUsername.isEmpty()) return false;
-        if(newUsername.length() > 50) return false;
-        if (userDAO.getUserByUsername(newUsername) != null) {
-            return currentUser.getUsername().equals(newUsername);
+    public boolean updateUsername(String newUsername) {
+        long start = UPDATE_USERNAME.begin();
+        try {
+            if(!UserSession.getInstance().isLoggedIn()) return false;
+            User currentUser = UserSession.getInstance().getCurrentUser();
+            if(newUsername.isEmpty()) return false;
+            if(newUsername.length() > 50) return false;
+            if (userDAO.getUserByUsername(newUsername) != null) {
+                return currentUser.getUsername().equals(newUsername);
+            }
+            currentUser.setUsername(newUsername);
+            return userDAO.update(currentUser);
+        } finally {
+            UPDATE_USERNAME.end(start);
         }
-        currentUser.setUsername(newUsername);
-        return userDAO.update(currentUser);
-     }
+    }
 
     public boolean updatePassword(String newPassword) {
-        if(!UserSession.getInstance().isLoggedIn()) return false;
-        User currentUser = UserSession.getInstance().getCurrentUser();
-        if(newPassword.isEmpty()) return false;
-        if(newPassword.length() < 6 || newPassword.length() > 50) return false;
-        String hashedPassword = PasswordUtils.hash(newPassword);
-        currentUser.setPassword(hashedPassword);
-        return userDAO.update(currentUser);
+        long start = UPDATE_PASSWORD.begin();
+        try {
+            if(!UserSession.getInstance().isLoggedIn()) return false;
+            User currentUser = UserSession.getInstance().getCurrentUser();
+            if(newPassword.isEmpty()) return false;
+            if(newPassword.length() < 6 || newPassword.length() > 50) return false;
+            String hashedPassword = PasswordUtils.hash(newPassword);
+            currentUser.setPassword(hashedPassword);
+            return userDAO.update(currentUser);
+        } finally {
+            UPDATE_PASSWORD.end(start);
+        }
     }
 
     public User getCurrentUser(){
@@ -60,7 +88,12 @@ public class UserController {
     }
 
     public void logout() {
-        UserSession.getInstance().logout();
+        long start = LOGOUT.begin();
+        try {
+            UserSession.getInstance().logout();
+        } finally {
+            LOGOUT.end(start);
+        }
     }
 
 }
@@ -237,7 +237,7 @@ public class AccountCLI {
             endDate = startDate.withDayOfMonth(startDate.lengthOfMonth());
         }
 
-        List<Transaction> transactions = transactionController.getTransactionsByAccountInRangeDate(account, startDate, endDate);
+        List<TransactionRow> transactions = transactionController.getTransactionRowsByAccount(account, startDate, endDate);
         BigDecimal totalIncome = reportController.getTotalIncomeByAccount(account, startDate, endDate);
         BigDecimal totalExpense = reportController.getTotalExpenseByAccount(account, startDate, endDate);
         System.out.println("\nfrom " + startDate + " to " + endDate);
@@ -250,38 +250,38 @@ public class AccountCLI {
         }
 
         int i = 0;
-        for (Transaction tx : transactions) {
+        for (TransactionRow tx : transactions) {
             i++;
             StringBuilder info = new StringBuilder();
 
             info.append(String.format("%d. Amount: %s, Date: %s",
                     i,
-                    tx.getType() == TransactionType.EXPENSE
-                            ? tx.getAmount().negate()
-                            : tx.getAmount(),
-                    tx.getDate()));
+                    tx.type() == TransactionType.EXPENSE
+                            ? tx.amount().negate()
+                            : tx.amount(),
+                    tx.date()));
 
-            if (tx.getCategory() != null) {
-                info.append(", Category: ").append(tx.getCategory().getName());
+            if (tx.categoryName() != null) {
+                info.append(", Category: ").append(tx.categoryName());
             }
 
-            if (tx instanceof Transfer) {
-                if (tx.getFromAccount() != null) {
-                    info.append(", FROM: ").append(tx.getFromAccount().getName());
+            if (tx.type() == TransactionType.TRANSFER) {
+                if (tx.fromAccountName() != null) {
+                    info.append(", FROM: ").append(tx.fromAccountName());
                 }
-                if (tx.getToAccount() != null) {
-                    info.append(", TO: ").append(tx.getToAccount().getName());
+                if (tx.toAccountName() != null) {
+                    info.append(", TO: ").append(tx.toAccountName());
                 }
             } else {
-                if (tx.getFromAccount() != null) {
-                    info.append(", From: ").append(tx.getFromAccount().getName());
-                } else if (tx.getToAccount() != null) {
-                    info.append(", To: ").append(tx.getToAccount().getName());
+                if (tx.fromAccountName() != null) {
+                    info.append(", From: ").append(tx.fromAccountName());
+                } else if (tx.toAccountName() != null) {
+                    info.append(", To: ").append(tx.toAccountName());
                 }
             }
 
-            if (tx.getNote() != null && !tx.getNote().isEmpty()) {
-                info.append(", Note: ").append(tx.getNote());
+            if (tx.note() != null && !tx.note().isEmpty()) {
+                info.append(", Note: ").append(tx.note());
             }
 
             System.out.println(info);
@@ -289,6 +289,68 @@ public class AccountCLI {
 
     }
 
+    public void viewAccountStatement() {
+        System.out.println("\n=== Account Statement ===");
+
+        List<Account> accounts = accountController.getAccounts(userController.getCurrentUser());
+        if (accounts.isEmpty()) {
+            System.out.println("No accounts found.");
+            return;
+        }
+        System.out.println("Select the account:");
+        System.out.println("0. return");
+        for (int i = 0; i < accounts.size(); i++) {
+            System.out.println((i + 1) + ". " + accounts.get(i).getName());
+        }
+        System.out.print("Enter number: ");
+        int choice = Integer.parseInt(scanner.nextLine().trim());
+        if (choice == 0) {
+            System.out.println("Return to main menu.");
+            return;
+        }
+        if (choice < 1 || choice > accounts.size()) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        Account account = accounts.get(choice - 1);
+
+        //a month, this month by default
+        System.out.print("Enter month (yyyy-mm, empty for this month): ");
+        String monthInput = scanner.nextLine().trim();
+        LocalDate startDate;
+        try {
+            startDate = monthInput.isEmpty()
+                    ? LocalDate.now().withDayOfMonth(1)
+                    : LocalDate.parse(monthInput + "-01");
+        } catch (java.time.format.DateTimeParseException e) {
+            System.out.println("Invalid month format.");
+            return;
+        }
+        LocalDate endDate = startDate.withDayOfMonth(startDate.lengthOfMonth());
+
+        BigDecimal opening = accountController.getBalanceAsOf(account, startDate.minusDays(1));
+        System.out.println("\nAccount: " + account.getName() + " | from " + startDate + " to " + endDate);
+        System.out.println("Opening Balance: " + opening);
+        List<StatementLine> lines = accountController.getStatement(account, startDate, endDate);
+        if (lines.isEmpty()) {
+            System.out.println("No transactions found for this account in the selected month.");
+            return;
+        }
+        for (StatementLine line : lines) {
+            TransactionRow tx = line.row();
+            StringBuilder info = new StringBuilder();
+            info.append(String.format("%s  %s  %10s  Balance: %s", tx.date(), tx.type(), line.change(), line.balance()));
+            if (tx.categoryName() != null) {
+                info.append(", Category: ").append(tx.categoryName());
+            }
+            if (tx.note() != null && !tx.note().isEmpty()) {
+                info.append(", Note: ").append(tx.note());
+            }
+            System.out.println(info);
+        }
+        System.out.println("Closing Balance: " + lines.get(lines.size() - 1).balance());
+    }
+
     //private helper methods for input and selection
     private String inputAccountName() {
         String name = scanner.nextLine();
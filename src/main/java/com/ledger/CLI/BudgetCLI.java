@@ -4,10 +4,13 @@ import com.ledger.BusinessLogic.*;
 import com.ledger.DomainModel.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class BudgetCLI {
     private final BudgetController budgetController;
@@ -56,7 +59,7 @@ public class BudgetCLI {
                 reportController.isOverBudget(uncategorizedBudget) ? " [OVER BUDGET]" : " (within budget)");
         budgetMap.put(counter[0]++, uncategorizedBudget);
 
-        System.out.print("\n=== Available Budgets by Category ===");
+        System.out.println("\n=== Available Budgets by Category ===");
         List<LedgerCategory> expenseCategories = ledgerCategoryController.getCategoryTreeByLedger(selectedLedger).stream()
                 .filter(c -> c.getType() == CategoryType.EXPENSE)
                 .toList();
@@ -106,33 +109,55 @@ public class BudgetCLI {
 
 
         List<LedgerCategory> categories = ledgerCategoryController.getCategoryTreeByLedger(selectedLedger);
-        List<LedgerCategory> topCategories = categories.stream()
+        List<LedgerCategory> expenseCategories = categories.stream()
                 .filter(c -> c.getType() == CategoryType.EXPENSE)
-                .filter(c -> c.getParent() == null)
                 .toList();
 
+        //depth-first, so every category comes right after its parent
         System.out.println("\n=== Categories' Budgets ===");
-        for(LedgerCategory category : topCategories){
+        for(LedgerCategory category : expenseCategories){
             Budget categoryBudget = budgetController.getActiveBudgetByCategory(category, period);
             if(categoryBudget!=null){
-                System.out.println("Category: " + category.getName() + ", Amount: " + categoryBudget.getAmount() +
-                        ", Period: " + categoryBudget.getPeriod() +
+                System.out.println(" ".repeat(category.getDepth())
+                        + (category.getDepth() == 0 ? "Category: " : "SubCategory: ") + category.getName()
+                        + ", Amount: " + categoryBudget.getAmount() + ", Period: " + categoryBudget.getPeriod() +
                         (reportController.isOverBudget(categoryBudget) ? ", [OVER BUDGET]" : ", within budget"));
             }
-            List<LedgerCategory> children = categories.stream()
-                    .filter(c -> c.getParent() != null && c.getParent().getId() == category.getId())
-                    .toList();
-            if(children.isEmpty()){
-                continue;
-            }
-            for(LedgerCategory subcategory : children){
-                Budget subcategoryBudget = budgetController.getActiveBudgetByCategory(subcategory, period);
-                if(subcategoryBudget!=null){
-                    System.out.println(" SubCategory: " + subcategory.getName() + ", Amount: " + subcategoryBudget.getAmount() +
-                            ", Period: " + subcategoryBudget.getPeriod() +
-                            (reportController.isOverBudget(subcategoryBudget) ? ", [OVER BUDGET]" : ", within budget"));
-                }
-            }
+        }
+    }
+
+    public void showBudgetForecast() {
+        System.out.println("\n === Budget forecast ===");
+
+        //select ledger
+        System.out.println("Select ledger:");
+        Ledger selectedLedger = selectLedger();
+
+        //select period
+        System.out.println("Select budget period:");
+        Period period = selectBudgetPeriod();
+
+        List<Budget> budgets = budgetController.getActiveBudgets(selectedLedger, period);
+        List<BudgetForecast> forecasts = reportController.getBudgetForecasts(budgets);
+        if (forecasts == null) {
+            System.out.println("Failed to compute the forecast.");
+            return;
+        }
+        boolean any = false;
+        for (BudgetForecast forecast : forecasts) {
+            Budget budget = forecast.budget();
+            if (budget.getAmount().signum() == 0) continue; //not set
+            any = true;
+            String name = budget.getCategory() == null ? "Ledger: " + selectedLedger.getName()
+                    : (budget.getCategory().getParent() != null ? " SubCategory: " : "Category: ") + budget.getCategory().getName();
+            System.out.println(name + ", Amount: " + budget.getAmount() + ", Spent: " + forecast.spent() +
+                    ", Projected: " + forecast.projected() +
+                    (!forecast.willExceed() ? ", within budget"
+                            : forecast.exceedsOn().isAfter(LocalDate.now()) ? ", [WILL EXCEED ON " + forecast.exceedsOn() + "]"
+                            : ", [OVER BUDGET SINCE " + forecast.exceedsOn() + "]"));
+        }
+        if (!any) {
+            System.out.println("No budget set for the selected period.");
         }
     }
 
@@ -238,101 +263,52 @@ public class BudgetCLI {
         return ledgers.get(ledgerIndex);
     }
 
-    //for edit
+    //for edit, every category at any depth is selectable
     private void printAllCategoryBudgets(List<LedgerCategory> categories, Period period,
                                          int[] counter, Map<Integer, Budget> budgetMap) {
-
-        List<LedgerCategory> topCategories = categories.stream()
-                .filter(c -> c.getParent() == null)
-                .toList();
-
-        for (LedgerCategory category : topCategories) {
-
-            // print budgets for this category
+        for (LedgerCategory category : categories) {
             Budget budget = budgetController.getActiveBudgetByCategory(category, period);
             if (budget == null) {
                 continue;
             }
 
-            //print category budget with number
+            //print category budget with number, indented below its parent
             String status = reportController.isOverBudget(budget) ? " [OVER BUDGET]" : " (within budget)";
-            String line = counter[0] + ". "+ "Category: "+ category.getName() + " - Amount: " + budget.getAmount()
-                    + ", Period: " + budget.getPeriod() + status;
+            String line = "   ".repeat(category.getDepth()) + counter[0] + ". "
+                    + (category.getDepth() == 0 ? "Category: " : "SubCategory: ") + category.getName()
+                    + " - Amount: " + budget.getAmount() + ", Period: " + budget.getPeriod() + status;
             System.out.println(line);
 
             budgetMap.put(counter[0], budget);
             counter[0]++;
-
-            // print subcategories recursively
-            List<LedgerCategory> children = categories.stream()
-                    .filter(c -> c.getParent() != null && c.getParent().getId() == category.getId())
-                    .toList();
-            if (!children.isEmpty()) {
-                for(LedgerCategory subcategory : children){
-                    Budget subcategoryBudget = budgetController.getActiveBudgetByCategory(subcategory, period);
-                    if(subcategoryBudget==null){
-                        continue;
-                    }
-
-                    //print subcategory budget with number
-                    String subStatus = reportController.isOverBudget(subcategoryBudget) ? " [OVER BUDGET]" : " (within budget)";
-                    String subLine = "   " + counter[0] + ". " + "SubCategory: " + subcategory.getName() + " - Amount: " + subcategoryBudget.getAmount()
-                            + ", Period: " + subcategoryBudget.getPeriod() + subStatus;
-                    System.out.println(subLine);
-
-                    budgetMap.put(counter[0], subcategoryBudget);
-                    counter[0]++;
-                }
-            }
         }
     }
 
-    //select only top-level category budgets. subcategories are printed but not selectable. for merge
+    //select only budgets of categories with subcategories, at any depth; the others are printed but not selectable. for merge
     private void printCategoryBudgets(List<LedgerCategory> categories, Period period,
                                       int[] counter, Map<Integer, Budget> budgetMap) {
-        List<LedgerCategory> topCategories = categories.stream()
-                .filter(c -> c.getParent() == null)
-                .toList();
+        Set<Long> parentIds = categories.stream()
+                .filter(c -> c.getParent() != null)
+                .map(c -> c.getParent().getId())
+                .collect(Collectors.toSet());
 
-        for (LedgerCategory category : topCategories) {
-            System.out.println();
-
-            // print budgets for this category
+        for (LedgerCategory category : categories) {
             Budget budget = budgetController.getActiveBudgetByCategory(category, period);
             if(budget==null){
                 continue;
             }
 
-            // print top-level category budget with number
             String status = reportController.isOverBudget(budget) ? " [OVER BUDGET]" : " (within budget)";
-            String line = counter[0] + ". Category: " + category.getName() + ", Amount: " + budget.getAmount()
-                    + ", Period: " + budget.getPeriod() + status;
-            System.out.print(line);
-
-            //only top-level category budgets are selectable
-            budgetMap.put(counter[0], budget);
-            counter[0]++;
-
-            // print subcategories budget without number
-            List<LedgerCategory> children = categories.stream()
-                    .filter(c -> c.getParent() != null && c.getParent().getId() == category.getId())
-                    .toList();
-            if(children.isEmpty()){
-                continue;
+            String name = (category.getDepth() == 0 ? "Category: " : "SubCategory: ") + category.getName()
+                    + ", Amount: " + budget.getAmount() + ", Period: " + budget.getPeriod() + status;
+            if (parentIds.contains(category.getId())) {
+                //its subcategories' budgets can be merged into it
+                System.out.println("   ".repeat(category.getDepth()) + counter[0] + ". " + name);
+                budgetMap.put(counter[0], budget);
+                counter[0]++;
+            } else {
+                System.out.println("   ".repeat(category.getDepth()) + name);
             }
-            for(LedgerCategory subcategory : children){
-                Budget subcategoryBudget = budgetController.getActiveBudgetByCategory(subcategory, period);
-                if(subcategoryBudget==null){
-                    continue;
-                }
-
-                //print subcategory budget without number
-                String subStatus = reportController.isOverBudget(subcategoryBudget) ? " [OVER BUDGET]" : " (within budget)";
-                String subLine = "   SubCategory: " + subcategory.getName() + ", Amount: " + subcategoryBudget.getAmount()
-                        + ", Period: " + subcategoryBudget.getPeriod() + subStatus;
-                System.out.print("\n" + subLine);
-            }
-
         }
     }
 
@@ -9,6 +9,8 @@ import java.util.List;
 import java.util.Scanner;
 
 public class LedgerCLI {
+    private static final int TOP_N = 5;
+
     private final UserController userController;
     private final ReportController reportController;
     private final LedgerController ledgerController;
@@ -111,8 +113,38 @@ public class LedgerCLI {
                 + ", Remaining Amount: " + restAmount
                 + (reportController.isOverBudget(budget) ? ", [OVER BUDGET]" : ", (within budget)"));
 
+        //top spending
+        List<RankedTotal> topCategories = reportController.getTopCategories(selectedLedger, startDate, endDate, TOP_N);
+        if(!topCategories.isEmpty()) {
+            System.out.println("\nTop Categories:");
+            for (int i = 0; i < topCategories.size(); i++) {
+                RankedTotal category = topCategories.get(i);
+                System.out.println((i + 1) + ". " + category.name() + ": " + category.total()
+                        + " (" + category.transactions() + " transactions)");
+            }
+        }
+        List<RankedTotal> topAccounts = reportController.getTopAccounts(selectedLedger, startDate, endDate, TOP_N);
+        if(!topAccounts.isEmpty()) {
+            System.out.println("Top Accounts:");
+            for (int i = 0; i < topAccounts.size(); i++) {
+                RankedTotal account = topAccounts.get(i);
+                System.out.println((i + 1) + ". " + account.name() + ": " + account.total()
+                        + " (" + account.transactions() + " transactions)");
+            }
+        }
+        List<TransactionRow> largest = reportController.getLargestExpenses(selectedLedger, startDate, endDate, TOP_N);
+        if(!largest.isEmpty()) {
+            System.out.println("Largest Expenses:");
+            for (int i = 0; i < largest.size(); i++) {
+                TransactionRow tx = largest.get(i);
+                System.out.println((i + 1) + ". " + tx.amount() + ", Date: " + tx.date()
+                        + (tx.categoryName() != null ? ", Category: " + tx.categoryName() : "")
+                        + (tx.note() != null && !tx.note().isEmpty() ? ", Note: " + tx.note() : ""));
+            }
+        }
+
         //show transaction
-        List<Transaction> transactions = transactionController.getTransactionsByLedgerInRangeDate(
+        List<TransactionRow> transactions = transactionController.getTransactionRowsByLedger(
                 selectedLedger, startDate, endDate);
         if(transactions.isEmpty()) {
             System.out.println("\nNo transactions found for the selected period.");
@@ -120,38 +152,38 @@ public class LedgerCLI {
         }
         System.out.println("\nTransactions for Ledger: " + selectedLedger.getName());
         int count = 0;
-        for (Transaction tx : transactions) {
+        for (TransactionRow tx : transactions) {
             count++;
             StringBuilder info = new StringBuilder();
 
             info.append(String.format("%d. Amount: %s, Date: %s",
                     count,
-                    tx.getType() == TransactionType.EXPENSE
-                            ? tx.getAmount().negate()
-                            : tx.getAmount(),
-                    tx.getDate()));
+                    tx.type() == TransactionType.EXPENSE
+                            ? tx.amount().negate()
+                            : tx.amount(),
+                    tx.date()));
 
-            if (tx.getCategory() != null) {
-                info.append(", Category: ").append(tx.getCategory().getName());
+            if (tx.categoryName() != null) {
+                info.append(", Category: ").append(tx.categoryName());
             }
 
-            if (tx instanceof Transfer) {
-                if (tx.getFromAccount() != null) {
-                    info.append(", FROM: ").append(tx.getFromAccount().getName());
+            if (tx.type() == TransactionType.TRANSFER) {
+                if (tx.fromAccountName() != null) {
+                    info.append(", FROM: ").append(tx.fromAccountName());
                 }
-                if (tx.getToAccount() != null) {
-                    info.append(", TO: ").append(tx.getToAccount().getName());
+                if (tx.toAccountName() != null) {
+                    info.append(", TO: ").append(tx.toAccountName());
                 }
             } else {
-                if (tx.getFromAccount() != null) {
-                    info.append(", From: ").append(tx.getFromAccount().getName());
-                } else if (tx.getToAccount() != null) {
-                    info.append(", To: ").append(tx.getToAccount().getName());
+                if (tx.fromAccountName() != null) {
+                    info.append(", From: ").append(tx.fromAccountName());
+                } else if (tx.toAccountName() != null) {
+                    info.append(", To: ").append(tx.toAccountName());
                 }
             }
 
-            if (tx.getNote() != null && !tx.getNote().isEmpty()) {
-                info.append(", Note: ").append(tx.getNote());
+            if (tx.note() != null && !tx.note().isEmpty()) {
+                info.append(", Note: ").append(tx.note());
             }
 
             System.out.println(info);
@@ -213,6 +245,50 @@ public class LedgerCLI {
     }
 
     //private helper method
+    public void viewCategoryMonthReport() {
+        System.out.println("\n === Category by Month Report ===");
+
+        System.out.println("Select a ledger:");
+        Ledger selectedLedger = selectLedger();
+        if(selectedLedger == null) {
+            return;
+        }
+        System.out.print("Enter year (press Enter for this year): ");
+        String yearInput = scanner.nextLine().trim();
+        int year = yearInput.isEmpty() ? LocalDate.now().getYear() : Integer.parseInt(yearInput);
+        System.out.print("Expense or income? (e/i): ");
+        String typeInput = scanner.nextLine().trim().toLowerCase();
+        CategoryType type = typeInput.equals("i") || typeInput.equals("income") ? CategoryType.INCOME : CategoryType.EXPENSE;
+
+        CategoryMonthReport report = reportController.getCategoryMonthReport(selectedLedger, type,
+                LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+        if(report == null) {
+            System.out.println("Failed to compute the report.");
+            return;
+        }
+
+        StringBuilder header = new StringBuilder(String.format("%-16s", "Category"));
+        for (int column = 0; column < report.getMonthCount(); column++) {
+            header.append(String.format("%10s", report.getMonth(column).getMonth().toString().substring(0, 3)));
+        }
+        header.append(String.format("%12s", "Total"));
+        System.out.println(header);
+        for (int row = 0; row < report.getCategoryCount(); row++) {
+            StringBuilder line = new StringBuilder(String.format("%-16s", report.getCategoryName(row)));
+            for (int column = 0; column < report.getMonthCount(); column++) {
+                line.append(String.format("%10s", report.getAmount(row, column)));
+            }
+            line.append(String.format("%12s", report.getCategoryTotal(row)));
+            System.out.println(line);
+        }
+        StringBuilder totals = new StringBuilder(String.format("%-16s", "Total"));
+        for (int column = 0; column < report.getMonthCount(); column++) {
+            totals.append(String.format("%10s", report.getMonthTotal(column)));
+        }
+        totals.append(String.format("%12s", report.getTotal()));
+        System.out.println(totals);
+    }
+
     private String inputName(){
         String name = scanner.nextLine();
         if(name.isEmpty()){
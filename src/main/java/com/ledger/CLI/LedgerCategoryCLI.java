@@ -8,7 +8,10 @@ import com.ledger.DomainModel.Ledger;
 import com.ledger.DomainModel.LedgerCategory;
 import com.ledger.DomainModel.User;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class LedgerCategoryCLI {
@@ -89,14 +92,13 @@ public class LedgerCategoryCLI {
         CategoryType categoryType = categoryTypeInput.equalsIgnoreCase("INCOME") ?
                 CategoryType.INCOME : CategoryType.EXPENSE;
 
-        //select parent category
+        //select parent category, at any depth
         List<LedgerCategory> allCategories = ledgerCategoryController.getCategoryTreeByLedger(selectedLedger);
         List<LedgerCategory> parentCategories = allCategories.stream()
-                .filter(cat -> cat.getType() == (categoryType) && cat.getParent() == null)
-                .filter(cat -> !cat.getName().equals("Claim Income"))
+                .filter(cat -> cat.getType() == (categoryType))
                 .toList();
         System.out.println("Select a parent category for the new sub-category:");
-        LedgerCategory parentCategory = selectCategory(parentCategories);
+        LedgerCategory parentCategory = selectCategoryWithTree(parentCategories);
         if(parentCategory == null){
             return;
         }
@@ -221,22 +223,22 @@ public class LedgerCategoryCLI {
             return;
         }
 
-        List<LedgerCategory> allCategories = ledgerCategoryController.getCategoryTreeByLedger(selectedLedger).stream()
+        List<LedgerCategory> allCategories = ledgerCategoryController.getCategoryTreeByLedger(selectedLedger);
+        List<LedgerCategory> rootCategories = allCategories.stream()
                 .filter(cat -> cat.getParent() == null)
                 .toList();
         System.out.println("Select a first-level category to demote:");
-        LedgerCategory categoryToDemote = selectCategory(allCategories);
+        LedgerCategory categoryToDemote = selectCategory(rootCategories);
         if(categoryToDemote == null){
             return;
         }
 
-        //select new parent category
+        //select new parent category, at any depth outside the demoted category's subtree
         List<LedgerCategory> potentialParents = allCategories.stream()
-                .filter(cat -> cat.getId() != categoryToDemote.getId() && cat.getType() == categoryToDemote.getType()
-                        && cat.getParent() == null)
+                .filter(cat -> cat.getType() == categoryToDemote.getType() && !isInSubtree(categoryToDemote, cat))
                 .toList();
         System.out.println("Select a new parent category for the category to demote:");
-        LedgerCategory newParentCategory = selectCategory(potentialParents);
+        LedgerCategory newParentCategory = selectCategoryWithTree(potentialParents);
         if(newParentCategory == null){
             return;
         }
@@ -276,13 +278,14 @@ public class LedgerCategoryCLI {
             return;
         }
 
-        //select new parent category
+        //select new parent category, at any depth outside the sub-category's subtree
         List<LedgerCategory> potentialParents = allCategories.stream()
                 .filter(cat -> cat.getId() != subCategoryToChange.getParent().getId()
                         && cat.getType() == subCategoryToChange.getType()
-                        && cat.getParent() == null)
+                        && !isInSubtree(subCategoryToChange, cat))
                 .toList();
-        LedgerCategory newParentCategory = selectCategory(potentialParents);
+        System.out.println("Select a new parent category:");
+        LedgerCategory newParentCategory = selectCategoryWithTree(potentialParents);
         if(newParentCategory == null){
             return;
         }
@@ -317,36 +320,18 @@ public class LedgerCategoryCLI {
         }
         System.out.println("Category Tree for Ledger: " + selectedLedger.getName());
 
-        List<LedgerCategory> expenseRoot = categories.stream()
-                .filter(cat -> cat.getType() == CategoryType.EXPENSE)
-                .filter(cat -> cat.getParent() == null)
-                .toList();
-        List<LedgerCategory> incomeRoot = categories.stream()
-                .filter(cat -> cat.getType() == CategoryType.INCOME)
-                .filter(cat -> cat.getParent() == null)
-                .toList();
-
+        //depth-first, so every category comes right after its parent
         System.out.println("Expense Categories:");
-        for(LedgerCategory root : expenseRoot) {
-            System.out.println(" Category Name: " + root.getName());
-            List<LedgerCategory> children = categories.stream()
-                    .filter(cat -> cat.getParent() != null && cat.getParent().getId() == root.getId())
-                    .toList();
-            for(LedgerCategory child : children) {
-                System.out.println("  SubCategory Name: " + child.getName());
-            }
-        }
+        categories.stream()
+                .filter(cat -> cat.getType() == CategoryType.EXPENSE)
+                .forEach(cat -> System.out.println(" " + "  ".repeat(cat.getDepth())
+                        + (cat.getDepth() == 0 ? "Category Name: " : "SubCategory Name: ") + cat.getName()));
 
         System.out.println("Income Categories:");
-        for(LedgerCategory root : incomeRoot) {
-            System.out.println(" Category Name: " + root.getName());
-            List<LedgerCategory> children = categories.stream()
-                    .filter(cat -> cat.getParent() != null && cat.getParent().getId() == root.getId())
-                    .toList();
-            for(LedgerCategory child : children) {
-                System.out.println("  SubCategory Name: " + child.getName());
-            }
-        }
+        categories.stream()
+                .filter(cat -> cat.getType() == CategoryType.INCOME)
+                .forEach(cat -> System.out.println(" " + "  ".repeat(cat.getDepth())
+                        + (cat.getDepth() == 0 ? "Category Name: " : "SubCategory Name: ") + cat.getName()));
     }
 
     //private helper methods
@@ -360,36 +345,30 @@ public class LedgerCategoryCLI {
         return name;
     }
     private void printCategoryTree(Ledger selectedLedger) {
+        //depth-first, so every category comes right after its parent
         List<LedgerCategory> updatedCategories = ledgerCategoryController.getCategoryTreeByLedger(selectedLedger);
 
-        List<LedgerCategory> expenseRoots = updatedCategories.stream()
-                .filter(cat -> cat.getParent() == null && cat.getType() == CategoryType.EXPENSE)
-                .toList();
-        List<LedgerCategory> incomeRoots = updatedCategories.stream()
-                .filter(cat -> cat.getParent() == null && cat.getType() == CategoryType.INCOME)
-                .filter(cat-> !cat.getName().equals("Claim Income"))
-                .toList();
         System.out.println("Category Tree for Ledger: " + selectedLedger.getName());
         System.out.println("Expense categories: ");
-        for (LedgerCategory category : expenseRoots) {
-            System.out.println(" Category: " + category.getName());
-            List<LedgerCategory> children = updatedCategories.stream()
-                    .filter(cat -> cat.getParent() != null && cat.getParent().getId() == category.getId())
-                    .toList();
-            for (LedgerCategory child : children) {
-                System.out.println("   Subcategory: " + child.getName());
-            }
-        }
+        updatedCategories.stream()
+                .filter(cat -> cat.getType() == CategoryType.EXPENSE)
+                .forEach(this::printTreeLine);
         System.out.println("Income categories: ");
-        for (LedgerCategory category : incomeRoots) {
-            System.out.println(" Category: " + category.getName());
-            List<LedgerCategory> children = updatedCategories.stream()
-                    .filter(cat -> cat.getParent() != null && cat.getParent().getId() == category.getId())
-                    .toList();
-            for (LedgerCategory child : children) {
-                System.out.println("   Subcategory: " + child.getName());
-            }
+        updatedCategories.stream()
+                .filter(cat -> cat.getType() == CategoryType.INCOME)
+                .filter(cat-> !cat.getName().equals("Claim Income"))
+                .forEach(this::printTreeLine);
+    }
+    private void printTreeLine(LedgerCategory category) {
+        int depth = category.getDepth();
+        System.out.println(" " + "  ".repeat(depth) + (depth == 0 ? "Category: " : "Subcategory: ") + category.getName());
+    }
+    //whether category is root or below it
+    private static boolean isInSubtree(LedgerCategory root, LedgerCategory category) {
+        for (LedgerCategory cat = category; cat != null; cat = cat.getParent()) {
+            if (cat.getId() == root.getId()) return true;
         }
+        return false;
     }
     private String selectCategoryType() {
         System.out.println("1. INCOME");
@@ -428,65 +407,51 @@ public class LedgerCategoryCLI {
         return ledgers.get(choice - 1);
     }
 
-    //tree selection
+    //tree selection at any depth
     private LedgerCategory selectCategoryWithTree(List<LedgerCategory> categories) {
-        List<LedgerCategory> rootCategories = categories.stream()
-                .filter(cat -> cat.getParent() == null)
+        List<LedgerCategory> selectable = categories.stream()
                 .filter(cat -> !cat.getName().equals("Claim Income"))
                 .toList();
-        System.out.println("0. Cancel");
-        for (int i = 0; i < rootCategories.size(); i++) {
-            //display parent category
-            LedgerCategory parent = rootCategories.get(i);
-            System.out.println( (i + 1) + ". "+ "Name: " + parent.getName());
-
-            //display sub-categories
-            List<LedgerCategory> subCategories = categories.stream()
-                    .filter(cat -> cat.getParent() != null && cat.getParent().getId() == parent.getId())
-                    .toList();
-            if (!subCategories.isEmpty()) {
-                for (int j = 0; j < subCategories.size(); j++) {
-                    LedgerCategory child = subCategories.get(j);
-                    System.out.println("   " + (i + 1) + "." + (j + 1) + " " + child.getName());
-                }
-            }
+        if(selectable.isEmpty()) {
+            System.out.println("No categories available.");
+            return null;
         }
+        System.out.println("0. Cancel");
+        Map<String, LedgerCategory> choices = printNumberedTree(selectable);
         System.out.print("Enter choice (e.g. 1 or 1.2): ");
         String input = scanner.nextLine().trim();
 
         if(input.equals("0")) {
             return null;
         }
+        LedgerCategory selected = choices.get(input);
+        if(selected == null) {
+            System.out.println("Invalid choice.");
+            return selectCategoryWithTree(categories);
+        }
+        return selected;
+    }
 
-        if(input.contains(".")) {
-            //sub-category selected
-            String[] parts = input.split("\\.");
-            int parentIndex = Integer.parseInt(parts[0]) - 1;
-            int childIndex = Integer.parseInt(parts[1]) - 1;
-            if(parentIndex < 0 || parentIndex >= categories.size()) {
-                System.out.println("Invalid choice.");
-                return selectCategoryWithTree(categories);
-            }
-
-            LedgerCategory parentCategory = rootCategories.get(parentIndex);
-            List<LedgerCategory> subCategories = categories.stream()
-                    .filter(cat -> cat.getParent() != null && cat.getParent().getId() == parentCategory.getId())
-                    .toList();
-            if(childIndex < 0 || childIndex >= subCategories.size()) {
-                System.out.println("Invalid choice.");
-                return selectCategoryWithTree(categories);
-            }
-            return subCategories.get(childIndex);
-        } else {
-            //first-level category selected
-            int choice = Integer.parseInt(input);
-
-            if(choice < 1 || choice > rootCategories.size()) {
-                System.out.println("Invalid choice.");
-                return selectCategoryWithTree(categories);
+    //prints categories given in tree order (getCategoryTreeByLedger), each numbered after its parent: "1" is the
+    //first top-level category, "1.2" its second subcategory, "1.2.1" the first below that, and so on.
+    //A category whose parent is not in the list is numbered as a top-level one. Returns the categories by number
+    static Map<String, LedgerCategory> printNumberedTree(List<LedgerCategory> categories) {
+        Map<String, LedgerCategory> choices = new LinkedHashMap<>();
+        Map<Long, String> numbers = new HashMap<>();
+        Map<String, Integer> children = new HashMap<>();
+        for (LedgerCategory category : categories) {
+            String parentNumber = category.getParent() != null ? numbers.getOrDefault(category.getParent().getId(), "") : "";
+            int position = children.merge(parentNumber, 1, Integer::sum);
+            String number = parentNumber.isEmpty() ? String.valueOf(position) : parentNumber + "." + position;
+            numbers.put(category.getId(), number);
+            choices.put(number, category);
+            if (parentNumber.isEmpty()) {
+                System.out.println(number + ". " + "Name: " + category.getName());
+            } else {
+                System.out.println("   ".repeat(number.split("\\.").length - 1) + number + " " + category.getName());
             }
-            return rootCategories.get(choice - 1);
         }
+        return choices;
     }
 
     private LedgerCategory selectCategory(List<LedgerCategory> categories){
@@ -1,38 +1,49 @@
 package com.ledger.CLI;
 import java.util.Scanner;
+import java.util.function.Supplier;
 
 public class MainCLI {
-    private final UserCLI userCLI;
-    private final AccountCLI accountCLI;
-    private final LedgerCLI ledgerCLI;
-    private final TransactionCLI transactionCLI;
-    private final BudgetCLI budgetCLI;
-    private final LedgerCategoryCLI ledgerCategoryCLI;
+    private final Supplier<UserCLI> userCLI;
+    private final Supplier<AccountCLI> accountCLI;
+    private final Supplier<LedgerCLI> ledgerCLI;
+    private final Supplier<TransactionCLI> transactionCLI;
+    private final Supplier<BudgetCLI> budgetCLI;
+    private final Supplier<LedgerCategoryCLI> ledgerCategoryCLI;
+    private final Supplier<StatsCLI> statsCLI;
+    private final Supplier<RecurringCLI> recurringCLI;
     private final Scanner scanner = new Scanner(System.in);
     private boolean running = true;
 
-    public MainCLI(UserCLI userCLI, AccountCLI accountCLI, LedgerCLI ledgerCLI,
-                   TransactionCLI transactionCLI,
-                   BudgetCLI budgetCLI,
-                   LedgerCategoryCLI ledgerCategoryCLI) {
+    // each CLI (and the controllers and DAOs behind it) is only created when its menu is first opened
+    public MainCLI(Supplier<UserCLI> userCLI, Supplier<AccountCLI> accountCLI, Supplier<LedgerCLI> ledgerCLI,
+                   Supplier<TransactionCLI> transactionCLI,
+                   Supplier<BudgetCLI> budgetCLI,
+                   Supplier<LedgerCategoryCLI> ledgerCategoryCLI,
+                   Supplier<StatsCLI> statsCLI,
+                   Supplier<RecurringCLI> recurringCLI) {
         this.userCLI = userCLI;
         this.accountCLI =  accountCLI;
         this.ledgerCLI = ledgerCLI;
         this.transactionCLI = transactionCLI;
         this.budgetCLI = budgetCLI;
         this.ledgerCategoryCLI = ledgerCategoryCLI;
+        this.statsCLI = statsCLI;
+        this.recurringCLI = recurringCLI;
     }
 
     public void run() {
         System.out.println("=== Welcome to Personal Accounting System ===");
 
         // user not logged in, show welcome menu
-        while (running && !userCLI.isUserLoggedIn()) {
+        while (running && !userCLI.get().isUserLoggedIn()) {
             showWelcomeMenu();
         }
 
         //user logged in, show main menu
-        while (running && userCLI.isUserLoggedIn()) {
+        while (running && userCLI.get().isUserLoggedIn()) {
+            // due recurring transactions are booked here, on the one thread that uses the connection,
+            // instead of by a background timer
+            recurringCLI.get().generateDueTransactions();
             showMainMenu();
         }
 
@@ -51,10 +62,10 @@ public class MainCLI {
 
         switch (choice) {
             case "1":
-                userCLI.login();
+                userCLI.get().login();
                 break;
             case "2":
-                userCLI.register();
+                userCLI.get().register();
                 break;
             case "3":
                 running = false;
@@ -73,7 +84,8 @@ public class MainCLI {
         System.out.println("4. Budget Management");
         System.out.println("5. Category Management");
         System.out.println("6. User Profile");
-        System.out.println("7. Logout");
+        System.out.println("7. Statistics");
+        System.out.println("8. Logout");
         System.out.print("Choose an option: ");
 
         String choice = scanner.nextLine().trim();
@@ -104,12 +116,16 @@ public class MainCLI {
                 showUserMenu();
                 break;
             case "7":
+                // statistics menu
+                showStatsMenu();
+                break;
+            case "8":
                 // logout
-                userCLI.logout();
+                userCLI.get().logout();
                 showWelcomeMenu();
                 break;
             default:
-                System.out.println("Invalid option! Please choose 1-7.");
+                System.out.println("Invalid option! Please choose 1-8.");
                 showMainMenu();
         }
     }
@@ -121,33 +137,37 @@ public class MainCLI {
         System.out.println("3. Edit Account");
         System.out.println("4. Delete Account");
         System.out.println("5. Show Account's Summary");
-        System.out.println("6. Back to Main Menu");
+        System.out.println("6. Show Account Statement");
+        System.out.println("7. Back to Main Menu");
         System.out.print("Choose an option: ");
 
         String choice = scanner.nextLine().trim();
 
         switch (choice) {
             case "1":
-                accountCLI.createAccount();
+                accountCLI.get().createAccount();
                 break;
             case "2":
-                accountCLI.showAllAccounts();
+                accountCLI.get().showAllAccounts();
                 break;
             case "3":
-                accountCLI.updateAccount();
+                accountCLI.get().updateAccount();
                 break;
             case "4":
-                accountCLI.deleteAccount();
+                accountCLI.get().deleteAccount();
                 break;
             case "5":
-                accountCLI.viewAccountSummary();
+                accountCLI.get().viewAccountSummary();
                 break;
             case "6":
+                accountCLI.get().viewAccountStatement();
+                break;
+            case "7":
                 // go back to main menu
                 showMainMenu();
                 break;
             default:
-                System.out.println("Invalid option! Please choose 1-6.");
+                System.out.println("Invalid option! Please choose 1-7.");
                 showAccountMenu();
         }
     }
@@ -160,36 +180,40 @@ public class MainCLI {
         System.out.println("4. Show Ledger's Summary");
         System.out.println("5. Delete Ledger");
         System.out.println("6. Add Transaction");
-        System.out.println("7. Back to Main Menu");
+        System.out.println("7. Category by Month Report");
+        System.out.println("8. Back to Main Menu");
         System.out.print("Choose an option: ");
 
         String choice = scanner.nextLine().trim();
 
         switch (choice) {
             case "1":
-                ledgerCLI.createLedger();
+                ledgerCLI.get().createLedger();
                 break;
             case "2":
-                ledgerCLI.viewLedgers();
+                ledgerCLI.get().viewLedgers();
                 break;
             case "3":
-                ledgerCLI.renameLedger();
+                ledgerCLI.get().renameLedger();
                 break;
             case "4":
-                ledgerCLI.viewLedgerSummary();
+                ledgerCLI.get().viewLedgerSummary();
                 break;
             case "5":
-                ledgerCLI.deleteLedger();
+                ledgerCLI.get().deleteLedger();
                 break;
             case "6":
-                transactionCLI.addTransaction();
+                transactionCLI.get().addTransaction();
                 break;
             case "7":
+                ledgerCLI.get().viewCategoryMonthReport();
+                break;
+            case "8":
                 // go back to main menu
                 showMainMenu();
                 break;
             default:
-                System.out.println("Invalid option! Please choose 1-7.");
+                System.out.println("Invalid option! Please choose 1-8.");
                 showLedgerMenu();
         }
     }
@@ -210,25 +234,25 @@ public class MainCLI {
 
         switch (choice) {
             case "1":
-                ledgerCategoryCLI.createCategory();
+                ledgerCategoryCLI.get().createCategory();
                 break;
             case "2":
-                ledgerCategoryCLI.renameCategory();
+                ledgerCategoryCLI.get().renameCategory();
                 break;
             case "3":
-                ledgerCategoryCLI.promoteSubCategory();
+                ledgerCategoryCLI.get().promoteSubCategory();
                 break;
             case "4":
-                ledgerCategoryCLI.demoteCategory();
+                ledgerCategoryCLI.get().demoteCategory();
                 break;
             case "5":
-                ledgerCategoryCLI.changeParent();
+                ledgerCategoryCLI.get().changeParent();
                 break;
             case "6":
-                ledgerCategoryCLI.deleteCategory();
+                ledgerCategoryCLI.get().deleteCategory();
                 break;
             case "7":
-                ledgerCategoryCLI.showCategoryTree();
+                ledgerCategoryCLI.get().showCategoryTree();
                 break;
             case "8":
                 // go back to main menu
@@ -245,27 +269,47 @@ public class MainCLI {
         System.out.println("1. Add Transaction");
         System.out.println("2. Delete Transaction");
         System.out.println("3. Edit Transaction");
-        System.out.println("4. Back to Main Menu");
+        System.out.println("4. Search Transactions");
+        System.out.println("5. Add Recurring Transaction");
+        System.out.println("6. View Recurring Transactions");
+        System.out.println("7. Delete Recurring Transaction");
+        System.out.println("8. Bulk Edit Transactions");
+        System.out.println("9. Back to Main Menu");
         System.out.print("Choose an option: ");
 
         String choice = scanner.nextLine().trim();
 
         switch (choice) {
             case "1":
-                transactionCLI.addTransaction();
+                transactionCLI.get().addTransaction();
                 break;
             case "2":
-                transactionCLI.deleteTransaction();
+                transactionCLI.get().deleteTransaction();
                 break;
             case "3":
-                transactionCLI.editTransaction();
+                transactionCLI.get().editTransaction();
                 break;
             case "4":
+                transactionCLI.get().searchTransactions();
+                break;
+            case "5":
+                recurringCLI.get().addRecurringRule();
+                break;
+            case "6":
+                recurringCLI.get().showRecurringRules();
+                break;
+            case "7":
+                recurringCLI.get().deleteRecurringRule();
+                break;
+            case "8":
+                transactionCLI.get().bulkEditTransactions();
+                break;
+            case "9":
                 // go back to main menu
                 showMainMenu();
                 break;
             default:
-                System.out.println("Invalid option! Please choose 1-4.");
+                System.out.println("Invalid option! Please choose 1-9.");
                 showTransactionMenu();
         }
     }
@@ -275,30 +319,34 @@ public class MainCLI {
         System.out.println("1. View Profile");
         System.out.println("2. Change Password");
         System.out.println("3. Change Username");
-        System.out.println("4. Back to Main Menu");
+        System.out.println("4. Net Worth History");
+        System.out.println("5. Back to Main Menu");
         System.out.print("Choose an option: ");
 
         String choice = scanner.nextLine().trim();
 
         switch (choice) {
             case "1":
-                userCLI.showCurrentUser();
+                userCLI.get().showCurrentUser();
                 break;
             case "2":
                 // change password
-                userCLI.changePassword();
+                userCLI.get().changePassword();
                 //return;
                 break;
             case "3":
                 // change username
-                userCLI.changeUsername();
+                userCLI.get().changeUsername();
                 //return;
                 break;
             case "4":
+                userCLI.get().showNetWorthHistory();
+                break;
+            case "5":
                 // go back to main menu
                 return;
             default:
-                System.out.println("Invalid option! Please choose 1-3.");
+                System.out.println("Invalid option! Please choose 1-5.");
                 showUserMenu();
         }
     }
@@ -308,6 +356,40 @@ public class MainCLI {
         System.out.println("1. View all Budgets");
         System.out.println("2. Edit Budget");
         System.out.println("3. Merge Budget");
+        System.out.println("4. Budget Forecast");
+        System.out.println("5. Back to Main Menu");
+        System.out.print("Choose an option: ");
+
+        String choice = scanner.nextLine().trim();
+
+        switch (choice) {
+            case "1":
+                budgetCLI.get().showAllBudgets();
+                break;
+            case "2":
+                budgetCLI.get().editBudget();
+                break;
+            case "3":
+                budgetCLI.get().mergeBudgets();
+                break;
+            case "4":
+                budgetCLI.get().showBudgetForecast();
+                break;
+            case "5":
+                // go back to main menu
+                showMainMenu();
+                break;
+            default:
+                System.out.println("Invalid option! Please choose 1-5.");
+                showBudgetMenu();
+        }
+    }
+
+    private void showStatsMenu() {
+        System.out.println("\n=== Statistics ===");
+        System.out.println("1. Show Statistics");
+        System.out.println("2. Dump Statistics to File");
+        System.out.println("3. Reset Statistics");
         System.out.println("4. Back to Main Menu");
         System.out.print("Choose an option: ");
 
@@ -315,13 +397,13 @@ public class MainCLI {
 
         switch (choice) {
             case "1":
-                budgetCLI.showAllBudgets();
+                statsCLI.get().showStats();
                 break;
             case "2":
-                budgetCLI.editBudget();
+                statsCLI.get().dumpStats();
                 break;
             case "3":
-                budgetCLI.mergeBudgets();
+                statsCLI.get().resetStats();
                 break;
             case "4":
                 // go back to main menu
@@ -329,7 +411,7 @@ public class MainCLI {
                 break;
             default:
                 System.out.println("Invalid option! Please choose 1-4.");
-                showBudgetMenu();
+                showStatsMenu();
         }
     }
 
@@ -0,0 +1,242 @@
+package com.ledger.CLI;
+
+import com.ledger.BusinessLogic.*;
+import com.ledger.DomainModel.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Scanner;
+
+public class RecurringCLI {
+    private final RecurringController recurringController;
+    private final UserController userController;
+    private final AccountController accountController;
+    private final LedgerController ledgerController;
+    private final LedgerCategoryController ledgerCategoryController;
+    private final Scanner scanner = new Scanner(System.in);
+
+    public RecurringCLI(RecurringController recurringController, UserController userController,
+                        AccountController accountController, LedgerController ledgerController,
+                        LedgerCategoryController ledgerCategoryController) {
+        this.recurringController = recurringController;
+        this.userController = userController;
+        this.accountController = accountController;
+        this.ledgerController = ledgerController;
+        this.ledgerCategoryController = ledgerCategoryController;
+    }
+
+    //books the occurrences that came due since the last run, at most once a day
+    public void generateDueTransactions() {
+        int created = recurringController.generateIfNotRunToday(LocalDate.now());
+        if (created > 0) {
+            System.out.println("\n" + created + " recurring transaction(s) added.");
+        } else if (created < 0) {
+            System.out.println("\nFailed to add recurring transactions, will retry later.");
+        }
+    }
+
+    public void addRecurringRule() {
+        System.out.println("\n === Add Recurring Transaction ===");
+
+        System.out.println("Select a ledger:");
+        Ledger ledger = selectLedger(userController.getCurrentUser());
+        if (ledger == null) return;
+
+        System.out.println("Select transaction type:");
+        System.out.println("1. Income");
+        System.out.println("2. Expense");
+        System.out.println("3. Transfer");
+        System.out.print("Enter your choice (1-3): ");
+        TransactionType type;
+        switch (scanner.nextLine().trim()) {
+            case "1" -> type = TransactionType.INCOME;
+            case "2" -> type = TransactionType.EXPENSE;
+            case "3" -> type = TransactionType.TRANSFER;
+            default -> {
+                System.out.println("Invalid choice.");
+                return;
+            }
+        }
+
+        Account fromAccount = null;
+        Account toAccount = null;
+        LedgerCategory category = null;
+        if (type != TransactionType.INCOME) {
+            System.out.println("\nSelect the FROM account:");
+            fromAccount = selectAccount(type == TransactionType.TRANSFER);
+        }
+        if (type != TransactionType.EXPENSE) {
+            System.out.println("\nSelect the TO account:");
+            toAccount = selectAccount(type == TransactionType.TRANSFER);
+        }
+        if (type != TransactionType.TRANSFER) {
+            System.out.println("\nSelect a category:");
+            category = selectCategory(ledger, type == TransactionType.INCOME ? CategoryType.INCOME : CategoryType.EXPENSE);
+        }
+
+        System.out.print("Enter a note (optional): ");
+        String note = scanner.nextLine().trim();
+
+        System.out.print("Enter the amount: ");
+        BigDecimal amount = new BigDecimal(scanner.nextLine().trim());
+
+        System.out.println("Select frequency:");
+        Frequency[] frequencies = Frequency.values();
+        for (int i = 0; i < frequencies.length; i++) {
+            System.out.println((i + 1) + ". " + frequencies[i]);
+        }
+        System.out.print("Enter your choice: ");
+        int choice = Integer.parseInt(scanner.nextLine().trim());
+        if (choice < 1 || choice > frequencies.length) {
+            System.out.println("Invalid choice.");
+            return;
+        }
+        Frequency frequency = frequencies[choice - 1];
+
+        System.out.print("Repeat every how many periods (default 1): ");
+        String input = scanner.nextLine().trim();
+        int interval = input.isEmpty() ? 1 : Integer.parseInt(input);
+
+        System.out.print("Enter the start date (YYYY-MM-DD, empty for today): ");
+        LocalDate startDate = inputOptionalDate();
+        System.out.print("Enter the end date (YYYY-MM-DD, empty for none): ");
+        LocalDate endDate = inputOptionalDate();
+        System.out.print("Enter the maximum number of occurrences (empty for no limit): ");
+        input = scanner.nextLine().trim();
+        Integer maxOccurrences = input.isEmpty() ? null : Integer.parseInt(input);
+
+        RecurringRule rule = recurringController.createRule(type, ledger, fromAccount, toAccount, category, amount,
+                note.isEmpty() ? null : note, frequency, interval, startDate, endDate, maxOccurrences);
+        if (rule == null) {
+            System.out.println("Failed to create recurring transaction.");
+            return;
+        }
+        System.out.println("Recurring transaction created: " + formatRule(rule));
+
+        //occurrences already due (a start date in the past) are booked right away
+        int created = recurringController.generateDueOccurrences(LocalDate.now());
+        if (created > 0) {
+            System.out.println(created + " recurring transaction(s) added.");
+        }
+    }
+
+    public void showRecurringRules() {
+        System.out.println("\n === Recurring Transactions ===");
+        Ledger ledger = selectLedger(userController.getCurrentUser());
+        if (ledger == null) return;
+        List<RecurringRule> rules = recurringController.getRulesByLedger(ledger);
+        if (rules.isEmpty()) {
+            System.out.println("No recurring transactions in the selected ledger.");
+            return;
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            System.out.println((i + 1) + ". " + formatRule(rules.get(i)));
+        }
+    }
+
+    public void deleteRecurringRule() {
+        System.out.println("\n === Delete Recurring Transaction ===");
+        Ledger ledger = selectLedger(userController.getCurrentUser());
+        if (ledger == null) return;
+        List<RecurringRule> rules = recurringController.getRulesByLedger(ledger);
+        if (rules.isEmpty()) {
+            System.out.println("No recurring transactions in the selected ledger.");
+            return;
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            System.out.println((i + 1) + ". " + formatRule(rules.get(i)));
+        }
+        System.out.print("Enter the number of the recurring transaction to delete: ");
+        int choice = Integer.parseInt(scanner.nextLine().trim());
+        if (choice < 1 || choice > rules.size()) {
+            System.out.println("Invalid choice.");
+            return;
+        }
+        if (!recurringController.deleteRule(rules.get(choice - 1))) {
+            System.out.println("Failed to delete recurring transaction.");
+            return;
+        }
+        System.out.println("Recurring transaction deleted. Transactions already added are kept.");
+    }
+
+    private String formatRule(RecurringRule rule) {
+        StringBuilder info = new StringBuilder();
+        info.append(rule.getType()).append(" ").append(rule.getAmount())
+                .append(", every ").append(rule.getInterval()).append(" ").append(rule.getFrequency());
+        if (rule.getFromAccount() != null) info.append(", From: ").append(rule.getFromAccount().getName());
+        if (rule.getToAccount() != null) info.append(", To: ").append(rule.getToAccount().getName());
+        if (rule.getCategory() != null) info.append(", Category: ").append(rule.getCategory().getName());
+        if (rule.getNote() != null) info.append(", Note: ").append(rule.getNote());
+        info.append(", Next: ").append(rule.getNextDate() != null ? rule.getNextDate() : "ended");
+        return info.toString();
+    }
+
+    private Ledger selectLedger(User user) {
+        List<Ledger> ledgers = ledgerController.getLedgersByUser(user);
+        if (ledgers.isEmpty()) {
+            System.out.println("No ledgers found for the user.");
+            return null;
+        }
+        for (int i = 0; i < ledgers.size(); i++) {
+            System.out.println((i + 1) + ". " + "Name: " + ledgers.get(i).getName());
+        }
+        System.out.print("Enter the number of the ledger: ");
+        int choice = Integer.parseInt(scanner.nextLine().trim());
+        if (choice < 1 || choice > ledgers.size()) {
+            System.out.println("Invalid choice.");
+            return selectLedger(user);
+        }
+        return ledgers.get(choice - 1);
+    }
+
+    private Account selectAccount(boolean allowExternal) {
+        List<Account> accounts = accountController.getSelectableAccounts(userController.getCurrentUser());
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            System.out.println((i + 1) + ". " + "Name: " + account.getName() + ", Balance: " + account.getBalance());
+        }
+        if (allowExternal) System.out.println("0. External");
+        System.out.print("Enter the number of the account: ");
+        int choice = Integer.parseInt(scanner.nextLine().trim());
+        if (choice == 0 && allowExternal) return null;
+        if (choice < 1 || choice > accounts.size()) {
+            System.out.println("Invalid choice.");
+            return selectAccount(allowExternal);
+        }
+        return accounts.get(choice - 1);
+    }
+
+    private LedgerCategory selectCategory(Ledger ledger, CategoryType type) {
+        List<LedgerCategory> categories = ledgerCategoryController.getCategoryTreeByLedger(ledger).stream()
+                .filter(category -> category.getType() == type)
+                .toList();
+        if (categories.isEmpty()) {
+            System.out.println("No categories found for the selected type.");
+            return null;
+        }
+        for (int i = 0; i < categories.size(); i++) {
+            LedgerCategory category = categories.get(i);
+            System.out.println((i + 1) + ". " + "   ".repeat(category.getDepth()) + category.getName());
+        }
+        System.out.print("Enter the number of the category: ");
+        int choice = Integer.parseInt(scanner.nextLine().trim());
+        if (choice < 1 || choice > categories.size()) {
+            System.out.println("Invalid choice.");
+            return selectCategory(ledger, type);
+        }
+        return categories.get(choice - 1);
+    }
+
+    private LocalDate inputOptionalDate() {
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            return null;
+        }
+        if (!input.matches("\\d{4}-\\d{2}-\\d{2}")) {
+            System.out.print("Invalid date format, try again: ");
+            return inputOptionalDate();
+        }
+        return LocalDate.parse(input);
+    }
+}
@@ -0,0 +1,57 @@
+package com.ledger.CLI;
+
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Pooling.StatementCache;
+import com.ledger.Routing.RoutingDataSource;
+import com.ledger.Tracing.SqlTracer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Scanner;
+
+public class StatsCLI {
+    private final MetricsRegistry metricsRegistry;
+    private final SqlTracer sqlTracer;
+    private final StatementCache statementCache;
+    private final RoutingDataSource dataSource;
+    private final Scanner scanner = new Scanner(System.in);
+
+    public StatsCLI(MetricsRegistry metricsRegistry, SqlTracer sqlTracer, StatementCache statementCache,
+                    RoutingDataSource dataSource) {
+        this.metricsRegistry = metricsRegistry;
+        this.sqlTracer = sqlTracer;
+        this.statementCache = statementCache;
+        this.dataSource = dataSource;
+    }
+
+    public void showStats() {
+        System.out.println("\n=== Statistics ===");
+        System.out.print(metricsRegistry.dump());
+        System.out.print(sqlTracer.dump());
+        System.out.print(statementCache.dump());
+        System.out.print(dataSource.dump());
+    }
+
+    public void dumpStats() {
+        System.out.println("\n=== Dump Statistics ===");
+        System.out.print("Enter file path (press Enter for ledger-stats.txt): ");
+        String input = scanner.nextLine().trim();
+        Path path = Paths.get(input.isEmpty() ? "ledger-stats.txt" : input);
+        try {
+            Files.writeString(path, metricsRegistry.dump() + sqlTracer.dump() + statementCache.dump() + dataSource.dump());
+            System.out.println("Statistics written to " + path.toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("Failed to write statistics: " + e.getMessage());
+        }
+    }
+
+    public void resetStats() {
+        metricsRegistry.reset();
+        sqlTracer.reset();
+        statementCache.reset();
+        dataSource.reset();
+        System.out.println("Statistics reset.");
+    }
+}
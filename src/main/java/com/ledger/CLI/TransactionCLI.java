@@ -2,10 +2,12 @@ package com.ledger.CLI;
 
 import com.ledger.BusinessLogic.*;
 import com.ledger.DomainModel.*;
+import com.ledger.ORM.TransactionQuery;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class TransactionCLI {
@@ -14,6 +16,7 @@ public class TransactionCLI {
     private final AccountController accountController;
     private final LedgerController ledgerController;
     private final LedgerCategoryController ledgerCategoryController;
+    private static final int SEARCH_PAGE_SIZE = 20;
     private final Scanner scanner = new Scanner(System.in);
 
     public TransactionCLI(TransactionController transactionController,
@@ -225,18 +228,23 @@ public class TransactionCLI {
             return;
         }
 
-        List<Transaction> transactions = transactionController.getTransactionsByLedgerInRangeDate(
-                selectedLedger, LocalDate.MIN, LocalDate.MAX);
+        List<TransactionRow> transactions = transactionController.getTransactionRowsByLedger(
+                selectedLedger, null, null);
         if(transactions.isEmpty()){
             System.out.println("No transactions found in the selected ledger.");
             return;
         }
         System.out.println("Select a transaction to delete:");
-        Transaction selectedTransaction = selectTransaction(transactions);
-        if(selectedTransaction==null){
+        TransactionRow selectedRow = selectTransaction(transactions);
+        if(selectedRow==null){
             System.out.println("No transaction selected. Returning to main menu.");
             return;
         }
+        Transaction selectedTransaction = transactionController.getTransactionById(selectedRow.id());
+        if(selectedTransaction==null){
+            System.out.println("Transaction no longer exists.");
+            return;
+        }
 
         boolean deleted = transactionController.deleteTransaction(selectedTransaction);
         if(!deleted){
@@ -247,6 +255,154 @@ public class TransactionCLI {
 
     }
 
+    public void searchTransactions(){
+        System.out.println("\n === Search Transactions ===");
+
+        System.out.print("Enter words to search in notes: ");
+        String text = scanner.nextLine().trim();
+        if(text.isEmpty()){
+            System.out.println("Nothing to search.");
+            return;
+        }
+        TransactionSearch search = TransactionSearch.of(text);
+
+        System.out.print("Also match similar words (typos)? (y/n): ");
+        search = search.withFuzzy(scanner.nextLine().trim().equalsIgnoreCase("y"));
+
+        System.out.print("Search all ledgers? (y/n): ");
+        if(!scanner.nextLine().trim().equalsIgnoreCase("y")){
+            System.out.println("Select a ledger:");
+            Ledger selectedLedger = selectLedger(userController.getCurrentUser());
+            if(selectedLedger==null){
+                return;
+            }
+            search = search.inLedger(selectedLedger);
+        }
+
+        System.out.print("Enter start date (YYYY-MM-DD, press Enter for no limit): ");
+        LocalDate startDate = inputOptionalDate();
+        System.out.print("Enter end date (YYYY-MM-DD, press Enter for no limit): ");
+        LocalDate endDate = inputOptionalDate();
+        search = search.between(startDate, endDate);
+
+        System.out.print("Enter minimum amount (press Enter for no limit): ");
+        BigDecimal minAmount = inputOptionalAmount();
+        System.out.print("Enter maximum amount (press Enter for no limit): ");
+        BigDecimal maxAmount = inputOptionalAmount();
+        search = search.amountBetween(minAmount, maxAmount);
+
+        TransactionRow last = null;
+        int shown = 0;
+        while (true) {
+            List<TransactionRow> page = transactionController.searchTransactions(search, last, SEARCH_PAGE_SIZE);
+            for (TransactionRow row : page) {
+                System.out.println((++shown) + ". " + formatRow(row));
+            }
+            if (page.size() < SEARCH_PAGE_SIZE) {
+                break;
+            }
+            System.out.print("Press Enter for more results, or q to stop: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                return;
+            }
+            last = page.get(page.size() - 1);
+        }
+        System.out.println(shown == 0 ? "No transactions found." : "End of results.");
+    }
+
+    public void bulkEditTransactions(){
+        System.out.println("\n === Bulk Edit Transactions ===");
+
+        System.out.println("Select a ledger:");
+        Ledger selectedLedger = selectLedger(userController.getCurrentUser());
+        if(selectedLedger==null){
+            return;
+        }
+        TransactionQuery query = TransactionQuery.create().ledger(selectedLedger);
+
+        System.out.print("Filter by an expense category? (y/n): ");
+        if(scanner.nextLine().trim().equalsIgnoreCase("y")){
+            LedgerCategory category = selectCategory(selectedLedger, CategoryType.EXPENSE);
+            if(category==null){
+                return;
+            }
+            query.category(category).includeSubcategories();
+        }
+        System.out.print("Enter start date (YYYY-MM-DD, press Enter for no limit): ");
+        LocalDate startDate = inputOptionalDate();
+        System.out.print("Enter end date (YYYY-MM-DD, press Enter for no limit): ");
+        LocalDate endDate = inputOptionalDate();
+        query.between(startDate, endDate);
+        System.out.print("Enter words the note must contain (press Enter for any note): ");
+        String text = scanner.nextLine().trim();
+        if(!text.isEmpty()){
+            query.noteContains(text);
+        }
+
+        List<TransactionRow> matching = transactionController.findTransactionRows(query);
+        if(matching.isEmpty()){
+            System.out.println("No transactions match.");
+            return;
+        }
+        System.out.println(matching.size() + " transaction(s) match.");
+
+        System.out.println("1. Change category");
+        System.out.println("2. Move to another ledger");
+        System.out.println("3. Replace an account");
+        System.out.println("4. Delete");
+        System.out.print("Choose an option: ");
+        BulkResult result;
+        switch (scanner.nextLine().trim()) {
+            case "1": {
+                System.out.println("Select the new category:");
+                LedgerCategory category = selectCategory(selectedLedger, CategoryType.EXPENSE);
+                if(category==null){
+                    return;
+                }
+                result = transactionController.bulkRecategorize(query, category);
+                break;
+            }
+            case "2": {
+                System.out.println("Select the target ledger:");
+                Ledger target = selectLedger(userController.getCurrentUser());
+                if(target==null){
+                    return;
+                }
+                result = transactionController.bulkMoveToLedger(query, target);
+                break;
+            }
+            case "3": {
+                System.out.println("Select the account to replace:");
+                Account oldAccount = selectAccount();
+                if(oldAccount==null){
+                    return;
+                }
+                System.out.println("Select the new account:");
+                Account newAccount = selectAccount();
+                if(newAccount==null){
+                    return;
+                }
+                result = transactionController.bulkReassignAccount(query, oldAccount, newAccount);
+                break;
+            }
+            case "4":
+                System.out.print("Delete " + matching.size() + " transaction(s)? (y/n): ");
+                if(!scanner.nextLine().trim().equalsIgnoreCase("y")){
+                    return;
+                }
+                result = transactionController.bulkDelete(query);
+                break;
+            default:
+                System.out.println("Invalid option.");
+                return;
+        }
+        if(result==null){
+            System.out.println("Bulk edit failed, nothing was changed.");
+            return;
+        }
+        System.out.println(result.transactions() + " transaction(s) changed, " + result.accounts() + " account balance(s) updated.");
+    }
+
     public void editTransaction(){
         System.out.println("\n === Edit Transaction ===");
 
@@ -258,19 +414,24 @@ public class TransactionCLI {
             return;
         }
 
-        List<Transaction> transactions = transactionController.getTransactionsByLedgerInRangeDate(
-                selectedLedger, LocalDate.MIN, LocalDate.MAX);
+        List<TransactionRow> transactions = transactionController.getTransactionRowsByLedger(
+                selectedLedger, null, null);
         if(transactions.isEmpty()){
             System.out.println("No transactions found in the selected ledger.");
             return;
         }
 
         System.out.println("Select a transaction to edit:");
-        Transaction selectedTransaction = selectTransaction(transactions);
-        if(selectedTransaction==null){
+        TransactionRow selectedRow = selectTransaction(transactions);
+        if(selectedRow==null){
             System.out.println("No transaction selected. Returning to main menu.");
             return;
         }
+        Transaction selectedTransaction = transactionController.getTransactionById(selectedRow.id());
+        if(selectedTransaction==null){
+            System.out.println("Transaction no longer exists.");
+            return;
+        }
 
         //edit note
         System.out.println("Current note: " + (selectedTransaction.getNote() != null ? selectedTransaction.getNote() : "No note"));
@@ -481,42 +642,9 @@ public class TransactionCLI {
 
         return info.toString();
     }
-    private Transaction selectTransaction(List<Transaction> transactions){
+    private TransactionRow selectTransaction(List<TransactionRow> transactions){
         for(int i=0; i<transactions.size(); i++){
-            Transaction tx = transactions.get(i);
-            StringBuilder info = new StringBuilder();
-
-            info.append(String.format("%d. Amount: %s, Date: %s",
-                    (i + 1),
-                    tx.getType() == TransactionType.EXPENSE
-                            ? tx.getAmount().negate()
-                            : tx.getAmount(),
-                    tx.getDate()));
-
-            if (tx.getCategory() != null) {
-                info.append(", Category: ").append(tx.getCategory().getName());
-            }
-
-            if (tx.getType().toString().equals("TRANSFER")) {
-                if (tx.getFromAccount() != null) {
-                    info.append(", FROM: ").append(tx.getFromAccount().getName());
-                }
-                if (tx.getToAccount() != null) {
-                    info.append(", TO: ").append(tx.getToAccount().getName());
-                }
-            } else {
-                if (tx.getFromAccount() != null) {
-                    info.append(", From: ").append(tx.getFromAccount().getName());
-                } else if (tx.getToAccount() != null) {
-                    info.append(", To: ").append(tx.getToAccount().getName());
-                }
-            }
-
-            if (tx.getNote() != null && !tx.getNote().isEmpty()) {
-                info.append(", Note: ").append(tx.getNote());
-            }
-
-            System.out.println(info);
+            System.out.println((i + 1) + ". " + formatRow(transactions.get(i)));
         }
 
         System.out.println("0. Cancel");
@@ -533,6 +661,40 @@ public class TransactionCLI {
         return transactions.get(choice - 1);
     }
 
+    private String formatRow(TransactionRow tx){
+        StringBuilder info = new StringBuilder();
+
+        info.append(String.format("Amount: %s, Date: %s",
+                tx.type() == TransactionType.EXPENSE
+                        ? tx.amount().negate()
+                        : tx.amount(),
+                tx.date()));
+
+        if (tx.categoryName() != null) {
+            info.append(", Category: ").append(tx.categoryName());
+        }
+
+        if (tx.type() == TransactionType.TRANSFER) {
+            if (tx.fromAccountName() != null) {
+                info.append(", FROM: ").append(tx.fromAccountName());
+            }
+            if (tx.toAccountName() != null) {
+                info.append(", TO: ").append(tx.toAccountName());
+            }
+        } else {
+            if (tx.fromAccountName() != null) {
+                info.append(", From: ").append(tx.fromAccountName());
+            } else if (tx.toAccountName() != null) {
+                info.append(", To: ").append(tx.toAccountName());
+            }
+        }
+
+        if (tx.note() != null && !tx.note().isEmpty()) {
+            info.append(", Note: ").append(tx.note());
+        }
+        return info.toString();
+    }
+
     private Ledger selectLedger(User user) {
         List<Ledger> ledgers = ledgerController.getLedgersByUser(user);
 
@@ -600,62 +762,20 @@ public class TransactionCLI {
             return null;
         }
 
-        //get only parent categories
-        List<LedgerCategory> parentCategories = filteredCategories.stream()
-                .filter(category -> category.getParent() == null)
+        //the whole tree, at any depth
+        List<LedgerCategory> selectable = filteredCategories.stream()
                 .filter(category -> !category.getName().equals("Claim Income")) //exclude "Claim Income" category
                 .toList();
-
-        for (int i = 0; i < parentCategories.size(); i++) {
-            //display parent category
-            LedgerCategory parent = parentCategories.get(i);
-            System.out.println( (i + 1) + ". "+ "Name: " + parent.getName());
-
-            //display sub-categories
-            List<LedgerCategory> subCategories = filteredCategories.stream()
-                    .filter(category -> category.getParent() != null && category.getParent().getId() == parent.getId())
-                    .toList();
-            if (!subCategories.isEmpty()) {
-                for (int j = 0; j < subCategories.size(); j++) {
-                    LedgerCategory child = subCategories.get(j);
-                    System.out.println("   " + (i + 1) + "." + (j + 1) + " " + child.getName());
-                }
-            }
-        }
+        Map<String, LedgerCategory> choices = LedgerCategoryCLI.printNumberedTree(selectable);
 
         System.out.print("Enter the number of the category: ");
         String input = scanner.nextLine().trim();
-        if (input.contains(".")) {
-            // select subcategory
-            String[] parts = input.split("\\.");
-            int parentIndex = Integer.parseInt(parts[0]) - 1;
-            int childIndex = Integer.parseInt(parts[1]) - 1;
-
-            if (parentIndex < 0 || parentIndex >= parentCategories.size()) {
-                System.out.println("Invalid parent choice!");
-                return selectCategory(ledger, type);
-            }
-
-            LedgerCategory parentCategory = parentCategories.get(parentIndex);
-            List<LedgerCategory> subCategories = filteredCategories.stream()
-                    .filter(category -> category.getParent() != null && category.getParent().getId() == parentCategory.getId())
-                    .toList();
-            if (childIndex < 0 || childIndex >= subCategories.size()) {
-                System.out.println("Invalid subcategory choice!");
-                return selectCategory(ledger, type);
-            }
-
-            return subCategories.get(childIndex);
-        } else {
-            //select parent category
-            int parentIndex = Integer.parseInt(input) - 1;
-
-            if (parentIndex < 0 || parentIndex >= parentCategories.size()) {
-                System.out.println("Invalid choice!");
-                return selectCategory(ledger, type);
-            }
-            return parentCategories.get(parentIndex);
+        LedgerCategory selected = choices.get(input);
+        if (selected == null) {
+            System.out.println("Invalid choice!");
+            return selectCategory(ledger, type);
         }
+        return selected;
     }
 
     private String inputNote(){
@@ -686,4 +806,27 @@ public class TransactionCLI {
 
         return LocalDate.parse(input);
     }
+    private LocalDate inputOptionalDate(){
+        String input = scanner.nextLine().trim();
+        if(input.isEmpty()) {
+            return null;
+        }
+        if(!input.matches("\\d{4}-\\d{2}-\\d{2}")) {
+            System.out.print("Invalid date format, try again: ");
+            return inputOptionalDate();
+        }
+        return LocalDate.parse(input);
+    }
+    private BigDecimal inputOptionalAmount(){
+        String input = scanner.nextLine().trim();
+        if(input.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(input);
+        } catch (NumberFormatException e) {
+            System.out.print("Invalid amount, try again: ");
+            return inputOptionalAmount();
+        }
+    }
 }
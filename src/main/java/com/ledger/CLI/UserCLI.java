@@ -2,9 +2,13 @@ package com.ledger.CLI;
 
 import com.ledger.BusinessLogic.ReportController;
 import com.ledger.BusinessLogic.UserController;
+import com.ledger.DomainModel.NetWorthPoint;
 import com.ledger.DomainModel.User;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Scanner;
 
 public class UserCLI {
@@ -67,6 +71,35 @@ public class UserCLI {
         System.out.print(" | Total Worth: " + totalAssets);
     }
 
+    public void showNetWorthHistory() {
+        System.out.println("\n=== Net Worth History ===");
+        System.out.print("Months to show (default 12): ");
+        String input = scanner.nextLine().trim();
+        int months;
+        try {
+            months = input.isEmpty() ? 12 : Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number.");
+            return;
+        }
+        if (months <= 0) {
+            System.out.println("Invalid number.");
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        List<NetWorthPoint> history = reportController.getNetWorthHistory(userController.getCurrentUser(),
+                today.minusMonths(months), today, ChronoUnit.MONTHS);
+        if (history == null) {
+            System.out.println("Failed to load net worth history.");
+            return;
+        }
+        //one point per month with a change, the value holds until the next one
+        for (NetWorthPoint point : history) {
+            System.out.printf("%-12s %15s%n", point.date(), point.netWorth());
+        }
+    }
+
 
     public void changePassword() {
         System.out.println("\n=== Change Password ===");
@@ -1,11 +1,20 @@
 package com.ledger.DbTransaction;
 
+import com.ledger.Metrics.DbTransactionEvent;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationContext;
+import com.ledger.Metrics.OperationMetrics;
 import com.ledger.ORM.ConnectionManager;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 
 public final class DbTransactionManager {
+    private static final OperationMetrics COMMIT = MetricsRegistry.getInstance()
+            .operation("DbTransactionManager.commit", OperationMetrics.Kind.DB_TRANSACTION);
+    private static final OperationMetrics ROLLBACK = MetricsRegistry.getInstance()
+            .operation("DbTransactionManager.rollback", OperationMetrics.Kind.DB_TRANSACTION);
+
     private static DbTransactionManager instance;
     private DbTransactionManager() {
     }
@@ -18,10 +27,15 @@ public final class DbTransactionManager {
 
     public <T> T execute(DbTransactionAction<T> action) {
         Connection connection = ConnectionManager.getInstance().getConnection();
+        long start = COMMIT.begin(); //whole transaction: action plus commit or rollback
+        DbTransactionEvent event = new DbTransactionEvent();
+        event.begin();
         try {
             connection.setAutoCommit(false);
             T result = action.execute();
             connection.commit();
+            COMMIT.end(start);
+            commitEvent(event, "COMMIT", null);
             return result;
         } catch (Exception e) {
             try {
@@ -31,6 +45,8 @@ public final class DbTransactionManager {
             } catch (SQLException rollbackEx) {
                 System.err.println("Critical Error: Rollback failed! " + rollbackEx.getMessage());
             }
+            ROLLBACK.end(start);
+            commitEvent(event, "ROLLBACK", e.getMessage());
             System.err.println("Transaction Database rolled back due to: " + e.getMessage());
             return null;
         } finally {
@@ -43,4 +59,14 @@ public final class DbTransactionManager {
             }
         }
     }
+
+    private static void commitEvent(DbTransactionEvent event, String outcome, String error) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = outcome;
+            event.operation = OperationContext.current();
+            event.error = error;
+            event.commit();
+        }
+    }
 }
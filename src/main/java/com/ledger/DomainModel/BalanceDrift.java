@@ -0,0 +1,10 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+
+// an account whose stored balance is not its opening balance plus the net of its transactions
+public record BalanceDrift(long accountId, String accountName, BigDecimal stored, BigDecimal expected) {
+    public BigDecimal difference() {
+        return stored.subtract(expected);
+    }
+}
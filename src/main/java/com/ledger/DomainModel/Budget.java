@@ -13,6 +13,7 @@ public class Budget {
     private LocalDate startDate;
     private LocalDate endDate;
     private Ledger ledger;
+    private BigDecimal spent = BigDecimal.ZERO; //in the current period, kept by the database
 
     public Budget(){}
     public Budget(BigDecimal amount, Period period, LedgerCategory category, Ledger ledger) {
@@ -78,6 +79,12 @@ public class Budget {
     public LocalDate getEndDate() {
         return endDate;
     }
+    public BigDecimal getSpent() {
+        return spent;
+    }
+    public void setSpent(BigDecimal spent) {
+        this.spent = spent;
+    }
 
     public void refreshIfExpired() {
         LocalDate today = LocalDate.now();
@@ -0,0 +1,8 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// a budget's spending reached threshold percent of its amount; spent and amount as they were then
+public record BudgetAlert(long budgetId, int threshold, BigDecimal spent, BigDecimal amount, LocalDateTime raisedAt) {
+}
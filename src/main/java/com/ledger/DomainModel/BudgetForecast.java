@@ -0,0 +1,12 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// projected spending of a budget at the end of its period; exceedsOn is the day the spending went, or is
+// expected to go, over the amount, null when the projection stays within it
+public record BudgetForecast(Budget budget, BigDecimal spent, BigDecimal projected, LocalDate exceedsOn) {
+    public boolean willExceed() {
+        return exceedsOn != null;
+    }
+}
@@ -0,0 +1,11 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// what a budget's categories spent in its period up to a day and after it, and in the same period one year
+// earlier up to the same day and in total; exceededOn is the day the period's spending went over the amount,
+// null if it has not
+public record BudgetSpending(long budgetId, BigDecimal spent, BigDecimal scheduled, BigDecimal lastYearToDate,
+                             BigDecimal lastYearTotal, LocalDate exceededOn) {
+}
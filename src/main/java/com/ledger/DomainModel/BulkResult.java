@@ -0,0 +1,5 @@
+package com.ledger.DomainModel;
+
+// outcome of a bulk operation: transactions changed or deleted, and accounts whose balance moved
+public record BulkResult(int transactions, int accounts) {
+}
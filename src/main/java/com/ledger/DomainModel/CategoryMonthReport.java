@@ -0,0 +1,85 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+
+// amounts per top-level category (rows) and month (columns), subcategories rolled up into their parent.
+// Cells are kept in cents in one primitive array, row by row, so a 12 x N dashboard is a single allocation
+public final class CategoryMonthReport {
+    private final long[] categoryIds;
+    private final String[] categoryNames;
+    private final YearMonth firstMonth;
+    private final int months;
+    private final long[] cents;
+
+    public CategoryMonthReport(long[] categoryIds, String[] categoryNames, YearMonth firstMonth, int months, long[] cents) {
+        this.categoryIds = categoryIds;
+        this.categoryNames = categoryNames;
+        this.firstMonth = firstMonth;
+        this.months = months;
+        this.cents = cents;
+    }
+
+    public int getCategoryCount() {
+        return categoryIds.length;
+    }
+
+    public int getMonthCount() {
+        return months;
+    }
+
+    public long getCategoryId(int row) {
+        return categoryIds[row];
+    }
+
+    public String getCategoryName(int row) {
+        return categoryNames[row];
+    }
+
+    public YearMonth getMonth(int column) {
+        return firstMonth.plusMonths(column);
+    }
+
+    //-1 when the category is not a row of the report
+    public int rowOf(long categoryId) {
+        for (int row = 0; row < categoryIds.length; row++) {
+            if (categoryIds[row] == categoryId) return row;
+        }
+        return -1;
+    }
+
+    //-1 when the month is outside the report
+    public int columnOf(YearMonth month) {
+        long column = firstMonth.until(month, ChronoUnit.MONTHS);
+        return column >= 0 && column < months ? (int) column : -1;
+    }
+
+    public BigDecimal getAmount(int row, int column) {
+        return BigDecimal.valueOf(cents[row * months + column], 2);
+    }
+
+    public BigDecimal getCategoryTotal(int row) {
+        long total = 0;
+        for (int column = 0; column < months; column++) {
+            total += cents[row * months + column];
+        }
+        return BigDecimal.valueOf(total, 2);
+    }
+
+    public BigDecimal getMonthTotal(int column) {
+        long total = 0;
+        for (int row = 0; row < categoryIds.length; row++) {
+            total += cents[row * months + column];
+        }
+        return BigDecimal.valueOf(total, 2);
+    }
+
+    public BigDecimal getTotal() {
+        long total = 0;
+        for (long cell : cents) {
+            total += cell;
+        }
+        return BigDecimal.valueOf(total, 2);
+    }
+}
@@ -0,0 +1,22 @@
+package com.ledger.DomainModel;
+
+import java.time.LocalDate;
+
+public enum Frequency {
+    DAILY,
+    WEEKLY,
+    MONTHLY,
+    YEARLY;
+
+    //the n-th occurrence (0 = start) is always computed from the start date, so a rule starting on the 31st
+    //falls on the last day of shorter months and returns to the 31st afterwards
+    public LocalDate occurrence(LocalDate start, int interval, int n) {
+        long steps = (long) interval * n;
+        return switch (this) {
+            case DAILY -> start.plusDays(steps);
+            case WEEKLY -> start.plusWeeks(steps);
+            case MONTHLY -> start.plusMonths(steps);
+            case YEARLY -> start.plusYears(steps);
+        };
+    }
+}
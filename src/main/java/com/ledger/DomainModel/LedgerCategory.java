@@ -26,6 +26,13 @@ public class LedgerCategory {
     public void setType(CategoryType type) { this.type = type; }
     public LedgerCategory getParent() { return parent; }
     public void setParent(LedgerCategory parent) { this.parent = parent; }
+
+    //0 for a top-level category; counts the parents it was loaded with, all of them with getTreeByLedger
+    public int getDepth() {
+        int depth = 0;
+        for (LedgerCategory p = parent; p != null; p = p.getParent()) depth++;
+        return depth;
+    }
 }
 
 
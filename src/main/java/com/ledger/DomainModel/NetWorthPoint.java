@@ -0,0 +1,8 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// net worth at the end of date; it stays the same until the next point of a history
+public record NetWorthPoint(LocalDate date, BigDecimal netWorth) {
+}
@@ -0,0 +1,7 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+
+// a category or account in a top-N list, with the total of its transactions and how many there were
+public record RankedTotal(long id, String name, BigDecimal total, int transactions) {
+}
@@ -0,0 +1,155 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecurringRule {
+    private long id;
+    private TransactionType type;
+    private Ledger ledger;
+    private Account fromAccount;
+    private Account toAccount;
+    private LedgerCategory category;
+    private BigDecimal amount;
+    private String note;
+    private Frequency frequency;
+    private int interval = 1; //every `interval` days, weeks, months or years
+    private LocalDate startDate;
+    private LocalDate endDate; //inclusive, null for no end date
+    private Integer maxOccurrences; //null for no limit
+    private int occurrenceCount; //occurrences already generated
+    private LocalDate nextDate; //null once the rule has ended
+
+    public RecurringRule() {}
+    public RecurringRule(TransactionType type, Ledger ledger, Account fromAccount, Account toAccount,
+                         LedgerCategory category, BigDecimal amount, String note,
+                         Frequency frequency, int interval, LocalDate startDate) {
+        this.type = type;
+        this.ledger = ledger;
+        this.fromAccount = fromAccount;
+        this.toAccount = toAccount;
+        this.category = category;
+        this.amount = amount;
+        this.note = note;
+        this.frequency = frequency;
+        this.interval = interval;
+        this.startDate = startDate;
+        this.nextDate = startDate;
+    }
+
+    //occurrence dates up to and including today that have not been generated yet;
+    //advance(dates.size()) once they are stored
+    public List<LocalDate> dueOccurrences(LocalDate today) {
+        List<LocalDate> dates = new ArrayList<>();
+        int n = occurrenceCount;
+        while (true) {
+            if (maxOccurrences != null && n >= maxOccurrences) break;
+            LocalDate date = frequency.occurrence(startDate, interval, n);
+            if (date.isAfter(today) || (endDate != null && date.isAfter(endDate))) break;
+            dates.add(date);
+            n++;
+        }
+        return dates;
+    }
+
+    public void advance(int generated) {
+        occurrenceCount += generated;
+        LocalDate next = frequency.occurrence(startDate, interval, occurrenceCount);
+        boolean ended = (maxOccurrences != null && occurrenceCount >= maxOccurrences)
+                || (endDate != null && next.isAfter(endDate));
+        nextDate = ended ? null : next;
+    }
+
+    public long getId() {
+        return id;
+    }
+    public void setId(long id) {
+        this.id = id;
+    }
+    public TransactionType getType() {
+        return type;
+    }
+    public void setType(TransactionType type) {
+        this.type = type;
+    }
+    public Ledger getLedger() {
+        return ledger;
+    }
+    public void setLedger(Ledger ledger) {
+        this.ledger = ledger;
+    }
+    public Account getFromAccount() {
+        return fromAccount;
+    }
+    public void setFromAccount(Account fromAccount) {
+        this.fromAccount = fromAccount;
+    }
+    public Account getToAccount() {
+        return toAccount;
+    }
+    public void setToAccount(Account toAccount) {
+        this.toAccount = toAccount;
+    }
+    public LedgerCategory getCategory() {
+        return category;
+    }
+    public void setCategory(LedgerCategory category) {
+        this.category = category;
+    }
+    public BigDecimal getAmount() {
+        return amount;
+    }
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+    public String getNote() {
+        return note;
+    }
+    public void setNote(String note) {
+        this.note = note;
+    }
+    public Frequency getFrequency() {
+        return frequency;
+    }
+    public void setFrequency(Frequency frequency) {
+        this.frequency = frequency;
+    }
+    public int getInterval() {
+        return interval;
+    }
+    public void setInterval(int interval) {
+        this.interval = interval;
+    }
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+    }
+    public Integer getMaxOccurrences() {
+        return maxOccurrences;
+    }
+    public void setMaxOccurrences(Integer maxOccurrences) {
+        this.maxOccurrences = maxOccurrences;
+    }
+    public int getOccurrenceCount() {
+        return occurrenceCount;
+    }
+    public void setOccurrenceCount(int occurrenceCount) {
+        this.occurrenceCount = occurrenceCount;
+    }
+    public LocalDate getNextDate() {
+        return nextDate;
+    }
+    public void setNextDate(LocalDate nextDate) {
+        this.nextDate = nextDate;
+    }
+}
@@ -0,0 +1,84 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+// statistics of the amounts of a set of transactions, merged from the per-month cells of spending_stats and
+// spending_sketch. Mean and variance are exact; quantiles come from logarithmic buckets and are within
+// RELATIVE_ACCURACY of the true value
+public final class SpendingStats {
+    public static final double RELATIVE_ACCURACY = 0.01;
+    public static final int ZERO_BUCKET = Integer.MIN_VALUE;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+    private final long count;
+    private final BigDecimal total;
+    private final BigDecimal totalSquares;
+    private final int[] buckets; //ascending
+    private final long[] bucketCounts;
+
+    public SpendingStats(long count, BigDecimal total, BigDecimal totalSquares, int[] buckets, long[] bucketCounts) {
+        this.count = count;
+        this.total = total;
+        this.totalSquares = totalSquares;
+        this.buckets = buckets;
+        this.bucketCounts = bucketCounts;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    //null when there are no transactions
+    public BigDecimal getMean() {
+        if (count == 0) return null;
+        return total.divide(BigDecimal.valueOf(count), MathContext.DECIMAL64).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    //sample variance, null with fewer than 2 transactions
+    public BigDecimal getVariance() {
+        if (count < 2) return null;
+        BigDecimal n = BigDecimal.valueOf(count);
+        BigDecimal m2 = totalSquares.subtract(total.multiply(total).divide(n, MathContext.DECIMAL128));
+        return m2.divide(BigDecimal.valueOf(count - 1), MathContext.DECIMAL64);
+    }
+
+    public BigDecimal getStandardDeviation() {
+        BigDecimal variance = getVariance();
+        return variance == null ? null : variance.sqrt(MathContext.DECIMAL64).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    public BigDecimal getMedian() {
+        return getQuantile(0.5);
+    }
+
+    // q between 0 and 1; null when there are no transactions
+    public BigDecimal getQuantile(double q) {
+        if (count == 0 || buckets.length == 0) return null;
+        long rank = (long) Math.floor(Math.min(Math.max(q, 0), 1) * (count - 1));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += bucketCounts[i];
+            if (seen > rank) return valueOf(buckets[i]);
+        }
+        return valueOf(buckets[buckets.length - 1]);
+    }
+
+    // how many standard deviations amount is away from the mean, null when the spread is unknown or 0
+    public Double getZScore(BigDecimal amount) {
+        BigDecimal deviation = getStandardDeviation();
+        if (deviation == null || deviation.signum() == 0) return null;
+        return amount.subtract(getMean()).doubleValue() / deviation.doubleValue();
+    }
+
+    // middle of the bucket (GAMMA^(bucket-1), GAMMA^bucket] in relative terms
+    private static BigDecimal valueOf(int bucket) {
+        if (bucket == ZERO_BUCKET) return BigDecimal.ZERO.setScale(2);
+        return BigDecimal.valueOf(2 * Math.pow(GAMMA, bucket) / (GAMMA + 1)).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,8 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+
+// one transaction of an account statement: its effect on the account (negative when money left it)
+// and the account balance right after it
+public record StatementLine(TransactionRow row, BigDecimal change, BigDecimal balance) {
+}
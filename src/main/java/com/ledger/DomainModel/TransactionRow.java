@@ -0,0 +1,9 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// read-only projection of a transaction for list views; load the Transaction by id to edit or delete it
+public record TransactionRow(long id, TransactionType type, LocalDate date, BigDecimal amount, String note,
+                             String categoryName, String fromAccountName, String toAccountName) {
+}
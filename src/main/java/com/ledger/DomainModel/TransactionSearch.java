@@ -0,0 +1,32 @@
+package com.ledger.DomainModel;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// a note search: every word of text must start a word of the note; with fuzzy, notes containing a word
+// similar to text match too (typos). Null filters are not applied, a null ledger means all of the user's ledgers
+public record TransactionSearch(String text, boolean fuzzy, Ledger ledger, LocalDate startDate, LocalDate endDate,
+                                BigDecimal minAmount, BigDecimal maxAmount) {
+
+    public static TransactionSearch of(String text) {
+        return new TransactionSearch(text, false, null, null, null, null, null);
+    }
+
+    public TransactionSearch withFuzzy(boolean fuzzy) {
+        return new TransactionSearch(text, fuzzy, ledger, startDate, endDate, minAmount, maxAmount);
+    }
+
+    public TransactionSearch inLedger(Ledger ledger) {
+        return new TransactionSearch(text, fuzzy, ledger, startDate, endDate, minAmount, maxAmount);
+    }
+
+    //inclusive
+    public TransactionSearch between(LocalDate startDate, LocalDate endDate) {
+        return new TransactionSearch(text, fuzzy, ledger, startDate, endDate, minAmount, maxAmount);
+    }
+
+    //inclusive
+    public TransactionSearch amountBetween(BigDecimal minAmount, BigDecimal maxAmount) {
+        return new TransactionSearch(text, fuzzy, ledger, startDate, endDate, minAmount, maxAmount);
+    }
+}
@@ -2,17 +2,16 @@ package com.ledger;
 
 import com.ledger.BusinessLogic.*;
 import com.ledger.CLI.*;
+import com.ledger.DomainModel.BalanceDrift;
+import com.ledger.Metrics.MetricsRegistry;
 import com.ledger.ORM.*;
+import com.ledger.Pooling.StatementCache;
+import com.ledger.Tracing.SqlTracer;
+import com.ledger.Util.Lazy;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.List;
 
 public class Main {
     public static void main(String[] args) {
@@ -20,92 +19,98 @@ public class Main {
             // connect to database
             ConnectionManager connectionManager= ConnectionManager.getInstance();
             Connection connection = connectionManager.getConnection();
-            runSchemaScript(connection);
-            runDataScriptIfEmpty(connection);
+            if (connection == null) {
+                return;
+            }
+
+            // bring the schema up to date, a single query when nothing changed
+            if (!new SchemaMigrator(connection).migrate()) {
+                System.err.println("Database schema is not up to date, exiting.");
+                connection.close();
+                return;
+            }
+
+            // -Dledger.reconcile=true checks every account balance at startup, -Dledger.reconcile.repair=true also fixes drift
+            if (Boolean.getBoolean("ledger.reconcile")) {
+                reconcileBalances(Boolean.getBoolean("ledger.reconcile.repair"));
+            }
+
+            // removes soft deleted ledgers and accounts in the background, on a connection of its own
+            Connection purgeConnection = connectionManager.openConnection();
+            DeletionPurger purger = purgeConnection != null ? new DeletionPurger(purgeConnection) : null;
+            if (purger != null) {
+                purger.start(Long.getLong("ledger.purge.intervalMillis", 60_000));
+            }
 
             // create DAO layer
-            UserDAO userDAO = new UserDAO(connection);
-            AccountDAO accountDAO = new AccountDAO(connection);
-            LedgerDAO ledgerDAO = new LedgerDAO(connection);
-            LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
-            TransactionDAO transactionDAO = new TransactionDAO(connection);
-            CategoryDAO categoryDAO = new CategoryDAO(connection);
-            BudgetDAO budgetDAO = new BudgetDAO(connection);
+            Lazy<UserDAO> userDAO = Lazy.of(() -> new UserDAO(connection));
+            Lazy<AccountDAO> accountDAO = Lazy.of(() -> new AccountDAO(connection));
+            Lazy<LedgerDAO> ledgerDAO = Lazy.of(() -> new LedgerDAO(connection));
+            Lazy<LedgerCategoryDAO> ledgerCategoryDAO = Lazy.of(() -> new LedgerCategoryDAO(connection));
+            Lazy<TransactionDAO> transactionDAO = Lazy.of(() -> new TransactionDAO(connection));
+            Lazy<CategoryDAO> categoryDAO = Lazy.of(() -> new CategoryDAO(connection));
+            Lazy<BudgetDAO> budgetDAO = Lazy.of(() -> new BudgetDAO(connection));
+            Lazy<RecurringRuleDAO> recurringRuleDAO = Lazy.of(() -> new RecurringRuleDAO(connection));
+            Lazy<SpendingStatsDAO> spendingStatsDAO = Lazy.of(() -> new SpendingStatsDAO(connection));
+            Lazy<NetWorthDAO> netWorthDAO = Lazy.of(() -> new NetWorthDAO(connection));
 
             // create Business layer
-            UserController userController = new UserController(userDAO);
-            AccountController accountController = new AccountController(accountDAO, transactionDAO);
-            TransactionController transactionController = new TransactionController(transactionDAO, accountDAO);
-            LedgerController ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
-            LedgerCategoryController ledgerCategoryController = new LedgerCategoryController(ledgerCategoryDAO, transactionDAO, budgetDAO, accountDAO);
-            BudgetController budgetController = new BudgetController(budgetDAO, ledgerCategoryDAO);
-            ReportController reportController = new ReportController(transactionDAO, accountDAO, budgetDAO, ledgerCategoryDAO);
+            Lazy<UserController> userController = Lazy.of(() -> new UserController(userDAO.get()));
+            Lazy<AccountController> accountController = Lazy.of(() -> new AccountController(accountDAO.get(), transactionDAO.get()));
+            Lazy<TransactionController> transactionController = Lazy.of(() -> {
+                TransactionController controller = new TransactionController(transactionDAO.get(), accountDAO.get(), budgetDAO.get());
+                controller.addBudgetAlertListener(alert -> System.out.println("\n! Budget alert: spending reached " +
+                        alert.threshold() + "% of a budget (" + alert.spent() + " of " + alert.amount() + ")"));
+                return controller;
+            });
+            Lazy<LedgerController> ledgerController = Lazy.of(() -> new LedgerController(ledgerDAO.get(), transactionDAO.get(), categoryDAO.get(), ledgerCategoryDAO.get(), accountDAO.get(), budgetDAO.get()));
+            Lazy<LedgerCategoryController> ledgerCategoryController = Lazy.of(() -> new LedgerCategoryController(ledgerCategoryDAO.get(), transactionDAO.get(), budgetDAO.get(), accountDAO.get()));
+            Lazy<BudgetController> budgetController = Lazy.of(() -> new BudgetController(budgetDAO.get(), ledgerCategoryDAO.get()));
+            Lazy<RecurringController> recurringController = Lazy.of(() -> new RecurringController(recurringRuleDAO.get()));
+            Lazy<ReportController> reportController = Lazy.of(() -> new ReportController(transactionDAO.get(), accountDAO.get(), budgetDAO.get(), ledgerCategoryDAO.get(), spendingStatsDAO.get(), netWorthDAO.get()));
 
             //  create CLI layer
-            UserCLI userCLI = new UserCLI(userController, reportController);
-            AccountCLI accountCLI = new AccountCLI(accountController, userController, reportController, transactionController);
-            LedgerCLI ledgerCLI = new LedgerCLI(userController, reportController, ledgerController, transactionController, budgetController);
-            TransactionCLI transactionCLI = new TransactionCLI(transactionController, userController, accountController, ledgerController, ledgerCategoryController);
-            BudgetCLI budgetCLI = new BudgetCLI(budgetController, reportController, userController, ledgerController, ledgerCategoryController);
-            LedgerCategoryCLI ledgerCategoryCLI = new LedgerCategoryCLI(ledgerCategoryController, userController, ledgerController);
+            Lazy<UserCLI> userCLI = Lazy.of(() -> new UserCLI(userController.get(), reportController.get()));
+            Lazy<AccountCLI> accountCLI = Lazy.of(() -> new AccountCLI(accountController.get(), userController.get(), reportController.get(), transactionController.get()));
+            Lazy<LedgerCLI> ledgerCLI = Lazy.of(() -> new LedgerCLI(userController.get(), reportController.get(), ledgerController.get(), transactionController.get(), budgetController.get()));
+            Lazy<TransactionCLI> transactionCLI = Lazy.of(() -> new TransactionCLI(transactionController.get(), userController.get(), accountController.get(), ledgerController.get(), ledgerCategoryController.get()));
+            Lazy<BudgetCLI> budgetCLI = Lazy.of(() -> new BudgetCLI(budgetController.get(), reportController.get(), userController.get(), ledgerController.get(), ledgerCategoryController.get()));
+            Lazy<LedgerCategoryCLI> ledgerCategoryCLI = Lazy.of(() -> new LedgerCategoryCLI(ledgerCategoryController.get(), userController.get(), ledgerController.get()));
+            Lazy<RecurringCLI> recurringCLI = Lazy.of(() -> new RecurringCLI(recurringController.get(), userController.get(), accountController.get(), ledgerController.get(), ledgerCategoryController.get()));
+            Lazy<StatsCLI> statsCLI = Lazy.of(() -> new StatsCLI(MetricsRegistry.getInstance(), SqlTracer.getInstance(), StatementCache.getInstance(),
+                    connectionManager.getDataSource()));
 
             // create MainCLI
-            MainCLI mainCLI = new MainCLI(userCLI, accountCLI, ledgerCLI, transactionCLI, budgetCLI, ledgerCategoryCLI);
+            MainCLI mainCLI = new MainCLI(userCLI, accountCLI, ledgerCLI, transactionCLI, budgetCLI, ledgerCategoryCLI, statsCLI, recurringCLI);
 
             //run application
             mainCLI.run();
 
             //disconnect from database
+            if (purger != null) {
+                purger.close();
+            }
             connection.close();
         } catch (SQLException e) {
             System.err.println("Error connecting to database: " + e.getMessage());
         }
     }
 
-    private static void runSchemaScript(Connection connection) {
-        Path path = Paths.get("src/test/resources/schema.sql");
-        try (Stream<String> lines = Files.lines(path)) {
-            String sql = lines.collect(Collectors.joining("\n"));
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute(sql);
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to load schema.sql: " + e.getMessage());
+    private static void reconcileBalances(boolean repair) {
+        BalanceReconciler reconciler = new BalanceReconciler();
+        List<BalanceDrift> drifts = reconciler.reconcile();
+        if (drifts == null) {
+            System.err.println("Balance reconciliation failed.");
+            return;
         }
-    }
-
-    @SuppressWarnings("SqlResolve")
-    private static void runDataScriptIfEmpty(Connection connection) {
-        try {
-            // 1. check table empty
-            String checkSql = "SELECT COUNT(*) FROM global_categories";
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(checkSql)) {
-                rs.next();
-                int count = rs.getInt(1);
-                if (count > 0) return;
-            }
-
-            // 2. read file in try-with-resources
-            Path path = Paths.get("src/test/resources/data.sql");
-            try (Stream<String> lines = Files.lines(path)) {
-                String sql = lines.collect(Collectors.joining("\n"))
-                        .replaceAll(";\\s*\n", ";");
-
-                try (Statement stmt = connection.createStatement()) {
-                    for (String s : sql.split(";")) {
-                        String trimmed = s.trim();
-                        if (!trimmed.isEmpty()) {
-                            stmt.execute(trimmed);
-                        }
-                    }
-                }
-            }
-
-            System.out.println("global_categories initialized from data.sql");
-
-        } catch (Exception e) {
-            System.err.println("Failed to load data.sql: " + e.getMessage());
+        for (BalanceDrift drift : drifts) {
+            System.out.println("Account " + drift.accountId() + " (" + drift.accountName() + "): balance " + drift.stored()
+                    + ", expected " + drift.expected() + ", drift " + drift.difference());
+        }
+        System.out.println(drifts.size() + " account(s) drifted.");
+        if (repair && !drifts.isEmpty()) {
+            int repaired = reconciler.repair(drifts);
+            System.out.println(repaired < 0 ? "Balance repair failed, nothing was changed." : repaired + " account(s) repaired.");
         }
     }
 }
@@ -0,0 +1,32 @@
+package com.ledger.Metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.ledger.BudgetAlert")
+@Label("Budget Alert")
+@Description("A write took a budget's spending over an alert threshold")
+@Category({"Ledger", "Budget"})
+@StackTrace(false)
+public class BudgetAlertEvent extends Event {
+    @Label("Budget Id")
+    public long budgetId;
+
+    @Label("Threshold")
+    @Description("Percent of the budget amount")
+    public int threshold;
+
+    @Label("Spent")
+    public double spent;
+
+    @Label("Amount")
+    public double amount;
+
+    @Label("Operation")
+    @Description("Controller method whose write raised the alert")
+    public String operation;
+}
@@ -0,0 +1,26 @@
+package com.ledger.Metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.ledger.DbTransaction")
+@Label("Database Transaction")
+@Description("One DbTransactionManager.execute call, from setAutoCommit(false) to commit or rollback")
+@Category({"Ledger", "Database"})
+@StackTrace(false)
+public class DbTransactionEvent extends Event {
+    @Label("Outcome")
+    @Description("COMMIT or ROLLBACK")
+    public String outcome;
+
+    @Label("Operation")
+    @Description("Controller method that opened the transaction")
+    public String operation;
+
+    @Label("Error")
+    public String error;
+}
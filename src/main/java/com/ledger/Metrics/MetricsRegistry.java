@@ -0,0 +1,77 @@
+package com.ledger.Metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class MetricsRegistry {
+    private static MetricsRegistry instance;
+    private final ConcurrentHashMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {}
+
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    // look up once (e.g. in a static final field) and record on the returned object
+    public OperationMetrics operation(String name, OperationMetrics.Kind kind) {
+        return operations.computeIfAbsent(name, n -> new OperationMetrics(n, kind, false));
+    }
+
+    public OperationMetrics dao(String name) {
+        return operation(name, OperationMetrics.Kind.DAO);
+    }
+
+    public OperationMetrics controller(String name) {
+        return operation(name, OperationMetrics.Kind.CONTROLLER);
+    }
+
+    // a controller method that never writes: run as the outermost one, its statements may go to a read replica
+    public OperationMetrics readController(String name) {
+        return operations.computeIfAbsent(name, n -> new OperationMetrics(n, OperationMetrics.Kind.CONTROLLER, true));
+    }
+
+    public List<OperationMetrics> getOperations() {
+        List<OperationMetrics> result = new ArrayList<>(operations.values());
+        result.sort(Comparator.comparing(OperationMetrics::getKind).thenComparing(OperationMetrics::getName));
+        return result;
+    }
+
+    public void reset() {
+        operations.values().forEach(OperationMetrics::reset);
+    }
+
+    // one line per operation that was called at least once, grouped by kind; times in microseconds
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        OperationMetrics.Kind currentKind = null;
+        for (OperationMetrics op : getOperations()) {
+            long calls = op.getCalls();
+            if (calls == 0) continue;
+            if (op.getKind() != currentKind) {
+                currentKind = op.getKind();
+                sb.append(String.format(Locale.ROOT, "%n[%s]%n%-48s %9s %10s %7s %10s %10s %10s %10s %10s %12s%n",
+                        currentKind, "operation", "calls", "rows", "errors",
+                        "mean(us)", "p50(us)", "p90(us)", "p99(us)", "max(us)", "total(ms)"));
+            }
+            sb.append(String.format(Locale.ROOT, "%-48s %9d %10d %7d %10.1f %10.1f %10.1f %10.1f %10.1f %12.1f%n",
+                    op.getName(), calls, op.getRows(), op.getErrors(),
+                    op.getTotalNanos() / 1_000.0 / calls,
+                    op.percentileNanos(50) / 1_000.0,
+                    op.percentileNanos(90) / 1_000.0,
+                    op.percentileNanos(99) / 1_000.0,
+                    op.getMaxNanos() / 1_000.0,
+                    op.getTotalNanos() / 1_000_000.0));
+        }
+        if (sb.isEmpty()) {
+            return "No operations recorded yet.\n";
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.ledger.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// the controller method currently running on this thread (nested controller calls belong to the outermost one)
+// and whether it only reads, the innermost DAO method and a running count of rows the DAOs have returned on
+// this thread
+public final class OperationContext {
+    public interface Listener {
+        void operationStarted(String operation);
+        void operationFinished(String operation);
+    }
+
+    private static final class Frame {
+        private String operation;
+        private boolean readOnly;
+        private int depth;
+        private final ArrayDeque<String> daos = new ArrayDeque<>();
+        private long rowsRead;
+    }
+
+    private static final ThreadLocal<Frame> CURRENT = ThreadLocal.withInitial(Frame::new);
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private OperationContext() {}
+
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // null outside of any controller method
+    public static String current() {
+        return CURRENT.get().operation;
+    }
+
+    // true inside a controller method registered with MetricsRegistry.readController, when it is the outermost one
+    public static boolean isReadOnly() {
+        return CURRENT.get().readOnly;
+    }
+
+    // null outside of any DAO method
+    public static String currentDao() {
+        return CURRENT.get().daos.peek();
+    }
+
+    // only ever grows; take the difference of two readings to get the rows read in between
+    public static long rowsRead() {
+        return CURRENT.get().rowsRead;
+    }
+
+    static void enterDao(String dao) {
+        CURRENT.get().daos.push(dao);
+    }
+
+    static void exitDao(long rows) {
+        Frame frame = CURRENT.get();
+        frame.daos.poll();
+        frame.rowsRead += rows;
+    }
+
+    static void enter(String operation, boolean readOnly) {
+        Frame frame = CURRENT.get();
+        if (frame.depth++ == 0) {
+            frame.operation = operation;
+            frame.readOnly = readOnly;
+            for (Listener listener : listeners) {
+                listener.operationStarted(operation);
+            }
+        }
+    }
+
+    static void exit() {
+        Frame frame = CURRENT.get();
+        if (frame.depth == 0) return;
+        if (--frame.depth == 0) {
+            String operation = frame.operation;
+            frame.operation = null;
+            frame.readOnly = false;
+            for (Listener listener : listeners) {
+                listener.operationFinished(operation);
+            }
+        }
+    }
+}
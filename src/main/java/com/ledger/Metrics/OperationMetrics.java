@@ -0,0 +1,82 @@
+package com.ledger.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// calls, rows, errors and latency of one named operation (a DAO method, a controller method, a commit...)
+public final class OperationMetrics {
+    public enum Kind {
+        DAO,
+        CONTROLLER,
+        DB_TRANSACTION
+    }
+
+    private final String name;
+    private final Kind kind;
+    private final boolean readOnly;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    OperationMetrics(String name, Kind kind, boolean readOnly) {
+        this.name = name;
+        this.kind = kind;
+        this.readOnly = readOnly;
+    }
+
+    // start of a call, pass the returned value to end()
+    public long begin() {
+        if (kind == Kind.CONTROLLER) {
+            OperationContext.enter(name, readOnly);
+        } else if (kind == Kind.DAO) {
+            OperationContext.enterDao(name);
+        }
+        return System.nanoTime();
+    }
+
+    public void end(long start) {
+        end(start, 0);
+    }
+
+    public void end(long start, long rowCount) {
+        long elapsed = System.nanoTime() - start;
+        calls.incrementAndGet();
+        if (rowCount > 0) rows.addAndGet(rowCount);
+        totalNanos.addAndGet(elapsed);
+        long max = maxNanos.get();
+        while (elapsed > max && !maxNanos.compareAndSet(max, elapsed)) {
+            max = maxNanos.get();
+        }
+        histogram.record(elapsed);
+        if (kind == Kind.CONTROLLER) {
+            OperationContext.exit();
+        } else if (kind == Kind.DAO) {
+            OperationContext.exitDao(rowCount);
+        }
+    }
+
+    public void error() {
+        errors.incrementAndGet();
+    }
+
+    public String getName() { return name; }
+    public Kind getKind() { return kind; }
+    public boolean isReadOnly() { return readOnly; }
+    public long getCalls() { return calls.get(); }
+    public long getRows() { return rows.get(); }
+    public long getErrors() { return errors.get(); }
+    public long getTotalNanos() { return totalNanos.get(); }
+    public long getMaxNanos() { return maxNanos.get(); }
+    public long percentileNanos(double percentile) { return histogram.percentile(percentile); }
+
+    void reset() {
+        calls.set(0);
+        rows.set(0);
+        errors.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+        histogram.reset();
+    }
+}
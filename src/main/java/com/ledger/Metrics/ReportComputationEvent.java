@@ -0,0 +1,52 @@
+package com.ledger.Metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.ledger.ReportComputation")
+@Label("Report Computation")
+@Description("A ReportController or BudgetController computation and the rows it had to read")
+@Category({"Ledger", "Report"})
+@StackTrace(false)
+public class ReportComputationEvent extends Event {
+    @Label("Computation")
+    public String computation;
+
+    @Label("Ledger Id")
+    public long ledgerId;
+
+    @Label("Account Id")
+    public long accountId;
+
+    @Label("Rows Scanned")
+    @Description("Rows returned by the DAOs while computing")
+    public long rowsScanned;
+
+    private transient long rowsAtStart;
+
+    // when no recording has the event enabled this only allocates the (usually scalar-replaced) event
+    public static ReportComputationEvent start(String computation) {
+        ReportComputationEvent event = new ReportComputationEvent();
+        if (event.isEnabled()) {
+            event.computation = computation;
+            event.rowsAtStart = OperationContext.rowsRead();
+            event.begin();
+        }
+        return event;
+    }
+
+    public void finish(long ledgerId, long accountId) {
+        if (!isEnabled()) return;
+        end();
+        if (shouldCommit()) {
+            this.ledgerId = ledgerId;
+            this.accountId = accountId;
+            this.rowsScanned = OperationContext.rowsRead() - rowsAtStart;
+            commit();
+        }
+    }
+}
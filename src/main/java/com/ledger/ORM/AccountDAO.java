@@ -1,12 +1,54 @@
 package com.ledger.ORM;
 
 import com.ledger.DomainModel.*;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
+import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class AccountDAO {
+    private static final OperationMetrics INSERT = MetricsRegistry.getInstance().dao("AccountDAO.insert");
+    private static final OperationMetrics GET_ACCOUNT_BY_ID = MetricsRegistry.getInstance().dao("AccountDAO.getAccountById");
+    private static final OperationMetrics GET_ACCOUNTS_BY_OWNER = MetricsRegistry.getInstance().dao("AccountDAO.getAccountsByOwner");
+    private static final OperationMetrics UPDATE = MetricsRegistry.getInstance().dao("AccountDAO.update");
+    private static final OperationMetrics DELETE = MetricsRegistry.getInstance().dao("AccountDAO.delete");
+    private static final OperationMetrics APPLY_DELTAS = MetricsRegistry.getInstance().dao("AccountDAO.applyDeltas");
+    private static final OperationMetrics REVERSE_LEDGER = MetricsRegistry.getInstance().dao("AccountDAO.reverseLedger");
+    private static final OperationMetrics SOFT_DELETE = MetricsRegistry.getInstance().dao("AccountDAO.softDelete");
+    private static final OperationMetrics GET_DELETED_IDS = MetricsRegistry.getInstance().dao("AccountDAO.getDeletedIds");
+    private static final OperationMetrics SET_BALANCE = MetricsRegistry.getInstance().dao("AccountDAO.setBalance");
+    private static final OperationMetrics FIND_DRIFT = MetricsRegistry.getInstance().dao("AccountDAO.findDrift");
+    private static final OperationMetrics LOCK = MetricsRegistry.getInstance().dao("AccountDAO.lock");
+    private static final OperationMetrics REPAIR_BALANCES = MetricsRegistry.getInstance().dao("AccountDAO.repairBalances");
+    private static final OperationMetrics REFRESH_CHECKPOINTS = MetricsRegistry.getInstance().dao("AccountDAO.refreshCheckpoints");
+    private static final OperationMetrics GET_BALANCE_AS_OF = MetricsRegistry.getInstance().dao("AccountDAO.getBalanceAsOf");
+
+    // balance of an account at the end of a day: opening balance, plus the last checkpoint up to that day, plus
+    // the transactions between the checkpoint and that day. The CTEs bind the account id and the day (null
+    // for the opening balance), the select reads them
+    static final String BALANCE_AS_OF_CTES = "p AS (SELECT ?::bigint AS account_id, ?::date AS as_of), " +
+            "cp AS (SELECT c.period_end, c.net FROM account_balance_checkpoints c JOIN p ON c.account_id = p.account_id " +
+            "WHERE c.period_end <= p.as_of ORDER BY c.period_end DESC LIMIT 1)";
+    static final String BALANCE_AS_OF_SELECT = "SELECT a.opening_balance + COALESCE((SELECT net FROM cp), 0) " +
+            "+ COALESCE((SELECT SUM(t.amount) FROM live_transactions t WHERE t.to_account_id = a.id " +
+            "AND t.transaction_date > COALESCE((SELECT period_end FROM cp), '-infinity') AND t.transaction_date <= p.as_of), 0) " +
+            "- COALESCE((SELECT SUM(t.amount) FROM live_transactions t WHERE t.from_account_id = a.id " +
+            "AND t.transaction_date > COALESCE((SELECT period_end FROM cp), '-infinity') AND t.transaction_date <= p.as_of), 0) AS balance " +
+            "FROM accounts a JOIN p ON a.id = p.account_id WHERE a.deleted_at IS NULL";
+
+    static final RowMapper<Account> MAPPER = RowMapper.builder(Account::new)
+            .longColumn("id", Account::setId)
+            .stringColumn("name", Account::setName)
+            .decimalColumn("balance", Account::setBalance)
+            .booleanColumn("included_in_asset", Account::setIncludedInAsset)
+            .booleanColumn("selectable", Account::setSelectable)
+            .build();
+
     private final Connection connection;
 
     public AccountDAO(Connection connection) {
@@ -15,101 +57,401 @@ public class AccountDAO {
 
     @SuppressWarnings("SqlResolve")
     public boolean insert(Account account) {
-        String sql = "INSERT INTO accounts (name, balance, user_id, included_in_asset, selectable) VALUES (?, ?, ?, ?, ?)";
-        try(PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        long start = INSERT.begin();
+        //an opening balance in assets counts for every day of the owner's net worth history
+        String sql = "WITH inserted AS (INSERT INTO accounts (name, balance, opening_balance, user_id, included_in_asset, selectable) " +
+                "VALUES (?, ?, ?, ?, ?, ?) RETURNING id, user_id, included_in_asset), " +
+                NetWorthDAO.forgetHistory("SELECT user_id FROM inserted WHERE included_in_asset") +
+                " SELECT id FROM inserted";
+        try(PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, account.getName());
             stmt.setBigDecimal(2, account.getBalance());
-            stmt.setLong(3, account.getOwner().getId());
-            stmt.setBoolean(4, account.getIncludedInAsset());
-            stmt.setBoolean(5, account.getSelectable());
+            stmt.setBigDecimal(3, account.getBalance());
+            stmt.setLong(4, account.getOwner().getId());
+            stmt.setBoolean(5, account.getIncludedInAsset());
+            stmt.setBoolean(6, account.getSelectable());
 
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                return false;
-            }
-            try (ResultSet rs = stmt.getGeneratedKeys()) {
+            try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     account.setId(rs.getLong(1));
                     return true;
                 }
             }
         } catch (SQLException e) {
+            INSERT.error();
             System.err.println("SQL Exception during createAccount: " + e.getMessage());
+        } finally {
+            INSERT.end(start);
         }
         return false;
     }
 
     @SuppressWarnings("SqlResolve")
     public Account getAccountById(long id) {
-        String baseSql =  "SELECT * FROM accounts WHERE id = ?";
-
+        long start = GET_ACCOUNT_BY_ID.begin();
+        String baseSql =  "SELECT " + MAPPER.columns() + " FROM accounts WHERE id = ? AND deleted_at IS NULL";
+        Account account = null;
         try (PreparedStatement stmt = connection.prepareStatement(baseSql)) {
             stmt.setLong(1, id);
             try(ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToAccount(rs);
+                    account = MAPPER.map(rs);
                 }
             }
         }catch (SQLException e){
+            GET_ACCOUNT_BY_ID.error();
             System.err.println("SQL Exception during getAccountById: " + e.getMessage());
+        } finally {
+            GET_ACCOUNT_BY_ID.end(start, account != null ? 1 : 0);
         }
-        return null;
-    }
-
-    private Account mapResultSetToAccount(ResultSet rs) throws SQLException {
-        Account account= new Account();
-        account.setId(rs.getLong("id"));
-        account.setName(rs.getString("name"));
-        account.setBalance(rs.getBigDecimal("balance"));
-        account.setIncludedInAsset(rs.getBoolean("included_in_asset"));
-        account.setSelectable(rs.getBoolean("selectable"));
         return account;
     }
 
     @SuppressWarnings("SqlResolve")
     public List<Account> getAccountsByOwner(User owner) {
+        long start = GET_ACCOUNTS_BY_OWNER.begin();
         List<Account> accounts = new ArrayList<>();
-        String sql = " SELECT  * FROM accounts WHERE user_id = ?";
+        String sql = "SELECT " + MAPPER.columns() + " FROM accounts WHERE user_id = ? AND deleted_at IS NULL";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, owner.getId());
             try(ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Account account = mapResultSetToAccount(rs);
-                    accounts.add(account);
+                    accounts.add(MAPPER.map(rs));
                 }
             }
         }catch (SQLException e){
+            GET_ACCOUNTS_BY_OWNER.error();
             System.err.println("SQL Exception during getAccountsByOwnerId: " + e.getMessage());
+        } finally {
+            GET_ACCOUNTS_BY_OWNER.end(start, accounts.size());
         }
         return accounts;
     }
 
     @SuppressWarnings("SqlResolve")
     public boolean update(Account account) {
-        String sql = "UPDATE accounts SET name = ?, balance = ?, included_in_asset = ?, selectable = ?  WHERE id = ?";
+        long start = UPDATE.begin();
+        //taking the account into or out of assets changes every day of the owner's net worth history
+        String sql = "WITH updated AS (UPDATE accounts u SET name = ?, balance = ?, included_in_asset = ?, selectable = ? " +
+                "FROM accounts o WHERE u.id = o.id AND u.id = ? " +
+                "RETURNING u.user_id, u.included_in_asset <> o.included_in_asset AS flipped), " +
+                NetWorthDAO.forgetHistory("SELECT user_id FROM updated WHERE flipped") +
+                " SELECT COUNT(*) FROM updated";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, account.getName());
             stmt.setBigDecimal(2, account.getBalance());
             stmt.setBoolean(3, account.getIncludedInAsset());
             stmt.setBoolean(4, account.getSelectable());
             stmt.setLong(5, account.getId());
-            return stmt.executeUpdate() > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
         } catch (SQLException e) {
+            UPDATE.error();
             System.err.println("SQL Exception during update: " + e.getMessage());
             return false;
+        } finally {
+            UPDATE.end(start);
+        }
+    }
+
+    // adds each delta to the stored balance in one statement, by account id; unlike update() it does not
+    // overwrite the balance with a value read earlier, so concurrent writers cannot lose each other's changes
+    @SuppressWarnings("SqlResolve")
+    public boolean applyDeltas(Map<Long, BigDecimal> deltas) {
+        long start = APPLY_DELTAS.begin();
+        if (deltas.isEmpty()) {
+            APPLY_DELTAS.end(start, 0);
+            return true;
+        }
+        String sql = "UPDATE accounts a SET balance = a.balance + d.delta " +
+                "FROM unnest(?::bigint[], ?::numeric[]) AS d(id, delta) WHERE a.id = d.id";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("bigint", deltas.keySet().toArray(new Long[0])));
+            stmt.setArray(2, connection.createArrayOf("numeric", deltas.values().toArray(new BigDecimal[0])));
+            return stmt.executeUpdate() == deltas.size();
+        } catch (SQLException e) {
+            APPLY_DELTAS.error();
+            System.err.println("SQL Exception during applyDeltas: " + e.getMessage());
+            return false;
+        } finally {
+            APPLY_DELTAS.end(start, deltas.size());
+        }
+    }
+
+    // takes every transaction of the ledger back out of the account balances, with one aggregate statement
+    // however many transactions the ledger has: incomes and incoming transfers are debited, expenses and
+    // outgoing transfers credited. The checkpoints of those accounts go from the ledger's first transaction on
+    @SuppressWarnings("SqlResolve")
+    public boolean reverseLedger(long ledgerId) {
+        long start = REVERSE_LEDGER.begin();
+        int rows = 0;
+        String sql = "WITH d AS (SELECT account_id, SUM(delta) AS delta, MIN(transaction_date) AS first_date FROM (" +
+                "SELECT from_account_id AS account_id, amount AS delta, transaction_date FROM transactions WHERE ledger_id = ? AND from_account_id IS NOT NULL " +
+                "UNION ALL " +
+                "SELECT to_account_id, -amount, transaction_date FROM transactions WHERE ledger_id = ? AND to_account_id IS NOT NULL" +
+                ") s GROUP BY account_id), " +
+                staleCheckpoints("d", "first_date", "account_id") +
+                " UPDATE accounts a SET balance = a.balance + d.delta FROM d WHERE a.id = d.account_id";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledgerId);
+            stmt.setLong(2, ledgerId);
+            rows = stmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            REVERSE_LEDGER.error();
+            System.err.println("SQL Exception during reverseLedger: " + e.getMessage());
+            return false;
+        } finally {
+            REVERSE_LEDGER.end(start, rows);
+        }
+    }
+
+    // a balance entered by the user: the opening balance moves by the same amount, so the transactions
+    // already recorded still add up to the new balance
+    @SuppressWarnings("SqlResolve")
+    public boolean setBalance(Account account, BigDecimal balance) {
+        long start = SET_BALANCE.begin();
+        String sql = "WITH updated AS (UPDATE accounts SET opening_balance = opening_balance + (? - balance), balance = ? " +
+                "WHERE id = ? RETURNING user_id, included_in_asset), " +
+                NetWorthDAO.forgetHistory("SELECT user_id FROM updated WHERE included_in_asset") +
+                " SELECT COUNT(*) FROM updated";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setBigDecimal(1, balance);
+            stmt.setBigDecimal(2, balance);
+            stmt.setLong(3, account.getId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        } catch (SQLException e) {
+            SET_BALANCE.error();
+            System.err.println("SQL Exception during setBalance: " + e.getMessage());
+            return false;
+        } finally {
+            SET_BALANCE.end(start);
+        }
+    }
+
+    // live accounts whose balance is not opening_balance plus their net in netByAccount (account id -> net
+    // of its transactions, computed by the caller), compared in one statement; null on error
+    @SuppressWarnings("SqlResolve")
+    public List<BalanceDrift> findDrift(Map<Long, BigDecimal> netByAccount) {
+        long start = FIND_DRIFT.begin();
+        List<BalanceDrift> drifts = new ArrayList<>();
+        String sql = "SELECT a.id, a.name, a.balance, a.opening_balance + COALESCE(n.net, 0) AS expected " +
+                "FROM accounts a LEFT JOIN unnest(?::bigint[], ?::numeric[]) AS n(id, net) ON n.id = a.id " +
+                "WHERE a.deleted_at IS NULL AND a.balance <> a.opening_balance + COALESCE(n.net, 0) ORDER BY a.id";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("bigint", netByAccount.keySet().toArray(new Long[0])));
+            stmt.setArray(2, connection.createArrayOf("numeric", netByAccount.values().toArray(new BigDecimal[0])));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    drifts.add(new BalanceDrift(rs.getLong(1), rs.getString(2), rs.getBigDecimal(3), rs.getBigDecimal(4)));
+                }
+            }
+            return drifts;
+        } catch (SQLException e) {
+            FIND_DRIFT.error();
+            System.err.println("SQL Exception during findDrift: " + e.getMessage());
+            return null;
+        } finally {
+            FIND_DRIFT.end(start, drifts.size());
+        }
+    }
+
+    // row locks on the accounts until the end of the current db transaction, taken in id order
+    @SuppressWarnings("SqlResolve")
+    public boolean lock(List<Long> ids) {
+        long start = LOCK.begin();
+        int rows = 0;
+        String sql = "SELECT id FROM accounts WHERE id = ANY(?) ORDER BY id FOR UPDATE";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("bigint", ids.toArray(new Long[0])));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            LOCK.error();
+            System.err.println("SQL Exception during lock: " + e.getMessage());
+            return false;
+        } finally {
+            LOCK.end(start, rows);
+        }
+    }
+
+    // sets the balance of each account back to opening_balance plus the net of its transactions, computed
+    // in the same statement; returns the number of accounts changed, or -1 on error
+    @SuppressWarnings("SqlResolve")
+    public int repairBalances(List<Long> ids) {
+        long start = REPAIR_BALANCES.begin();
+        int rows = 0;
+        String sql = "UPDATE accounts a SET balance = a.opening_balance + COALESCE(n.net, 0) " +
+                "FROM unnest(?::bigint[]) AS r(id) LEFT JOIN (" + netByAccount("= ANY(?)") + ") n ON n.account_id = r.id " +
+                "WHERE a.id = r.id AND a.deleted_at IS NULL AND a.balance <> a.opening_balance + COALESCE(n.net, 0)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            Array array = connection.createArrayOf("bigint", ids.toArray(new Long[0]));
+            stmt.setArray(1, array);
+            stmt.setArray(2, array);
+            stmt.setArray(3, array);
+            rows = stmt.executeUpdate();
+            return rows;
+        } catch (SQLException e) {
+            REPAIR_BALANCES.error();
+            System.err.println("SQL Exception during repairBalances: " + e.getMessage());
+            return -1;
+        } finally {
+            REPAIR_BALANCES.end(start, rows);
+        }
+    }
+
+    // adds the missing month-end checkpoints of an account up to through (a month end), in one statement: months
+    // after the last checkpoint, each the previous one plus that month's net, a running sum over the months.
+    // Returns the number of checkpoints written, or -1 on error
+    @SuppressWarnings("SqlResolve")
+    public int refreshCheckpoints(long accountId, LocalDate through) {
+        long start = REFRESH_CHECKPOINTS.begin();
+        int rows = 0;
+        String sql = "WITH p AS (SELECT ?::bigint AS account_id, ?::date AS through), " +
+                "last AS (SELECT c.period_end, c.net FROM account_balance_checkpoints c JOIN p ON c.account_id = p.account_id " +
+                "WHERE c.period_end <= p.through ORDER BY c.period_end DESC LIMIT 1), " +
+                "moves AS (" +
+                "SELECT t.transaction_date AS d, t.amount AS delta FROM live_transactions t JOIN p ON t.to_account_id = p.account_id " +
+                "WHERE t.transaction_date > COALESCE((SELECT period_end FROM last), '-infinity') AND t.transaction_date <= p.through " +
+                "UNION ALL " +
+                "SELECT t.transaction_date, -t.amount FROM live_transactions t JOIN p ON t.from_account_id = p.account_id " +
+                "WHERE t.transaction_date > COALESCE((SELECT period_end FROM last), '-infinity') AND t.transaction_date <= p.through), " +
+                "months AS (" +
+                "SELECT (m + INTERVAL '1 month - 1 day')::date AS period_end FROM p, generate_series(" +
+                "date_trunc('month', COALESCE((SELECT period_end FROM last) + 1, (SELECT MIN(d) FROM moves))), " +
+                "p.through, INTERVAL '1 month') AS m) " +
+                "INSERT INTO account_balance_checkpoints (account_id, period_end, net) " +
+                "SELECT p.account_id, months.period_end, COALESCE((SELECT net FROM last), 0) " +
+                "+ SUM(COALESCE(s.delta, 0)) OVER (ORDER BY months.period_end) " +
+                "FROM p, months LEFT JOIN (" +
+                "SELECT (date_trunc('month', d) + INTERVAL '1 month - 1 day')::date AS period_end, SUM(delta) AS delta " +
+                "FROM moves GROUP BY 1) s ON s.period_end = months.period_end " +
+                "WHERE months.period_end <= p.through AND EXISTS (SELECT 1 FROM accounts a WHERE a.id = p.account_id AND a.deleted_at IS NULL) " +
+                "ON CONFLICT (account_id, period_end) DO UPDATE SET net = EXCLUDED.net";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, accountId);
+            stmt.setObject(2, through);
+            rows = stmt.executeUpdate();
+            return rows;
+        } catch (SQLException e) {
+            REFRESH_CHECKPOINTS.error();
+            System.err.println("SQL Exception during refreshCheckpoints: " + e.getMessage());
+            return -1;
+        } finally {
+            REFRESH_CHECKPOINTS.end(start, rows);
+        }
+    }
+
+    // balance at the end of date, from the nearest checkpoint; null for a deleted account or on error
+    @SuppressWarnings("SqlResolve")
+    public BigDecimal getBalanceAsOf(long accountId, LocalDate date) {
+        long start = GET_BALANCE_AS_OF.begin();
+        String sql = "WITH " + BALANCE_AS_OF_CTES + " " + BALANCE_AS_OF_SELECT;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, accountId);
+            stmt.setObject(2, date, Types.DATE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getBigDecimal(1) : null;
+            }
+        } catch (SQLException e) {
+            GET_BALANCE_AS_OF.error();
+            System.err.println("SQL Exception during getBalanceAsOf: " + e.getMessage());
+            return null;
+        } finally {
+            GET_BALANCE_AS_OF.end(start);
+        }
+    }
+
+    // CTEs for statements that write transactions: remove the checkpoints of the accounts in accountColumns
+    // of the rows of cte, and the net worth history of their owners, from the date in dateColumn on
+    static String staleCheckpoints(String cte, String dateColumn, String... accountColumns) {
+        StringBuilder accounts = new StringBuilder();
+        for (String column : accountColumns) {
+            if (!accounts.isEmpty()) accounts.append(", ");
+            accounts.append("w.").append(column);
+        }
+        return "stale AS (DELETE FROM account_balance_checkpoints cp USING " + cte + " w " +
+                "WHERE cp.account_id IN (" + accounts + ") AND cp.period_end >= w." + dateColumn + "), " +
+                NetWorthDAO.staleHistory(cte, dateColumn, accounts.toString());
+    }
+
+    // net amount of the visible transactions per account, for the accounts matching accountFilter on either side
+    private static String netByAccount(String accountFilter) {
+        return "SELECT account_id, SUM(delta) AS net FROM (" +
+                "SELECT from_account_id AS account_id, -amount AS delta FROM live_transactions WHERE from_account_id " + accountFilter +
+                " UNION ALL " +
+                "SELECT to_account_id, amount FROM live_transactions WHERE to_account_id " + accountFilter +
+                ") d GROUP BY account_id";
+    }
+
+    //hides the account right away, the rows are removed later by DeletionPurger
+    @SuppressWarnings("SqlResolve")
+    public boolean softDelete(Account account) {
+        long start = SOFT_DELETE.begin();
+        //the incomes and expenses of the account disappear from the spending statistics with it, and the
+        //account from every day of the owner's net worth history
+        String sql = "WITH deleted AS (UPDATE accounts SET deleted_at = now() WHERE id = ? AND deleted_at IS NULL " +
+                "RETURNING id, user_id, included_in_asset), " +
+                NetWorthDAO.forgetHistory("SELECT user_id FROM deleted WHERE included_in_asset") + ", " +
+                SpendingStatsDAO.record("SELECT t.ledger_id, t.category_id, t.transaction_date, t.amount, -1 " +
+                        "FROM live_transactions t JOIN deleted d ON d.id IN (t.from_account_id, t.to_account_id) " +
+                        "WHERE t.category_id IS NOT NULL") +
+                " SELECT COUNT(*) FROM deleted";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, account.getId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        } catch (SQLException e) {
+            SOFT_DELETE.error();
+            System.err.println("SQL Exception during account soft delete: " + e.getMessage());
+            return false;
+        } finally {
+            SOFT_DELETE.end(start);
+        }
+    }
+
+    //accounts soft deleted and not purged yet, oldest first
+    @SuppressWarnings("SqlResolve")
+    public List<Long> getDeletedIds() {
+        long start = GET_DELETED_IDS.begin();
+        List<Long> ids = new ArrayList<>();
+        String sql = "SELECT id FROM accounts WHERE deleted_at IS NOT NULL ORDER BY deleted_at, id";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        } catch (SQLException e) {
+            GET_DELETED_IDS.error();
+            System.err.println("SQL Exception during getDeletedIds: " + e.getMessage());
+        } finally {
+            GET_DELETED_IDS.end(start, ids.size());
         }
+        return ids;
     }
 
     @SuppressWarnings("SqlResolve")
     public boolean delete(Account account) {
+        long start = DELETE.begin();
         String sql = "DELETE FROM accounts WHERE id = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, account.getId());
             int affected = stmt.executeUpdate();
             return affected > 0;
         }catch (SQLException e){
+            DELETE.error();
             System.err.println("SQL Exception during deleteAccount: " + e.getMessage());
             return false;
+        } finally {
+            DELETE.end(start);
         }
     }
 
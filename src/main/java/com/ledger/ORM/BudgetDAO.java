@@ -1,13 +1,62 @@
 package com.ledger.ORM;
 
 import com.ledger.DomainModel.Budget;
+import com.ledger.DomainModel.BudgetAlert;
 import com.ledger.DomainModel.Ledger;
 import com.ledger.DomainModel.LedgerCategory;
 import com.ledger.DomainModel.Period;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class BudgetDAO {
+    private static final OperationMetrics GET_BY_ID = MetricsRegistry.getInstance().dao("BudgetDAO.getById");
+    private static final OperationMetrics INSERT = MetricsRegistry.getInstance().dao("BudgetDAO.insert");
+    private static final OperationMetrics INSERT_FOR_EXPENSE_CATEGORIES = MetricsRegistry.getInstance().dao("BudgetDAO.insertForExpenseCategories");
+    private static final OperationMetrics UPDATE = MetricsRegistry.getInstance().dao("BudgetDAO.update");
+    private static final OperationMetrics GET_BUDGET_BY_CATEGORY = MetricsRegistry.getInstance().dao("BudgetDAO.getBudgetByCategory");
+    private static final OperationMetrics GET_BUDGET_BY_LEDGER = MetricsRegistry.getInstance().dao("BudgetDAO.getBudgetByLedger");
+    private static final OperationMetrics GET_BUDGETS_BY_LEDGER = MetricsRegistry.getInstance().dao("BudgetDAO.getBudgetsByLedger");
+    private static final OperationMetrics RECOUNT = MetricsRegistry.getInstance().dao("BudgetDAO.recount");
+    private static final OperationMetrics TAKE_ALERTS = MetricsRegistry.getInstance().dao("BudgetDAO.takeAlerts");
+
+    // percents of the amount whose crossing raises an alert, ledger.budget.alertThresholds (default 80,100)
+    static final int[] ALERT_THRESHOLDS = Arrays.stream(System.getProperty("ledger.budget.alertThresholds", "80,100").split(","))
+            .map(String::trim).filter(t -> !t.isEmpty()).mapToInt(Integer::parseInt).filter(t -> t > 0)
+            .sorted().distinct().toArray();
+
+    // spending of budget b's expense categories between the two date expressions, from the daily cells
+    private static String spent(String startDate, String endDate) {
+        return "COALESCE((SELECT SUM(d.total) FROM spending_daily d " +
+                "JOIN ledger_categories c ON c.id = d.category_id AND c.type = 'EXPENSE' " +
+                "WHERE d.ledger_id = b.ledger_id AND (b.category_id IS NULL " +
+                "OR d.category_id IN (SELECT cc.descendant_id FROM category_closure cc WHERE cc.ancestor_id = b.category_id)) " +
+                "AND d.day BETWEEN " + startDate + " AND " + endDate + "), 0)";
+    }
+
+    // highest threshold reached by spent of amount, 0 for none; budgets without an amount never alert
+    private static String alertLevel(String spent, String amount) {
+        return "COALESCE((SELECT MAX(t) FROM unnest(ARRAY[" +
+                Arrays.stream(ALERT_THRESHOLDS).mapToObj(String::valueOf).collect(Collectors.joining(",")) +
+                "]::int[]) t WHERE " + amount + " > 0 AND " + spent + " * 100 >= " + amount + " * t), 0)";
+    }
+
+    static final RowMapper<Budget> MAPPER = RowMapper.builder(Budget::new)
+            .longColumn("id", Budget::setId)
+            .decimalColumn("amount", Budget::setAmount)
+            .enumColumn("period", Period.class, Budget::setPeriod)
+            .dateColumn("start_date", Budget::setStartDate)
+            .dateColumn("end_date", Budget::setEndDate)
+            .decimalColumn("spent", Budget::setSpent)
+            .build();
+
     private final Connection connection;
 
     public BudgetDAO(Connection connection) {
@@ -16,29 +65,29 @@ public class BudgetDAO {
 
     @SuppressWarnings("SqlResolve")
     public Budget getById(long budgetId) {
-        String sql = "SELECT id, amount, period, category_id, ledger_id, start_date, end_date " +
-                "FROM budgets WHERE id = ?";
+        long start = GET_BY_ID.begin();
+        int rows = 0;
+        String sql = "SELECT " + MAPPER.columns() + " FROM budgets WHERE id = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, budgetId);
             try(ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Budget budget = new Budget();
-                    budget.setId(rs.getLong("id"));
-                    budget.setAmount(rs.getBigDecimal("amount"));
-                    budget.setPeriod(Period.valueOf(rs.getString("period")));
-                    budget.setStartDate(rs.getDate("start_date").toLocalDate());
-                    budget.setEndDate(rs.getDate("end_date").toLocalDate());
-                    return budget;
+                    rows = 1;
+                    return MAPPER.map(rs);
                 }
             }
         }catch (SQLException e){
+            GET_BY_ID.error();
             System.err.println("SQL Exception during getById: " + e.getMessage());
+        } finally {
+            GET_BY_ID.end(start, rows);
         }
         return null;
     }
 
     @SuppressWarnings("SqlResolve")
     public boolean insert(Budget budget) {
+        long start = INSERT.begin();
         String sql = "INSERT INTO budgets (amount, period, category_id, ledger_id, start_date, end_date) " +
                 "VALUES (?, ?, ?, ?, ?, ?)";
         try (PreparedStatement stmt = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
@@ -63,29 +112,80 @@ public class BudgetDAO {
             }
             return false;
         }catch (SQLException e){
+            INSERT.error();
             System.err.println("SQL Exception during insert: " + e.getMessage());
             return false;
+        } finally {
+            INSERT.end(start);
         }
     }
 
+    // inserts each of the ledger-level budgets and a copy of it for every expense category of its ledger,
+    // in one statement. Returns the number of budgets inserted, or -1 on error
+    @SuppressWarnings("SqlResolve")
+    public int insertForExpenseCategories(Ledger ledger, List<Budget> ledgerBudgets) {
+        long start = INSERT_FOR_EXPENSE_CATEGORIES.begin();
+        int rows = 0;
+        String sql = "INSERT INTO budgets (amount, period, category_id, ledger_id, start_date, end_date) " +
+                "SELECT p.amount, p.period, c.id, ?, p.start_date, p.end_date FROM (VALUES " +
+                String.join(", ", Collections.nCopies(ledgerBudgets.size(), "(?::numeric, ?, ?::date, ?::date)")) +
+                ") p(amount, period, start_date, end_date) " +
+                "CROSS JOIN (SELECT NULL::bigint AS id UNION ALL " +
+                "SELECT id FROM ledger_categories WHERE ledger_id = ? AND type = 'EXPENSE') c";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            stmt.setLong(index++, ledger.getId());
+            for (Budget budget : ledgerBudgets) {
+                stmt.setBigDecimal(index++, budget.getAmount());
+                stmt.setString(index++, budget.getPeriod().name());
+                stmt.setDate(index++, Date.valueOf(budget.getStartDate()));
+                stmt.setDate(index++, Date.valueOf(budget.getEndDate()));
+            }
+            stmt.setLong(index, ledger.getId());
+            rows = stmt.executeUpdate();
+            return rows;
+        } catch (SQLException e) {
+            INSERT_FOR_EXPENSE_CATEGORIES.error();
+            System.err.println("SQL Exception during insertForExpenseCategories: " + e.getMessage());
+            return -1;
+        } finally {
+            INSERT_FOR_EXPENSE_CATEGORIES.end(start, rows);
+        }
+    }
+
+    //a budget moved to another period counts the spending of that period again
     @SuppressWarnings("SqlResolve")
     public boolean update(Budget budget) {
-        String sql = "UPDATE budgets SET amount = ?, start_date=?, end_date=? WHERE id = ?";
+        long start = UPDATE.begin();
+        String sql = "UPDATE budgets b SET amount = p.amount, start_date = p.start_date, end_date = p.end_date, " +
+                "spent = CASE WHEN b.start_date = p.start_date AND b.end_date = p.end_date THEN b.spent " +
+                "ELSE " + spent("p.start_date", "p.end_date") + " END " +
+                "FROM (SELECT ?::numeric AS amount, ?::date AS start_date, ?::date AS end_date) p WHERE b.id = ? " +
+                "RETURNING b.spent";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setBigDecimal(1, budget.getAmount());
             stmt.setDate(2, Date.valueOf(budget.getStartDate()));
             stmt.setDate(3, Date.valueOf(budget.getEndDate()));
             stmt.setLong(4, budget.getId());
-            return stmt.executeUpdate() > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return false;
+                budget.setSpent(rs.getBigDecimal(1));
+                return true;
+            }
         }catch (SQLException e){
+            UPDATE.error();
             System.err.println("SQL Exception during update: " + e.getMessage());
             return false;
+        } finally {
+            UPDATE.end(start);
         }
     }
 
     @SuppressWarnings("SqlResolve")
     public Budget getBudgetByCategory(LedgerCategory category, Period p) {
-        String sql = "SELECT id, amount, period, category_id, start_date, end_date " +
+        long start = GET_BUDGET_BY_CATEGORY.begin();
+        int rows = 0;
+        String sql = "SELECT " + MAPPER.columns() + " " +
                 "FROM budgets " +
                 "WHERE category_id = ? AND period = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
@@ -93,25 +193,26 @@ public class BudgetDAO {
             stmt.setString(2, p.name());
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Budget budget = new Budget();
-                    budget.setId(rs.getLong("id"));
-                    budget.setAmount(rs.getBigDecimal("amount"));
-                    budget.setPeriod(Period.valueOf(rs.getString("period")));
-                    budget.setStartDate(rs.getDate("start_date").toLocalDate());
-                    budget.setEndDate(rs.getDate("end_date").toLocalDate());
+                    rows = 1;
+                    Budget budget = MAPPER.map(rs);
                     budget.setCategory(category);
                     return budget;
                 }
             }
         }catch (SQLException e){
+            GET_BUDGET_BY_CATEGORY.error();
             System.err.println("SQL Exception during getBudgetByCategoryId: " + e.getMessage());
+        } finally {
+            GET_BUDGET_BY_CATEGORY.end(start, rows);
         }
         return null;
     }
 
     @SuppressWarnings("SqlResolve") //get budget for a ledger
     public Budget getBudgetByLedger(Ledger ledger, Period p) {
-        String sql = "SELECT id, amount, period, category_id, start_date, end_date " +
+        long start = GET_BUDGET_BY_LEDGER.begin();
+        int rows = 0;
+        String sql = "SELECT " + MAPPER.columns() + " " +
                 "FROM budgets " +
                 "WHERE category_id IS NULL AND ledger_id = ? AND period = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
@@ -119,22 +220,118 @@ public class BudgetDAO {
             stmt.setString(2, p.name());
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Budget budget = new Budget();
-                    budget.setId(rs.getLong("id"));
-                    budget.setAmount(rs.getBigDecimal("amount"));
-                    budget.setPeriod(Period.valueOf(rs.getString("period")));
-                    budget.setStartDate(rs.getDate("start_date").toLocalDate());
-                    budget.setEndDate(rs.getDate("end_date").toLocalDate());
+                    rows = 1;
+                    Budget budget = MAPPER.map(rs);
                     budget.setLedger(ledger);
                     return budget;
                 }
             }
         }catch (SQLException e){
+            GET_BUDGET_BY_LEDGER.error();
             System.err.println("SQL Exception during getBudgetByLedgerId: " + e.getMessage());
+        } finally {
+            GET_BUDGET_BY_LEDGER.end(start, rows);
         }
         return null;
     }
-}
 
+    //the ledger budget and every category budget of the ledger for the period; a category budget's category
+    //only has its id set
+    @SuppressWarnings("SqlResolve")
+    public List<Budget> getBudgetsByLedger(Ledger ledger, Period p) {
+        long start = GET_BUDGETS_BY_LEDGER.begin();
+        List<Budget> budgets = new ArrayList<>();
+        String sql = "SELECT " + MAPPER.columns() + ", category_id " +
+                "FROM budgets " +
+                "WHERE ledger_id = ? AND period = ? ORDER BY category_id NULLS FIRST, id";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledger.getId());
+            stmt.setString(2, p.name());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Budget budget = MAPPER.map(rs);
+                    budget.setLedger(ledger);
+                    long categoryId = rs.getLong(MAPPER.size() + 1);
+                    if (!rs.wasNull()) {
+                        LedgerCategory category = new LedgerCategory();
+                        category.setId(categoryId);
+                        budget.setCategory(category);
+                    }
+                    budgets.add(budget);
+                }
+            }
+        }catch (SQLException e){
+            GET_BUDGETS_BY_LEDGER.error();
+            System.err.println("SQL Exception during getBudgetsByLedger: " + e.getMessage());
+        } finally {
+            GET_BUDGETS_BY_LEDGER.end(start, budgets.size());
+        }
+        return budgets;
+    }
 
+    // CTEs adding the changes of the spending_changes CTE (see SpendingStatsDAO.record) to the counters of the
+    // budgets whose period holds them, and raising an alert for each budget that reached a higher threshold
+    static String countSpending() {
+        return "budget_deltas AS (SELECT b.id, SUM(sc.weight * sc.amount) AS delta FROM spending_changes sc " +
+                "JOIN ledger_categories c ON c.id = sc.category_id AND c.type = 'EXPENSE' " +
+                "JOIN budgets b ON b.ledger_id = sc.ledger_id AND (b.category_id IS NULL " +
+                "OR b.category_id IN (SELECT cc.ancestor_id FROM category_closure cc WHERE cc.descendant_id = c.id)) " +
+                "AND sc.transaction_date BETWEEN b.start_date AND b.end_date " +
+                "GROUP BY b.id HAVING SUM(sc.weight * sc.amount) <> 0), " +
+                "budget_counters AS (UPDATE budgets b SET spent = b.spent + d.delta FROM budget_deltas d WHERE b.id = d.id " +
+                "RETURNING b.id, b.spent, b.amount, " + alertLevel("b.spent", "b.amount") + " AS level, " +
+                alertLevel("(b.spent - d.delta)", "b.amount") + " AS old_level), " +
+                "budget_alerts_raised AS (INSERT INTO budget_alerts AS a (budget_id, threshold, spent, amount, raised_at) " +
+                "SELECT id, level, spent, amount, now() FROM budget_counters WHERE level > old_level " +
+                "ON CONFLICT (budget_id, threshold) DO UPDATE SET spent = EXCLUDED.spent, amount = EXCLUDED.amount, " +
+                "raised_at = EXCLUDED.raised_at)";
+    }
+
+    // counts the spending of every budget of a ledger again, after its categories moved or for data written
+    // around the DAOs; raises no alert. Returns the number of budgets, or -1 on error
+    @SuppressWarnings("SqlResolve")
+    public int recount(long ledgerId) {
+        long start = RECOUNT.begin();
+        int rows = 0;
+        String sql = "UPDATE budgets b SET spent = " + spent("b.start_date", "b.end_date") + " WHERE b.ledger_id = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledgerId);
+            rows = stmt.executeUpdate();
+            return rows;
+        } catch (SQLException e) {
+            RECOUNT.error();
+            System.err.println("SQL Exception during recount: " + e.getMessage());
+            return -1;
+        } finally {
+            RECOUNT.end(start, rows);
+        }
+    }
 
+    // removes and returns the alerts raised so far on the budgets of one user's ledgers, oldest first, so a
+    // write never takes the alerts of another user's budgets; null on error
+    @SuppressWarnings("SqlResolve")
+    public List<BudgetAlert> takeAlerts(long userId) {
+        long start = TAKE_ALERTS.begin();
+        List<BudgetAlert> alerts = new ArrayList<>();
+        String sql = "WITH taken AS (DELETE FROM budget_alerts a USING budgets b, ledgers l " +
+                "WHERE b.id = a.budget_id AND l.id = b.ledger_id AND l.user_id = ? " +
+                "RETURNING a.budget_id, a.threshold, a.spent, a.amount, a.raised_at) " +
+                "SELECT budget_id, threshold, spent, amount, raised_at FROM taken ORDER BY raised_at, budget_id, threshold";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    alerts.add(new BudgetAlert(rs.getLong(1), rs.getInt(2), rs.getBigDecimal(3), rs.getBigDecimal(4),
+                            rs.getObject(5, LocalDateTime.class)));
+                }
+            }
+            return alerts;
+        } catch (SQLException e) {
+            TAKE_ALERTS.error();
+            System.err.println("SQL Exception during takeAlerts: " + e.getMessage());
+            return null;
+        } finally {
+            TAKE_ALERTS.end(start, alerts.size());
+        }
+    }
+}
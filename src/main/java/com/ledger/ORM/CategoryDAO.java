@@ -2,6 +2,8 @@ package com.ledger.ORM;
 
 import com.ledger.DomainModel.Category;
 import com.ledger.DomainModel.CategoryType;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -11,6 +13,16 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class CategoryDAO {
+    private static final OperationMetrics GET_PARENT_CATEGORIES = MetricsRegistry.getInstance().dao("CategoryDAO.getParentCategories");
+    private static final OperationMetrics GET_CATEGORIES_BY_PARENT_ID = MetricsRegistry.getInstance().dao("CategoryDAO.getCategoriesByParentId");
+    private static final OperationMetrics COPY_TO_LEDGER = MetricsRegistry.getInstance().dao("CategoryDAO.copyToLedger");
+
+    static final RowMapper<Category> MAPPER = RowMapper.builder(Category::new)
+            .longColumn("id", Category::setId)
+            .stringColumn("name", Category::setName)
+            .enumColumn("type", CategoryType.class, Category::setType)
+            .build();
+
     private final Connection connection;
 
     public CategoryDAO(Connection connection) {
@@ -19,49 +31,82 @@ public class CategoryDAO {
 
     @SuppressWarnings("SqlResolve")
     public List<Category> getParentCategories() {
+        long start = GET_PARENT_CATEGORIES.begin();
         List<Category> categories = new ArrayList<>();
 
-        String sql = "SELECT id, name, parent_id, type FROM global_categories WHERE parent_id IS NULL ORDER BY id";
+        String sql = "SELECT " + MAPPER.columns() + " FROM global_categories WHERE parent_id IS NULL ORDER BY id";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
              try(ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Category category = new Category();
-                    category.setId(rs.getLong("id"));
-                    category.setName(rs.getString("name"));
-                    category.setType(CategoryType.valueOf(rs.getString("type")));
-                    category.setParent(null);
-
-                    categories.add(category);
+                    categories.add(MAPPER.map(rs));
                 }
             }
 
         }catch (SQLException e){
+            GET_PARENT_CATEGORIES.error();
             System.err.println("SQL Exception during getCategoriesNullParent: " + e.getMessage());
+        } finally {
+            GET_PARENT_CATEGORIES.end(start, categories.size());
         }
         return categories;
     }
 
     @SuppressWarnings("SqlResolve")
     public List<Category> getCategoriesByParentId(long parentId) {
+        long start = GET_CATEGORIES_BY_PARENT_ID.begin();
         List<Category> categories = new ArrayList<>();
 
-        String sql = "SELECT id, name, parent_id, type FROM global_categories WHERE parent_id = ? ORDER BY id";
+        String sql = "SELECT " + MAPPER.columns() + " FROM global_categories WHERE parent_id = ? ORDER BY id";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, parentId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Category category = new Category();
-                    category.setId(rs.getLong("id"));
-                    category.setName(rs.getString("name"));
-                    category.setType(CategoryType.valueOf(rs.getString("type")));
-                    categories.add(category);
+                    categories.add(MAPPER.map(rs));
                 }
             }
         }catch (SQLException e){
+            GET_CATEGORIES_BY_PARENT_ID.error();
             System.err.println("SQL Exception during getCategoriesByParentId: " + e.getMessage());
+        } finally {
+            GET_CATEGORIES_BY_PARENT_ID.end(start, categories.size());
         }
         return categories;
     }
+
+    // copies the whole global category tree into a ledger with its category_closure rows, in one statement:
+    // the new ids are drawn first, in depth-first order, so parents can be linked by id.
+    // Returns the number of categories copied, or -1 on error
+    @SuppressWarnings("SqlResolve")
+    public int copyToLedger(long ledgerId) {
+        long start = COPY_TO_LEDGER.begin();
+        int rows = 0;
+        String sql = "WITH RECURSIVE paths AS (" +
+                "SELECT id, ARRAY[id] AS path FROM global_categories WHERE parent_id IS NULL " +
+                "UNION ALL SELECT g.id, p.path || g.id FROM paths p JOIN global_categories g ON g.parent_id = p.id), " +
+                "ids AS (SELECT o.id AS global_id, nextval(pg_get_serial_sequence('ledger_categories', 'id')) AS id " +
+                "FROM (SELECT id FROM paths ORDER BY path) o), " +
+                "inserted AS (INSERT INTO ledger_categories (id, ledger_id, name, parent_id, type) " +
+                "SELECT i.id, ?, g.name, p.id, g.type FROM global_categories g JOIN ids i ON i.global_id = g.id " +
+                "LEFT JOIN ids p ON p.global_id = g.parent_id RETURNING id), " +
+                "linked AS (INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+                "SELECT a.id, d.id, cardinality(p.path) - u.pos FROM paths p " +
+                "CROSS JOIN LATERAL unnest(p.path) WITH ORDINALITY u(global_id, pos) " +
+                "JOIN ids d ON d.global_id = p.id JOIN ids a ON a.global_id = u.global_id) " +
+                "SELECT COUNT(*) FROM inserted";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledgerId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rows = rs.next() ? rs.getInt(1) : 0;
+            }
+            return rows;
+        } catch (SQLException e) {
+            COPY_TO_LEDGER.error();
+            System.err.println("SQL Exception during copyToLedger: " + e.getMessage());
+            return -1;
+        } finally {
+            COPY_TO_LEDGER.end(start, rows);
+        }
+    }
 }
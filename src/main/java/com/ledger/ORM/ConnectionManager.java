@@ -1,17 +1,29 @@
 package com.ledger.ORM;
 
+import com.ledger.Routing.RoutingDataSource;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Arrays;
 
+// the primary is ledger.db.url, ledger.db.user and ledger.db.password; ledger.db.replicas lists the urls of its
+// read replicas, comma separated (default none), which serve read-only controller methods when at most
+// ledger.db.maxStalenessMillis behind (default 5000, negative for any lag), checked at most every
+// ledger.db.replicaCheckMillis (default 1000)
 public final class ConnectionManager {
     private static Connection connection;
-    private static final String url = "jdbc:postgresql://localhost:5432/ledger_db";
-    private static final String user = "postgres";
-    private static final String password = "5858";
+    private static final String url = System.getProperty("ledger.db.url", "jdbc:postgresql://localhost:5432/ledger_db");
+    private static final String user = System.getProperty("ledger.db.user", "postgres");
+    private static final String password = System.getProperty("ledger.db.password", "5858");
     private static ConnectionManager instance;
 
-    private ConnectionManager(){}
+    private RoutingDataSource dataSource;
+
+    private ConnectionManager(){
+        dataSource = new RoutingDataSource(url, Arrays.asList(System.getProperty("ledger.db.replicas", "").split(",")),
+                user, password, Long.getLong("ledger.db.maxStalenessMillis", 5000),
+                Long.getLong("ledger.db.replicaCheckMillis", 1000));
+    }
 
     public static ConnectionManager getInstance() {
         if (instance == null) {
@@ -37,12 +49,38 @@ public final class ConnectionManager {
         }
         if (shouldReconnect) {
             try {
-                // try to establish a new connection
-                connection = DriverManager.getConnection(url, user, password);
+                connection = dataSource.getConnection();
             } catch (SQLException e) {
                 System.err.println("Error connecting to database: " + e.getMessage());
             }
         }
         return connection;
     }
+
+    // a separate connection to the primary for work running on its own thread, closed by its owner; null on error
+    public Connection openConnection() {
+        try {
+            return dataSource.openPrimary();
+        } catch (SQLException e) {
+            System.err.println("Error connecting to database: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public RoutingDataSource getDataSource() {
+        return dataSource;
+    }
+
+    // connections come from dataSource from now on; the current one is closed
+    public void setDataSource(RoutingDataSource dataSource) {
+        this.dataSource = dataSource;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("SQL Exception while closing connection: " + e.getMessage());
+            }
+            connection = null;
+        }
+    }
 }
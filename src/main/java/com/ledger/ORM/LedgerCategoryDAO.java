@@ -3,12 +3,33 @@ package com.ledger.ORM;
 import com.ledger.DomainModel.CategoryType;
 import com.ledger.DomainModel.Ledger;
 import com.ledger.DomainModel.LedgerCategory;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class LedgerCategoryDAO {
+    private static final OperationMetrics GET_BY_ID = MetricsRegistry.getInstance().dao("LedgerCategoryDAO.getById");
+    private static final OperationMetrics INSERT = MetricsRegistry.getInstance().dao("LedgerCategoryDAO.insert");
+    private static final OperationMetrics UPDATE = MetricsRegistry.getInstance().dao("LedgerCategoryDAO.update");
+    private static final OperationMetrics GET_TREE_BY_LEDGER = MetricsRegistry.getInstance().dao("LedgerCategoryDAO.getTreeByLedger");
+    private static final OperationMetrics GET_SUBTREE = MetricsRegistry.getInstance().dao("LedgerCategoryDAO.getSubtree");
+    private static final OperationMetrics GET_CATEGORIES_BY_PARENT_ID = MetricsRegistry.getInstance().dao("LedgerCategoryDAO.getCategoriesByParentId");
+    private static final OperationMetrics DELETE = MetricsRegistry.getInstance().dao("LedgerCategoryDAO.delete");
+    private static final OperationMetrics GET_BY_NAME_AND_LEDGER = MetricsRegistry.getInstance().dao("LedgerCategoryDAO.getByNameAndLedger");
+    private static final OperationMetrics IS_IN_SUBTREE = MetricsRegistry.getInstance().dao("LedgerCategoryDAO.isInSubtree");
+    private static final OperationMetrics LINK_CLOSURE = MetricsRegistry.getInstance().dao("LedgerCategoryDAO.linkClosure");
+
+    static final RowMapper<LedgerCategory> MAPPER = RowMapper.builder(LedgerCategory::new)
+            .longColumn("id", LedgerCategory::setId)
+            .stringColumn("name", LedgerCategory::setName)
+            .enumColumn("type", CategoryType.class, LedgerCategory::setType)
+            .build();
+
     private final Connection connection;
 
     public LedgerCategoryDAO(Connection connection) {
@@ -17,30 +38,40 @@ public class LedgerCategoryDAO {
 
     @SuppressWarnings("SqlResolve")
     public LedgerCategory getById(long id) {
-        String sql = "SELECT id, name, type, ledger_id FROM ledger_categories WHERE id = ?";
+        long start = GET_BY_ID.begin();
+        int rows = 0;
+        String sql = "SELECT " + MAPPER.columns("c") + ", " + LedgerDAO.MAPPER.columns("l") + " " +
+                "FROM ledger_categories c JOIN ledgers l ON c.ledger_id = l.id WHERE c.id = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, id);
             try(ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    LedgerCategory category = new LedgerCategory();
-                    category.setId(rs.getLong("id"));
-                    category.setName(rs.getString("name"));
-                    category.setType(CategoryType.valueOf(rs.getString("type")));
-                    LedgerDAO ledgerDAO = new LedgerDAO(connection);
-                    category.setLedger(ledgerDAO.getById(rs.getLong("ledger_id")));
+                    rows = 1;
+                    LedgerCategory category = MAPPER.map(rs);
+                    category.setLedger(LedgerDAO.MAPPER.map(rs, MAPPER.size() + 1));
                     return category;
                 }
             }
         }catch (SQLException e){
+            GET_BY_ID.error();
             System.err.println("SQL Exception during getById: " + e.getMessage());
+        } finally {
+            GET_BY_ID.end(start, rows);
         }
         return null;
     }
 
+    // also links the new category below its parent's ancestors in category_closure, in the same statement
     @SuppressWarnings("SqlResolve")
     public boolean insert(LedgerCategory category) {
-        String sql = "INSERT INTO ledger_categories (name, type, ledger_id, parent_id) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+        long start = INSERT.begin();
+        String sql = "WITH inserted AS (INSERT INTO ledger_categories (name, type, ledger_id, parent_id) VALUES (?, ?, ?, ?) " +
+                "RETURNING id, parent_id), " +
+                "linked AS (INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+                "SELECT id, id, 0 FROM inserted " +
+                "UNION ALL SELECT a.ancestor_id, i.id, a.depth + 1 FROM inserted i JOIN category_closure a ON a.descendant_id = i.parent_id) " +
+                "SELECT id FROM inserted";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, category.getName());
             stmt.setString(2, category.getType().name());
             stmt.setLong(3, category.getLedger().getId());
@@ -50,136 +81,231 @@ public class LedgerCategoryDAO {
                 stmt.setNull(4, java.sql.Types.BIGINT);
             }
 
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows > 0) {
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        category.setId(generatedKeys.getLong(1));
-                        return true;
-                    }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    category.setId(rs.getLong(1));
+                    return true;
                 }
             }
         }catch (SQLException e){
+            INSERT.error();
             System.err.println("SQL Exception during insert: " + e.getMessage());
+        } finally {
+            INSERT.end(start);
         }
         return false;
     }
 
+    // a new parent moves the whole subtree in the same statement: its links to the old parent's ancestors go,
+    // links to the new parent's ancestors come (or get their new depth). Never moves a category below itself
     @SuppressWarnings("SqlResolve")
     public boolean update(LedgerCategory category) {
-        String sql = "UPDATE ledger_categories SET name = ?, parent_id = ? WHERE id = ?";
+        long start = UPDATE.begin();
+        String sql = "WITH moved AS (UPDATE ledger_categories c SET name = ?, parent_id = ? WHERE c.id = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM category_closure x WHERE x.ancestor_id = c.id AND x.descendant_id = ?) " +
+                "RETURNING c.id, c.parent_id), " +
+                "subtree AS (SELECT s.descendant_id, s.depth FROM category_closure s JOIN moved m ON s.ancestor_id = m.id), " +
+                "above AS (SELECT a.ancestor_id, a.depth FROM category_closure a JOIN moved m ON a.descendant_id = m.parent_id), " +
+                "unlinked AS (DELETE FROM category_closure l USING subtree s WHERE l.descendant_id = s.descendant_id " +
+                "AND l.ancestor_id NOT IN (SELECT descendant_id FROM subtree) AND l.ancestor_id NOT IN (SELECT ancestor_id FROM above)), " +
+                "linked AS (INSERT INTO category_closure AS l (ancestor_id, descendant_id, depth) " +
+                "SELECT a.ancestor_id, s.descendant_id, a.depth + s.depth + 1 FROM above a CROSS JOIN subtree s " +
+                "ON CONFLICT (ancestor_id, descendant_id) DO UPDATE SET depth = EXCLUDED.depth WHERE l.depth <> EXCLUDED.depth) " +
+                "SELECT COUNT(*) FROM moved";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, category.getName());
             if (category.getParent() != null) {
                 stmt.setLong(2, category.getParent().getId());
+                stmt.setLong(4, category.getParent().getId());
             } else {
                 stmt.setNull(2, Types.BIGINT);
+                stmt.setNull(4, Types.BIGINT);
             }
             stmt.setLong(3, category.getId());
-            return stmt.executeUpdate() > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getLong(1) > 0;
+            }
         }catch (SQLException e){
+            UPDATE.error();
             System.err.println("SQL Exception during update: " + e.getMessage());
             return false;
+        } finally {
+            UPDATE.end(start);
         }
     }
 
-    public List<LedgerCategory> getTreeByLedger(Ledger ledger) {
-        List<LedgerCategory> categoriesNullParent = getParentCategories(ledger);
-        return buildCategoryTree(categoriesNullParent, ledger);
+    // true when category is root or lies below it
+    @SuppressWarnings("SqlResolve")
+    public boolean isInSubtree(LedgerCategory root, LedgerCategory category) {
+        long start = IS_IN_SUBTREE.begin();
+        String sql = "SELECT 1 FROM category_closure WHERE ancestor_id = ? AND descendant_id = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, root.getId());
+            stmt.setLong(2, category.getId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            IS_IN_SUBTREE.error();
+            System.err.println("SQL Exception during isInSubtree: " + e.getMessage());
+            return false;
+        } finally {
+            IS_IN_SUBTREE.end(start);
+        }
     }
 
+    // adds the missing category_closure rows of a ledger whose categories were written around the DAO;
+    // returns the number of rows added, or -1 on error
     @SuppressWarnings("SqlResolve")
-    private List<LedgerCategory> getParentCategories(Ledger ledger) {
-        List<LedgerCategory> categories = new ArrayList<>();
-        String sql = "SELECT id, name, parent_id, type, ledger_id FROM ledger_categories WHERE parent_id IS NULL AND ledger_id = ? " +
-                "ORDER BY id";
+    public int linkClosure(long ledgerId) {
+        long start = LINK_CLOSURE.begin();
+        int rows = 0;
+        String sql = "WITH RECURSIVE tree AS (" +
+                "SELECT id AS ancestor_id, id AS descendant_id, 0 AS depth FROM ledger_categories WHERE ledger_id = ? " +
+                "UNION ALL SELECT t.ancestor_id, c.id, t.depth + 1 FROM tree t JOIN ledger_categories c ON c.parent_id = t.descendant_id) " +
+                "INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+                "SELECT ancestor_id, descendant_id, depth FROM tree ON CONFLICT DO NOTHING";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledgerId);
+            rows = stmt.executeUpdate();
+            return rows;
+        } catch (SQLException e) {
+            LINK_CLOSURE.error();
+            System.err.println("SQL Exception during linkClosure: " + e.getMessage());
+            return -1;
+        } finally {
+            LINK_CLOSURE.end(start, rows);
+        }
+    }
+
+    // every category of the ledger in depth-first order (siblings by id) with its parent set, in one statement:
+    // each category sorts by the ids of its ancestors from the root down
+    @SuppressWarnings("SqlResolve")
+    public List<LedgerCategory> getTreeByLedger(Ledger ledger) {
+        long start = GET_TREE_BY_LEDGER.begin();
+        List<LedgerCategory> tree = new ArrayList<>();
+        String sql = "SELECT " + MAPPER.columns("c") + ", c.parent_id FROM ledger_categories c " +
+                "JOIN LATERAL (SELECT array_agg(a.ancestor_id ORDER BY a.depth DESC) AS path " +
+                "FROM category_closure a WHERE a.descendant_id = c.id) p ON TRUE " +
+                "WHERE c.ledger_id = ? ORDER BY p.path";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, ledger.getId());
-            try(ResultSet rs = stmt.executeQuery()) {
+            Map<Long, LedgerCategory> byId = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    LedgerCategory category = new LedgerCategory();
-                    category.setId(rs.getLong("id"));
-                    category.setName(rs.getString("name"));
-                    category.setType(CategoryType.valueOf(rs.getString("type")));
-                    category.setParent(null);
+                    LedgerCategory category = MAPPER.map(rs);
                     category.setLedger(ledger);
-                    categories.add(category);
+                    long parentId = rs.getLong(MAPPER.size() + 1);
+                    if (!rs.wasNull()) category.setParent(byId.get(parentId));
+                    byId.put(category.getId(), category);
+                    tree.add(category);
                 }
             }
-        } catch (SQLException e){
-            System.err.println("SQL Exception during getCategoriesNullParent: " + e.getMessage());
+        } catch (SQLException e) {
+            GET_TREE_BY_LEDGER.error();
+            System.err.println("SQL Exception during getTreeByLedger: " + e.getMessage());
+        } finally {
+            GET_TREE_BY_LEDGER.end(start, tree.size());
         }
-        return categories;
+        return tree;
+    }
+
+    // every category below root at any depth, in the order of getTreeByLedger and with parents set up to root,
+    // in one statement
+    @SuppressWarnings("SqlResolve")
+    public List<LedgerCategory> getSubtree(LedgerCategory root) {
+        long start = GET_SUBTREE.begin();
+        List<LedgerCategory> subtree = new ArrayList<>();
+        String sql = "SELECT " + MAPPER.columns("c") + ", c.parent_id FROM category_closure s " +
+                "JOIN ledger_categories c ON c.id = s.descendant_id " +
+                "JOIN LATERAL (SELECT array_agg(a.ancestor_id ORDER BY a.depth DESC) AS path " +
+                "FROM category_closure a WHERE a.descendant_id = c.id) p ON TRUE " +
+                "WHERE s.ancestor_id = ? AND s.depth > 0 ORDER BY p.path";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, root.getId());
+            Map<Long, LedgerCategory> byId = new HashMap<>();
+            byId.put(root.getId(), root);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    LedgerCategory category = MAPPER.map(rs);
+                    category.setLedger(root.getLedger());
+                    category.setParent(byId.get(rs.getLong(MAPPER.size() + 1)));
+                    byId.put(category.getId(), category);
+                    subtree.add(category);
+                }
+            }
+        } catch (SQLException e) {
+            GET_SUBTREE.error();
+            System.err.println("SQL Exception during getSubtree: " + e.getMessage());
+        } finally {
+            GET_SUBTREE.end(start, subtree.size());
+        }
+        return subtree;
     }
 
     @SuppressWarnings("SqlResolve")
     public List<LedgerCategory> getCategoriesByParentId(long parentId, Ledger ledger) {
+        long start = GET_CATEGORIES_BY_PARENT_ID.begin();
         List<LedgerCategory> categories = new ArrayList<>();
-        String sql = "SELECT id, name, parent_id, type FROM ledger_categories WHERE parent_id = ? ORDER BY id";
+        String sql = "SELECT " + MAPPER.columns() + " FROM ledger_categories WHERE parent_id = ? ORDER BY id";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, parentId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    LedgerCategory category = new LedgerCategory();
-                    category.setId(rs.getLong("id"));
-                    category.setName(rs.getString("name"));
-                    category.setType(CategoryType.valueOf(rs.getString("type")));
+                    LedgerCategory category = MAPPER.map(rs);
                     category.setLedger(ledger);
                     categories.add(category);
                 }
             }
         }catch (SQLException e){
+            GET_CATEGORIES_BY_PARENT_ID.error();
             System.err.println("SQL Exception during getCategoriesByParentId: " + e.getMessage());
+        } finally {
+            GET_CATEGORIES_BY_PARENT_ID.end(start, categories.size());
         }
         return categories;
     }
 
-    private List<LedgerCategory> buildCategoryTree(List<LedgerCategory> categories, Ledger ledger) {
-        List<LedgerCategory> allCategories = new ArrayList<>();
-
-        for (LedgerCategory category : categories) {
-            List<LedgerCategory> children = getCategoriesByParentId(category.getId(), ledger);
-            allCategories.add(category);
-            for (LedgerCategory child : children) {
-                child.setParent(category);
-                allCategories.add(child);
-            }
-        }
-        return allCategories;
-    }
-
+    // its category_closure rows go with it
     @SuppressWarnings("SqlResolve")
     public boolean delete(LedgerCategory category) {
+        long start = DELETE.begin();
         String sql = "DELETE FROM ledger_categories WHERE id = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, category.getId());
             return stmt.executeUpdate() > 0;
         }catch (SQLException e){
+            DELETE.error();
             System.err.println("SQL Exception during delete: " + e.getMessage());
             return false;
+        } finally {
+            DELETE.end(start);
         }
     }
 
     @SuppressWarnings("SqlResolve")
     public LedgerCategory getByNameAndLedger(String name, Ledger ledger) {
-        String sql = "SELECT id, name, type, ledger_id, parent_id FROM ledger_categories WHERE name = ? AND ledger_id = ?";
+        long start = GET_BY_NAME_AND_LEDGER.begin();
+        int rows = 0;
+        String sql = "SELECT " + MAPPER.columns() + " FROM ledger_categories WHERE name = ? AND ledger_id = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, name);
             stmt.setLong(2, ledger.getId());
             try(ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    LedgerCategory category = new LedgerCategory();
-                    category.setId(rs.getLong("id"));
-                    category.setName(rs.getString("name"));
-                    category.setType(CategoryType.valueOf(rs.getString("type")));
+                    rows = 1;
+                    LedgerCategory category = MAPPER.map(rs);
                     category.setLedger(ledger);
                     return category;
                 }
             }
             return null;
         }catch (SQLException e){
+            GET_BY_NAME_AND_LEDGER.error();
             System.err.println("SQL Exception during getByNameAndLedger: " + e.getMessage());
             return null;
+        } finally {
+            GET_BY_NAME_AND_LEDGER.end(start, rows);
         }
     }
 }
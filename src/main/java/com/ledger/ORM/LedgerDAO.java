@@ -1,12 +1,28 @@
 package com.ledger.ORM;
 
 import com.ledger.DomainModel.Ledger;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 
 public class LedgerDAO {
+    private static final OperationMetrics INSERT = MetricsRegistry.getInstance().dao("LedgerDAO.insert");
+    private static final OperationMetrics DELETE = MetricsRegistry.getInstance().dao("LedgerDAO.delete");
+    private static final OperationMetrics UPDATE = MetricsRegistry.getInstance().dao("LedgerDAO.update");
+    private static final OperationMetrics GET_BY_ID = MetricsRegistry.getInstance().dao("LedgerDAO.getById");
+    private static final OperationMetrics GET_BY_NAME_AND_OWNER_ID = MetricsRegistry.getInstance().dao("LedgerDAO.getByNameAndOwnerId");
+    private static final OperationMetrics GET_LEDGERS_BY_USER_ID = MetricsRegistry.getInstance().dao("LedgerDAO.getLedgersByUserId");
+    private static final OperationMetrics SOFT_DELETE = MetricsRegistry.getInstance().dao("LedgerDAO.softDelete");
+    private static final OperationMetrics GET_DELETED_IDS = MetricsRegistry.getInstance().dao("LedgerDAO.getDeletedIds");
+
+    static final RowMapper<Ledger> MAPPER = RowMapper.builder(Ledger::new)
+            .longColumn("id", Ledger::setId)
+            .stringColumn("name", Ledger::setName)
+            .build();
+
    private final Connection connection;
 
     public LedgerDAO(Connection connection) {
@@ -15,6 +31,7 @@ public class LedgerDAO {
 
     @SuppressWarnings("SqlResolve")
     public boolean insert(Ledger ledger) {
+        long start = INSERT.begin();
         String sql = "INSERT INTO ledgers (user_id, name) VALUES (?, ?)";
         try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setLong(1, ledger.getOwner().getId());
@@ -30,91 +47,148 @@ public class LedgerDAO {
             }
             return false;
         }catch (SQLException e){
+            INSERT.error();
             System.err.println("SQL Exception during ledger insert: " + e.getMessage());
+        } finally {
+            INSERT.end(start);
         }
         return false;
     }
 
+    //hides the ledger right away, the rows are removed later by DeletionPurger
+    @SuppressWarnings("SqlResolve")
+    public boolean softDelete(Ledger ledger) {
+        long start = SOFT_DELETE.begin();
+        String sql = "UPDATE ledgers SET deleted_at = now() WHERE id = ? AND deleted_at IS NULL";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledger.getId());
+            return stmt.executeUpdate() > 0;
+        }catch (SQLException e){
+            SOFT_DELETE.error();
+            System.err.println("SQL Exception during ledger soft delete: " + e.getMessage());
+        } finally {
+            SOFT_DELETE.end(start);
+        }
+        return false;
+    }
+
+    //removes the ledger row, its categories, budgets and rules go with it
     @SuppressWarnings("SqlResolve")
     public boolean delete(Ledger ledger) {
+        long start = DELETE.begin();
         String sql = "DELETE FROM ledgers WHERE id = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, ledger.getId());
             return stmt.executeUpdate() > 0;
         }catch (SQLException e){
+            DELETE.error();
             System.err.println("SQL Exception during ledger delete: " + e.getMessage());
+        } finally {
+            DELETE.end(start);
         }
         return false;
     }
 
     @SuppressWarnings("SqlResolve")
     public boolean update(Ledger ledger) {
+        long start = UPDATE.begin();
         String sql = "UPDATE ledgers SET name = ? WHERE id = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, ledger.getName());
             stmt.setLong(2, ledger.getId());
             return stmt.executeUpdate() > 0;
         }catch (SQLException e){
+            UPDATE.error();
             System.err.println("SQL Exception during ledger update: " + e.getMessage());
+        } finally {
+            UPDATE.end(start);
         }
         return false;
     }
 
     @SuppressWarnings("SqlResolve")
     public Ledger getById(long id) {
-        String sql = "SELECT id, name, user_id FROM ledgers WHERE id = ?";
+        long start = GET_BY_ID.begin();
+        int rows = 0;
+        String sql = "SELECT " + MAPPER.columns() + " FROM ledgers WHERE id = ? AND deleted_at IS NULL";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, id);
             try(ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Ledger ledger = new Ledger();
-                    ledger.setId(rs.getLong("id"));
-                    ledger.setName(rs.getString("name"));
-                    return ledger;
+                    rows = 1;
+                    return MAPPER.map(rs);
                 }
             }
         }catch (SQLException e){
+            GET_BY_ID.error();
             System.err.println("SQL Exception during getById: " + e.getMessage());
+        } finally {
+            GET_BY_ID.end(start, rows);
         }
         return null;
     }
 
     @SuppressWarnings("SqlResolve")
     public Ledger getByNameAndOwnerId(String name, long ownerId){
-        String sql = "SELECT id, name FROM ledgers WHERE name = ? AND user_id = ?";
+        long start = GET_BY_NAME_AND_OWNER_ID.begin();
+        int rows = 0;
+        String sql = "SELECT " + MAPPER.columns() + " FROM ledgers WHERE name = ? AND user_id = ? AND deleted_at IS NULL";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, name);
             stmt.setLong(2, ownerId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                Ledger ledger = new Ledger();
-                ledger.setId(rs.getLong("id"));
-                ledger.setName(rs.getString("name"));
-                return ledger;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    rows = 1;
+                    return MAPPER.map(rs);
+                }
             }
         }catch (SQLException e){
+            GET_BY_NAME_AND_OWNER_ID.error();
             System.err.println("SQL Exception during getByNameAndOwnerId: " + e.getMessage());
+        } finally {
+            GET_BY_NAME_AND_OWNER_ID.end(start, rows);
         }
         return null;
     }
 
     @SuppressWarnings("SqlResolve")
     public List<Ledger> getLedgersByUserId(long userId) {
+        long start = GET_LEDGERS_BY_USER_ID.begin();
         List<Ledger> ledgers = new ArrayList<>();
-        String sql = "SELECT * FROM ledgers WHERE user_id = ?";
+        String sql = "SELECT " + MAPPER.columns() + " FROM ledgers WHERE user_id = ? AND deleted_at IS NULL";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, userId);
             try(ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Ledger ledger = new Ledger();
-                    ledger.setId(rs.getLong("id"));
-                    ledger.setName(rs.getString("name"));
-                    ledgers.add(ledger);
+                    ledgers.add(MAPPER.map(rs));
                 }
             }
         }catch (SQLException e){
+            GET_LEDGERS_BY_USER_ID.error();
             System.err.println("SQL Exception during getLedgersByUserId: " + e.getMessage());
+        } finally {
+            GET_LEDGERS_BY_USER_ID.end(start, ledgers.size());
         }
         return ledgers;
     }
+
+    //ledgers soft deleted and not purged yet, oldest first
+    @SuppressWarnings("SqlResolve")
+    public List<Long> getDeletedIds() {
+        long start = GET_DELETED_IDS.begin();
+        List<Long> ids = new ArrayList<>();
+        String sql = "SELECT id FROM ledgers WHERE deleted_at IS NOT NULL ORDER BY deleted_at, id";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        }catch (SQLException e){
+            GET_DELETED_IDS.error();
+            System.err.println("SQL Exception during getDeletedIds: " + e.getMessage());
+        } finally {
+            GET_DELETED_IDS.end(start, ids.size());
+        }
+        return ids;
+    }
 }
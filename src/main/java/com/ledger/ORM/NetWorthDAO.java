@@ -0,0 +1,116 @@
+package com.ledger.ORM;
+
+import com.ledger.DomainModel.NetWorthPoint;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+// the daily net worth history of each user in net_worth_history, one row per day the value changed.
+// Statements writing transactions or accounts drop the rows they invalidate (staleHistory, forgetHistory),
+// and refresh() computes the missing suffix from the last row left
+public class NetWorthDAO {
+    private static final OperationMetrics REFRESH = MetricsRegistry.getInstance().dao("NetWorthDAO.refresh");
+    private static final OperationMetrics GET_HISTORY = MetricsRegistry.getInstance().dao("NetWorthDAO.getHistory");
+
+    private final Connection connection;
+
+    public NetWorthDAO(Connection connection) {
+        this.connection = connection;
+    }
+
+    // a CTE removing the history of the owners of the accounts (columns of w, the rows of cte) from the date in
+    // dateColumn on
+    static String staleHistory(String cte, String dateColumn, String accounts) {
+        return "stale_net_worth AS (DELETE FROM net_worth_history nw USING " + cte + " w, accounts a " +
+                "WHERE a.id IN (" + accounts + ") AND nw.user_id = a.user_id AND nw.day >= w." + dateColumn + ")";
+    }
+
+    // a CTE removing the whole history of the users selected by userSelect
+    static String forgetHistory(String userSelect) {
+        return "forgotten_net_worth AS (DELETE FROM net_worth_history WHERE user_id IN (" + userSelect + "))";
+    }
+
+    // adds the missing rows of a user up to through, in one statement: from the last row left (or the opening
+    // balances when there is none), a running sum of the daily net change of the accounts in assets.
+    // Returns the number of rows written, or -1 on error
+    @SuppressWarnings("SqlResolve")
+    public int refresh(long userId, LocalDate through) {
+        long start = REFRESH.begin();
+        int rows = 0;
+        String sql = "WITH p AS (SELECT ?::bigint AS user_id, ?::date AS through), " +
+                "last AS (SELECT nw.day, nw.net_worth FROM net_worth_history nw JOIN p ON nw.user_id = p.user_id " +
+                "WHERE nw.day <= p.through ORDER BY nw.day DESC LIMIT 1), " +
+                "included AS (SELECT a.id, a.opening_balance FROM accounts a JOIN p ON a.user_id = p.user_id " +
+                "WHERE a.included_in_asset AND a.deleted_at IS NULL), " +
+                "moves AS (" +
+                "SELECT t.transaction_date AS day, -t.amount AS delta FROM live_transactions t JOIN included i ON t.from_account_id = i.id, p " +
+                "WHERE t.transaction_date > COALESCE((SELECT day FROM last), '-infinity') AND t.transaction_date <= p.through " +
+                "UNION ALL " +
+                "SELECT t.transaction_date, t.amount FROM live_transactions t JOIN included i ON t.to_account_id = i.id, p " +
+                "WHERE t.transaction_date > COALESCE((SELECT day FROM last), '-infinity') AND t.transaction_date <= p.through), " +
+                "days AS (SELECT day, SUM(delta) AS delta FROM moves GROUP BY day HAVING SUM(delta) <> 0) " +
+                "INSERT INTO net_worth_history (user_id, day, net_worth) " +
+                "SELECT p.user_id, days.day, COALESCE((SELECT net_worth FROM last), (SELECT COALESCE(SUM(opening_balance), 0) FROM included)) " +
+                "+ SUM(days.delta) OVER (ORDER BY days.day) " +
+                "FROM p, days " +
+                "ON CONFLICT (user_id, day) DO UPDATE SET net_worth = EXCLUDED.net_worth";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, userId);
+            stmt.setObject(2, through);
+            rows = stmt.executeUpdate();
+            return rows;
+        } catch (SQLException e) {
+            REFRESH.error();
+            System.err.println("SQL Exception during net worth refresh: " + e.getMessage());
+            return -1;
+        } finally {
+            REFRESH.end(start, rows);
+        }
+    }
+
+    // the net worth at the end of startDate, then each change up to endDate; with a coarser resolution (WEEKS,
+    // MONTHS, YEARS) only the last point of each week, month or year. Reads the stored rows only, refresh()
+    // them first. Null on error
+    @SuppressWarnings("SqlResolve")
+    public List<NetWorthPoint> getHistory(long userId, LocalDate startDate, LocalDate endDate, ChronoUnit resolution) {
+        long start = GET_HISTORY.begin();
+        List<NetWorthPoint> points = new ArrayList<>();
+        String sql = "WITH p AS (SELECT ?::bigint AS user_id, ?::date AS start_day, ?::date AS end_day, ?::text AS unit), " +
+                "points AS (" +
+                "SELECT p.start_day AS day, COALESCE(" +
+                "(SELECT nw.net_worth FROM net_worth_history nw WHERE nw.user_id = p.user_id AND nw.day <= p.start_day ORDER BY nw.day DESC LIMIT 1), " +
+                "(SELECT COALESCE(SUM(a.opening_balance), 0) FROM accounts a WHERE a.user_id = p.user_id AND a.included_in_asset AND a.deleted_at IS NULL)" +
+                ") AS net_worth FROM p " +
+                "UNION ALL " +
+                "SELECT nw.day, nw.net_worth FROM net_worth_history nw JOIN p ON nw.user_id = p.user_id " +
+                "WHERE nw.day > p.start_day AND nw.day <= p.end_day) " +
+                "SELECT DISTINCT ON (date_trunc(p.unit, points.day)) points.day, points.net_worth FROM points, p " +
+                "ORDER BY date_trunc(p.unit, points.day), points.day DESC";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, userId);
+            stmt.setObject(2, startDate);
+            stmt.setObject(3, endDate);
+            stmt.setString(4, resolution.name().substring(0, resolution.name().length() - 1).toLowerCase());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    points.add(new NetWorthPoint(rs.getObject(1, LocalDate.class), rs.getBigDecimal(2)));
+                }
+            }
+            return points;
+        } catch (SQLException e) {
+            GET_HISTORY.error();
+            System.err.println("SQL Exception during getHistory: " + e.getMessage());
+            return null;
+        } finally {
+            GET_HISTORY.end(start, points.size());
+        }
+    }
+}
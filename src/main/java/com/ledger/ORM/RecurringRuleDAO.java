@@ -0,0 +1,247 @@
+package com.ledger.ORM;
+
+import com.ledger.DomainModel.*;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecurringRuleDAO {
+    private static final OperationMetrics INSERT = MetricsRegistry.getInstance().dao("RecurringRuleDAO.insert");
+    private static final OperationMetrics DELETE = MetricsRegistry.getInstance().dao("RecurringRuleDAO.delete");
+    private static final OperationMetrics GET_BY_LEDGER_ID = MetricsRegistry.getInstance().dao("RecurringRuleDAO.getByLedgerId");
+    private static final OperationMetrics GET_DUE = MetricsRegistry.getInstance().dao("RecurringRuleDAO.getDue");
+    private static final OperationMetrics INSERT_OCCURRENCES = MetricsRegistry.getInstance().dao("RecurringRuleDAO.insertOccurrences");
+    private static final OperationMetrics UPDATE_PROGRESS = MetricsRegistry.getInstance().dao("RecurringRuleDAO.updateProgress");
+
+    static final RowMapper<RecurringRule> MAPPER = RowMapper.builder(RecurringRule::new)
+            .longColumn("id", RecurringRule::setId)
+            .enumColumn("type", TransactionType.class, RecurringRule::setType)
+            .decimalColumn("amount", RecurringRule::setAmount)
+            .stringColumn("note", RecurringRule::setNote)
+            .enumColumn("frequency", Frequency.class, RecurringRule::setFrequency)
+            .objectColumn("interval_count", Integer.class, RecurringRule::setInterval)
+            .dateColumn("start_date", RecurringRule::setStartDate)
+            .dateColumn("end_date", RecurringRule::setEndDate)
+            .objectColumn("max_occurrences", Integer.class, RecurringRule::setMaxOccurrences)
+            .objectColumn("occurrence_count", Integer.class, RecurringRule::setOccurrenceCount)
+            .dateColumn("next_date", RecurringRule::setNextDate)
+            .build();
+
+    private static final String SELECT = "SELECT " + MAPPER.columns("r") + ", " +
+            AccountDAO.MAPPER.columns("fa") + ", " +
+            AccountDAO.MAPPER.columns("ta") + ", " +
+            LedgerDAO.MAPPER.columns("l") + ", " +
+            LedgerCategoryDAO.MAPPER.columns("c") + " " +
+            "FROM recurring_rules r " +
+            "JOIN ledgers l ON r.ledger_id = l.id " +
+            "LEFT JOIN accounts fa ON r.from_account_id = fa.id " +
+            "LEFT JOIN accounts ta ON r.to_account_id = ta.id " +
+            "LEFT JOIN ledger_categories c ON r.category_id = c.id " +
+            //rules of soft deleted ledgers and accounts stop at once
+            "WHERE l.deleted_at IS NULL AND (fa.id IS NULL OR fa.deleted_at IS NULL) AND (ta.id IS NULL OR ta.deleted_at IS NULL) ";
+    private static final int FROM_ACCOUNT_INDEX = 1 + MAPPER.size();
+    private static final int TO_ACCOUNT_INDEX = FROM_ACCOUNT_INDEX + AccountDAO.MAPPER.size();
+    private static final int LEDGER_INDEX = TO_ACCOUNT_INDEX + AccountDAO.MAPPER.size();
+    private static final int CATEGORY_INDEX = LEDGER_INDEX + LedgerDAO.MAPPER.size();
+
+    // one statement for a whole catch-up: insert every occurrence, skip the ones that already exist,
+    // then apply one balance delta per account for the rows that were actually inserted
+    private static final String INSERT_OCCURRENCES_SQL = "WITH inserted AS (" +
+            "INSERT INTO transactions (type, ledger_id, from_account_id, to_account_id, category_id, amount, note, " +
+            "transaction_date, recurring_rule_id, occurrence_date) " +
+            "SELECT r.type, r.ledger_id, r.from_account_id, r.to_account_id, r.category_id, r.amount, r.note, o.d, r.id, o.d " +
+            "FROM unnest(?::bigint[], ?::date[]) AS o(rule_id, d) JOIN recurring_rules r ON r.id = o.rule_id " +
+            "ON CONFLICT (recurring_rule_id, occurrence_date) DO NOTHING " +
+            "RETURNING from_account_id, to_account_id, amount, transaction_date, ledger_id, category_id), " +
+            "deltas AS (" +
+            "SELECT from_account_id AS account_id, -amount AS delta FROM inserted WHERE from_account_id IS NOT NULL " +
+            "UNION ALL " +
+            "SELECT to_account_id, amount FROM inserted WHERE to_account_id IS NOT NULL), " +
+            "updated AS (" +
+            "UPDATE accounts a SET balance = a.balance + d.total " +
+            "FROM (SELECT account_id, SUM(delta) AS total FROM deltas GROUP BY account_id) d " +
+            "WHERE a.id = d.account_id), " +
+            AccountDAO.staleCheckpoints("inserted", "transaction_date", "from_account_id", "to_account_id") + ", " +
+            SpendingStatsDAO.record("SELECT ledger_id, category_id, transaction_date, amount, 1 FROM inserted") +
+            " SELECT COUNT(*) FROM inserted";
+
+    private final Connection connection;
+
+    public RecurringRuleDAO(Connection connection) {
+        this.connection = connection;
+    }
+
+    @SuppressWarnings("SqlResolve")
+    public boolean insert(RecurringRule rule) {
+        long start = INSERT.begin();
+        String sql = "INSERT INTO recurring_rules (type, ledger_id, from_account_id, to_account_id, category_id, amount, note, " +
+                "frequency, interval_count, start_date, end_date, max_occurrences, occurrence_count, next_date) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, rule.getType().name());
+            stmt.setLong(2, rule.getLedger().getId());
+            if (rule.getFromAccount() != null) {
+                stmt.setLong(3, rule.getFromAccount().getId());
+            } else {
+                stmt.setNull(3, Types.BIGINT);
+            }
+            if (rule.getToAccount() != null) {
+                stmt.setLong(4, rule.getToAccount().getId());
+            } else {
+                stmt.setNull(4, Types.BIGINT);
+            }
+            if (rule.getCategory() != null) {
+                stmt.setLong(5, rule.getCategory().getId());
+            } else {
+                stmt.setNull(5, Types.BIGINT);
+            }
+            stmt.setBigDecimal(6, rule.getAmount());
+            stmt.setString(7, rule.getNote());
+            stmt.setString(8, rule.getFrequency().name());
+            stmt.setInt(9, rule.getInterval());
+            stmt.setObject(10, rule.getStartDate());
+            stmt.setObject(11, rule.getEndDate(), Types.DATE);
+            stmt.setObject(12, rule.getMaxOccurrences(), Types.INTEGER);
+            stmt.setInt(13, rule.getOccurrenceCount());
+            stmt.setObject(14, rule.getNextDate(), Types.DATE);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                if (rs.next()) {
+                    rule.setId(rs.getLong(1));
+                    return true;
+                }
+            }
+            return false;
+        }catch (SQLException e){
+            INSERT.error();
+            System.err.println("SQL Exception during recurring rule insert: " + e.getMessage());
+            return false;
+        } finally {
+            INSERT.end(start);
+        }
+    }
+
+    //transactions already generated by the rule are kept
+    @SuppressWarnings("SqlResolve")
+    public boolean delete(RecurringRule rule) {
+        long start = DELETE.begin();
+        String sql = "DELETE FROM recurring_rules WHERE id = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, rule.getId());
+            return stmt.executeUpdate() > 0;
+        }catch (SQLException e){
+            DELETE.error();
+            System.err.println("SQL Exception during recurring rule delete: " + e.getMessage());
+            return false;
+        } finally {
+            DELETE.end(start);
+        }
+    }
+
+    @SuppressWarnings("SqlResolve")
+    public List<RecurringRule> getByLedgerId(long ledgerId) {
+        long start = GET_BY_LEDGER_ID.begin();
+        List<RecurringRule> rules = new ArrayList<>();
+        String sql = SELECT + "AND r.ledger_id = ? ORDER BY r.id";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledgerId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rules.add(mapRule(rs));
+                }
+            }
+        }catch (SQLException e){
+            GET_BY_LEDGER_ID.error();
+            System.err.println("SQL Exception during getByLedgerId: " + e.getMessage());
+        } finally {
+            GET_BY_LEDGER_ID.end(start, rules.size());
+        }
+        return rules;
+    }
+
+    //rules with at least one occurrence on or before today that has not been generated
+    @SuppressWarnings("SqlResolve")
+    public List<RecurringRule> getDue(LocalDate today) {
+        long start = GET_DUE.begin();
+        List<RecurringRule> rules = new ArrayList<>();
+        String sql = SELECT + "AND r.next_date <= ? ORDER BY r.id";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setObject(1, today);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rules.add(mapRule(rs));
+                }
+            }
+        }catch (SQLException e){
+            GET_DUE.error();
+            System.err.println("SQL Exception during getDue: " + e.getMessage());
+        } finally {
+            GET_DUE.end(start, rules.size());
+        }
+        return rules;
+    }
+
+    //ruleIds[i] occurs on dates[i]; returns the number of transactions inserted, -1 on error
+    @SuppressWarnings("SqlResolve")
+    public int insertOccurrences(List<Long> ruleIds, List<LocalDate> dates) {
+        long start = INSERT_OCCURRENCES.begin();
+        int inserted = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(INSERT_OCCURRENCES_SQL)) {
+            stmt.setArray(1, connection.createArrayOf("bigint", ruleIds.toArray(new Long[0])));
+            stmt.setArray(2, connection.createArrayOf("date", dates.stream().map(Date::valueOf).toArray(Date[]::new)));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    inserted = rs.getInt(1);
+                }
+            }
+            return inserted;
+        }catch (SQLException e){
+            INSERT_OCCURRENCES.error();
+            System.err.println("SQL Exception during insertOccurrences: " + e.getMessage());
+            return -1;
+        } finally {
+            INSERT_OCCURRENCES.end(start, inserted);
+        }
+    }
+
+    //stores occurrence_count and next_date of every rule in one statement
+    @SuppressWarnings("SqlResolve")
+    public boolean updateProgress(List<RecurringRule> rules) {
+        long start = UPDATE_PROGRESS.begin();
+        String sql = "UPDATE recurring_rules r SET occurrence_count = v.occurrence_count, next_date = v.next_date " +
+                "FROM unnest(?::bigint[], ?::int[], ?::date[]) AS v(id, occurrence_count, next_date) WHERE r.id = v.id";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("bigint", rules.stream().map(RecurringRule::getId).toArray(Long[]::new)));
+            stmt.setArray(2, connection.createArrayOf("int", rules.stream().map(RecurringRule::getOccurrenceCount).toArray(Integer[]::new)));
+            stmt.setArray(3, connection.createArrayOf("date", rules.stream()
+                    .map(r -> r.getNextDate() != null ? Date.valueOf(r.getNextDate()) : null).toArray(Date[]::new)));
+            return stmt.executeUpdate() == rules.size();
+        }catch (SQLException e){
+            UPDATE_PROGRESS.error();
+            System.err.println("SQL Exception during updateProgress: " + e.getMessage());
+            return false;
+        } finally {
+            UPDATE_PROGRESS.end(start, rules.size());
+        }
+    }
+
+    private static RecurringRule mapRule(ResultSet rs) throws SQLException {
+        RecurringRule rule = MAPPER.map(rs);
+        rule.setFromAccount(AccountDAO.MAPPER.mapNullable(rs, FROM_ACCOUNT_INDEX));
+        rule.setToAccount(AccountDAO.MAPPER.mapNullable(rs, TO_ACCOUNT_INDEX));
+        Ledger ledger = LedgerDAO.MAPPER.map(rs, LEDGER_INDEX);
+        rule.setLedger(ledger);
+        LedgerCategory category = LedgerCategoryDAO.MAPPER.mapNullable(rs, CATEGORY_INDEX);
+        if (category != null) {
+            category.setLedger(ledger);
+            rule.setCategory(category);
+        }
+        return rule;
+    }
+}
@@ -0,0 +1,149 @@
+package com.ledger.ORM;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+// maps one table's columns onto an entity. Columns are declared once, in select order: queries select
+// columns() (or columns(alias) inside a join) and every value is read by position, so there is no name
+// lookup per cell and a row costs one call per column.
+public final class RowMapper<T> {
+    @FunctionalInterface
+    public interface Factory<T> {
+        T create(ResultSet rs, int firstIndex) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface LongSetter<T> {
+        void set(T target, long value);
+    }
+
+    @FunctionalInterface
+    public interface BooleanSetter<T> {
+        void set(T target, boolean value);
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        void read(ResultSet rs, int index, T target) throws SQLException;
+    }
+
+    private final Factory<T> factory;
+    private final String[] names;
+    private final Reader<T>[] readers;
+
+    private RowMapper(Factory<T> factory, List<String> names, List<Reader<T>> readers) {
+        this.factory = factory;
+        this.names = names.toArray(new String[0]);
+        @SuppressWarnings("unchecked")
+        Reader<T>[] array = (Reader<T>[]) readers.toArray(new Reader<?>[0]);
+        this.readers = array;
+    }
+
+    public static <T> Builder<T> builder(Supplier<T> factory) {
+        return new Builder<>((rs, firstIndex) -> factory.get());
+    }
+
+    // for entities whose class depends on a column value, e.g. the transaction type
+    public static <T> Builder<T> withFactory(Factory<T> factory) {
+        return new Builder<>(factory);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    // "id, name, ..."
+    public String columns() {
+        return String.join(", ", names);
+    }
+
+    // "a.id, a.name, ..."
+    public String columns(String alias) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(alias).append('.').append(names[i]);
+        }
+        return sb.toString();
+    }
+
+    public T map(ResultSet rs) throws SQLException {
+        return map(rs, 1);
+    }
+
+    // firstIndex is the position of the first of this mapper's columns in the select list
+    public T map(ResultSet rs, int firstIndex) throws SQLException {
+        T target = factory.create(rs, firstIndex);
+        for (int i = 0; i < readers.length; i++) {
+            readers[i].read(rs, firstIndex + i, target);
+        }
+        return target;
+    }
+
+    // for LEFT JOINs: null when the first column (the id) is null
+    public T mapNullable(ResultSet rs, int firstIndex) throws SQLException {
+        rs.getLong(firstIndex);
+        if (rs.wasNull()) {
+            return null;
+        }
+        return map(rs, firstIndex);
+    }
+
+    public static final class Builder<T> {
+        private final Factory<T> factory;
+        private final List<String> names = new ArrayList<>();
+        private final List<Reader<T>> readers = new ArrayList<>();
+
+        private Builder(Factory<T> factory) {
+            this.factory = factory;
+        }
+
+        private Builder<T> add(String name, Reader<T> reader) {
+            names.add(name);
+            readers.add(reader);
+            return this;
+        }
+
+        public Builder<T> longColumn(String name, LongSetter<T> setter) {
+            return add(name, (rs, i, t) -> setter.set(t, rs.getLong(i)));
+        }
+
+        public Builder<T> stringColumn(String name, BiConsumer<T, String> setter) {
+            return add(name, (rs, i, t) -> setter.accept(t, rs.getString(i)));
+        }
+
+        public Builder<T> decimalColumn(String name, BiConsumer<T, BigDecimal> setter) {
+            return add(name, (rs, i, t) -> setter.accept(t, rs.getBigDecimal(i)));
+        }
+
+        public Builder<T> booleanColumn(String name, BooleanSetter<T> setter) {
+            return add(name, (rs, i, t) -> setter.set(t, rs.getBoolean(i)));
+        }
+
+        public Builder<T> dateColumn(String name, BiConsumer<T, LocalDate> setter) {
+            return add(name, (rs, i, t) -> setter.accept(t, rs.getObject(i, LocalDate.class)));
+        }
+
+        //nullable numbers and other driver-mapped types, e.g. Integer.class
+        public <V> Builder<T> objectColumn(String name, Class<V> type, BiConsumer<T, V> setter) {
+            return add(name, (rs, i, t) -> setter.accept(t, rs.getObject(i, type)));
+        }
+
+        public <E extends Enum<E>> Builder<T> enumColumn(String name, Class<E> type, BiConsumer<T, E> setter) {
+            return add(name, (rs, i, t) -> {
+                String value = rs.getString(i);
+                setter.accept(t, value != null ? Enum.valueOf(type, value) : null);
+            });
+        }
+
+        public RowMapper<T> build() {
+            return new RowMapper<>(factory, names, readers);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.ledger.ORM;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// applies the versioned scripts under db/migration on the classpath and records them in schema_version.
+// an up-to-date database costs one query: the latest applied version and its checksum.
+public class SchemaMigrator {
+    // in order; a released migration is never edited, add a new one instead
+    private static final List<String> MIGRATIONS = List.of(
+            "V1__initial_schema.sql",
+            "V2__global_categories.sql",
+            "V3__transaction_list_indexes.sql",
+            "V4__transaction_note_search.sql",
+            "V5__recurring_rules.sql",
+            "V6__soft_delete.sql",
+            "V7__account_opening_balance.sql",
+            "V8__account_balance_checkpoints.sql",
+            "V9__spending_stats.sql",
+            "V10__net_worth_history.sql",
+            "V11__spending_daily.sql",
+            "V12__budget_counters.sql",
+            "V13__category_closure.sql"
+    );
+    private static final String LOCATION = "/db/migration/";
+    private static final long LOCK_KEY = 0x6c6564676572L; //"ledger"
+
+    public record Migration(int version, String description, String script) {
+        public long checksum() {
+            CRC32 crc = new CRC32();
+            crc.update(script.getBytes(StandardCharsets.UTF_8));
+            return crc.getValue();
+        }
+    }
+
+    private final Connection connection;
+
+    public SchemaMigrator(Connection connection) {
+        this.connection = connection;
+    }
+
+    public static int latestVersion() {
+        return parseVersion(MIGRATIONS.get(MIGRATIONS.size() - 1));
+    }
+
+    // true when the database is at the latest version afterwards
+    public boolean migrate() {
+        try {
+            if (isUpToDate()) {
+                return true;
+            }
+            return applyPending();
+        } catch (SQLException | IOException e) {
+            System.err.println("Schema migration failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @SuppressWarnings("SqlResolve")
+    private boolean isUpToDate() throws SQLException, IOException {
+        String sql = "SELECT version, checksum FROM schema_version ORDER BY version DESC LIMIT 1";
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next()) return false;
+            Migration latest = load(MIGRATIONS.get(MIGRATIONS.size() - 1));
+            return rs.getInt("version") == latest.version() && rs.getLong("checksum") == latest.checksum();
+        } catch (SQLException e) {
+            if ("42P01".equals(e.getSQLState())) { //undefined_table: nothing applied yet
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("SqlResolve")
+    private boolean applyPending() throws SQLException, IOException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (Statement stmt = connection.createStatement()) {
+                //another instance migrating at the same time waits here
+                stmt.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "version INT PRIMARY KEY, " +
+                        "description VARCHAR(100) NOT NULL, " +
+                        "checksum BIGINT NOT NULL, " +
+                        "installed_on TIMESTAMP NOT NULL DEFAULT now(), " +
+                        "execution_ms BIGINT NOT NULL)");
+            }
+
+            for (String file : MIGRATIONS) {
+                Migration migration = load(file);
+                Long applied = appliedChecksum(migration.version());
+                if (applied != null) {
+                    if (applied != migration.checksum()) {
+                        throw new SQLException("Checksum mismatch for migration " + file
+                                + ": it was changed after being applied");
+                    }
+                    continue;
+                }
+                long start = System.nanoTime();
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(migration.script());
+                }
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                String insertSql = "INSERT INTO schema_version (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)";
+                try (PreparedStatement stmt = connection.prepareStatement(insertSql)) {
+                    stmt.setInt(1, migration.version());
+                    stmt.setString(2, migration.description());
+                    stmt.setLong(3, migration.checksum());
+                    stmt.setLong(4, millis);
+                    stmt.executeUpdate();
+                }
+                System.out.println("Applied migration " + file + " in " + millis + " ms");
+            }
+            connection.commit();
+            return true;
+        } catch (SQLException | IOException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    @SuppressWarnings("SqlResolve")
+    private Long appliedChecksum(int version) throws SQLException {
+        String sql = "SELECT checksum FROM schema_version WHERE version = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, version);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong("checksum") : null;
+            }
+        }
+    }
+
+    static Migration load(String file) throws IOException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(LOCATION + file)) {
+            if (in == null) {
+                throw new IOException("Migration " + file + " not found on the classpath");
+            }
+            String script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            String description = file.substring(file.indexOf("__") + 2, file.lastIndexOf('.')).replace('_', ' ');
+            return new Migration(parseVersion(file), description, script);
+        }
+    }
+
+    private static int parseVersion(String file) {
+        return Integer.parseInt(file.substring(1, file.indexOf("__")));
+    }
+}
@@ -0,0 +1,194 @@
+package com.ledger.ORM;
+
+import com.ledger.DomainModel.BudgetSpending;
+import com.ledger.DomainModel.SpendingStats;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// spending_stats and spending_sketch hold, per ledger, category and month, the count, sum and sum of squares of
+// the visible transactions' amounts and a bucketed histogram of them, spending_daily the count and sum per day.
+// All of them only ever add up, so the statements that write transactions keep them current with record() in
+// the same statement, and a query over any categories and months (or days) merges its cells by summing them
+public class SpendingStatsDAO {
+    private static final OperationMetrics GET_STATS = MetricsRegistry.getInstance().dao("SpendingStatsDAO.getStats");
+    private static final OperationMetrics REBUILD = MetricsRegistry.getInstance().dao("SpendingStatsDAO.rebuild");
+    private static final OperationMetrics GET_BUDGET_SPENDING = MetricsRegistry.getInstance().dao("SpendingStatsDAO.getBudgetSpending");
+
+    // bucket of an amount, see V9__spending_stats.sql
+    private static final String BUCKET = "CASE WHEN amount > 0 THEN CEIL(LN(amount) / LN(" +
+            (1 + SpendingStats.RELATIVE_ACCURACY) + " / " + (1 - SpendingStats.RELATIVE_ACCURACY) + "))::int " +
+            "ELSE " + SpendingStats.ZERO_BUCKET + " END";
+
+    private final Connection connection;
+
+    public SpendingStatsDAO(Connection connection) {
+        this.connection = connection;
+    }
+
+    // CTEs applying changes, a select of (ledger_id, category_id, transaction_date, amount, weight) rows:
+    // weight 1 adds a transaction to its cell, -1 takes it out. Rows without category are ignored.
+    // The budget counters follow the same changes
+    static String record(String changes) {
+        return cells(changes) + ", " + BudgetDAO.countSpending();
+    }
+
+    private static String cells(String changes) {
+        return "spending_changes (ledger_id, category_id, transaction_date, amount, weight) AS (" + changes + "), " +
+                "spending_moments AS (INSERT INTO spending_stats AS s (ledger_id, category_id, month, count, total, total_squares) " +
+                "SELECT ledger_id, category_id, date_trunc('month', transaction_date)::date, SUM(weight), " +
+                "SUM(weight * amount), SUM(weight * amount * amount) " +
+                "FROM spending_changes WHERE category_id IS NOT NULL GROUP BY 1, 2, 3 " +
+                "ON CONFLICT (ledger_id, category_id, month) DO UPDATE SET count = s.count + EXCLUDED.count, " +
+                "total = s.total + EXCLUDED.total, total_squares = s.total_squares + EXCLUDED.total_squares), " +
+                "spending_buckets AS (INSERT INTO spending_sketch AS s (ledger_id, category_id, month, bucket, count) " +
+                "SELECT ledger_id, category_id, date_trunc('month', transaction_date)::date, " + BUCKET + ", SUM(weight) " +
+                "FROM spending_changes WHERE category_id IS NOT NULL GROUP BY 1, 2, 3, 4 HAVING SUM(weight) <> 0 " +
+                "ON CONFLICT (ledger_id, category_id, month, bucket) DO UPDATE SET count = s.count + EXCLUDED.count), " +
+                "spending_days AS (INSERT INTO spending_daily AS s (ledger_id, category_id, day, count, total) " +
+                "SELECT ledger_id, category_id, transaction_date, SUM(weight), SUM(weight * amount) " +
+                "FROM spending_changes WHERE category_id IS NOT NULL GROUP BY 1, 2, 3 " +
+                "ON CONFLICT (ledger_id, category_id, day) DO UPDATE SET count = s.count + EXCLUDED.count, " +
+                "total = s.total + EXCLUDED.total)";
+    }
+
+    // statistics of a category and every category below it over the months of fromMonth to toMonth (any day of the
+    // month, inclusive), merged from the stored cells in one statement; null on error
+    @SuppressWarnings("SqlResolve")
+    public SpendingStats getStats(long ledgerId, long categoryId, LocalDate fromMonth, LocalDate toMonth) {
+        long start = GET_STATS.begin();
+        String cells = "FROM %s WHERE ledger_id = ? " +
+                "AND category_id IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = ?) " +
+                "AND month >= date_trunc('month', ?::date) AND month <= ?::date";
+        String sql = "SELECT NULL::int AS bucket, SUM(count), SUM(total), SUM(total_squares) " + cells.formatted("spending_stats") +
+                " UNION ALL " +
+                "SELECT bucket, SUM(count), NULL, NULL " + cells.formatted("spending_sketch") +
+                " GROUP BY bucket HAVING SUM(count) <> 0 " +
+                "ORDER BY bucket NULLS FIRST";
+        int rows = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (int i = 0; i < 2; i++) {
+                stmt.setLong(index++, ledgerId);
+                stmt.setLong(index++, categoryId);
+                stmt.setObject(index++, fromMonth);
+                stmt.setObject(index++, toMonth);
+            }
+            long count = 0;
+            BigDecimal total = BigDecimal.ZERO;
+            BigDecimal totalSquares = BigDecimal.ZERO;
+            int[] buckets = new int[64];
+            long[] bucketCounts = new long[64];
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int bucket = rs.getInt(1);
+                    if (rs.wasNull()) {
+                        count = rs.getLong(2);
+                        if (rs.getBigDecimal(3) != null) {
+                            total = rs.getBigDecimal(3);
+                            totalSquares = rs.getBigDecimal(4);
+                        }
+                        continue;
+                    }
+                    if (rows == buckets.length) {
+                        buckets = Arrays.copyOf(buckets, rows * 2);
+                        bucketCounts = Arrays.copyOf(bucketCounts, rows * 2);
+                    }
+                    buckets[rows] = bucket;
+                    bucketCounts[rows++] = rs.getLong(2);
+                }
+            }
+            return new SpendingStats(count, total, totalSquares, Arrays.copyOf(buckets, rows), Arrays.copyOf(bucketCounts, rows));
+        } catch (SQLException e) {
+            GET_STATS.error();
+            System.err.println("SQL Exception during getStats: " + e.getMessage());
+            return null;
+        } finally {
+            GET_STATS.end(start, rows);
+        }
+    }
+
+    // spending of the budgets with the given ids as of today, by budget id, from the daily cells of their expense
+    // categories (every one of the ledger for a ledger budget, the category and every category below it otherwise) in
+    // the current period and the same period one year earlier, in one statement; null on error
+    @SuppressWarnings("SqlResolve")
+    public Map<Long, BudgetSpending> getBudgetSpending(Collection<Long> budgetIds, LocalDate today) {
+        long start = GET_BUDGET_SPENDING.begin();
+        Map<Long, BudgetSpending> spending = new HashMap<>();
+        String sql = "WITH b AS (SELECT b.id, b.ledger_id, b.category_id, b.amount, b.start_date, b.end_date, " +
+                "(b.start_date - INTERVAL '1 year')::date AS last_start, (b.end_date - INTERVAL '1 year')::date AS last_end, " +
+                "p.today, (p.today - INTERVAL '1 year')::date AS last_today " +
+                "FROM budgets b, (SELECT ?::date AS today) p WHERE b.id = ANY(?)), " +
+                "cells AS (SELECT b.id, d.day, d.day >= b.start_date AS current, SUM(d.total) AS total " +
+                "FROM b JOIN ledger_categories c ON c.ledger_id = b.ledger_id AND c.type = 'EXPENSE' " +
+                "AND (b.category_id IS NULL OR c.id IN (SELECT cc.descendant_id FROM category_closure cc WHERE cc.ancestor_id = b.category_id)) " +
+                "JOIN spending_daily d ON d.ledger_id = b.ledger_id AND d.category_id = c.id " +
+                "AND (d.day BETWEEN b.start_date AND b.end_date OR d.day BETWEEN b.last_start AND b.last_end) " +
+                "GROUP BY b.id, d.day, b.start_date), " +
+                "running AS (SELECT id, day, current, total, SUM(total) OVER (PARTITION BY id, current ORDER BY day) AS running FROM cells) " +
+                "SELECT b.id, " +
+                "COALESCE(SUM(r.total) FILTER (WHERE r.current AND r.day <= b.today), 0), " +
+                "COALESCE(SUM(r.total) FILTER (WHERE r.current AND r.day > b.today), 0), " +
+                "COALESCE(SUM(r.total) FILTER (WHERE NOT r.current AND r.day <= b.last_today), 0), " +
+                "COALESCE(SUM(r.total) FILTER (WHERE NOT r.current), 0), " +
+                "MIN(r.day) FILTER (WHERE r.current AND r.day <= b.today AND r.running > b.amount) " +
+                "FROM b LEFT JOIN running r ON r.id = b.id " +
+                "GROUP BY b.id, b.amount, b.today, b.last_today";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setObject(1, today);
+            stmt.setArray(2, connection.createArrayOf("bigint", budgetIds.toArray(new Long[0])));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    spending.put(rs.getLong(1), new BudgetSpending(rs.getLong(1), rs.getBigDecimal(2), rs.getBigDecimal(3),
+                            rs.getBigDecimal(4), rs.getBigDecimal(5), rs.getObject(6, LocalDate.class)));
+                }
+            }
+            return spending;
+        } catch (SQLException e) {
+            GET_BUDGET_SPENDING.error();
+            System.err.println("SQL Exception during getBudgetSpending: " + e.getMessage());
+            return null;
+        } finally {
+            GET_BUDGET_SPENDING.end(start, spending.size());
+        }
+    }
+
+    // computes the cells of a ledger again from its transactions, for data written around the DAOs; the budget
+    // counters are left alone, see BudgetDAO.recount
+    @SuppressWarnings("SqlResolve")
+    public boolean rebuild(long ledgerId) {
+        long start = REBUILD.begin();
+        //two statements: the inserts of record() would not see the rows deleted in the same one
+        String clear = "WITH cleared AS (DELETE FROM spending_stats WHERE ledger_id = ?), " +
+                "cleared_sketch AS (DELETE FROM spending_sketch WHERE ledger_id = ?) " +
+                "DELETE FROM spending_daily WHERE ledger_id = ?";
+        String fill = "WITH " + cells("SELECT ledger_id, category_id, transaction_date, amount, 1 " +
+                "FROM live_transactions WHERE ledger_id = ?") + " SELECT 1";
+        try (PreparedStatement clearStmt = connection.prepareStatement(clear);
+             PreparedStatement fillStmt = connection.prepareStatement(fill)) {
+            clearStmt.setLong(1, ledgerId);
+            clearStmt.setLong(2, ledgerId);
+            clearStmt.setLong(3, ledgerId);
+            clearStmt.executeUpdate();
+            fillStmt.setLong(1, ledgerId);
+            fillStmt.executeQuery().close();
+            return true;
+        } catch (SQLException e) {
+            REBUILD.error();
+            System.err.println("SQL Exception during spending stats rebuild: " + e.getMessage());
+            return false;
+        } finally {
+            REBUILD.end(start);
+        }
+    }
+}
@@ -1,13 +1,115 @@
 package com.ledger.ORM;
 
 import com.ledger.DomainModel.*;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TransactionDAO {
+    private static final OperationMetrics INSERT = MetricsRegistry.getInstance().dao("TransactionDAO.insert");
+    private static final OperationMetrics INSERT_BATCH = MetricsRegistry.getInstance().dao("TransactionDAO.insertBatch");
+    private static final OperationMetrics DELETE = MetricsRegistry.getInstance().dao("TransactionDAO.delete");
+    private static final OperationMetrics PURGE_LEDGER_CHUNK = MetricsRegistry.getInstance().dao("TransactionDAO.purgeLedgerChunk");
+    private static final OperationMetrics PURGE_ACCOUNT_CHUNK = MetricsRegistry.getInstance().dao("TransactionDAO.purgeAccountChunk");
+    private static final OperationMetrics DETACH_ACCOUNT_CHUNK = MetricsRegistry.getInstance().dao("TransactionDAO.detachAccountChunk");
+    private static final OperationMetrics UPDATE = MetricsRegistry.getInstance().dao("TransactionDAO.update");
+    private static final OperationMetrics GET_BY_ID = MetricsRegistry.getInstance().dao("TransactionDAO.getById");
+    private static final OperationMetrics GET_BY_LEDGER_ID = MetricsRegistry.getInstance().dao("TransactionDAO.getByLedgerId");
+    private static final OperationMetrics GET_BY_CATEGORY_ID = MetricsRegistry.getInstance().dao("TransactionDAO.getByCategoryId");
+    private static final OperationMetrics GET_BY_ACCOUNT_ID = MetricsRegistry.getInstance().dao("TransactionDAO.getByAccountId");
+    private static final OperationMetrics GET_ROWS_BY_LEDGER_ID = MetricsRegistry.getInstance().dao("TransactionDAO.getRowsByLedgerId");
+    private static final OperationMetrics GET_ROWS_BY_ACCOUNT_ID = MetricsRegistry.getInstance().dao("TransactionDAO.getRowsByAccountId");
+    private static final OperationMetrics SEARCH_ROWS = MetricsRegistry.getInstance().dao("TransactionDAO.searchRows");
+    private static final OperationMetrics FIND = MetricsRegistry.getInstance().dao("TransactionDAO.find");
+    private static final OperationMetrics FIND_ROWS = MetricsRegistry.getInstance().dao("TransactionDAO.findRows");
+    private static final OperationMetrics SUM_AMOUNT = MetricsRegistry.getInstance().dao("TransactionDAO.sumAmount");
+    private static final OperationMetrics BULK_RECATEGORIZE = MetricsRegistry.getInstance().dao("TransactionDAO.bulkRecategorize");
+    private static final OperationMetrics BULK_MOVE = MetricsRegistry.getInstance().dao("TransactionDAO.bulkMove");
+    private static final OperationMetrics BULK_REASSIGN_ACCOUNT = MetricsRegistry.getInstance().dao("TransactionDAO.bulkReassignAccount");
+    private static final OperationMetrics BULK_DELETE = MetricsRegistry.getInstance().dao("TransactionDAO.bulkDelete");
+    private static final OperationMetrics DELETE_BY_CATEGORY = MetricsRegistry.getInstance().dao("TransactionDAO.deleteByCategory");
+    private static final OperationMetrics GET_ID_RANGE = MetricsRegistry.getInstance().dao("TransactionDAO.getIdRange");
+    private static final OperationMetrics NET_BY_ACCOUNT = MetricsRegistry.getInstance().dao("TransactionDAO.netByAccount");
+    private static final OperationMetrics GET_STATEMENT = MetricsRegistry.getInstance().dao("TransactionDAO.getStatement");
+    private static final OperationMetrics GET_CATEGORY_MONTH_REPORT = MetricsRegistry.getInstance().dao("TransactionDAO.getCategoryMonthReport");
+    private static final OperationMetrics TOP_CATEGORIES = MetricsRegistry.getInstance().dao("TransactionDAO.topCategories");
+    private static final OperationMetrics TOP_ACCOUNTS = MetricsRegistry.getInstance().dao("TransactionDAO.topAccounts");
+
+    // reads go through live_transactions, which hides the transactions of soft deleted ledgers and accounts;
+    // a soft deleted account on one side of a transfer reads as external, as it will after the purge
+    //columns of TransactionRow, read by index in mapRow
+    private static final String ROW_SELECT = "SELECT t.id, t.type, t.transaction_date, t.amount, t.note, " +
+            "c.name, fa.name, ta.name " +
+            "FROM live_transactions t " +
+            "LEFT JOIN ledger_categories c ON t.category_id = c.id " +
+            "LEFT JOIN accounts fa ON t.from_account_id = fa.id AND fa.deleted_at IS NULL " +
+            "LEFT JOIN accounts ta ON t.to_account_id = ta.id AND ta.deleted_at IS NULL ";
+    private static final String ROW_ORDER = " ORDER BY t.transaction_date DESC, t.id DESC";
+
+    // id first so that mapNullable works for this mapper too; the factory reads the type column after it
+    static final RowMapper<Transaction> MAPPER = RowMapper.withFactory((rs, firstIndex) -> newTransaction(rs.getString(firstIndex + 1)))
+            .longColumn("id", Transaction::setId)
+            .enumColumn("type", TransactionType.class, Transaction::setType)
+            .dateColumn("transaction_date", Transaction::setDate)
+            .decimalColumn("amount", Transaction::setAmount)
+            .stringColumn("note", Transaction::setNote)
+            .build();
+
+    // a transaction with its accounts, ledger and category (and the category's ledger) in one row
+    private static final String ENTITY_SELECT = "SELECT " + MAPPER.columns("t") + ", " +
+            AccountDAO.MAPPER.columns("fa") + ", " +
+            AccountDAO.MAPPER.columns("ta") + ", " +
+            LedgerDAO.MAPPER.columns("l") + ", " +
+            LedgerCategoryDAO.MAPPER.columns("c") + ", " +
+            LedgerDAO.MAPPER.columns("cl") + " " +
+            "FROM live_transactions t " +
+            "LEFT JOIN accounts fa ON t.from_account_id = fa.id AND fa.deleted_at IS NULL " +
+            "LEFT JOIN accounts ta ON t.to_account_id = ta.id AND ta.deleted_at IS NULL " +
+            "LEFT JOIN ledgers l ON t.ledger_id = l.id " +
+            "LEFT JOIN ledger_categories c ON t.category_id = c.id " +
+            "LEFT JOIN ledgers cl ON c.ledger_id = cl.id ";
+    // bulk operations are one statement: the "changed" CTE updates or deletes the matching rows and returns each
+    // row's accounts before (old_from, old_to) and after (new_from, new_to) with its amount and first date, and
+    // its ledger and category before and after; the rest takes the old effect out of the balances and the
+    // spending statistics, puts the new one in, and updates each account whose net change is not 0
+    private static final String BULK_BALANCES = "), deltas AS (" +
+            "SELECT old_from AS account_id, amount AS delta FROM changed WHERE old_from IS NOT NULL " +
+            "UNION ALL SELECT old_to, -amount FROM changed WHERE old_to IS NOT NULL " +
+            "UNION ALL SELECT new_from, -amount FROM changed WHERE new_from IS NOT NULL " +
+            "UNION ALL SELECT new_to, amount FROM changed WHERE new_to IS NOT NULL), " +
+            "moved AS (UPDATE accounts a SET balance = a.balance + d.delta " +
+            "FROM (SELECT account_id, SUM(delta) AS delta FROM deltas GROUP BY account_id HAVING SUM(delta) <> 0) d " +
+            "WHERE a.id = d.account_id RETURNING a.id), " +
+            AccountDAO.staleCheckpoints("changed", "first_date", "old_from", "old_to", "new_from", "new_to") + ", " +
+            SpendingStatsDAO.record("SELECT old_ledger, old_category, first_date, amount, -1 FROM changed " +
+                    "UNION ALL SELECT new_ledger, new_category, first_date, amount, 1 FROM changed") +
+            " SELECT (SELECT COUNT(*) FROM changed), (SELECT COUNT(*) FROM moved)";
+    private static final String BULK_RETURNING = " RETURNING s.old_from, s.old_to, " +
+            "u.from_account_id AS new_from, u.to_account_id AS new_to, u.amount, s.old_date AS first_date, " +
+            "s.old_ledger, s.old_category, u.ledger_id AS new_ledger, u.category_id AS new_category";
+    private static final String INSERT_SQL = "INSERT INTO transactions (transaction_date, amount, note, from_account_id, to_account_id, ledger_id, category_id, type) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SUM_SELECT = "SELECT COALESCE(SUM(t.amount), 0), COUNT(*) FROM live_transactions t";
+    //compiled TransactionQuery statements by kind and shape
+    private static final ConcurrentHashMap<String, String> QUERY_TEMPLATES = new ConcurrentHashMap<>();
+    private static final int FROM_ACCOUNT_INDEX = 1 + MAPPER.size();
+    private static final int TO_ACCOUNT_INDEX = FROM_ACCOUNT_INDEX + AccountDAO.MAPPER.size();
+    private static final int LEDGER_INDEX = TO_ACCOUNT_INDEX + AccountDAO.MAPPER.size();
+    private static final int CATEGORY_INDEX = LEDGER_INDEX + LedgerDAO.MAPPER.size();
+    private static final int CATEGORY_LEDGER_INDEX = CATEGORY_INDEX + LedgerCategoryDAO.MAPPER.size();
+
     private final Connection connection;
 
     public TransactionDAO(Connection connection) {
@@ -16,33 +118,9 @@ public class TransactionDAO {
 
     @SuppressWarnings("SqlResolve")
     public <T extends Transaction> boolean insert(T transaction) {
-        String transactionSql = "INSERT INTO transactions (transaction_date, amount, note, from_account_id, to_account_id, ledger_id, category_id, type) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(transactionSql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setObject(1, transaction.getDate());
-            stmt.setBigDecimal(2, transaction.getAmount());
-            stmt.setString(3, transaction.getNote());
-            if (transaction.getFromAccount() != null) {
-                stmt.setLong(4, transaction.getFromAccount().getId());
-            } else {
-                stmt.setNull(4, Types.BIGINT);
-            }
-            if (transaction.getToAccount() != null) {
-                stmt.setLong(5, transaction.getToAccount().getId());
-            } else {
-                stmt.setNull(5, Types.BIGINT);
-            }
-            if (transaction.getLedger() != null) {
-                stmt.setLong(6, transaction.getLedger().getId());
-            } else {
-                stmt.setNull(6, Types.BIGINT);
-            }
-            if (transaction.getCategory() != null) {
-                stmt.setLong(7, transaction.getCategory().getId());
-            } else {
-                stmt.setNull(7, Types.BIGINT);
-            }
-            stmt.setString(8, transaction.getType().name());
+        long start = INSERT.begin();
+        try (PreparedStatement stmt = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindInsert(stmt, transaction);
             int affectedRows = stmt.executeUpdate();
             if (affectedRows == 0) {
                 return false;
@@ -50,32 +128,224 @@ public class TransactionDAO {
             try (ResultSet rs = stmt.getGeneratedKeys()) {
                 if (rs.next()) {
                     transaction.setId(rs.getLong(1));
+                    recordInserted(List.of(transaction));
                     return true;
                 }
             }
             return false;
         }catch (SQLException e){
+            INSERT.error();
             System.err.println("SQL Exception during transaction insert: " + e.getMessage());
+        } finally {
+            INSERT.end(start);
         }
         return false;
     }
 
+    //one round trip for all rows, ids are set from the generated keys; balances are left to the caller
+    @SuppressWarnings("SqlResolve")
+    public boolean insertBatch(List<? extends Transaction> transactions) {
+        long start = INSERT_BATCH.begin();
+        try (PreparedStatement stmt = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (Transaction transaction : transactions) {
+                bindInsert(stmt, transaction);
+                stmt.addBatch();
+            }
+            int[] affected = stmt.executeBatch();
+            if (affected.length != transactions.size()) {
+                return false;
+            }
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                for (Transaction transaction : transactions) {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    transaction.setId(rs.getLong(1));
+                }
+            }
+            recordInserted(transactions);
+            return true;
+        }catch (SQLException e){
+            INSERT_BATCH.error();
+            System.err.println("SQL Exception during transaction batch insert: " + e.getMessage());
+            return false;
+        } finally {
+            INSERT_BATCH.end(start, transactions.size());
+        }
+    }
+
+    // what new transactions change besides their rows, in one statement: the checkpoints of their accounts go
+    // from their dates on, and they are added to the spending statistics
+    @SuppressWarnings("SqlResolve")
+    private void recordInserted(List<? extends Transaction> transactions) throws SQLException {
+        int size = transactions.size();
+        Long[] fromIds = new Long[size];
+        Long[] toIds = new Long[size];
+        Long[] ledgerIds = new Long[size];
+        Long[] categoryIds = new Long[size];
+        Date[] dates = new Date[size];
+        BigDecimal[] amounts = new BigDecimal[size];
+        for (int i = 0; i < size; i++) {
+            Transaction transaction = transactions.get(i);
+            fromIds[i] = transaction.getFromAccount() != null ? transaction.getFromAccount().getId() : null;
+            toIds[i] = transaction.getToAccount() != null ? transaction.getToAccount().getId() : null;
+            ledgerIds[i] = transaction.getLedger() != null ? transaction.getLedger().getId() : null;
+            categoryIds[i] = transaction.getCategory() != null ? transaction.getCategory().getId() : null;
+            dates[i] = Date.valueOf(transaction.getDate());
+            amounts[i] = transaction.getAmount();
+        }
+        String sql = "WITH inserted AS (SELECT * FROM unnest(?::bigint[], ?::bigint[], ?::bigint[], ?::bigint[], ?::date[], ?::numeric[]) " +
+                "AS w(from_account_id, to_account_id, ledger_id, category_id, transaction_date, amount)), " +
+                AccountDAO.staleCheckpoints("inserted", "transaction_date", "from_account_id", "to_account_id") + ", " +
+                SpendingStatsDAO.record("SELECT ledger_id, category_id, transaction_date, amount, 1 FROM inserted") +
+                " SELECT 1";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("bigint", fromIds));
+            stmt.setArray(2, connection.createArrayOf("bigint", toIds));
+            stmt.setArray(3, connection.createArrayOf("bigint", ledgerIds));
+            stmt.setArray(4, connection.createArrayOf("bigint", categoryIds));
+            stmt.setArray(5, connection.createArrayOf("date", dates));
+            stmt.setArray(6, connection.createArrayOf("numeric", amounts));
+            stmt.executeQuery().close();
+        }
+    }
+
+    private static void bindInsert(PreparedStatement stmt, Transaction transaction) throws SQLException {
+        stmt.setObject(1, transaction.getDate());
+        stmt.setBigDecimal(2, transaction.getAmount());
+        stmt.setString(3, transaction.getNote());
+        if (transaction.getFromAccount() != null) {
+            stmt.setLong(4, transaction.getFromAccount().getId());
+        } else {
+            stmt.setNull(4, Types.BIGINT);
+        }
+        if (transaction.getToAccount() != null) {
+            stmt.setLong(5, transaction.getToAccount().getId());
+        } else {
+            stmt.setNull(5, Types.BIGINT);
+        }
+        if (transaction.getLedger() != null) {
+            stmt.setLong(6, transaction.getLedger().getId());
+        } else {
+            stmt.setNull(6, Types.BIGINT);
+        }
+        if (transaction.getCategory() != null) {
+            stmt.setLong(7, transaction.getCategory().getId());
+        } else {
+            stmt.setNull(7, Types.BIGINT);
+        }
+        stmt.setString(8, transaction.getType().name());
+    }
+
     @SuppressWarnings("SqlResolve")
     public boolean delete(Transaction transaction) {
-        String sql = "DELETE FROM transactions WHERE id = ?";
+        long start = DELETE.begin();
+        String sql = "WITH deleted AS (DELETE FROM transactions WHERE id = ? " +
+                "RETURNING from_account_id, to_account_id, transaction_date, ledger_id, category_id, amount), " +
+                AccountDAO.staleCheckpoints("deleted", "transaction_date", "from_account_id", "to_account_id") + ", " +
+                SpendingStatsDAO.record("SELECT ledger_id, category_id, transaction_date, amount, -1 FROM deleted") +
+                " SELECT COUNT(*) FROM deleted";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, transaction.getId());
-            return stmt.executeUpdate() > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
         }catch (SQLException e){
+            DELETE.error();
             System.err.println("SQL Exception during transaction delete: " + e.getMessage());
             return false;
+        } finally {
+            DELETE.end(start);
+        }
+    }
+
+    // purge of soft deleted ledgers and accounts, a few rows per statement so that every chunk commits quickly
+    // and holds its row locks only briefly. Each returns the number of rows changed, 0 when done, -1 on error
+
+    //deletes up to limit transactions of a ledger
+    @SuppressWarnings("SqlResolve")
+    public int purgeLedgerChunk(long ledgerId, int limit) {
+        long start = PURGE_LEDGER_CHUNK.begin();
+        int rows = 0;
+        String sql = "DELETE FROM transactions WHERE id IN (SELECT id FROM transactions WHERE ledger_id = ? LIMIT ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledgerId);
+            stmt.setInt(2, limit);
+            rows = stmt.executeUpdate();
+            return rows;
+        }catch (SQLException e){
+            PURGE_LEDGER_CHUNK.error();
+            System.err.println("SQL Exception during purgeLedgerChunk: " + e.getMessage());
+            return -1;
+        } finally {
+            PURGE_LEDGER_CHUNK.end(start, rows);
+        }
+    }
+
+    //deletes up to limit transactions of an account that have no live account left on either side
+    @SuppressWarnings("SqlResolve")
+    public int purgeAccountChunk(long accountId, int limit) {
+        long start = PURGE_ACCOUNT_CHUNK.begin();
+        int rows = 0;
+        String sql = "DELETE FROM transactions WHERE id IN (" +
+                "SELECT t.id FROM transactions t WHERE (t.from_account_id = ? OR t.to_account_id = ?) " +
+                "AND NOT EXISTS (SELECT 1 FROM accounts a WHERE a.id IN (t.from_account_id, t.to_account_id) AND a.deleted_at IS NULL) " +
+                "LIMIT ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, accountId);
+            stmt.setLong(2, accountId);
+            stmt.setInt(3, limit);
+            rows = stmt.executeUpdate();
+            return rows;
+        }catch (SQLException e){
+            PURGE_ACCOUNT_CHUNK.error();
+            System.err.println("SQL Exception during purgeAccountChunk: " + e.getMessage());
+            return -1;
+        } finally {
+            PURGE_ACCOUNT_CHUNK.end(start, rows);
+        }
+    }
+
+    //turns the account side of up to limit remaining transfers into an external side
+    @SuppressWarnings("SqlResolve")
+    public int detachAccountChunk(long accountId, int limit) {
+        long start = DETACH_ACCOUNT_CHUNK.begin();
+        int rows = 0;
+        String sql = "UPDATE transactions SET " +
+                "from_account_id = NULLIF(from_account_id, ?), to_account_id = NULLIF(to_account_id, ?) " +
+                "WHERE id IN (SELECT id FROM transactions WHERE from_account_id = ? OR to_account_id = ? LIMIT ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, accountId);
+            stmt.setLong(2, accountId);
+            stmt.setLong(3, accountId);
+            stmt.setLong(4, accountId);
+            stmt.setInt(5, limit);
+            rows = stmt.executeUpdate();
+            return rows;
+        }catch (SQLException e){
+            DETACH_ACCOUNT_CHUNK.error();
+            System.err.println("SQL Exception during detachAccountChunk: " + e.getMessage());
+            return -1;
+        } finally {
+            DETACH_ACCOUNT_CHUNK.end(start, rows);
         }
     }
 
     @SuppressWarnings("SqlResolve")
     public boolean update(Transaction transaction) {
-        String sql = "UPDATE transactions SET transaction_date = ?, amount = ?, note = ?, from_account_id = ?, to_account_id = ?, ledger_id = ?, category_id = ? " +
-                "WHERE id = ?";
+        long start = UPDATE.begin();
+        //o is the row as it was: the checkpoints go for the old and the new accounts, from the earlier date on,
+        //and the statistics trade the old row for the new one
+        String sql = "WITH updated AS (UPDATE transactions u SET transaction_date = ?, amount = ?, note = ?, from_account_id = ?, to_account_id = ?, ledger_id = ?, category_id = ? " +
+                "FROM transactions o WHERE u.id = o.id AND u.id = ? " +
+                "RETURNING o.from_account_id AS old_from, o.to_account_id AS old_to, u.from_account_id AS new_from, u.to_account_id AS new_to, " +
+                "LEAST(o.transaction_date, u.transaction_date) AS first_date, " +
+                "o.ledger_id AS old_ledger, o.category_id AS old_category, o.transaction_date AS old_date, o.amount AS old_amount, " +
+                "u.ledger_id AS new_ledger, u.category_id AS new_category, u.transaction_date AS new_date, u.amount AS new_amount), " +
+                AccountDAO.staleCheckpoints("updated", "first_date", "old_from", "old_to", "new_from", "new_to") + ", " +
+                SpendingStatsDAO.record("SELECT old_ledger, old_category, old_date, old_amount, -1 FROM updated " +
+                        "UNION ALL SELECT new_ledger, new_category, new_date, new_amount, 1 FROM updated") +
+                " SELECT COUNT(*) FROM updated";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setObject(1, transaction.getDate());
             stmt.setBigDecimal(2, transaction.getAmount());
@@ -105,61 +375,47 @@ public class TransactionDAO {
                 stmt.setNull(7, Types.BIGINT);
             }
             stmt.setLong(8, transaction.getId());
-            return stmt.executeUpdate() > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
         }catch (SQLException e){
+            UPDATE.error();
             System.err.println("SQL Exception during transaction update: " + e.getMessage());
             return false;
+        } finally {
+            UPDATE.end(start);
         }
     }
 
     @SuppressWarnings("SqlResolve")
     public Transaction getById(long id) {
-        AccountDAO accountDAO = new AccountDAO(connection);
-        LedgerDAO ledgerDAO = new LedgerDAO(connection);
-        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
-
-        String sql = "SELECT t.*, " +
-                "fa.id as from_account_id, fa.name as from_account_name, " +
-                "ta.id as to_account_id, ta.name as to_account_name, " +
-                "l.id as ledger_id, l.name as ledger_name, " +
-                "c.id as category_id, c.name as category_name " +
-                "FROM transactions t " +
-                "LEFT JOIN accounts fa ON t.from_account_id = fa.id " +
-                "LEFT JOIN accounts ta ON t.to_account_id = ta.id " +
-                "LEFT JOIN ledgers l ON t.ledger_id = l.id " +
-                "LEFT JOIN ledger_categories c ON t.category_id = c.id " +
+        long start = GET_BY_ID.begin();
+        int rows = 0;
+        String sql = ENTITY_SELECT +
                 "WHERE t.id = ?";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToTransaction(rs, ledgerDAO, accountDAO, ledgerCategoryDAO);
+                    rows = 1;
+                    return mapTransaction(rs);
                 }
             }
         }catch (SQLException e){
+            GET_BY_ID.error();
             System.err.println("SQL Exception during getById: " + e.getMessage());
+        } finally {
+            GET_BY_ID.end(start, rows);
         }
         return null;
     }
 
     @SuppressWarnings("SqlResolve")
     public List<Transaction> getByLedgerId(long ledgerId) {
+        long start = GET_BY_LEDGER_ID.begin();
         List<Transaction> transactions = new ArrayList<>();
-        AccountDAO accountDAO = new AccountDAO(connection);
-        LedgerDAO ledgerDAO = new LedgerDAO(connection);
-        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
-
-        String sql = "SELECT t.*, " +
-                "fa.id as from_account_id, fa.name as from_account_name, " +
-                "ta.id as to_account_id, ta.name as to_account_name, " +
-                "l.id as ledger_id, l.name as ledger_name, " +
-                "c.id as category_id, c.name as category_name " +
-                "FROM transactions t " +
-                "LEFT JOIN accounts fa ON t.from_account_id = fa.id " +
-                "LEFT JOIN accounts ta ON t.to_account_id = ta.id " +
-                "LEFT JOIN ledgers l ON t.ledger_id = l.id " +
-                "LEFT JOIN ledger_categories c ON t.category_id = c.id " +
+        String sql = ENTITY_SELECT +
                 "WHERE t.ledger_id = ? " +
                 "ORDER BY t.transaction_date DESC, t.id DESC";
 
@@ -167,32 +423,23 @@ public class TransactionDAO {
             stmt.setLong(1, ledgerId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    transactions.add(mapResultSetToTransaction(rs, ledgerDAO, accountDAO, ledgerCategoryDAO));
+                    transactions.add(mapTransaction(rs));
                 }
             }
         }catch (SQLException e){
+            GET_BY_LEDGER_ID.error();
             System.err.println("SQL Exception during getByLedgerId: " + e.getMessage());
+        } finally {
+            GET_BY_LEDGER_ID.end(start, transactions.size());
         }
         return transactions;
     }
 
     @SuppressWarnings("SqlResolve")
     public List<Transaction> getByCategoryId(long categoryId) {
+        long start = GET_BY_CATEGORY_ID.begin();
         List<Transaction> transactions = new ArrayList<>();
-        AccountDAO accountDAO = new AccountDAO(connection);
-        LedgerDAO ledgerDAO = new LedgerDAO(connection);
-        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
-
-        String sql = "SELECT t.*, " +
-                "fa.id as from_account_id, fa.name as from_account_name, " +
-                "ta.id as to_account_id, ta.name as to_account_name, " +
-                "l.id as ledger_id, l.name as ledger_name, " +
-                "c.id as category_id, c.name as category_name " +
-                "FROM transactions t " +
-                "LEFT JOIN accounts fa ON t.from_account_id = fa.id " +
-                "LEFT JOIN accounts ta ON t.to_account_id = ta.id " +
-                "LEFT JOIN ledgers l ON t.ledger_id = l.id " +
-                "LEFT JOIN ledger_categories c ON t.category_id = c.id " +
+        String sql = ENTITY_SELECT +
                 "WHERE t.category_id = ? " +
                 "ORDER BY t.transaction_date DESC, t.id DESC";
 
@@ -201,33 +448,25 @@ public class TransactionDAO {
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    transactions.add(mapResultSetToTransaction(rs, ledgerDAO, accountDAO, ledgerCategoryDAO));
+                    transactions.add(mapTransaction(rs));
                 }
             }
         }catch (SQLException e){
+            GET_BY_CATEGORY_ID.error();
             System.err.println("SQL Exception during getByCategoryId: " + e.getMessage());
+        } finally {
+            GET_BY_CATEGORY_ID.end(start, transactions.size());
         }
         return transactions;
     }
 
     @SuppressWarnings("SqlResolve")
     public List<Transaction> getByAccountId(long accountId) {
+        long start = GET_BY_ACCOUNT_ID.begin();
         List<Transaction> transactions = new ArrayList<>();
-        AccountDAO accountDAO = new AccountDAO(connection);
-        LedgerDAO ledgerDAO = new LedgerDAO(connection);
-        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
-
-        String sql = "SELECT t.*, " +
-                "fa.id as from_account_id, fa.name as from_account_name, " +
-                "ta.id as to_account_id, ta.name as to_account_name, " +
-                "l.id as ledger_id, l.name as ledger_name, " +
-                "c.id as category_id, c.name as category_name " +
-                "FROM transactions t " +
-                "LEFT JOIN accounts fa ON t.from_account_id = fa.id " +
-                "LEFT JOIN accounts ta ON t.to_account_id = ta.id " +
-                "LEFT JOIN ledgers l ON t.ledger_id = l.id " +
-                "LEFT JOIN ledger_categories c ON t.category_id = c.id " +
-                "WHERE t.from_account_id = ? OR t.to_account_id = ? " +
+        String sql = ENTITY_SELECT +
+                //fa and ta are only joined while live: a soft deleted account has no transactions left
+                "WHERE (t.from_account_id = ? AND fa.id IS NOT NULL OR t.to_account_id = ? AND ta.id IS NOT NULL) " +
                 "ORDER BY t.transaction_date DESC";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
@@ -236,54 +475,612 @@ public class TransactionDAO {
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    transactions.add(mapResultSetToTransaction(rs, ledgerDAO, accountDAO, ledgerCategoryDAO));
+                    transactions.add(mapTransaction(rs));
                 }
             }
         }catch (SQLException e){
+            GET_BY_ACCOUNT_ID.error();
             System.err.println("SQL Exception during getByAccountId: " + e.getMessage());
+        } finally {
+            GET_BY_ACCOUNT_ID.end(start, transactions.size());
+        }
+        return transactions;
+    }
+
+    //startDate and endDate are inclusive, null means unbounded
+    @SuppressWarnings("SqlResolve")
+    public List<TransactionRow> getRowsByLedgerId(long ledgerId, LocalDate startDate, LocalDate endDate) {
+        long start = GET_ROWS_BY_LEDGER_ID.begin();
+        List<TransactionRow> rows = new ArrayList<>();
+        String sql = ROW_SELECT + "WHERE t.ledger_id = ?" + dateRange(startDate, endDate) + ROW_ORDER;
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledgerId);
+            bindDateRange(stmt, 2, startDate, endDate);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapRow(rs));
+                }
+            }
+        }catch (SQLException e){
+            GET_ROWS_BY_LEDGER_ID.error();
+            System.err.println("SQL Exception during getRowsByLedgerId: " + e.getMessage());
+        } finally {
+            GET_ROWS_BY_LEDGER_ID.end(start, rows.size());
+        }
+        return rows;
+    }
+
+    //startDate and endDate are inclusive, null means unbounded
+    @SuppressWarnings("SqlResolve")
+    public List<TransactionRow> getRowsByAccountId(long accountId, LocalDate startDate, LocalDate endDate) {
+        long start = GET_ROWS_BY_ACCOUNT_ID.begin();
+        List<TransactionRow> rows = new ArrayList<>();
+        String sql = ROW_SELECT + "WHERE (t.from_account_id = ? AND fa.id IS NOT NULL OR t.to_account_id = ? AND ta.id IS NOT NULL)" + dateRange(startDate, endDate) + ROW_ORDER;
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, accountId);
+            stmt.setLong(2, accountId);
+            bindDateRange(stmt, 3, startDate, endDate);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapRow(rs));
+                }
+            }
+        }catch (SQLException e){
+            GET_ROWS_BY_ACCOUNT_ID.error();
+            System.err.println("SQL Exception during getRowsByAccountId: " + e.getMessage());
+        } finally {
+            GET_ROWS_BY_ACCOUNT_ID.end(start, rows.size());
+        }
+        return rows;
+    }
+
+    // the transactions of an account from startDate to endDate (inclusive, null means unbounded), oldest first,
+    // each with the balance after it: the balance at the end of the day before startDate, from the nearest
+    // checkpoint, plus a running sum over the range. Empty for a deleted account
+    @SuppressWarnings("SqlResolve")
+    public List<StatementLine> getStatement(long accountId, LocalDate startDate, LocalDate endDate) {
+        long start = GET_STATEMENT.begin();
+        List<StatementLine> lines = new ArrayList<>();
+        String sql = "WITH " + AccountDAO.BALANCE_AS_OF_CTES + ", opening AS (" + AccountDAO.BALANCE_AS_OF_SELECT + ") " +
+                "SELECT s.*, (SELECT balance FROM opening) + SUM(s.change) OVER (ORDER BY s.transaction_date, s.id) " +
+                "FROM (SELECT t.id, t.type, t.transaction_date, t.amount, t.note, c.name, fa.name, ta.name, " +
+                "CASE WHEN t.from_account_id = p.account_id THEN -t.amount ELSE t.amount END AS change " +
+                "FROM p JOIN live_transactions t ON t.from_account_id = p.account_id OR t.to_account_id = p.account_id " +
+                "LEFT JOIN ledger_categories c ON t.category_id = c.id " +
+                "LEFT JOIN accounts fa ON t.from_account_id = fa.id AND fa.deleted_at IS NULL " +
+                "LEFT JOIN accounts ta ON t.to_account_id = ta.id AND ta.deleted_at IS NULL " +
+                "WHERE (t.from_account_id = p.account_id AND fa.id IS NOT NULL OR t.to_account_id = p.account_id AND ta.id IS NOT NULL) " +
+                "AND t.transaction_date >= COALESCE(?::date, '-infinity') AND t.transaction_date <= COALESCE(?::date, 'infinity')) s " +
+                "WHERE EXISTS (SELECT 1 FROM opening) " +
+                "ORDER BY s.transaction_date, s.id";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, accountId);
+            stmt.setObject(2, startDate != null ? startDate.minusDays(1) : null, Types.DATE);
+            stmt.setObject(3, startDate, Types.DATE);
+            stmt.setObject(4, endDate, Types.DATE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lines.add(new StatementLine(mapRow(rs), rs.getBigDecimal(9), rs.getBigDecimal(10)));
+                }
+            }
+        } catch (SQLException e) {
+            GET_STATEMENT.error();
+            System.err.println("SQL Exception during getStatement: " + e.getMessage());
+        } finally {
+            GET_STATEMENT.end(start, lines.size());
+        }
+        return lines;
+    }
+
+    // totals of the ledger's transactions of one category type per top-level category and month, for the months
+    // from startDate to endDate (inclusive). One grouped statement; the top-level categories without
+    // transactions come back too, as empty rows. Null on error
+    @SuppressWarnings("SqlResolve")
+    public CategoryMonthReport getCategoryMonthReport(long ledgerId, CategoryType type, LocalDate startDate, LocalDate endDate) {
+        long start = GET_CATEGORY_MONTH_REPORT.begin();
+        long rows = 0;
+        String sql = "SELECT top.id, top.name, s.month, s.total " +
+                "FROM ledger_categories top LEFT JOIN (" +
+                "SELECT r.ancestor_id AS top_id, date_trunc('month', t.transaction_date)::date AS month, SUM(t.amount) AS total " +
+                "FROM live_transactions t JOIN category_closure r ON r.descendant_id = t.category_id " +
+                "JOIN ledger_categories c ON c.id = r.ancestor_id AND c.parent_id IS NULL " +
+                "WHERE t.ledger_id = ? AND c.type = ? AND t.transaction_date >= ? AND t.transaction_date <= ? " +
+                "GROUP BY r.ancestor_id, date_trunc('month', t.transaction_date)) s ON s.top_id = top.id " +
+                "WHERE top.ledger_id = ? AND top.type = ? AND top.parent_id IS NULL " +
+                "ORDER BY top.id";
+        YearMonth firstMonth = YearMonth.from(startDate);
+        int months = (int) firstMonth.until(YearMonth.from(endDate), ChronoUnit.MONTHS) + 1;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledgerId);
+            stmt.setString(2, type.name());
+            stmt.setObject(3, startDate);
+            stmt.setObject(4, endDate);
+            stmt.setLong(5, ledgerId);
+            stmt.setString(6, type.name());
+            List<Long> ids = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            long[] matrix = new long[16 * months]; //grows by whole rows
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    long id = rs.getLong(1);
+                    if (ids.isEmpty() || ids.get(ids.size() - 1) != id) {
+                        ids.add(id);
+                        names.add(rs.getString(2));
+                        if (ids.size() * months > matrix.length) matrix = Arrays.copyOf(matrix, matrix.length * 2);
+                    }
+                    LocalDate month = rs.getObject(3, LocalDate.class);
+                    if (month == null) continue;
+                    int column = (int) firstMonth.until(YearMonth.from(month), ChronoUnit.MONTHS);
+                    matrix[(ids.size() - 1) * months + column] = rs.getBigDecimal(4).movePointRight(2).longValueExact();
+                }
+            }
+            return new CategoryMonthReport(ids.stream().mapToLong(Long::longValue).toArray(),
+                    names.toArray(new String[0]), firstMonth, months, Arrays.copyOf(matrix, ids.size() * months));
+        } catch (SQLException e) {
+            GET_CATEGORY_MONTH_REPORT.error();
+            System.err.println("SQL Exception during getCategoryMonthReport: " + e.getMessage());
+            return null;
+        } finally {
+            GET_CATEGORY_MONTH_REPORT.end(start, rows);
+        }
+    }
+
+    // the limit top-level categories with the highest total of the given type in the ledger, subcategories
+    // rolled up. Grouped and cut by the database (ORDER BY ... LIMIT keeps only the top rows while sorting), so
+    // only limit rows come back however many transactions there are. Dates are inclusive, null means unbounded
+    @SuppressWarnings("SqlResolve")
+    public List<RankedTotal> topCategories(long ledgerId, CategoryType type, LocalDate startDate, LocalDate endDate, int limit) {
+        long start = TOP_CATEGORIES.begin();
+        List<RankedTotal> top = new ArrayList<>();
+        String sql = "SELECT top.id, top.name, s.total, s.transactions FROM (" +
+                "SELECT r.ancestor_id AS top_id, SUM(t.amount) AS total, COUNT(*) AS transactions " +
+                "FROM live_transactions t JOIN category_closure r ON r.descendant_id = t.category_id " +
+                "JOIN ledger_categories c ON c.id = r.ancestor_id AND c.parent_id IS NULL " +
+                "WHERE t.ledger_id = ? AND c.type = ? " +
+                "AND t.transaction_date >= COALESCE(?::date, '-infinity') AND t.transaction_date <= COALESCE(?::date, 'infinity') " +
+                "GROUP BY r.ancestor_id ORDER BY total DESC, top_id LIMIT ?) s " +
+                "JOIN ledger_categories top ON top.id = s.top_id " +
+                "ORDER BY s.total DESC, top.id";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledgerId);
+            stmt.setString(2, type.name());
+            stmt.setObject(3, startDate, Types.DATE);
+            stmt.setObject(4, endDate, Types.DATE);
+            stmt.setInt(5, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    top.add(new RankedTotal(rs.getLong(1), rs.getString(2), rs.getBigDecimal(3), rs.getInt(4)));
+                }
+            }
+        } catch (SQLException e) {
+            TOP_CATEGORIES.error();
+            System.err.println("SQL Exception during topCategories: " + e.getMessage());
+        } finally {
+            TOP_CATEGORIES.end(start, top.size());
+        }
+        return top;
+    }
+
+    // the limit accounts that paid the most for the ledger's expenses, same as topCategories
+    @SuppressWarnings("SqlResolve")
+    public List<RankedTotal> topAccounts(long ledgerId, LocalDate startDate, LocalDate endDate, int limit) {
+        long start = TOP_ACCOUNTS.begin();
+        List<RankedTotal> top = new ArrayList<>();
+        String sql = "SELECT a.id, a.name, SUM(t.amount) AS total, COUNT(*) AS transactions " +
+                "FROM live_transactions t JOIN accounts a ON a.id = t.from_account_id AND a.deleted_at IS NULL " +
+                "WHERE t.ledger_id = ? AND t.type = 'EXPENSE' " +
+                "AND t.transaction_date >= COALESCE(?::date, '-infinity') AND t.transaction_date <= COALESCE(?::date, 'infinity') " +
+                "GROUP BY a.id, a.name ORDER BY total DESC, a.id LIMIT ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, ledgerId);
+            stmt.setObject(2, startDate, Types.DATE);
+            stmt.setObject(3, endDate, Types.DATE);
+            stmt.setInt(4, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    top.add(new RankedTotal(rs.getLong(1), rs.getString(2), rs.getBigDecimal(3), rs.getInt(4)));
+                }
+            }
+        } catch (SQLException e) {
+            TOP_ACCOUNTS.error();
+            System.err.println("SQL Exception during topAccounts: " + e.getMessage());
+        } finally {
+            TOP_ACCOUNTS.end(start, top.size());
+        }
+        return top;
+    }
+
+    //note search within one ledger, or within all ledgers of userId when the search has no ledger.
+    //keyset pagination: after is the last row of the previous page, null for the first page
+    @SuppressWarnings("SqlResolve")
+    public List<TransactionRow> searchRows(long userId, TransactionSearch search, TransactionRow after, int limit) {
+        String query = prefixQuery(search.text());
+        if (query.isEmpty()) return List.of();
+        long start = SEARCH_ROWS.begin();
+        List<TransactionRow> rows = new ArrayList<>();
+
+        StringBuilder sql = new StringBuilder(ROW_SELECT);
+        sql.append(search.ledger() != null
+                ? "WHERE t.ledger_id = ?"
+                : "WHERE t.ledger_id IN (SELECT id FROM ledgers WHERE user_id = ?)");
+        //both sides can use their GIN index, the planner ORs the bitmaps
+        sql.append(search.fuzzy()
+                ? " AND (t.note_tsv @@ to_tsquery('simple', ?) OR ? <% t.note)"
+                : " AND t.note_tsv @@ to_tsquery('simple', ?)");
+        sql.append(dateRange(search.startDate(), search.endDate()));
+        if (search.minAmount() != null) sql.append(" AND t.amount >= ?");
+        if (search.maxAmount() != null) sql.append(" AND t.amount <= ?");
+        if (after != null) sql.append(" AND (t.transaction_date, t.id) < (?, ?)");
+        sql.append(ROW_ORDER).append(" LIMIT ?");
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            int index = 1;
+            stmt.setLong(index++, search.ledger() != null ? search.ledger().getId() : userId);
+            stmt.setString(index++, query);
+            if (search.fuzzy()) {
+                stmt.setString(index++, search.text().trim());
+            }
+            bindDateRange(stmt, index, search.startDate(), search.endDate());
+            if (search.startDate() != null) index++;
+            if (search.endDate() != null) index++;
+            if (search.minAmount() != null) stmt.setBigDecimal(index++, search.minAmount());
+            if (search.maxAmount() != null) stmt.setBigDecimal(index++, search.maxAmount());
+            if (after != null) {
+                stmt.setObject(index++, after.date());
+                stmt.setLong(index++, after.id());
+            }
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapRow(rs));
+                }
+            }
+        }catch (SQLException e){
+            SEARCH_ROWS.error();
+            System.err.println("SQL Exception during searchRows: " + e.getMessage());
+        } finally {
+            SEARCH_ROWS.end(start, rows.size());
+        }
+        return rows;
+    }
+
+    public List<Transaction> find(TransactionQuery query) {
+        long start = FIND.begin();
+        List<Transaction> transactions = new ArrayList<>();
+        String sql = QUERY_TEMPLATES.computeIfAbsent("find" + query.shape(),
+                k -> ENTITY_SELECT + query.where() + query.orderBy());
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            query.bind(stmt, 1, true);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    transactions.add(mapTransaction(rs));
+                }
+            }
+        }catch (SQLException e){
+            FIND.error();
+            System.err.println("SQL Exception during find: " + e.getMessage());
+        } finally {
+            FIND.end(start, transactions.size());
         }
         return transactions;
     }
 
-    private Transaction mapResultSetToTransaction(ResultSet rs, LedgerDAO ledgerDAO, AccountDAO accountDAO, LedgerCategoryDAO ledgerCategoryDAO) throws SQLException {
-        Transaction transaction;
-        String type = rs.getString("type").toUpperCase();
-        // based on type, create appropriate subclass instance
-        switch (type) {
-            case "TRANSFER":
-                transaction = new Transfer();
-                break;
-            case "EXPENSE":
-                transaction = new Expense();
-                break;
-            case "INCOME":
-                transaction = new Income();
-                break;
-            default:
-                System.err.println("Unknown transaction type: " + type);
-                return null;
-        }
-        // set common fields
-        transaction.setId(rs.getLong("id"));
-        transaction.setDate(rs.getObject("transaction_date", LocalDate.class));
-        transaction.setAmount(rs.getBigDecimal("amount"));
-        transaction.setNote(rs.getString("note"));
-        transaction.setType(TransactionType.valueOf(rs.getString("type")));
-        //set fromAccount
-        if( rs.getLong("from_account_id") != 0) {
-            transaction.setFromAccount(accountDAO.getAccountById(rs.getLong("from_account_id")));
-        }
-        //set toAccount
-        if( rs.getLong("to_account_id") != 0) {
-            transaction.setToAccount(accountDAO.getAccountById(rs.getLong("to_account_id")));
-        }
-        //set ledger
-        if( rs.getLong("ledger_id") != 0) {
-            transaction.setLedger(ledgerDAO.getById(rs.getLong("ledger_id")));
-        }
-        //set category
-        if( rs.getLong("category_id") != 0) {
-            transaction.setCategory(ledgerCategoryDAO.getById(rs.getLong("category_id")));
+    public List<TransactionRow> findRows(TransactionQuery query) {
+        long start = FIND_ROWS.begin();
+        List<TransactionRow> rows = new ArrayList<>();
+        String sql = QUERY_TEMPLATES.computeIfAbsent("rows" + query.shape(),
+                k -> ROW_SELECT + query.where() + query.orderBy());
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            query.bind(stmt, 1, true);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapRow(rs));
+                }
+            }
+        }catch (SQLException e){
+            FIND_ROWS.error();
+            System.err.println("SQL Exception during findRows: " + e.getMessage());
+        } finally {
+            FIND_ROWS.end(start, rows.size());
+        }
+        return rows;
+    }
+
+    //sum of the amounts of every matching transaction, sort and limit do not apply
+    public BigDecimal sumAmount(TransactionQuery query) {
+        long start = SUM_AMOUNT.begin();
+        long rows = 0; //transactions summed, reported like rows read
+        String sql = QUERY_TEMPLATES.computeIfAbsent("sum" + query.shape(), k -> SUM_SELECT + query.where());
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            query.bind(stmt, 1, false);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    rows = rs.getLong(2);
+                    return rs.getBigDecimal(1);
+                }
+            }
+        }catch (SQLException e){
+            SUM_AMOUNT.error();
+            System.err.println("SQL Exception during sumAmount: " + e.getMessage());
+        } finally {
+            SUM_AMOUNT.end(start, rows);
+        }
+        return BigDecimal.ZERO;
+    }
+
+    // bulk operations over the transactions matching query in the ledgers of userId, each one atomic statement.
+    // Sort and limit of the query apply. They return what changed, or null on error
+
+    //sets category on the matching transactions of its ledger and type
+    public BulkResult bulkRecategorize(TransactionQuery query, long userId, LedgerCategory category) {
+        long start = BULK_RECATEGORIZE.begin();
+        String sql = QUERY_TEMPLATES.computeIfAbsent("recategorize" + query.shape(), k ->
+                "WITH changed AS (UPDATE transactions u SET category_id = ? " +
+                "FROM (" + bulkSelection(query) + ") s " +
+                "WHERE u.id = s.id AND u.ledger_id = ? AND u.type = ? AND u.category_id IS DISTINCT FROM ?" +
+                BULK_RETURNING + BULK_BALANCES);
+        BulkResult result = null;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, category.getId());
+            int index = bindSelection(stmt, 2, query, userId);
+            stmt.setLong(index++, category.getLedger().getId());
+            stmt.setString(index++, category.getType().name());
+            stmt.setLong(index, category.getId());
+            result = executeBulk(stmt);
+            return result;
+        }catch (SQLException e){
+            BULK_RECATEGORIZE.error();
+            System.err.println("SQL Exception during bulkRecategorize: " + e.getMessage());
+            return null;
+        } finally {
+            BULK_RECATEGORIZE.end(start, result != null ? result.transactions() : 0);
+        }
+    }
+
+    // moves the matching transactions into ledger, each to the category of the same name and type there;
+    // transactions whose category has no counterpart in ledger stay where they are
+    public BulkResult bulkMove(TransactionQuery query, long userId, Ledger ledger) {
+        long start = BULK_MOVE.begin();
+        String sql = QUERY_TEMPLATES.computeIfAbsent("move" + query.shape(), k ->
+                "WITH changed AS (UPDATE transactions u SET ledger_id = tl.id, category_id = tc.id " +
+                "FROM (" + bulkSelection(query) + ") s " +
+                "JOIN ledgers tl ON tl.id = ? AND tl.user_id = ? AND tl.deleted_at IS NULL " +
+                "LEFT JOIN ledger_categories sc ON sc.id = s.old_category " +
+                "LEFT JOIN ledger_categories tc ON tc.ledger_id = tl.id AND tc.name = sc.name AND tc.type = sc.type " +
+                "WHERE u.id = s.id AND u.ledger_id <> tl.id AND (s.old_category IS NULL OR tc.id IS NOT NULL)" +
+                BULK_RETURNING + BULK_BALANCES);
+        BulkResult result = null;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = bindSelection(stmt, 1, query, userId);
+            stmt.setLong(index++, ledger.getId());
+            stmt.setLong(index, userId);
+            result = executeBulk(stmt);
+            return result;
+        }catch (SQLException e){
+            BULK_MOVE.error();
+            System.err.println("SQL Exception during bulkMove: " + e.getMessage());
+            return null;
+        } finally {
+            BULK_MOVE.end(start, result != null ? result.transactions() : 0);
+        }
+    }
+
+    // puts newAccount in place of oldAccount on whichever side of the matching transactions it is, and moves
+    // the balance effect with it; transfers that would end up between newAccount and itself are skipped
+    public BulkResult bulkReassignAccount(TransactionQuery query, long userId, Account oldAccount, Account newAccount) {
+        long start = BULK_REASSIGN_ACCOUNT.begin();
+        String sql = QUERY_TEMPLATES.computeIfAbsent("reassign" + query.shape(), k ->
+                "WITH changed AS (UPDATE transactions u SET " +
+                "from_account_id = CASE WHEN u.from_account_id = oa.id THEN na.id ELSE u.from_account_id END, " +
+                "to_account_id = CASE WHEN u.to_account_id = oa.id THEN na.id ELSE u.to_account_id END " +
+                "FROM (" + bulkSelection(query) + ") s " +
+                "JOIN accounts oa ON oa.id = ? " +
+                "JOIN accounts na ON na.id = ? AND na.user_id = ? AND na.deleted_at IS NULL " +
+                "WHERE u.id = s.id AND (u.from_account_id = oa.id OR u.to_account_id = oa.id) " +
+                "AND u.from_account_id IS DISTINCT FROM na.id AND u.to_account_id IS DISTINCT FROM na.id" +
+                BULK_RETURNING + BULK_BALANCES);
+        BulkResult result = null;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = bindSelection(stmt, 1, query, userId);
+            stmt.setLong(index++, oldAccount.getId());
+            stmt.setLong(index++, newAccount.getId());
+            stmt.setLong(index, userId);
+            result = executeBulk(stmt);
+            return result;
+        }catch (SQLException e){
+            BULK_REASSIGN_ACCOUNT.error();
+            System.err.println("SQL Exception during bulkReassignAccount: " + e.getMessage());
+            return null;
+        } finally {
+            BULK_REASSIGN_ACCOUNT.end(start, result != null ? result.transactions() : 0);
+        }
+    }
+
+    //deletes the matching transactions and takes them out of the balances
+    public BulkResult bulkDelete(TransactionQuery query, long userId) {
+        long start = BULK_DELETE.begin();
+        String sql = QUERY_TEMPLATES.computeIfAbsent("delete" + query.shape(), k ->
+                "WITH changed AS (DELETE FROM transactions u " +
+                "USING (" + bulkSelection(query) + ") s " +
+                "WHERE u.id = s.id " +
+                "RETURNING s.old_from, s.old_to, NULL::bigint AS new_from, NULL::bigint AS new_to, u.amount, s.old_date AS first_date, " +
+                "s.old_ledger, s.old_category, NULL::bigint AS new_ledger, NULL::bigint AS new_category" +
+                BULK_BALANCES);
+        BulkResult result = null;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            bindSelection(stmt, 1, query, userId);
+            result = executeBulk(stmt);
+            return result;
+        }catch (SQLException e){
+            BULK_DELETE.error();
+            System.err.println("SQL Exception during bulkDelete: " + e.getMessage());
+            return null;
+        } finally {
+            BULK_DELETE.end(start, result != null ? result.transactions() : 0);
+        }
+    }
+
+    //deletes the visible transactions of a category and takes them out of the balances, before the category
+    //itself is deleted; the hidden ones go with the category
+    @SuppressWarnings("SqlResolve")
+    public BulkResult deleteByCategory(long categoryId) {
+        long start = DELETE_BY_CATEGORY.begin();
+        String sql = "WITH changed AS (DELETE FROM transactions u " +
+                "USING live_transactions s " +
+                "WHERE u.id = s.id AND s.category_id = ? " +
+                "RETURNING s.from_account_id AS old_from, s.to_account_id AS old_to, NULL::bigint AS new_from, " +
+                "NULL::bigint AS new_to, u.amount, s.transaction_date AS first_date, " +
+                "s.ledger_id AS old_ledger, s.category_id AS old_category, NULL::bigint AS new_ledger, NULL::bigint AS new_category" +
+                BULK_BALANCES;
+        BulkResult result = null;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, categoryId);
+            result = executeBulk(stmt);
+            return result;
+        }catch (SQLException e){
+            DELETE_BY_CATEGORY.error();
+            System.err.println("SQL Exception during deleteByCategory: " + e.getMessage());
+            return null;
+        } finally {
+            DELETE_BY_CATEGORY.end(start, result != null ? result.transactions() : 0);
+        }
+    }
+
+    //the visible transactions matching query in the ledgers of one user, with what bulk operations need of them
+    private static String bulkSelection(TransactionQuery query) {
+        return "SELECT t.id, t.from_account_id AS old_from, t.to_account_id AS old_to, t.category_id AS old_category, " +
+                "t.transaction_date AS old_date, t.ledger_id AS old_ledger " +
+                "FROM live_transactions t JOIN ledgers owner ON owner.id = t.ledger_id AND owner.user_id = ?" +
+                query.where() + query.orderBy();
+    }
+
+    private static int bindSelection(PreparedStatement stmt, int index, TransactionQuery query, long userId) throws SQLException {
+        stmt.setLong(index++, userId);
+        return query.bind(stmt, index, true);
+    }
+
+    private static BulkResult executeBulk(PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return new BulkResult(rs.getInt(1), rs.getInt(2));
+        }
+    }
+
+    //lowest and highest transaction id, empty when there are no transactions, null on error
+    @SuppressWarnings("SqlResolve")
+    public long[] getIdRange() {
+        long start = GET_ID_RANGE.begin();
+        String sql = "SELECT MIN(id), MAX(id) FROM transactions";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            long min = rs.getLong(1);
+            if (rs.wasNull()) return new long[0];
+            return new long[]{min, rs.getLong(2)};
+        } catch (SQLException e) {
+            GET_ID_RANGE.error();
+            System.err.println("SQL Exception during getIdRange: " + e.getMessage());
+            return null;
+        } finally {
+            GET_ID_RANGE.end(start);
+        }
+    }
+
+    // net effect on each account of the visible transactions with id in [fromId, toId]: one pass over that
+    // slice of the primary key, summed per paying and per receiving account at once; null on error
+    @SuppressWarnings("SqlResolve")
+    public Map<Long, BigDecimal> netByAccount(long fromId, long toId) {
+        long start = NET_BY_ACCOUNT.begin();
+        Map<Long, BigDecimal> net = new HashMap<>();
+        String sql = "SELECT from_account_id, to_account_id, GROUPING(from_account_id), SUM(amount) " +
+                "FROM live_transactions WHERE id BETWEEN ? AND ? " +
+                "GROUP BY GROUPING SETS ((from_account_id), (to_account_id))";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, fromId);
+            stmt.setLong(2, toId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    //grouped by from_account_id: money out, otherwise by to_account_id: money in
+                    boolean paying = rs.getInt(3) == 0;
+                    long accountId = rs.getLong(paying ? 1 : 2);
+                    if (rs.wasNull()) continue;
+                    BigDecimal amount = rs.getBigDecimal(4);
+                    net.merge(accountId, paying ? amount.negate() : amount, BigDecimal::add);
+                }
+            }
+            return net;
+        } catch (SQLException e) {
+            NET_BY_ACCOUNT.error();
+            System.err.println("SQL Exception during netByAccount: " + e.getMessage());
+            return null;
+        } finally {
+            NET_BY_ACCOUNT.end(start, net.size());
+        }
+    }
+
+    //"coffee Bar" -> "coffee:* & bar:*"; only letters and digits reach to_tsquery, so user input cannot inject operators
+    static String prefixQuery(String text) {
+        if (text == null) return "";
+        StringBuilder query = new StringBuilder();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (query.length() > 0) query.append(" & ");
+            query.append(word).append(":*");
+        }
+        return query.toString();
+    }
+
+    private static String dateRange(LocalDate startDate, LocalDate endDate) {
+        return (startDate != null ? " AND t.transaction_date >= ?" : "")
+                + (endDate != null ? " AND t.transaction_date <= ?" : "");
+    }
+
+    private static void bindDateRange(PreparedStatement stmt, int index, LocalDate startDate, LocalDate endDate) throws SQLException {
+        if (startDate != null) {
+            stmt.setObject(index++, startDate);
+        }
+        if (endDate != null) {
+            stmt.setObject(index, endDate);
+        }
+    }
+
+    private static TransactionRow mapRow(ResultSet rs) throws SQLException {
+        return new TransactionRow(
+                rs.getLong(1),
+                TransactionType.valueOf(rs.getString(2)),
+                rs.getObject(3, LocalDate.class),
+                rs.getBigDecimal(4),
+                rs.getString(5),
+                rs.getString(6),
+                rs.getString(7),
+                rs.getString(8));
+    }
+
+    private static Transaction newTransaction(String type) throws SQLException {
+        return switch (type) {
+            case "TRANSFER" -> new Transfer();
+            case "EXPENSE" -> new Expense();
+            case "INCOME" -> new Income();
+            default -> throw new SQLException("Unknown transaction type: " + type);
+        };
+    }
+
+    private static Transaction mapTransaction(ResultSet rs) throws SQLException {
+        Transaction transaction = MAPPER.map(rs);
+        transaction.setFromAccount(AccountDAO.MAPPER.mapNullable(rs, FROM_ACCOUNT_INDEX));
+        transaction.setToAccount(AccountDAO.MAPPER.mapNullable(rs, TO_ACCOUNT_INDEX));
+        Ledger ledger = LedgerDAO.MAPPER.mapNullable(rs, LEDGER_INDEX);
+        transaction.setLedger(ledger);
+        LedgerCategory category = LedgerCategoryDAO.MAPPER.mapNullable(rs, CATEGORY_INDEX);
+        if (category != null) {
+            Ledger categoryLedger = LedgerDAO.MAPPER.mapNullable(rs, CATEGORY_LEDGER_INDEX);
+            category.setLedger(ledger != null && categoryLedger != null && ledger.getId() == categoryLedger.getId()
+                    ? ledger : categoryLedger);
+            transaction.setCategory(category);
         }
         return transaction;
     }
@@ -0,0 +1,213 @@
+package com.ledger.ORM;
+
+import com.ledger.DomainModel.*;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// optional filters over transactions, compiled by TransactionDAO into one parameterized statement.
+// Lists of ids are bound as a single array (= ANY(?)), so the SQL text depends only on which filters are
+// set (the shape), not on their values: every query of the same shape shares one statement from the
+// statement cache and one server-side plan.
+public final class TransactionQuery {
+    public enum Sort {
+        NEWEST_FIRST("t.transaction_date DESC, t.id DESC"),
+        OLDEST_FIRST("t.transaction_date, t.id"),
+        LARGEST_FIRST("t.amount DESC, t.id DESC"),
+        SMALLEST_FIRST("t.amount, t.id");
+
+        private final String orderBy;
+
+        Sort(String orderBy) {
+            this.orderBy = orderBy;
+        }
+    }
+
+    private final Set<Long> ledgerIds = new LinkedHashSet<>();
+    private final Set<Long> accountIds = new LinkedHashSet<>();
+    private final Set<Long> fromAccountIds = new LinkedHashSet<>();
+    private final Set<Long> toAccountIds = new LinkedHashSet<>();
+    private final Set<Long> categoryIds = new LinkedHashSet<>();
+    private boolean includeSubcategories;
+    private final EnumSet<TransactionType> types = EnumSet.noneOf(TransactionType.class);
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    private String noteQuery; //tsquery, empty when the text has no words
+    private Sort sort = Sort.NEWEST_FIRST;
+    private int limit;
+
+    public static TransactionQuery create() {
+        return new TransactionQuery();
+    }
+
+    public TransactionQuery ledger(Ledger ledger) {
+        ledgerIds.add(ledger.getId());
+        return this;
+    }
+
+    public TransactionQuery ledgers(Collection<Ledger> ledgers) {
+        ledgers.forEach(this::ledger);
+        return this;
+    }
+
+    //on either side of the transaction
+    public TransactionQuery account(Account account) {
+        accountIds.add(account.getId());
+        return this;
+    }
+
+    public TransactionQuery accounts(Collection<Account> accounts) {
+        accounts.forEach(this::account);
+        return this;
+    }
+
+    //money leaving the account: expenses and outgoing transfers
+    public TransactionQuery fromAccount(Account account) {
+        fromAccountIds.add(account.getId());
+        return this;
+    }
+
+    //money entering the account: incomes and incoming transfers
+    public TransactionQuery toAccount(Account account) {
+        toAccountIds.add(account.getId());
+        return this;
+    }
+
+    public TransactionQuery category(LedgerCategory category) {
+        categoryIds.add(category.getId());
+        return this;
+    }
+
+    public TransactionQuery categories(Collection<LedgerCategory> categories) {
+        categories.forEach(this::category);
+        return this;
+    }
+
+    //the selected categories match their subcategories too
+    public TransactionQuery includeSubcategories() {
+        includeSubcategories = true;
+        return this;
+    }
+
+    public TransactionQuery types(TransactionType... types) {
+        this.types.addAll(List.of(types));
+        return this;
+    }
+
+    //inclusive, null means unbounded
+    public TransactionQuery between(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        return this;
+    }
+
+    //inclusive, null means unbounded
+    public TransactionQuery amountBetween(BigDecimal minAmount, BigDecimal maxAmount) {
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        return this;
+    }
+
+    //every word must start a word of the note
+    public TransactionQuery noteContains(String text) {
+        noteQuery = text == null || text.isBlank() ? null : TransactionDAO.prefixQuery(text);
+        return this;
+    }
+
+    public TransactionQuery sort(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    //0 means no limit
+    public TransactionQuery limit(int limit) {
+        this.limit = Math.max(limit, 0);
+        return this;
+    }
+
+    // which filters are set; queries with the same shape compile to the same SQL
+    String shape() {
+        StringBuilder shape = new StringBuilder(16);
+        shape.append(ledgerIds.isEmpty() ? '-' : 'L')
+                .append(accountIds.isEmpty() ? '-' : 'A')
+                .append(fromAccountIds.isEmpty() ? '-' : 'F')
+                .append(toAccountIds.isEmpty() ? '-' : 'T')
+                .append(categoryIds.isEmpty() ? '-' : includeSubcategories ? 'S' : 'C')
+                .append(types.isEmpty() ? '-' : 'Y')
+                .append(startDate == null ? '-' : 'D')
+                .append(endDate == null ? '-' : 'E')
+                .append(minAmount == null ? '-' : 'M')
+                .append(maxAmount == null ? '-' : 'X')
+                .append(noteQuery == null ? '-' : noteQuery.isEmpty() ? '0' : 'N')
+                .append(limit == 0 ? '-' : 'K')
+                .append(sort.ordinal());
+        return shape.toString();
+    }
+
+    // " WHERE ..." for the current shape, empty when nothing is filtered
+    String where() {
+        List<String> predicates = new ArrayList<>();
+        if (!ledgerIds.isEmpty()) predicates.add("t.ledger_id = ANY(?)");
+        if (!accountIds.isEmpty()) predicates.add("(t.from_account_id = ANY(?) OR t.to_account_id = ANY(?))");
+        if (!fromAccountIds.isEmpty()) predicates.add("t.from_account_id = ANY(?)");
+        if (!toAccountIds.isEmpty()) predicates.add("t.to_account_id = ANY(?)");
+        if (!categoryIds.isEmpty()) {
+            predicates.add(includeSubcategories
+                    ? "t.category_id IN (SELECT cc.descendant_id FROM category_closure cc WHERE cc.ancestor_id = ANY(?))"
+                    : "t.category_id = ANY(?)");
+        }
+        if (!types.isEmpty()) predicates.add("t.type = ANY(?)");
+        if (startDate != null) predicates.add("t.transaction_date >= ?");
+        if (endDate != null) predicates.add("t.transaction_date <= ?");
+        if (minAmount != null) predicates.add("t.amount >= ?");
+        if (maxAmount != null) predicates.add("t.amount <= ?");
+        if (noteQuery != null) {
+            predicates.add(noteQuery.isEmpty() ? "FALSE" : "t.note_tsv @@ to_tsquery('simple', ?)");
+        }
+        return predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates);
+    }
+
+    String orderBy() {
+        return " ORDER BY " + sort.orderBy + (limit > 0 ? " LIMIT ?" : "");
+    }
+
+    // binds the values in the order of where() and orderBy(), returns the next free index
+    int bind(PreparedStatement stmt, int index, boolean ordered) throws SQLException {
+        if (!ledgerIds.isEmpty()) stmt.setArray(index++, idArray(stmt, ledgerIds));
+        if (!accountIds.isEmpty()) {
+            stmt.setArray(index++, idArray(stmt, accountIds));
+            stmt.setArray(index++, idArray(stmt, accountIds));
+        }
+        if (!fromAccountIds.isEmpty()) stmt.setArray(index++, idArray(stmt, fromAccountIds));
+        if (!toAccountIds.isEmpty()) stmt.setArray(index++, idArray(stmt, toAccountIds));
+        if (!categoryIds.isEmpty()) {
+            stmt.setArray(index++, idArray(stmt, categoryIds));
+        }
+        if (!types.isEmpty()) {
+            String[] names = types.stream().map(Enum::name).toArray(String[]::new);
+            stmt.setArray(index++, stmt.getConnection().createArrayOf("varchar", names));
+        }
+        if (startDate != null) stmt.setObject(index++, startDate);
+        if (endDate != null) stmt.setObject(index++, endDate);
+        if (minAmount != null) stmt.setBigDecimal(index++, minAmount);
+        if (maxAmount != null) stmt.setBigDecimal(index++, maxAmount);
+        if (noteQuery != null && !noteQuery.isEmpty()) stmt.setString(index++, noteQuery);
+        if (ordered && limit > 0) stmt.setInt(index++, limit);
+        return index;
+    }
+
+    private static Array idArray(PreparedStatement stmt, Set<Long> ids) throws SQLException {
+        return stmt.getConnection().createArrayOf("bigint", ids.toArray(new Long[0]));
+    }
+}
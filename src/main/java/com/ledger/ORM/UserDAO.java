@@ -1,10 +1,22 @@
 package com.ledger.ORM;
 
 import com.ledger.DomainModel.User;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
 
 import java.sql.*;
 
 public class UserDAO {
+    private static final OperationMetrics REGISTER = MetricsRegistry.getInstance().dao("UserDAO.register");
+    private static final OperationMetrics GET_USER_BY_USERNAME = MetricsRegistry.getInstance().dao("UserDAO.getUserByUsername");
+    private static final OperationMetrics UPDATE = MetricsRegistry.getInstance().dao("UserDAO.update");
+
+    static final RowMapper<User> MAPPER = RowMapper.builder(User::new)
+            .longColumn("id", User::setId)
+            .stringColumn("username", User::setUsername)
+            .stringColumn("password", User::setPassword)
+            .build();
+
     private final Connection connection;
 
     public UserDAO(Connection connection){
@@ -13,6 +25,7 @@ public class UserDAO {
 
     @SuppressWarnings("SqlResolve")
     public boolean register(User user) {
+        long start = REGISTER.begin();
         String sql = "INSERT INTO users (username, password) VALUES (?, ?)";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -32,34 +45,40 @@ public class UserDAO {
             }
             return false;
         }catch (SQLException e){
+            REGISTER.error();
             System.err.println("SQL Exception during registration: " + e.getMessage());
             return false;
+        } finally {
+            REGISTER.end(start);
         }
     }
 
     @SuppressWarnings("SqlResolve")
     public User getUserByUsername(String username){
-        String sql = "SELECT * FROM users WHERE username = ?";
+        long start = GET_USER_BY_USERNAME.begin();
+        int rows = 0;
+        String sql = "SELECT " + MAPPER.columns() + " FROM users WHERE username = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, username);
             try(ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) { //if exists user with that username
-                    User user = new User();
-                    user.setId(rs.getLong("id"));
-                    user.setUsername(rs.getString("username"));
-                    user.setPassword(rs.getString("password"));
-                    return user;
+                    rows = 1;
+                    return MAPPER.map(rs);
                 }
             }
             return null;
         }catch (SQLException e){
+            GET_USER_BY_USERNAME.error();
             System.err.println("SQL Exception during getUserByUsername: " + e.getMessage());
             return null;
+        } finally {
+            GET_USER_BY_USERNAME.end(start, rows);
         }
     }
 
     @SuppressWarnings("SqlResolve")
     public boolean update(User user) {
+        long start = UPDATE.begin();
         String sql = "UPDATE users SET username = ?, password = ? WHERE id = ?";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
@@ -70,8 +89,11 @@ public class UserDAO {
             int affectedRows = stmt.executeUpdate();
             return affectedRows > 0;
         }catch (SQLException e){
+            UPDATE.error();
             System.err.println("SQL Exception during updateUser: " + e.getMessage());
             return false;
+        } finally {
+            UPDATE.end(start);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.ledger.Pooling;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// the borrower's view of a cached statement: close() returns it to the cache, and once closed the
+// borrower can no longer touch the underlying statement that someone else may be using
+final class CachedStatement implements InvocationHandler {
+    private final PreparedStatement target;
+    private final CachingConnection.Key key;
+    private final CachingConnection owner;
+    private boolean closed;
+
+    private CachedStatement(PreparedStatement target, CachingConnection.Key key, CachingConnection owner) {
+        this.target = target;
+        this.key = key;
+        this.owner = owner;
+    }
+
+    static PreparedStatement wrap(PreparedStatement target, CachingConnection.Key key, CachingConnection owner) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new CachedStatement(target, key, owner));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                if (!closed) {
+                    closed = true;
+                    owner.giveBack(key, target);
+                }
+                return null;
+            case "isClosed":
+                return closed || target.isClosed();
+            default:
+                if (closed) {
+                    throw new SQLException("Statement is closed: " + key.sql());
+                }
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+        }
+    }
+}
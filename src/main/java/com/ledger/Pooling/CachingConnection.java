@@ -0,0 +1,133 @@
+package com.ledger.Pooling;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// serves prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) from the cache, everything else
+// goes straight to the driver's connection
+final class CachingConnection implements InvocationHandler {
+    record Key(String sql, int autoGeneratedKeys) {}
+
+    private final Connection target;
+    private final StatementCache cache;
+    //idle statements, least recently returned first; a borrowed statement is not in the map
+    private final LinkedHashMap<Key, PreparedStatement> idle = new LinkedHashMap<>();
+
+    private CachingConnection(Connection target, StatementCache cache) {
+        this.target = target;
+        this.cache = cache;
+    }
+
+    static Connection wrap(Connection target, StatementCache cache) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new CachingConnection(target, cache));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "prepareStatement":
+                if (args.length == 1) {
+                    return borrow(new Key((String) args[0], Statement.NO_GENERATED_KEYS));
+                }
+                if (args.length == 2 && args[1] instanceof Integer keys) {
+                    return borrow(new Key((String) args[0], keys));
+                }
+                return call(method, args);
+            case "close":
+                closeIdle();
+                return call(method, args);
+            default:
+                return call(method, args);
+        }
+    }
+
+    private PreparedStatement borrow(Key key) throws SQLException {
+        PreparedStatement statement;
+        synchronized (idle) {
+            statement = idle.remove(key);
+        }
+        if (statement != null) {
+            cache.cachedChanged(-1);
+            cache.hit();
+        } else {
+            cache.miss();
+            statement = key.autoGeneratedKeys() == Statement.NO_GENERATED_KEYS
+                    ? target.prepareStatement(key.sql())
+                    : target.prepareStatement(key.sql(), key.autoGeneratedKeys());
+        }
+        return CachedStatement.wrap(statement, key, this);
+    }
+
+    // called when a DAO closes its statement
+    void giveBack(Key key, PreparedStatement statement) {
+        try {
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+
+        List<PreparedStatement> evicted = new ArrayList<>();
+        synchronized (idle) {
+            //the same sql borrowed twice at once: keep only one of them
+            if (idle.containsKey(key)) {
+                evicted.add(statement);
+            } else {
+                idle.put(key, statement);
+                cache.cachedChanged(1);
+            }
+            Iterator<Map.Entry<Key, PreparedStatement>> eldest = idle.entrySet().iterator();
+            while (idle.size() > cache.getMaxSize() && eldest.hasNext()) {
+                evicted.add(eldest.next().getValue());
+                eldest.remove();
+                cache.cachedChanged(-1);
+                cache.evicted();
+            }
+        }
+        for (PreparedStatement s : evicted) {
+            closeQuietly(s);
+        }
+    }
+
+    private void closeIdle() {
+        List<PreparedStatement> statements;
+        synchronized (idle) {
+            statements = new ArrayList<>(idle.values());
+            idle.clear();
+        }
+        cache.cachedChanged(-statements.size());
+        for (PreparedStatement s : statements) {
+            closeQuietly(s);
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("SQL Exception while closing cached statement: " + e.getMessage());
+        }
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ledger.Pooling;
+
+import java.sql.Connection;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+// per-connection cache of prepared statements, LRU by SQL string and bounded by
+// ledger.sql.statementCacheSize (default 100, 0 disables it).
+// DAOs keep calling prepareStatement(sql) and closing the statement with try-with-resources: the wrapped
+// connection hands out an idle cached statement for the same SQL, and close() hands it back instead of
+// closing it. A statement reused this way passes the driver's prepareThreshold and runs with a
+// server-side plan instead of being parsed again on every call.
+public final class StatementCache {
+    private static StatementCache instance;
+
+    private volatile int maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong cached = new AtomicLong();
+
+    private StatementCache() {
+        maxSize = Integer.getInteger("ledger.sql.statementCacheSize", 100);
+    }
+
+    public static synchronized StatementCache getInstance() {
+        if (instance == null) {
+            instance = new StatementCache();
+        }
+        return instance;
+    }
+
+    public Connection wrap(Connection connection) {
+        if (maxSize <= 0 || connection == null) {
+            return connection;
+        }
+        return CachingConnection.wrap(connection, this);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    // takes effect the next time a statement is returned to a cache
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    void evicted() {
+        evictions.incrementAndGet();
+    }
+
+    void cachedChanged(int delta) {
+        cached.addAndGet(delta);
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    //idle statements currently held by all caches
+    public long getCached() { return cached.get(); }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    public void reset() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    public String dump() {
+        return String.format(Locale.ROOT, "%n[Statement cache] size %d/%d, %d hits, %d misses, %d evictions, hit rate %.1f%%%n",
+                getCached(), maxSize, getHits(), getMisses(), getEvictions(), getHitRate() * 100);
+    }
+}
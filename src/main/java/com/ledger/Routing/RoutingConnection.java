@@ -0,0 +1,121 @@
+package com.ledger.Routing;
+
+import com.ledger.DomainModel.User;
+import com.ledger.Metrics.OperationContext;
+import com.ledger.Session.UserSession;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+// one primary connection and a lazily opened connection per replica behind a single Connection: statements
+// are created on the connection RoutingDataSource picks for them, everything else (auto-commit, commit,
+// rollback, arrays...) goes to the primary, so db transactions never leave it
+final class RoutingConnection implements InvocationHandler {
+    private final Connection primary;
+    private final Connection[] replicas;
+    private final RoutingDataSource dataSource;
+    //users who may have written on the primary since their write position was last taken
+    private final Set<Long> writers = new HashSet<>();
+
+    private RoutingConnection(Connection primary, int replicaCount, RoutingDataSource dataSource) {
+        this.primary = primary;
+        this.replicas = new Connection[replicaCount];
+        this.dataSource = dataSource;
+    }
+
+    static Connection wrap(Connection primary, int replicaCount, RoutingDataSource dataSource) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new RoutingConnection(primary, replicaCount, dataSource));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "prepareStatement":
+            case "createStatement":
+            case "prepareCall":
+                return call(route(), method, args);
+            case "close":
+                synchronized (this) {
+                    for (int i = 0; i < replicas.length; i++) {
+                        closeQuietly(replicas[i]);
+                        replicas[i] = null;
+                    }
+                }
+                return call(primary, method, args);
+            default:
+                return call(primary, method, args);
+        }
+    }
+
+    private synchronized Connection route() throws SQLException {
+        long userId = currentUserId();
+        if (!OperationContext.isReadOnly() || !primary.getAutoCommit()) {
+            writers.add(userId);
+            return primary;
+        }
+        if (writers.remove(userId)) {
+            long lsn = primaryLsn();
+            if (lsn < 0) {
+                writers.add(userId); //try again on the next read, meanwhile read from the primary
+                dataSource.routed(false);
+                return primary;
+            }
+            dataSource.wrote(userId, lsn);
+        }
+        long required = dataSource.getWritePosition(userId);
+        int first = dataSource.nextReplica();
+        for (int i = 0; i < replicas.length; i++) {
+            int index = (first + i) % replicas.length;
+            if (replicas[index] == null || replicas[index].isClosed()) {
+                replicas[index] = dataSource.openReplica(index);
+            }
+            if (dataSource.canRead(index, replicas[index], required)) {
+                dataSource.routed(true);
+                return replicas[index];
+            }
+        }
+        dataSource.routed(false);
+        return primary;
+    }
+
+    // current WAL position of the primary, -1 on error
+    private long primaryLsn() {
+        try (Statement stmt = primary.createStatement(); ResultSet rs = stmt.executeQuery("SELECT pg_current_wal_lsn()::text")) {
+            return rs.next() ? RoutingDataSource.parseLsn(rs.getString(1)) : -1;
+        } catch (SQLException e) {
+            System.err.println("Could not read the primary's WAL position: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static long currentUserId() {
+        User user = UserSession.getInstance().getCurrentUser();
+        return user != null ? user.getId() : 0;
+    }
+
+    private static Object call(Connection target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("SQL Exception while closing replica connection: " + e.getMessage());
+        }
+    }
+}
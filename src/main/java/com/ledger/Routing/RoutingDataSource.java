@@ -0,0 +1,227 @@
+package com.ledger.Routing;
+
+import com.ledger.Pooling.StatementCache;
+import com.ledger.Tracing.SqlTracer;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// a primary database for writes and any number of streaming replicas for reads.
+// Connections from getConnection() send every statement to the primary, except those of a read-only controller
+// method (MetricsRegistry.readController) outside of a db transaction: these go to the next replica, round robin,
+// that is reachable, at most maxStalenessMillis behind the primary (negative: any lag) and has replayed the
+// current user's last write on the primary, so users always read their own writes. The replicas' replay
+// position and lag are read again at most every checkMillis; when no replica qualifies the read stays on the
+// primary. Without replicas getConnection() is a plain primary connection.
+public final class RoutingDataSource implements DataSource {
+    private static final String STATUS_SQL = "SELECT CASE WHEN pg_is_in_recovery() THEN pg_last_wal_replay_lsn() " +
+            "ELSE pg_current_wal_lsn() END::text, " +
+            "CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE((EXTRACT(EPOCH FROM clock_timestamp() - pg_last_xact_replay_timestamp()) * 1000)::bigint, -1) END";
+
+    // last known state of one replica
+    private static final class Replica {
+        private final String url;
+        private long checkedAt;
+        private boolean checked;
+        private boolean up;
+        private long replayLsn;
+        private long lagMillis; //-1 when unknown
+
+        private Replica(String url) {
+            this.url = url;
+        }
+    }
+
+    private final String primaryUrl;
+    private final List<Replica> replicas;
+    private final String user;
+    private final String password;
+    private final long maxStalenessMillis;
+    private final long checkNanos;
+    //WAL position on the primary after each user's last write, by user id
+    private final Map<Long, Long> writePositions = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+
+    public RoutingDataSource(String primaryUrl, List<String> replicaUrls, String user, String password,
+                             long maxStalenessMillis, long checkMillis) {
+        this.primaryUrl = primaryUrl;
+        this.replicas = replicaUrls.stream().map(String::trim).filter(url -> !url.isEmpty()).map(Replica::new).toList();
+        this.user = user;
+        this.password = password;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.checkNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(checkMillis, 0));
+    }
+
+    // same primary and credentials, other replicas
+    public RoutingDataSource withReplicas(List<String> replicaUrls, long maxStalenessMillis, long checkMillis) {
+        return new RoutingDataSource(primaryUrl, replicaUrls, user, password, maxStalenessMillis, checkMillis);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection primary = openPrimary();
+        return replicas.isEmpty() ? primary : RoutingConnection.wrap(primary, replicas.size(), this);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The credentials are set when the data source is created");
+    }
+
+    // a connection to the primary only, for work that writes or needs the latest data on a connection of its own
+    public Connection openPrimary() throws SQLException {
+        return open(primaryUrl, "ledger-primary", false);
+    }
+
+    // null when the replica cannot be reached, which also takes it out until its next check
+    Connection openReplica(int index) {
+        Replica replica = replicas.get(index);
+        try {
+            return open(replica.url, "ledger-replica", true);
+        } catch (SQLException e) {
+            System.err.println("Error connecting to replica " + replica.url + ": " + e.getMessage());
+            synchronized (replica) {
+                replica.checkedAt = System.nanoTime();
+                replica.checked = true;
+                replica.up = false;
+            }
+            return null;
+        }
+    }
+
+    private Connection open(String url, String applicationName, boolean readOnly) throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", user);
+        properties.setProperty("password", password);
+        properties.setProperty("ApplicationName", applicationName);
+        Connection connection = DriverManager.getConnection(url, properties);
+        if (readOnly) connection.setReadOnly(true);
+        // tracing sees every statement the cache hands out
+        Connection cached = StatementCache.getInstance().wrap(connection);
+        return SqlTracer.getInstance().wrap(cached);
+    }
+
+    // the replica to try first for the next read
+    int nextReplica() {
+        return Math.floorMod(next.getAndIncrement(), replicas.size());
+    }
+
+    // whether replica index may serve a read that must see the primary's WAL up to requiredLsn. Its state is
+    // read again through connection (null when it could not be opened) once the last check is checkMillis old
+    boolean canRead(int index, Connection connection, long requiredLsn) {
+        Replica replica = replicas.get(index);
+        synchronized (replica) {
+            long now = System.nanoTime();
+            if (!replica.checked || now - replica.checkedAt >= checkNanos) {
+                replica.checked = true;
+                replica.checkedAt = now;
+                replica.up = false;
+                if (connection != null) {
+                    try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(STATUS_SQL)) {
+                        if (rs.next()) {
+                            replica.replayLsn = parseLsn(rs.getString(1));
+                            replica.lagMillis = rs.getLong(2);
+                            replica.up = true;
+                        }
+                    } catch (SQLException e) {
+                        System.err.println("Could not check replica " + replica.url + ": " + e.getMessage());
+                    }
+                }
+            }
+            if (!replica.up || replica.replayLsn < requiredLsn) return false;
+            return maxStalenessMillis < 0 || (replica.lagMillis >= 0 && replica.lagMillis <= maxStalenessMillis);
+        }
+    }
+
+    // called with the primary's WAL position once a user's writes are done
+    void wrote(long userId, long lsn) {
+        writePositions.merge(userId, lsn, Math::max);
+    }
+
+    // the WAL position a replica must have replayed before it serves this user's reads, 0 when they wrote nothing
+    public long getWritePosition(long userId) {
+        return writePositions.getOrDefault(userId, 0L);
+    }
+
+    void routed(boolean toReplica) {
+        (toReplica ? replicaReads : primaryReads).incrementAndGet();
+    }
+
+    // "16/B374D848" as a number, so positions can be compared; -1 for null
+    static long parseLsn(String lsn) {
+        if (lsn == null) return -1;
+        int slash = lsn.indexOf('/');
+        return (Long.parseLong(lsn.substring(0, slash), 16) << 32) | Long.parseLong(lsn.substring(slash + 1), 16);
+    }
+
+    public String getPrimaryUrl() { return primaryUrl; }
+    public int getReplicaCount() { return replicas.size(); }
+    //reads of read-only controller methods served by a replica
+    public long getReplicaReads() { return replicaReads.get(); }
+    //reads of read-only controller methods that stayed on the primary: in a db transaction or no replica qualified
+    public long getPrimaryReads() { return primaryReads.get(); }
+
+    public void reset() {
+        replicaReads.set(0);
+        primaryReads.set(0);
+    }
+
+    public String dump() {
+        return String.format(Locale.ROOT, "%n[Read routing] %d replica(s), %d reads on replicas, %d on the primary%n",
+                replicas.size(), getReplicaReads(), getPrimaryReads());
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,25 @@
+package com.ledger.Tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.ledger.NPlusOne")
+@Label("N+1 Suspected")
+@Description("One controller call ran the same query template ledger.sql.nPlusOneThreshold times or more")
+@Category({"Ledger", "Database"})
+@StackTrace(false)
+public class NPlusOneEvent extends Event {
+    @Label("SQL Template")
+    public String template;
+
+    @Label("Executions")
+    public int executions;
+
+    @Label("Operation")
+    @Description("Controller method that issued the statements")
+    public String operation;
+}
@@ -0,0 +1,33 @@
+package com.ledger.Tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.ledger.SlowQuery")
+@Label("Slow SQL Statement")
+@Description("A statement that took ledger.sql.slowQueryMillis or longer")
+@Category({"Ledger", "Database"})
+@StackTrace(false)
+public class SlowQueryEvent extends Event {
+    @Label("SQL Template")
+    public String template;
+
+    @Label("Bind Count")
+    public int bindCount;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("JDBC Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long jdbcTime;
+
+    @Label("Operation")
+    @Description("Controller method that issued the statement")
+    public String operation;
+}
@@ -0,0 +1,38 @@
+package com.ledger.Tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.ledger.SqlQuery")
+@Label("SQL Statement")
+@Description("One statement executed through the traced connection, until its result set was closed")
+@Category({"Ledger", "Database"})
+@StackTrace(false)
+public class SqlQueryEvent extends Event {
+    @Label("SQL Template")
+    public String template;
+
+    @Label("Bind Count")
+    public int bindCount;
+
+    @Label("Rows")
+    @Description("Rows read from the result set, or the update count")
+    public long rows;
+
+    @Label("JDBC Time")
+    @Description("Time spent inside the driver executing and fetching, without the caller's work between rows")
+    @Timespan(Timespan.NANOSECONDS)
+    public long jdbcTime;
+
+    @Label("DAO Method")
+    public String dao;
+
+    @Label("Operation")
+    @Description("Controller method that issued the statement")
+    public String operation;
+}
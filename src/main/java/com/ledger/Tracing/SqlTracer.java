@@ -0,0 +1,225 @@
+package com.ledger.Tracing;
+
+import com.ledger.Metrics.OperationContext;
+
+import java.sql.Connection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// statement-level tracing of the JDBC connection:
+//  - per SQL template: executions, rows, latency
+//  - slow-query log for statements above ledger.sql.slowQueryMillis (default 200)
+//  - N+1 warning when one controller call runs the same query template ledger.sql.nPlusOneThreshold
+//    times or more (default 5)
+// both logs are kept for dump() and recorded as JFR events (SlowQueryEvent, NPlusOneEvent)
+// disable completely with -Dledger.sql.trace=false
+public final class SqlTracer implements OperationContext.Listener {
+    private static final int MAX_LOG_ENTRIES = 100;
+    private static SqlTracer instance;
+
+    public record SlowQuery(StatementTrace trace) {}
+    public record NPlusOneWarning(String operation, String template, int executions) {}
+
+    private final boolean enabled;
+    private volatile long slowQueryNanos;
+    private volatile int nPlusOneThreshold;
+    private final ConcurrentHashMap<String, TemplateStats> templates = new ConcurrentHashMap<>();
+    private final ArrayDeque<SlowQuery> slowQueries = new ArrayDeque<>();
+    private final ArrayDeque<NPlusOneWarning> nPlusOneWarnings = new ArrayDeque<>();
+    //query templates seen during the controller call running on this thread
+    private final ThreadLocal<Map<String, int[]>> operationQueries = new ThreadLocal<>();
+
+    private SqlTracer() {
+        enabled = Boolean.parseBoolean(System.getProperty("ledger.sql.trace", "true"));
+        slowQueryNanos = Long.getLong("ledger.sql.slowQueryMillis", 200L) * 1_000_000L;
+        nPlusOneThreshold = Integer.getInteger("ledger.sql.nPlusOneThreshold", 5);
+        if (enabled) {
+            OperationContext.addListener(this);
+        }
+    }
+
+    public static synchronized SqlTracer getInstance() {
+        if (instance == null) {
+            instance = new SqlTracer();
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Connection wrap(Connection connection) {
+        if (!enabled || connection == null) {
+            return connection;
+        }
+        return TracingConnection.wrap(connection, this);
+    }
+
+    public void setSlowQueryThresholdMillis(long millis) {
+        slowQueryNanos = millis * 1_000_000L;
+    }
+
+    public void setNPlusOneThreshold(int threshold) {
+        nPlusOneThreshold = threshold;
+    }
+
+    StatementTrace record(String sql, int batchSize, long nanos, long rows) {
+        String template = normalize(sql);
+        int bindCount = countBinds(template) * batchSize;
+        StatementTrace trace = new StatementTrace(template, bindCount, nanos, rows, OperationContext.current());
+        templates.computeIfAbsent(template, t -> new TemplateStats(t, bindCount)).record(trace);
+
+        if (nanos >= slowQueryNanos) {
+            synchronized (slowQueries) {
+                if (slowQueries.size() == MAX_LOG_ENTRIES) slowQueries.removeFirst();
+                slowQueries.addLast(new SlowQuery(trace));
+            }
+            SlowQueryEvent event = new SlowQueryEvent();
+            if (event.shouldCommit()) {
+                event.template = template;
+                event.bindCount = bindCount;
+                event.rows = rows;
+                event.jdbcTime = nanos;
+                event.operation = trace.operation();
+                event.commit();
+            }
+        }
+
+        Map<String, int[]> queries = operationQueries.get();
+        if (queries != null && isQuery(template)) {
+            queries.computeIfAbsent(template, t -> new int[1])[0]++;
+        }
+        return trace;
+    }
+
+    @Override
+    public void operationStarted(String operation) {
+        operationQueries.set(new HashMap<>());
+    }
+
+    @Override
+    public void operationFinished(String operation) {
+        Map<String, int[]> queries = operationQueries.get();
+        operationQueries.remove();
+        if (queries == null) return;
+        for (Map.Entry<String, int[]> entry : queries.entrySet()) {
+            int executions = entry.getValue()[0];
+            if (executions >= nPlusOneThreshold) {
+                NPlusOneWarning warning = new NPlusOneWarning(operation, entry.getKey(), executions);
+                synchronized (nPlusOneWarnings) {
+                    if (nPlusOneWarnings.size() == MAX_LOG_ENTRIES) nPlusOneWarnings.removeFirst();
+                    nPlusOneWarnings.addLast(warning);
+                }
+                NPlusOneEvent event = new NPlusOneEvent();
+                if (event.shouldCommit()) {
+                    event.template = entry.getKey();
+                    event.executions = executions;
+                    event.operation = operation;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    public List<TemplateStats> getTemplates() {
+        List<TemplateStats> result = new ArrayList<>(templates.values());
+        result.sort(Comparator.comparingLong(TemplateStats::getTotalNanos).reversed());
+        return result;
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    public List<NPlusOneWarning> getNPlusOneWarnings() {
+        synchronized (nPlusOneWarnings) {
+            return new ArrayList<>(nPlusOneWarnings);
+        }
+    }
+
+    public void reset() {
+        templates.clear();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+        synchronized (nPlusOneWarnings) {
+            nPlusOneWarnings.clear();
+        }
+    }
+
+    // top statements by total time, then the recent slow queries and N+1 warnings
+    public String dump() {
+        if (!enabled) {
+            return "\nSQL tracing is disabled.\n";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%n[SQL]%n%9s %10s %6s %10s %10s %10s %12s  %s%n",
+                "calls", "rows", "binds", "mean(us)", "p99(us)", "max(us)", "total(ms)", "template"));
+        List<TemplateStats> top = getTemplates();
+        for (TemplateStats stats : top.subList(0, Math.min(20, top.size()))) {
+            sb.append(String.format(Locale.ROOT, "%9d %10d %6d %10.1f %10.1f %10.1f %12.1f  %s%n",
+                    stats.getExecutions(), stats.getRows(), stats.getBindCount(),
+                    stats.getTotalNanos() / 1_000.0 / stats.getExecutions(),
+                    stats.percentileNanos(99) / 1_000.0,
+                    stats.getMaxNanos() / 1_000.0,
+                    stats.getTotalNanos() / 1_000_000.0,
+                    abbreviate(stats.getTemplate())));
+        }
+
+        List<SlowQuery> slow = getSlowQueries();
+        sb.append(String.format(Locale.ROOT, "%n[Slow queries >= %d ms] %d%n", slowQueryNanos / 1_000_000L, slow.size()));
+        for (SlowQuery query : slow.subList(Math.max(0, slow.size() - 20), slow.size())) {
+            StatementTrace trace = query.trace();
+            sb.append(String.format(Locale.ROOT, "%10.1f ms %8d rows  %s: %s%n",
+                    trace.nanos() / 1_000_000.0, trace.rows(), describe(trace.operation()), abbreviate(trace.template())));
+        }
+
+        List<NPlusOneWarning> warnings = getNPlusOneWarnings();
+        sb.append(String.format(Locale.ROOT, "%n[N+1 warnings] %d%n", warnings.size()));
+        for (NPlusOneWarning warning : warnings.subList(Math.max(0, warnings.size() - 20), warnings.size())) {
+            sb.append(String.format(Locale.ROOT, "%8dx  %s: %s%n",
+                    warning.executions(), warning.operation(), abbreviate(warning.template())));
+        }
+        return sb.toString();
+    }
+
+    static String normalize(String sql) {
+        return sql.trim().replaceAll("\\s+", " ");
+    }
+
+    // placeholders outside of string literals
+    static int countBinds(String sql) {
+        int count = 0;
+        boolean inLiteral = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inLiteral = !inLiteral;
+            } else if (c == '?' && !inLiteral) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isQuery(String template) {
+        return template.regionMatches(true, 0, "SELECT", 0, 6) || template.regionMatches(true, 0, "WITH", 0, 4);
+    }
+
+    private static String describe(String operation) {
+        return operation == null ? "(no controller)" : operation;
+    }
+
+    private static String abbreviate(String template) {
+        return template.length() <= 120 ? template : template.substring(0, 117) + "...";
+    }
+}
@@ -0,0 +1,5 @@
+package com.ledger.Tracing;
+
+// one executed statement: rows is rows read from the result set, or the update count
+public record StatementTrace(String template, int bindCount, long nanos, long rows, String operation) {
+}
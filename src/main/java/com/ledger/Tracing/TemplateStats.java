@@ -0,0 +1,40 @@
+package com.ledger.Tracing;
+
+import com.ledger.Metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// aggregate of every execution of one SQL template
+public final class TemplateStats {
+    private final String template;
+    private final int bindCount;
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    TemplateStats(String template, int bindCount) {
+        this.template = template;
+        this.bindCount = bindCount;
+    }
+
+    void record(StatementTrace trace) {
+        executions.incrementAndGet();
+        if (trace.rows() > 0) rows.addAndGet(trace.rows());
+        totalNanos.addAndGet(trace.nanos());
+        long max = maxNanos.get();
+        while (trace.nanos() > max && !maxNanos.compareAndSet(max, trace.nanos())) {
+            max = maxNanos.get();
+        }
+        histogram.record(trace.nanos());
+    }
+
+    public String getTemplate() { return template; }
+    public int getBindCount() { return bindCount; }
+    public long getExecutions() { return executions.get(); }
+    public long getRows() { return rows.get(); }
+    public long getTotalNanos() { return totalNanos.get(); }
+    public long getMaxNanos() { return maxNanos.get(); }
+    public long percentileNanos(double percentile) { return histogram.percentile(percentile); }
+}
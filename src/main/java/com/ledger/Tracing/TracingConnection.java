@@ -0,0 +1,43 @@
+package com.ledger.Tracing;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+// hands out traced statements, everything else goes straight to the driver's connection
+final class TracingConnection implements InvocationHandler {
+    private final Connection target;
+    private final SqlTracer tracer;
+
+    private TracingConnection(Connection target, SqlTracer tracer) {
+        this.target = target;
+        this.tracer = tracer;
+    }
+
+    static Connection wrap(Connection target, SqlTracer tracer) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new TracingConnection(target, tracer));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        switch (method.getName()) {
+            case "prepareStatement":
+                return TracingStatement.wrap((PreparedStatement) result, (String) args[0], tracer);
+            case "createStatement":
+                return TracingStatement.wrap((Statement) result, tracer);
+            default:
+                return result;
+        }
+    }
+}
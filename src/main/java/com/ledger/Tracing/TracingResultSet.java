@@ -0,0 +1,49 @@
+package com.ledger.Tracing;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+// counts rows and fetch time for the execution that produced the result set
+final class TracingResultSet implements InvocationHandler {
+    private final ResultSet target;
+    private final TracingStatement.Execution execution;
+
+    private TracingResultSet(ResultSet target, TracingStatement.Execution execution) {
+        this.target = target;
+        this.execution = execution;
+    }
+
+    static ResultSet wrap(ResultSet target, TracingStatement.Execution execution) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new TracingResultSet(target, execution));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.equals("next")) {
+            long start = System.nanoTime();
+            boolean hasRow = (Boolean) call(method, args);
+            execution.nanos += System.nanoTime() - start;
+            if (hasRow) execution.rows++;
+            return hasRow;
+        }
+        if (name.equals("close")) {
+            Object result = call(method, args);
+            execution.finish();
+            return result;
+        }
+        return call(method, args);
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.ledger.Tracing;
+
+import com.ledger.Metrics.OperationContext;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+// times every execute* call; a query stays open until its result set (or the statement) is closed,
+// so time spent fetching rows and the number of rows read are part of the trace
+final class TracingStatement implements InvocationHandler {
+    private final Statement target;
+    private final String sql; //null for plain statements, the sql comes with each execute call
+    private final SqlTracer tracer;
+    private int batchSize;
+    private Execution open;
+
+    private TracingStatement(Statement target, String sql, SqlTracer tracer) {
+        this.target = target;
+        this.sql = sql;
+        this.tracer = tracer;
+    }
+
+    static PreparedStatement wrap(PreparedStatement target, String sql, SqlTracer tracer) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new TracingStatement(target, sql, tracer));
+    }
+
+    static Statement wrap(Statement target, SqlTracer tracer) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[]{Statement.class}, new TracingStatement(target, null, tracer));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "executeQuery":
+            case "executeUpdate":
+            case "executeLargeUpdate":
+            case "execute":
+            case "executeBatch":
+            case "executeLargeBatch":
+                return execute(method, args);
+            case "addBatch":
+                batchSize++;
+                return call(method, args);
+            case "clearBatch":
+                batchSize = 0;
+                return call(method, args);
+            case "getResultSet": {
+                ResultSet rs = (ResultSet) call(method, args);
+                return rs != null && open != null ? TracingResultSet.wrap(rs, open) : rs;
+            }
+            case "close":
+                finishOpen();
+                return call(method, args);
+            default:
+                return call(method, args);
+        }
+    }
+
+    private Object execute(Method method, Object[] args) throws Throwable {
+        finishOpen();
+        String statementSql = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+        String name = method.getName();
+        Execution execution = new Execution(statementSql, name.endsWith("Batch") ? Math.max(batchSize, 1) : 1);
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = call(method, args);
+        } finally {
+            execution.nanos += System.nanoTime() - start;
+        }
+        switch (name) {
+            case "executeQuery":
+                open = execution;
+                return TracingResultSet.wrap((ResultSet) result, execution);
+            case "execute":
+                if ((Boolean) result) {
+                    open = execution; //rows are counted once the caller asks for the result set
+                } else {
+                    execution.rows = Math.max(target.getUpdateCount(), 0);
+                    execution.finish();
+                }
+                return result;
+            case "executeBatch":
+                for (int count : (int[]) result) {
+                    if (count > 0) execution.rows += count;
+                }
+                batchSize = 0;
+                execution.finish();
+                return result;
+            case "executeLargeBatch":
+                for (long count : (long[]) result) {
+                    if (count > 0) execution.rows += count;
+                }
+                batchSize = 0;
+                execution.finish();
+                return result;
+            default:
+                execution.rows = ((Number) result).longValue();
+                execution.finish();
+                return result;
+        }
+    }
+
+    private void finishOpen() {
+        if (open != null) {
+            open.finish();
+            open = null;
+        }
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    final class Execution {
+        private final String sql;
+        private final int batchSize;
+        private final SqlQueryEvent event = new SqlQueryEvent();
+        long nanos;
+        long rows;
+        private boolean finished;
+
+        private Execution(String sql, int batchSize) {
+            this.sql = sql;
+            this.batchSize = batchSize;
+            if (event.isEnabled()) {
+                event.begin();
+            }
+        }
+
+        void finish() {
+            if (finished) return;
+            finished = true;
+            if (sql == null) return;
+            StatementTrace trace = tracer.record(sql, batchSize, nanos, rows);
+            if (event.isEnabled()) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.template = trace.template();
+                    event.bindCount = trace.bindCount();
+                    event.rows = trace.rows();
+                    event.jdbcTime = trace.nanos();
+                    event.dao = OperationContext.currentDao();
+                    event.operation = trace.operation();
+                    event.commit();
+                }
+            }
+        }
+    }
+}
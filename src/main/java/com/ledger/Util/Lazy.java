@@ -0,0 +1,26 @@
+package com.ledger.Util;
+
+import java.util.function.Supplier;
+
+// creates the value on first get() and keeps it
+public final class Lazy<T> implements Supplier<T> {
+    private Supplier<T> factory;
+    private T value;
+
+    private Lazy(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    public static <T> Lazy<T> of(Supplier<T> factory) {
+        return new Lazy<>(factory);
+    }
+
+    @Override
+    public synchronized T get() {
+        if (factory != null) {
+            value = factory.get();
+            factory = null;
+        }
+        return value;
+    }
+}
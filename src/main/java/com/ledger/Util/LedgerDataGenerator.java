@@ -0,0 +1,463 @@
+package com.ledger.Util;
+
+import com.ledger.DomainModel.*;
+import com.ledger.ORM.BudgetDAO;
+import com.ledger.ORM.CategoryDAO;
+import com.ledger.ORM.LedgerCategoryDAO;
+import com.ledger.ORM.ConnectionManager;
+import com.ledger.ORM.SchemaMigrator;
+import com.ledger.ORM.SpendingStatsDAO;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+
+// Generates synthetic users with ledgers, accounts, category trees, budgets and dated transactions.
+// The same seed and end date always produce the same data. Reference rows are written with JDBC batches,
+// transactions are streamed with COPY. Every user is committed in its own database transaction.
+public class LedgerDataGenerator {
+    private static final int COPY_CHUNK_ROWS = 5000;
+    private static final String[] ACCOUNT_NAMES = {"Cash", "Checking", "Credit Card", "Savings"};
+
+    // median amount (in currency units) of one expense in a category, by category name
+    private static final Map<String, Double> MEDIAN_AMOUNT = Map.ofEntries(
+            Map.entry("Food", 18.0), Map.entry("Breakfast", 6.0), Map.entry("Lunch", 12.0), Map.entry("Dinner", 25.0),
+            Map.entry("Transport", 15.0), Map.entry("Taxi", 18.0), Map.entry("Bus", 2.5),
+            Map.entry("Entertainment", 30.0), Map.entry("Healthy", 40.0), Map.entry("Education", 80.0),
+            Map.entry("Shopping", 45.0), Map.entry("Gifts", 50.0), Map.entry("Electronics", 250.0),
+            Map.entry("Housing", 60.0));
+    // relative frequency of expenses in a category, by category name
+    private static final Map<String, Integer> FREQUENCY = Map.ofEntries(
+            Map.entry("Food", 8), Map.entry("Breakfast", 10), Map.entry("Lunch", 14), Map.entry("Dinner", 10),
+            Map.entry("Transport", 4), Map.entry("Taxi", 3), Map.entry("Bus", 8),
+            Map.entry("Entertainment", 7), Map.entry("Healthy", 3), Map.entry("Education", 2),
+            Map.entry("Shopping", 10), Map.entry("Gifts", 2), Map.entry("Electronics", 1),
+            Map.entry("Housing", 2));
+
+    private final Connection connection;
+    private final SpendingStatsDAO spendingStatsDAO;
+    private final BudgetDAO budgetDAO;
+    private final LedgerCategoryDAO ledgerCategoryDAO;
+    private final long seed;
+    private final LocalDate endDate;
+    private int days = 730;
+
+    public LedgerDataGenerator(Connection connection, long seed, LocalDate endDate) {
+        this.connection = connection;
+        this.spendingStatsDAO = new SpendingStatsDAO(connection);
+        this.budgetDAO = new BudgetDAO(connection);
+        this.ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+        this.seed = seed;
+        this.endDate = endDate;
+    }
+
+    // number of days covered by the generated history, ending at endDate
+    public void setDays(int days) {
+        if (days < 1) throw new IllegalArgumentException("days must be positive");
+        this.days = days;
+    }
+
+    public record GeneratedData(List<User> users, List<Ledger> ledgers, List<Account> accounts, long transactionCount) {}
+
+    private record CategoryTemplate(String name, CategoryType type, String parentName) {}
+
+    private static final class LedgerContext {
+        final Ledger ledger;
+        final List<LedgerCategory> categories = new ArrayList<>();
+        LedgerCategory[] expenseCategories;
+        int[] cumulativeFrequency;
+        LedgerCategory salary;
+        LedgerCategory bonus;
+        LedgerCategory freelance;
+        LedgerCategory housing;
+
+        LedgerContext(Ledger ledger) {
+            this.ledger = ledger;
+        }
+    }
+
+    public GeneratedData generate(int userCount, int transactionsPerLedger) throws SQLException {
+        if (userCount < 1) throw new IllegalArgumentException("userCount must be positive");
+        if (transactionsPerLedger < 0) throw new IllegalArgumentException("transactionsPerLedger must not be negative");
+        List<CategoryTemplate> templates = loadCategoryTemplates();
+        if (templates.isEmpty()) throw new IllegalStateException("global_categories is empty, migrate the schema first");
+
+        String passwordHash = PasswordUtils.hash("password123");
+        List<User> users = new ArrayList<>();
+        List<Ledger> ledgers = new ArrayList<>();
+        List<Account> accounts = new ArrayList<>();
+        long transactionCount = 0;
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            for (int i = 0; i < userCount; i++) {
+                // one random stream per user, so user i is the same regardless of userCount
+                SplittableRandom random = new SplittableRandom(seed * 1_000_003L + i);
+                User user = new User("synthetic-" + seed + "-" + i, passwordHash);
+                insertUser(user);
+
+                List<Account> userAccounts = new ArrayList<>();
+                for (String name : ACCOUNT_NAMES) {
+                    BigDecimal opening = BigDecimal.valueOf(random.nextLong(50_000, 2_000_000), 2);
+                    userAccounts.add(new Account(name, opening, user, !name.equals("Credit Card"), true));
+                }
+                insertAccounts(userAccounts);
+
+                int ledgerCount = 1 + random.nextInt(2);
+                List<LedgerContext> contexts = new ArrayList<>();
+                for (int l = 0; l < ledgerCount; l++) {
+                    Ledger ledger = new Ledger(l == 0 ? "Personal" : "Household", user);
+                    insertLedger(ledger);
+                    LedgerContext context = new LedgerContext(ledger);
+                    insertCategoryTree(context, templates);
+                    //batched around LedgerCategoryDAO.insert, so the closure is linked once per ledger
+                    if (ledgerCategoryDAO.linkClosure(ledger.getId()) < 0) throw new SQLException("Category closure link failed");
+                    insertBudgets(context);
+                    contexts.add(context);
+                }
+
+                long[] balanceCents = new long[userAccounts.size()];
+                for (int a = 0; a < userAccounts.size(); a++) {
+                    balanceCents[a] = userAccounts.get(a).getBalance().movePointRight(2).longValueExact();
+                }
+                for (LedgerContext context : contexts) {
+                    transactionCount += copyTransactions(context, userAccounts, balanceCents, transactionsPerLedger, random);
+                    //COPY goes around TransactionDAO, so the statistics and budget counters are computed once per ledger
+                    if (!spendingStatsDAO.rebuild(context.ledger.getId())) throw new SQLException("Spending stats rebuild failed");
+                    if (budgetDAO.recount(context.ledger.getId()) < 0) throw new SQLException("Budget recount failed");
+                }
+                updateBalances(userAccounts, balanceCents);
+                connection.commit();
+
+                users.add(user);
+                accounts.addAll(userAccounts);
+                for (LedgerContext context : contexts) ledgers.add(context.ledger);
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return new GeneratedData(users, ledgers, accounts, transactionCount);
+    }
+
+    private List<CategoryTemplate> loadCategoryTemplates() {
+        CategoryDAO categoryDAO = new CategoryDAO(connection);
+        List<CategoryTemplate> templates = new ArrayList<>();
+        for (Category parent : categoryDAO.getParentCategories()) {
+            templates.add(new CategoryTemplate(parent.getName(), parent.getType(), null));
+            for (Category child : categoryDAO.getCategoriesByParentId(parent.getId())) {
+                templates.add(new CategoryTemplate(child.getName(), child.getType(), parent.getName()));
+            }
+        }
+        return templates;
+    }
+
+    @SuppressWarnings("SqlResolve")
+    private void insertUser(User user) throws SQLException {
+        String sql = "INSERT INTO users (username, password) VALUES (?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, user.getUsername());
+            stmt.setString(2, user.getPassword());
+            stmt.executeUpdate();
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                rs.next();
+                user.setId(rs.getLong(1));
+            }
+        }
+    }
+
+    @SuppressWarnings("SqlResolve")
+    private void insertLedger(Ledger ledger) throws SQLException {
+        String sql = "INSERT INTO ledgers (user_id, name) VALUES (?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setLong(1, ledger.getOwner().getId());
+            stmt.setString(2, ledger.getName());
+            stmt.executeUpdate();
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                rs.next();
+                ledger.setId(rs.getLong(1));
+            }
+        }
+    }
+
+    @SuppressWarnings("SqlResolve")
+    private void insertAccounts(List<Account> accounts) throws SQLException {
+        String sql = "INSERT INTO accounts (name, balance, opening_balance, user_id, included_in_asset, selectable) VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (Account account : accounts) {
+                stmt.setString(1, account.getName());
+                stmt.setBigDecimal(2, account.getBalance());
+                stmt.setBigDecimal(3, account.getBalance());
+                stmt.setLong(4, account.getOwner().getId());
+                stmt.setBoolean(5, account.getIncludedInAsset());
+                stmt.setBoolean(6, account.getSelectable());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            assignGeneratedIds(stmt, accounts.size(), (index, id) -> accounts.get(index).setId(id));
+        }
+    }
+
+    // top-level categories first, then their children, each level in one batch
+    @SuppressWarnings("SqlResolve")
+    private void insertCategoryTree(LedgerContext context, List<CategoryTemplate> templates) throws SQLException {
+        String sql = "INSERT INTO ledger_categories (name, type, ledger_id, parent_id) VALUES (?, ?, ?, ?)";
+        Map<String, LedgerCategory> parents = new HashMap<>();
+        for (boolean topLevel : new boolean[]{true, false}) {
+            List<LedgerCategory> level = new ArrayList<>();
+            try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (CategoryTemplate template : templates) {
+                    if ((template.parentName() == null) != topLevel) continue;
+                    LedgerCategory category = new LedgerCategory(template.name(), template.type(), context.ledger);
+                    category.setParent(topLevel ? null : parents.get(template.parentName()));
+                    stmt.setString(1, category.getName());
+                    stmt.setString(2, category.getType().name());
+                    stmt.setLong(3, context.ledger.getId());
+                    if (category.getParent() != null) {
+                        stmt.setLong(4, category.getParent().getId());
+                    } else {
+                        stmt.setNull(4, Types.BIGINT);
+                    }
+                    stmt.addBatch();
+                    level.add(category);
+                }
+                if (level.isEmpty()) continue;
+                stmt.executeBatch();
+                assignGeneratedIds(stmt, level.size(), (index, id) -> level.get(index).setId(id));
+            }
+            for (LedgerCategory category : level) {
+                if (topLevel) parents.put(category.getName(), category);
+                context.categories.add(category);
+            }
+        }
+
+        List<LedgerCategory> expenses = new ArrayList<>();
+        for (LedgerCategory category : context.categories) {
+            switch (category.getName()) {
+                case "Salary" -> context.salary = category;
+                case "Bonus" -> context.bonus = category;
+                case "Freelance" -> context.freelance = category;
+                case "Housing" -> context.housing = category;
+                default -> {
+                }
+            }
+            if (category.getType() == CategoryType.EXPENSE) expenses.add(category);
+        }
+        context.expenseCategories = expenses.toArray(new LedgerCategory[0]);
+        context.cumulativeFrequency = new int[expenses.size()];
+        int total = 0;
+        for (int i = 0; i < expenses.size(); i++) {
+            total += FREQUENCY.getOrDefault(expenses.get(i).getName(), 3);
+            context.cumulativeFrequency[i] = total;
+        }
+    }
+
+    // same budgets as LedgerController.createLedger: ledger level and every expense category, for each period
+    @SuppressWarnings("SqlResolve")
+    private void insertBudgets(LedgerContext context) throws SQLException {
+        String sql = "INSERT INTO budgets (amount, period, category_id, ledger_id, start_date, end_date) VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            List<LedgerCategory> budgeted = new ArrayList<>();
+            budgeted.add(null);
+            for (LedgerCategory category : context.categories) {
+                if (category.getType() == CategoryType.EXPENSE) budgeted.add(category);
+            }
+            for (LedgerCategory category : budgeted) {
+                for (Period period : Period.values()) {
+                    Budget budget = new Budget(BigDecimal.ZERO, period, category, context.ledger);
+                    stmt.setBigDecimal(1, budget.getAmount());
+                    stmt.setString(2, period.name());
+                    if (category != null) {
+                        stmt.setLong(3, category.getId());
+                    } else {
+                        stmt.setNull(3, Types.BIGINT);
+                    }
+                    stmt.setLong(4, context.ledger.getId());
+                    stmt.setDate(5, java.sql.Date.valueOf(budget.getStartDate()));
+                    stmt.setDate(6, java.sql.Date.valueOf(budget.getEndDate()));
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    // day by day: salary and rent on fixed days, savings and card payments once a month,
+    // everyday expenses spread over the days with more of them at weekends
+    private long copyTransactions(LedgerContext context, List<Account> accounts, long[] balanceCents,
+                                  int transactionCount, SplittableRandom random) throws SQLException {
+        final int cash = 0, checking = 1, card = 2, savings = 3;
+        LocalDate startDate = endDate.minusDays(days - 1L);
+        boolean primary = context.ledger.getName().equals("Personal");
+        long salaryCents = random.nextLong(200_000, 600_000);
+        long rentCents = salaryCents * (25 + random.nextInt(15)) / 100;
+
+        double weightSum = 0;
+        for (int d = 0; d < days; d++) weightSum += dayWeight(startDate.plusDays(d));
+        int monthly = (days / 30 + 1) * (primary ? 4 : 1);
+        double perWeight = Math.max(0, transactionCount - monthly) / weightSum;
+
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                "COPY transactions (transaction_date, amount, note, from_account_id, to_account_id, ledger_id, category_id, type) " +
+                        "FROM STDIN (FORMAT csv)");
+        StringBuilder rows = new StringBuilder(COPY_CHUNK_ROWS * 64);
+        long written = 0;
+        try {
+            for (int d = 0; d < days && written < transactionCount; d++) {
+                LocalDate date = startDate.plusDays(d);
+                if (primary && date.getDayOfMonth() == 1) {
+                    long salary = salaryCents + random.nextLong(-5_000, 5_000);
+                    written += row(rows, date, salary, "Salary", -1, checking, context, context.salary, accounts, balanceCents);
+                    written += row(rows, date, rentCents, "Rent", checking, -1, context, context.housing, accounts, balanceCents);
+                }
+                if (primary && date.getDayOfMonth() == 5) {
+                    written += row(rows, date, salaryCents / 10, "Savings", checking, savings, context, null, accounts, balanceCents);
+                }
+                if (date.getDayOfMonth() == 20) {
+                    long payment = Math.max(0, -balanceCents[card]) + random.nextLong(0, 10_000);
+                    written += row(rows, date, payment, "Card payment", checking, card, context, null, accounts, balanceCents);
+                }
+                if (primary && context.freelance != null && random.nextInt(60) == 0) {
+                    long amount = lognormalCents(random, 400.0, 0.6);
+                    written += row(rows, date, amount, "Freelance work", -1, checking, context, context.freelance, accounts, balanceCents);
+                }
+                if (primary && context.bonus != null && date.getMonthValue() == 12 && date.getDayOfMonth() == 15) {
+                    written += row(rows, date, salaryCents / 2, "Year-end bonus", -1, checking, context, context.bonus, accounts, balanceCents);
+                }
+
+                double expected = dayWeight(date) * perWeight;
+                int count = (int) expected + (random.nextDouble() < expected - (int) expected ? 1 : 0);
+                for (int k = 0; k < count && written < transactionCount; k++) {
+                    LedgerCategory category = pickCategory(context, random);
+                    double median = MEDIAN_AMOUNT.getOrDefault(category.getName(), 30.0);
+                    long amount = lognormalCents(random, median, 0.7);
+                    int roll = random.nextInt(100);
+                    int account = roll < 25 ? cash : roll < 70 ? card : checking;
+                    written += row(rows, date, amount, category.getName(), account, -1, context, category, accounts, balanceCents);
+                }
+                if (rows.length() > COPY_CHUNK_ROWS * 64) {
+                    flush(copyIn, rows);
+                }
+            }
+            flush(copyIn, rows);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) copyIn.cancelCopy();
+        }
+        return written;
+    }
+
+    private static double dayWeight(LocalDate date) {
+        DayOfWeek day = date.getDayOfWeek();
+        return day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY ? 1.4 : 1.0;
+    }
+
+    private static LedgerCategory pickCategory(LedgerContext context, SplittableRandom random) {
+        int[] cumulative = context.cumulativeFrequency;
+        int target = random.nextInt(cumulative[cumulative.length - 1]);
+        int index = Arrays.binarySearch(cumulative, target + 1);
+        if (index < 0) index = -index - 1;
+        return context.expenseCategories[index];
+    }
+
+    private static long lognormalCents(SplittableRandom random, double median, double sigma) {
+        // Box-Muller, one normal sample per call keeps the stream position independent of caching
+        double u1 = 1.0 - random.nextDouble();
+        double u2 = random.nextDouble();
+        double normal = Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+        return Math.max(1, Math.round(median * Math.exp(sigma * normal) * 100));
+    }
+
+    // appends one CSV row and applies it to the in-memory balances; from/to are indexes into accounts or -1
+    private static int row(StringBuilder rows, LocalDate date, long amountCents, String note, int from, int to,
+                           LedgerContext context, LedgerCategory category, List<Account> accounts, long[] balanceCents) {
+        if (amountCents <= 0) return 0;
+        String type;
+        if (from >= 0 && to >= 0) {
+            type = TransactionType.TRANSFER.name();
+        } else if (from >= 0) {
+            type = TransactionType.EXPENSE.name();
+        } else {
+            type = TransactionType.INCOME.name();
+        }
+        if (from >= 0) balanceCents[from] -= amountCents;
+        if (to >= 0) balanceCents[to] += amountCents;
+
+        rows.append(date).append(',')
+                .append(amountCents / 100).append('.').append(amountCents % 100 < 10 ? "0" : "").append(amountCents % 100).append(',')
+                .append('"').append(note.replace("\"", "\"\"")).append('"').append(',');
+        if (from >= 0) rows.append(accounts.get(from).getId());
+        rows.append(',');
+        if (to >= 0) rows.append(accounts.get(to).getId());
+        rows.append(',').append(context.ledger.getId()).append(',');
+        if (category != null) rows.append(category.getId());
+        rows.append(',').append(type).append('\n');
+        return 1;
+    }
+
+    private static void flush(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    @SuppressWarnings("SqlResolve")
+    private void updateBalances(List<Account> accounts, long[] balanceCents) throws SQLException {
+        String sql = "UPDATE accounts SET balance = ? WHERE id = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (int i = 0; i < accounts.size(); i++) {
+                Account account = accounts.get(i);
+                account.setBalance(BigDecimal.valueOf(balanceCents[i], 2));
+                stmt.setBigDecimal(1, account.getBalance());
+                stmt.setLong(2, account.getId());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private interface IdSetter {
+        void set(int index, long id);
+    }
+
+    private static void assignGeneratedIds(PreparedStatement stmt, int expected, IdSetter setter) throws SQLException {
+        try (ResultSet rs = stmt.getGeneratedKeys()) {
+            int index = 0;
+            while (rs.next() && index < expected) {
+                setter.set(index++, rs.getLong(1));
+            }
+            if (index != expected) throw new SQLException("Expected " + expected + " generated keys, got " + index);
+        }
+    }
+
+    // usage: LedgerDataGenerator <users> <transactionsPerLedger> [seed]
+    // migrates the schema first if needed, like the application does at startup
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 2) {
+            System.err.println("usage: LedgerDataGenerator <users> <transactionsPerLedger> [seed]");
+            return;
+        }
+        int users = Integer.parseInt(args[0]);
+        int transactionsPerLedger = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        if (!new SchemaMigrator(connection).migrate()) {
+            return;
+        }
+        long start = System.nanoTime();
+        GeneratedData data = new LedgerDataGenerator(connection, seed, LocalDate.now()).generate(users, transactionsPerLedger);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Generated " + data.users().size() + " users, " + data.ledgers().size() + " ledgers, "
+                + data.accounts().size() + " accounts and " + data.transactionCount() + " transactions in " + millis + " ms");
+    }
+}
@@ -0,0 +1,12 @@
+-- net worth of each user, the opening balances plus the visible transactions of the live accounts included in
+-- assets, at the end of each day it changed; the value on any other day is that of the last row before it.
+-- Transaction writes remove the rows of the owners of their accounts from the first date they touch on,
+-- account changes that move every day remove all rows of the owner, and reads extend the rows from the last
+-- one left
+CREATE TABLE IF NOT EXISTS net_worth_history (
+    user_id BIGINT NOT NULL,
+    day DATE NOT NULL,
+    net_worth DECIMAL(17,2) NOT NULL,
+    PRIMARY KEY (user_id, day),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
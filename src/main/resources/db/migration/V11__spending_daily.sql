@@ -0,0 +1,19 @@
+-- per ledger, category and day: count and sum of the visible transactions' amounts, kept by the same statements
+-- as spending_stats. Budget forecasts read the pace of the current period and of the same period last year
+-- from these cells instead of the transactions
+CREATE TABLE IF NOT EXISTS spending_daily (
+    ledger_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL,
+    day DATE NOT NULL,
+    count BIGINT NOT NULL,
+    total NUMERIC NOT NULL,
+    PRIMARY KEY (ledger_id, category_id, day),
+    FOREIGN KEY (ledger_id) REFERENCES ledgers(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
+);
+
+INSERT INTO spending_daily (ledger_id, category_id, day, count, total)
+SELECT ledger_id, category_id, transaction_date, COUNT(*), SUM(amount)
+FROM live_transactions WHERE category_id IS NOT NULL
+GROUP BY 1, 2, 3
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,21 @@
+-- running total of each budget's expense categories (the category and its subcategories, every one of the
+-- ledger for a ledger budget) over its current period, kept by the statements that write transactions
+ALTER TABLE budgets ADD COLUMN IF NOT EXISTS spent NUMERIC NOT NULL DEFAULT 0;
+
+UPDATE budgets b SET spent = COALESCE((
+    SELECT SUM(d.total) FROM spending_daily d
+    JOIN ledger_categories c ON c.id = d.category_id AND c.type = 'EXPENSE'
+    WHERE d.ledger_id = b.ledger_id AND (b.category_id IS NULL OR b.category_id IN (c.id, c.parent_id))
+      AND d.day BETWEEN b.start_date AND b.end_date), 0);
+
+-- the last time each budget's spending went over each alert threshold (percent of the amount), until the
+-- application takes it; one row per budget and threshold, so the table stays small when nobody takes them
+CREATE TABLE IF NOT EXISTS budget_alerts (
+    budget_id BIGINT NOT NULL,
+    threshold INT NOT NULL,
+    spent NUMERIC NOT NULL,
+    amount DECIMAL(15,2) NOT NULL,
+    raised_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (budget_id, threshold),
+    FOREIGN KEY (budget_id) REFERENCES budgets(id) ON DELETE CASCADE
+);
@@ -0,0 +1,28 @@
+-- every (ancestor, descendant) pair of ledger categories, each category being its own ancestor at depth 0.
+-- Kept by LedgerCategoryDAO on insert and move, removed with the category; subtree roll-ups join it once
+-- instead of following parent_id, so they cost the same at any depth
+CREATE TABLE IF NOT EXISTS category_closure (
+    ancestor_id BIGINT NOT NULL,
+    descendant_id BIGINT NOT NULL,
+    depth INT NOT NULL,
+    PRIMARY KEY (ancestor_id, descendant_id),
+    FOREIGN KEY (ancestor_id) REFERENCES ledger_categories(id) ON DELETE CASCADE,
+    FOREIGN KEY (descendant_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
+);
+CREATE INDEX IF NOT EXISTS idx_category_closure_descendant ON category_closure (descendant_id, depth);
+
+WITH RECURSIVE tree AS (
+    SELECT id AS ancestor_id, id AS descendant_id, 0 AS depth FROM ledger_categories
+    UNION ALL
+    SELECT t.ancestor_id, c.id, t.depth + 1 FROM tree t JOIN ledger_categories c ON c.parent_id = t.descendant_id
+)
+INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+SELECT ancestor_id, descendant_id, depth FROM tree
+ON CONFLICT DO NOTHING;
+
+UPDATE budgets b SET spent = COALESCE((
+    SELECT SUM(d.total) FROM spending_daily d
+    JOIN ledger_categories c ON c.id = d.category_id AND c.type = 'EXPENSE'
+    WHERE d.ledger_id = b.ledger_id
+      AND (b.category_id IS NULL OR d.category_id IN (SELECT cc.descendant_id FROM category_closure cc WHERE cc.ancestor_id = b.category_id))
+      AND d.day BETWEEN b.start_date AND b.end_date), 0);
@@ -0,0 +1,25 @@
+-- default category templates copied into every new ledger
+INSERT INTO global_categories (name, parent_id, type) VALUES
+    ('Food', NULL, 'EXPENSE'),
+    ('Transport', NULL, 'EXPENSE'),
+    ('Entertainment', NULL, 'EXPENSE'),
+    ('Healthy', NULL, 'EXPENSE'),
+    ('Education', NULL, 'EXPENSE'),
+    ('Shopping', NULL, 'EXPENSE'),
+    ('Gifts', NULL, 'EXPENSE'),
+    ('Electronics', NULL, 'EXPENSE'),
+    ('Housing', NULL, 'EXPENSE'),
+    ('Salary', NULL, 'INCOME'),
+    ('Freelance', NULL, 'INCOME'),
+    ('Bonus', NULL, 'INCOME')
+ON CONFLICT (name) DO NOTHING;
+
+INSERT INTO global_categories (name, parent_id, type)
+SELECT c.name, p.id, 'EXPENSE'
+FROM (VALUES ('Breakfast', 'Food'),
+             ('Lunch', 'Food'),
+             ('Dinner', 'Food'),
+             ('Taxi', 'Transport'),
+             ('Bus', 'Transport')) AS c(name, parent)
+JOIN global_categories p ON p.name = c.parent
+ON CONFLICT (name) DO NOTHING;
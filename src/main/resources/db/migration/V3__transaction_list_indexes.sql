@@ -0,0 +1,4 @@
+-- list views read one ledger or one account, newest first, optionally within a date range
+CREATE INDEX IF NOT EXISTS idx_transactions_ledger_date ON transactions (ledger_id, transaction_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_from_account ON transactions (from_account_id, transaction_date DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_to_account ON transactions (to_account_id, transaction_date DESC);
@@ -0,0 +1,6 @@
+-- note search: full text over the words of a note, trigram similarity for misspelled words
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS note_tsv tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', coalesce(note, ''))) STORED;
+CREATE INDEX IF NOT EXISTS idx_transactions_note_tsv ON transactions USING GIN (note_tsv);
+CREATE INDEX IF NOT EXISTS idx_transactions_note_trgm ON transactions USING GIN (note gin_trgm_ops);
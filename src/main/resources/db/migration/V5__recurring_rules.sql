@@ -0,0 +1,28 @@
+-- recurring transactions: a rule materializes one transaction per occurrence date, the unique
+-- (recurring_rule_id, occurrence_date) key makes generation idempotent
+CREATE TABLE IF NOT EXISTS recurring_rules (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    type VARCHAR(10) NOT NULL CHECK ( type IN ('INCOME','EXPENSE','TRANSFER') ),
+    ledger_id BIGINT NOT NULL,
+    from_account_id BIGINT,
+    to_account_id BIGINT,
+    category_id BIGINT,
+    amount DECIMAL(15,2) NOT NULL,
+    note TEXT,
+    frequency VARCHAR(10) NOT NULL CHECK (frequency IN ('DAILY','WEEKLY','MONTHLY','YEARLY')),
+    interval_count INT NOT NULL DEFAULT 1 CHECK (interval_count > 0),
+    start_date DATE NOT NULL,
+    end_date DATE,
+    max_occurrences INT CHECK (max_occurrences > 0),
+    occurrence_count INT NOT NULL DEFAULT 0,
+    next_date DATE,
+    FOREIGN KEY (ledger_id) REFERENCES ledgers(id) ON DELETE CASCADE,
+    FOREIGN KEY (from_account_id) REFERENCES accounts(id) ON DELETE CASCADE,
+    FOREIGN KEY (to_account_id) REFERENCES accounts(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
+);
+CREATE INDEX IF NOT EXISTS idx_recurring_rules_next_date ON recurring_rules (next_date) WHERE next_date IS NOT NULL;
+
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS recurring_rule_id BIGINT REFERENCES recurring_rules(id) ON DELETE SET NULL;
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS occurrence_date DATE;
+CREATE UNIQUE INDEX IF NOT EXISTS uq_transactions_rule_occurrence ON transactions (recurring_rule_id, occurrence_date);
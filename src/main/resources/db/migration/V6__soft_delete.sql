@@ -0,0 +1,12 @@
+-- soft delete: a deleted ledger or account is hidden at once and purged later in small chunks
+ALTER TABLE ledgers ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP;
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP;
+CREATE INDEX IF NOT EXISTS idx_ledgers_deleted ON ledgers (id) WHERE deleted_at IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_accounts_deleted ON accounts (id) WHERE deleted_at IS NOT NULL;
+-- the transactions a user can still see: outside deleted ledgers and with at least one live account.
+-- recreate it when a column is added to transactions
+CREATE OR REPLACE VIEW live_transactions AS
+SELECT t.* FROM transactions t
+WHERE t.ledger_id NOT IN (SELECT id FROM ledgers WHERE deleted_at IS NOT NULL)
+  AND (t.from_account_id NOT IN (SELECT id FROM accounts WHERE deleted_at IS NOT NULL)
+       OR t.to_account_id NOT IN (SELECT id FROM accounts WHERE deleted_at IS NOT NULL));
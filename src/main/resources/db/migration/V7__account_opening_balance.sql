@@ -0,0 +1,11 @@
+-- the balance an account started from: its balance must always equal opening_balance plus the net of its
+-- visible transactions. Existing accounts take the baseline that makes their current balance consistent
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS opening_balance DECIMAL(15,2) NOT NULL DEFAULT 0.00;
+UPDATE accounts SET opening_balance = balance;
+UPDATE accounts a SET opening_balance = a.opening_balance - n.net
+FROM (SELECT account_id, SUM(delta) AS net FROM (
+    SELECT from_account_id AS account_id, -amount AS delta FROM live_transactions WHERE from_account_id IS NOT NULL
+    UNION ALL
+    SELECT to_account_id, amount FROM live_transactions WHERE to_account_id IS NOT NULL) d
+    GROUP BY account_id) n
+WHERE a.id = n.account_id;
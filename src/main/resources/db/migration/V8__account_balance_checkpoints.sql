@@ -0,0 +1,10 @@
+-- month-end checkpoints of each account: net is the sum of the account's visible transactions up to and
+-- including period_end, without the opening balance. Writes remove the checkpoints from the first date they
+-- touch on, and the missing ones are rebuilt on demand, so the rows that exist are always valid
+CREATE TABLE IF NOT EXISTS account_balance_checkpoints (
+    account_id BIGINT NOT NULL,
+    period_end DATE NOT NULL,
+    net DECIMAL(17,2) NOT NULL,
+    PRIMARY KEY (account_id, period_end),
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+);
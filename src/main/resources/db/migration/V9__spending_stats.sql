@@ -0,0 +1,41 @@
+-- per ledger, category and month: count, sum and sum of squares of the visible transactions' amounts, kept
+-- exact so that writes can add and take out their share, and the mean and variance of any set of cells
+-- follow from the sums of their rows
+CREATE TABLE IF NOT EXISTS spending_stats (
+    ledger_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL,
+    month DATE NOT NULL,
+    count BIGINT NOT NULL,
+    total NUMERIC NOT NULL,
+    total_squares NUMERIC NOT NULL,
+    PRIMARY KEY (ledger_id, category_id, month),
+    FOREIGN KEY (ledger_id) REFERENCES ledgers(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
+);
+
+-- quantile sketch of the same cells: how many amounts fall in each logarithmic bucket
+-- (1.01/0.99)^(bucket-1) < amount <= (1.01/0.99)^bucket, so any quantile is known within 1%; zero amounts
+-- go to bucket -2147483648. Buckets of several cells merge by adding their counts
+CREATE TABLE IF NOT EXISTS spending_sketch (
+    ledger_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL,
+    month DATE NOT NULL,
+    bucket INT NOT NULL,
+    count BIGINT NOT NULL,
+    PRIMARY KEY (ledger_id, category_id, month, bucket),
+    FOREIGN KEY (ledger_id) REFERENCES ledgers(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
+);
+
+INSERT INTO spending_stats (ledger_id, category_id, month, count, total, total_squares)
+SELECT ledger_id, category_id, date_trunc('month', transaction_date)::date, COUNT(*), SUM(amount), SUM(amount * amount)
+FROM live_transactions WHERE category_id IS NOT NULL
+GROUP BY 1, 2, 3
+ON CONFLICT DO NOTHING;
+
+INSERT INTO spending_sketch (ledger_id, category_id, month, bucket, count)
+SELECT ledger_id, category_id, date_trunc('month', transaction_date)::date,
+       CASE WHEN amount > 0 THEN CEIL(LN(amount) / LN(1.01 / 0.99))::int ELSE -2147483648 END, COUNT(*)
+FROM live_transactions WHERE category_id IS NOT NULL
+GROUP BY 1, 2, 3, 4
+ON CONFLICT DO NOTHING;
@@ -12,6 +12,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.List;
@@ -30,6 +31,7 @@ public class AccountControllerTest {
 
     private AccountController accountController;
     private TransactionController transactionController;
+    private LedgerController ledgerController;
 
     private AccountDAO accountDAO;
     private TransactionDAO transactionDAO;
@@ -52,8 +54,8 @@ public class AccountControllerTest {
 
         UserController userController = new UserController(userDAO);
         accountController = new AccountController(accountDAO, transactionDAO);
-        transactionController = new TransactionController(transactionDAO, accountDAO);
-        LedgerController ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
+        ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
 
         userController.register("test user", "password123"); // create test user and insert into db
         testUser=userController.login("test user", "password123"); // login to set current user
@@ -182,4 +184,86 @@ public class AccountControllerTest {
         assertEquals(2, accountController.getAccounts(testUser).size());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testGetStatement() {
+        Account account = accountController.createAccount("Checking", BigDecimal.valueOf(1000), true, true);
+        Account savings = accountController.createAccount("Savings", BigDecimal.valueOf(0), true, true);
+        assertNotNull(transactionController.createIncome(testLedger, account, salary, null, LocalDate.of(2025, 1, 10), BigDecimal.valueOf(500)));
+        assertNotNull(transactionController.createExpense(testLedger, account, food, null, LocalDate.of(2025, 2, 5), BigDecimal.valueOf(200)));
+        assertNotNull(transactionController.createTransfer(testLedger, account, savings, null, LocalDate.of(2025, 3, 1), BigDecimal.valueOf(100)));
+
+        List<StatementLine> lines = accountController.getStatement(account, null, null);
+        assertEquals(3, lines.size());
+        assertEquals(0, lines.get(0).balance().compareTo(BigDecimal.valueOf(1500)));
+        assertEquals(0, lines.get(1).change().compareTo(BigDecimal.valueOf(-200)));
+        assertEquals(0, lines.get(1).balance().compareTo(BigDecimal.valueOf(1300)));
+        assertEquals(0, lines.get(2).balance().compareTo(accountDAO.getAccountById(account.getId()).getBalance()));
+
+        //starts from the balance at the end of January
+        lines = accountController.getStatement(account, LocalDate.of(2025, 2, 1), LocalDate.of(2025, 2, 28));
+        assertEquals(1, lines.size());
+        assertEquals(0, lines.get(0).balance().compareTo(BigDecimal.valueOf(1300)));
+        assertEquals(1, countCheckpoints(account));
+
+        lines = accountController.getStatement(savings, null, null);
+        assertEquals(1, lines.size());
+        assertEquals(0, lines.get(0).change().compareTo(BigDecimal.valueOf(100)));
+        assertEquals(0, lines.get(0).balance().compareTo(BigDecimal.valueOf(100)));
+    }
+
+    @Test
+    public void testGetBalanceAsOf() {
+        Account account = accountController.createAccount("Checking", BigDecimal.valueOf(1000), true, true);
+        assertNotNull(transactionController.createIncome(testLedger, account, salary, null, LocalDate.of(2025, 1, 10), BigDecimal.valueOf(500)));
+        assertNotNull(transactionController.createExpense(testLedger, account, food, null, LocalDate.of(2025, 2, 5), BigDecimal.valueOf(200)));
+
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 1, 9)).compareTo(BigDecimal.valueOf(1000)));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 1, 31)).compareTo(BigDecimal.valueOf(1500)));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 4, 15)).compareTo(BigDecimal.valueOf(1300)));
+        assertEquals(3, countCheckpoints(account)); //January to March
+
+        //the opening balance does not move the checkpoints
+        assertTrue(accountController.editAccount(account, "Checking", BigDecimal.valueOf(2300), true, true));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 4, 15)).compareTo(BigDecimal.valueOf(2300)));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2024, 12, 31)).compareTo(BigDecimal.valueOf(2000)));
+    }
+
+    @Test
+    public void testCheckpointsFollowBackdatedChanges() {
+        Account account = accountController.createAccount("Checking", BigDecimal.valueOf(1000), true, true);
+        Income income = transactionController.createIncome(testLedger, account, salary, null, LocalDate.of(2025, 1, 10), BigDecimal.valueOf(500));
+        Expense expense = transactionController.createExpense(testLedger, account, food, null, LocalDate.of(2025, 3, 5), BigDecimal.valueOf(200));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 4, 1)).compareTo(BigDecimal.valueOf(1300)));
+        assertEquals(3, countCheckpoints(account));
+
+        //insert in February drops the February and March checkpoints
+        assertNotNull(transactionController.createIncome(testLedger, account, salary, null, LocalDate.of(2025, 2, 20), BigDecimal.valueOf(50)));
+        assertEquals(1, countCheckpoints(account));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 4, 1)).compareTo(BigDecimal.valueOf(1350)));
+
+        //moving the expense back to January
+        assertTrue(transactionController.updateExpense(expense, account, food, null, LocalDate.of(2025, 1, 20), BigDecimal.valueOf(300), testLedger));
+        assertEquals(0, countCheckpoints(account));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 1, 31)).compareTo(BigDecimal.valueOf(1200)));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 4, 1)).compareTo(BigDecimal.valueOf(1250)));
+
+        assertTrue(transactionController.deleteTransaction(income));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 4, 1)).compareTo(BigDecimal.valueOf(750)));
+
+        //hiding the ledger takes its transactions out of the history
+        assertTrue(ledgerController.deleteLedger(testLedger));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 4, 1)).compareTo(BigDecimal.valueOf(1000)));
+        List<StatementLine> lines = accountController.getStatement(account, LocalDate.of(2025, 2, 1), null);
+        assertTrue(lines.isEmpty());
+    }
+
+    private int countCheckpoints(Account account) {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM account_balance_checkpoints WHERE account_id = " + account.getId())) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
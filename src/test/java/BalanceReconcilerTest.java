@@ -0,0 +1,195 @@
+import com.ledger.BusinessLogic.*;
+import com.ledger.DomainModel.*;
+import com.ledger.ORM.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BalanceReconcilerTest {
+    private Connection connection;
+
+    private Ledger testLedger;
+    private Account testAccount;
+    private Account testAccount1;
+    private LedgerCategory salary;
+    private LedgerCategory food;
+
+    private AccountDAO accountDAO;
+
+    private TransactionController transactionController;
+    private LedgerController ledgerController;
+    private AccountController accountController;
+    private BalanceReconciler reconciler;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager= ConnectionManager.getInstance();
+        connection=connectionManager.getConnection();
+        readResetScript();
+        runSchemaScript();
+        readDataScript();
+
+        UserDAO userDAO = new UserDAO(connection);
+        LedgerDAO ledgerDAO = new LedgerDAO(connection);
+        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+        accountDAO = new AccountDAO(connection);
+        TransactionDAO transactionDAO = new TransactionDAO(connection);
+        CategoryDAO categoryDAO = new CategoryDAO(connection);
+        BudgetDAO budgetDAO = new BudgetDAO(connection);
+
+        UserController userController = new UserController(userDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
+        ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
+        accountController = new AccountController(accountDAO, transactionDAO);
+        reconciler = new BalanceReconciler(connectionManager::openConnection, 3, 7);
+
+        userController.register("test user", "password123");
+        userController.login("test user", "password123");
+
+        testLedger = ledgerController.createLedger("Test Ledger");
+
+        List<LedgerCategory> testCategories = ledgerCategoryDAO.getTreeByLedger(testLedger);
+        salary = testCategories.stream()
+                .filter(cat -> cat.getName().equals("Salary"))
+                .findFirst()
+                .orElse(null);
+        food = testCategories.stream()
+                .filter(cat -> cat.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+
+        testAccount = accountController.createAccount("Test Account", BigDecimal.valueOf(1000.00), true, true);
+        testAccount1 = accountController.createAccount("Test Account 1", BigDecimal.valueOf(500.00), true, true);
+    }
+
+    private void runSchemaScript() {
+        executeSqlFile("src/test/resources/schema.sql");
+    }
+
+    private void readResetScript() {
+        executeSqlFile("src/test/resources/reset.sql");
+    }
+
+    private void readDataScript() {
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    private void execute(String sql) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    @Test
+    public void testReconcile_ConsistentAfterOperations() {
+        transactionController.createIncome(testLedger, testAccount, salary, "salary", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(2000.00));
+        Expense expense = transactionController.createExpense(testLedger, testAccount, food, "food", LocalDate.of(2024, 6, 2), BigDecimal.valueOf(40.00));
+        transactionController.createTransfer(testLedger, testAccount, testAccount1, "savings", LocalDate.of(2024, 6, 3), BigDecimal.valueOf(300.00));
+        transactionController.updateExpense(expense, testAccount1, food, "food", LocalDate.of(2024, 6, 2), BigDecimal.valueOf(45.00), testLedger);
+        transactionController.bulkDelete(TransactionQuery.create().noteContains("savings"));
+
+        List<BalanceDrift> drifts = reconciler.reconcile();
+        assertNotNull(drifts);
+        assertTrue(drifts.isEmpty());
+    }
+
+    @Test
+    public void testReconcile_FindsAndRepairsDrift() throws Exception {
+        transactionController.createExpense(testLedger, testAccount, food, "food", LocalDate.of(2024, 6, 2), BigDecimal.valueOf(40.00));
+        transactionController.createIncome(testLedger, testAccount1, salary, "salary", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(100.00));
+        execute("UPDATE accounts SET balance = balance + 7.50 WHERE id = " + testAccount.getId());
+        execute("UPDATE accounts SET balance = 0 WHERE id = " + testAccount1.getId());
+
+        List<BalanceDrift> drifts = reconciler.reconcile();
+        assertNotNull(drifts);
+        assertEquals(2, drifts.size());
+        assertEquals(testAccount.getId(), drifts.get(0).accountId());
+        assertEquals(0, drifts.get(0).expected().compareTo(BigDecimal.valueOf(960.00)));
+        assertEquals(0, drifts.get(0).difference().compareTo(BigDecimal.valueOf(7.50)));
+        assertEquals(0, drifts.get(1).expected().compareTo(BigDecimal.valueOf(600.00)));
+
+        //recorded after the check: the repair still lands on the right balance
+        execute("INSERT INTO transactions (type, ledger_id, from_account_id, category_id, amount, transaction_date) VALUES " +
+                "('EXPENSE', " + testLedger.getId() + ", " + testAccount.getId() + ", " + food.getId() + ", 10.00, '2024-06-03')");
+        execute("UPDATE accounts SET balance = balance - 10.00 WHERE id = " + testAccount.getId());
+        assertEquals(2, reconciler.repair(drifts));
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(950.00)));
+        assertEquals(0, accountDAO.getAccountById(testAccount1.getId()).getBalance().compareTo(BigDecimal.valueOf(600.00)));
+        assertTrue(reconciler.reconcile().isEmpty());
+        assertEquals(0, reconciler.repair(drifts));
+    }
+
+    @Test
+    public void testReconcile_EditedBalanceIsNotDrift() {
+        transactionController.createExpense(testLedger, testAccount, food, "food", LocalDate.of(2024, 6, 2), BigDecimal.valueOf(40.00));
+        Account account = accountDAO.getAccountById(testAccount.getId());
+        assertTrue(accountController.editAccount(account, "Renamed", BigDecimal.valueOf(123.45), true, true));
+
+        assertTrue(reconciler.reconcile().isEmpty());
+        transactionController.createExpense(testLedger, account, food, "more food", LocalDate.of(2024, 6, 3), BigDecimal.valueOf(3.45));
+        assertTrue(reconciler.reconcile().isEmpty());
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(120.00)));
+    }
+
+    @Test
+    public void testReconcile_DeletedLedgerAndAccount() {
+        Ledger otherLedger = ledgerController.createLedger("Other Ledger");
+        LedgerCategory otherFood = new LedgerCategoryDAO(connection).getTreeByLedger(otherLedger).stream()
+                .filter(cat -> cat.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+        transactionController.createExpense(otherLedger, testAccount, otherFood, "other", LocalDate.of(2024, 6, 2), BigDecimal.valueOf(40.00));
+        transactionController.createTransfer(testLedger, testAccount, testAccount1, "transfer", LocalDate.of(2024, 6, 3), BigDecimal.valueOf(60.00));
+        assertTrue(ledgerController.deleteLedger(otherLedger));
+        assertTrue(accountController.deleteAccount(testAccount1));
+
+        List<BalanceDrift> drifts = reconciler.reconcile();
+        assertNotNull(drifts);
+        assertTrue(drifts.isEmpty());
+    }
+
+    @Test
+    public void testReconcile_ManyShards() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Account account = accountController.createAccount("Account " + i, BigDecimal.valueOf(i), true, true);
+            transactionController.createIncome(testLedger, account, salary, "income " + i, LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10));
+        }
+        execute("UPDATE accounts SET balance = balance + 1 WHERE name IN ('Account 3', 'Account 17')");
+
+        List<BalanceDrift> drifts = new BalanceReconciler(ConnectionManager.getInstance()::openConnection, 4, 50).reconcile();
+        assertNotNull(drifts);
+        assertEquals(List.of("Account 3", "Account 17"), drifts.stream().map(BalanceDrift::accountName).toList());
+    }
+}
@@ -1,4 +1,5 @@
 import com.ledger.BusinessLogic.BudgetController;
+import com.ledger.BusinessLogic.LedgerCategoryController;
 import com.ledger.BusinessLogic.LedgerController;
 import com.ledger.BusinessLogic.UserController;
 import com.ledger.DomainModel.Budget;
@@ -33,6 +34,7 @@ public class BudgetControllerTest {
     private BudgetDAO budgetDAO;
 
     private BudgetController budgetController;
+    private LedgerCategoryController ledgerCategoryController;
 
     @BeforeEach
     public void setUp() {
@@ -52,6 +54,7 @@ public class BudgetControllerTest {
 
         UserController userController = new UserController(userDAO);
         budgetController = new BudgetController(budgetDAO, ledgerCategoryDAO);
+        ledgerCategoryController = new LedgerCategoryController(ledgerCategoryDAO, transactionDAO, budgetDAO, accountDAO);
         LedgerController ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
 
         userController.register("test user", "password");
@@ -152,10 +155,26 @@ public class BudgetControllerTest {
         assertEquals(0, updateBudget2.getAmount().compareTo(BigDecimal.ZERO)); //yearly budget should remain unchanged
     }
 
+    @Test
+    public void testMergeBudgets_WholeSubtree() {
+        LedgerCategory snack = ledgerCategoryController.createSubCategory("Snack", lunch);
+        assertNotNull(snack);
+        Budget foodBudget = budgetDAO.getBudgetByCategory(food, Period.MONTHLY);
+        Budget lunchBudget = budgetDAO.getBudgetByCategory(lunch, Period.MONTHLY);
+        budgetController.editBudget(lunchBudget, BigDecimal.valueOf(100.00));
+        budgetController.editBudget(budgetDAO.getBudgetByCategory(snack, Period.MONTHLY), BigDecimal.valueOf(30.00));
+
+        assertTrue(budgetController.mergeBudgets(lunchBudget)); //not top-level, merges snack
+        assertEquals(0, budgetDAO.getById(lunchBudget.getId()).getAmount().compareTo(BigDecimal.valueOf(130.00)));
+
+        assertTrue(budgetController.mergeBudgets(foodBudget)); //lunch and snack below it
+        assertEquals(0, budgetDAO.getById(foodBudget.getId()).getAmount().compareTo(BigDecimal.valueOf(160.00)));
+    }
+
     @Test
     public void testMergeBudgets_Failure(){
         Budget subcategoryBudget = budgetDAO.getBudgetByCategory(lunch, Period.MONTHLY);
-        assertFalse(budgetController.mergeBudgets(subcategoryBudget)); //cannot merge subcategory budget directly
+        assertFalse(budgetController.mergeBudgets(subcategoryBudget)); //lunch has no subcategories to merge
         assertFalse(budgetController.mergeBudgets(null)); //null budget
     }
 
@@ -255,6 +274,37 @@ public class BudgetControllerTest {
         assertEquals(0, activeBudget2.getAmount().compareTo(BigDecimal.ZERO));
     }
 
+    //test getActiveBudgets: the ledger budget, then the category tree, expired ones refreshed
+    @Test
+    public void testGetActiveBudgets() {
+        Budget lunchBudget = budgetDAO.getBudgetByCategory(lunch, Period.MONTHLY);
+        lunchBudget.setStartDate(LocalDate.of(2025, 1, 1));
+        lunchBudget.setEndDate(LocalDate.of(2025, 1, 31));
+        lunchBudget.setAmount(BigDecimal.valueOf(150.00));
+        budgetDAO.update(lunchBudget);
+
+        List<Budget> budgets = budgetController.getActiveBudgets(testLedger, Period.MONTHLY);
+        assertEquals(monthlyTotalBudget.getId(), budgets.get(0).getId());
+        assertNull(budgets.get(0).getCategory());
+        assertTrue(budgets.stream().allMatch(b -> b.getPeriod() == Period.MONTHLY));
+        int foodIndex = indexOf(budgets, food);
+        int lunchIndex = indexOf(budgets, lunch);
+        assertTrue(foodIndex > 0 && lunchIndex > foodIndex);
+        assertEquals("Lunch", budgets.get(lunchIndex).getCategory().getName());
+        assertSame(budgets.get(foodIndex).getCategory(), budgets.get(lunchIndex).getCategory().getParent());
+
+        Budget refreshed = budgetDAO.getById(lunchBudget.getId());
+        assertFalse(refreshed.getEndDate().isBefore(LocalDate.now()));
+        assertEquals(0, refreshed.getAmount().compareTo(BigDecimal.ZERO));
+    }
+
+    private int indexOf(List<Budget> budgets, LedgerCategory category) {
+        for (int i = 0; i < budgets.size(); i++) {
+            if (budgets.get(i).getCategory() != null && budgets.get(i).getCategory().getId() == category.getId()) return i;
+        }
+        return -1;
+    }
+
     //test getActiveBudgetsByCategory
 //    @Test
 //    public void testGetActiveBudgetsByCategory() {
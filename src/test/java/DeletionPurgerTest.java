@@ -0,0 +1,221 @@
+import com.ledger.BusinessLogic.*;
+import com.ledger.DomainModel.*;
+import com.ledger.ORM.*;
+import com.ledger.Tracing.SqlTracer;
+import com.ledger.Tracing.TemplateStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeletionPurgerTest {
+    private Connection connection;
+
+    private Ledger testLedger;
+    private Account testAccount;
+    private Account testAccount1;
+    private LedgerCategory salary;
+    private LedgerCategory food;
+
+    private AccountDAO accountDAO;
+    private LedgerDAO ledgerDAO;
+    private TransactionDAO transactionDAO;
+
+    private TransactionController transactionController;
+    private LedgerController ledgerController;
+    private AccountController accountController;
+    private RecurringController recurringController;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager= ConnectionManager.getInstance();
+        connection=connectionManager.getConnection();
+        readResetScript();
+        runSchemaScript();
+        readDataScript();
+
+        UserDAO userDAO = new UserDAO(connection);
+        ledgerDAO = new LedgerDAO(connection);
+        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+        accountDAO = new AccountDAO(connection);
+        transactionDAO = new TransactionDAO(connection);
+        CategoryDAO categoryDAO = new CategoryDAO(connection);
+        BudgetDAO budgetDAO = new BudgetDAO(connection);
+
+        UserController userController = new UserController(userDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
+        ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
+        accountController = new AccountController(accountDAO, transactionDAO);
+        recurringController = new RecurringController(new RecurringRuleDAO(connection));
+
+        userController.register("test user", "password123");
+        userController.login("test user", "password123");
+
+        testLedger = ledgerController.createLedger("Test Ledger");
+
+        List<LedgerCategory> testCategories = ledgerCategoryDAO.getTreeByLedger(testLedger);
+        salary = testCategories.stream()
+                .filter(cat -> cat.getName().equals("Salary"))
+                .findFirst()
+                .orElse(null);
+        food = testCategories.stream()
+                .filter(cat -> cat.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+
+        testAccount = accountController.createAccount("Test Account", BigDecimal.valueOf(1000.00), true, true);
+        testAccount1 = accountController.createAccount("Test Account 1", BigDecimal.valueOf(500.00), true, true);
+    }
+
+    private void runSchemaScript() {
+        executeSqlFile("src/test/resources/schema.sql");
+    }
+
+    private void readResetScript() {
+        executeSqlFile("src/test/resources/reset.sql");
+    }
+
+    private void readDataScript() {
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    private long count(String sql) throws Exception {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private long executions(String template) {
+        return SqlTracer.getInstance().getTemplates().stream()
+                .filter(t -> t.getTemplate().startsWith(template))
+                .mapToLong(TemplateStats::getExecutions)
+                .sum();
+    }
+
+    @Test
+    public void testDeleteLedger_ConstantWorkThenChunkedPurge() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10.00));
+        }
+        transactionController.createIncome(testLedger, testAccount1, salary, null, LocalDate.of(2024, 6, 1), BigDecimal.valueOf(200.00));
+
+        SqlTracer sqlTracer = SqlTracer.getInstance();
+        sqlTracer.reset();
+        assertTrue(ledgerController.deleteLedger(testLedger));
+        //soft delete and one aggregate balance update, however many transactions
+        assertEquals(2, sqlTracer.getTemplates().stream().mapToLong(TemplateStats::getExecutions).sum());
+
+        //hidden and out of the balances at once
+        assertNull(ledgerDAO.getById(testLedger.getId()));
+        assertTrue(ledgerController.getLedgersByUser(testLedger.getOwner()).isEmpty());
+        assertTrue(transactionDAO.getByAccountId(testAccount.getId()).isEmpty());
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(1000.00)));
+        assertEquals(0, accountDAO.getAccountById(testAccount1.getId()).getBalance().compareTo(BigDecimal.valueOf(500.00)));
+        assertEquals(31, count("SELECT COUNT(*) FROM transactions"));
+        assertFalse(ledgerController.deleteLedger(testLedger)); //already deleted
+        //the name can be used again right away
+        assertNotNull(ledgerController.createLedger("Test Ledger"));
+
+        sqlTracer.reset();
+        try (DeletionPurger purger = new DeletionPurger(ConnectionManager.getInstance().openConnection(), 7, 0)) {
+            assertEquals(32, purger.purge()); //31 transactions and the ledger
+            assertEquals(0, purger.purge());
+        }
+        //7 + 7 + 7 + 7 + 3, each committed on its own
+        assertEquals(5, executions("DELETE FROM transactions WHERE id IN (SELECT id FROM transactions WHERE ledger_id"));
+        assertEquals(0, count("SELECT COUNT(*) FROM transactions"));
+        assertEquals(0, count("SELECT COUNT(*) FROM ledgers WHERE id = " + testLedger.getId()));
+        assertEquals(0, count("SELECT COUNT(*) FROM ledger_categories WHERE ledger_id = " + testLedger.getId()));
+        assertEquals(0, count("SELECT COUNT(*) FROM budgets WHERE ledger_id = " + testLedger.getId()));
+    }
+
+    @Test
+    public void testDeleteAccount_TransfersBecomeExternal() throws Exception {
+        Expense expense = transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10.00));
+        Transfer transfer = transactionController.createTransfer(testLedger, testAccount, testAccount1, null, LocalDate.of(2024, 6, 2), BigDecimal.valueOf(100.00));
+
+        assertTrue(accountController.deleteAccount(testAccount));
+        assertNull(accountDAO.getAccountById(testAccount.getId()));
+        assertNull(transactionDAO.getById(expense.getId()));
+        Transaction visible = transactionDAO.getById(transfer.getId());
+        assertNotNull(visible);
+        assertNull(visible.getFromAccount());
+        assertEquals(1, transactionDAO.getByAccountId(testAccount1.getId()).size());
+        assertEquals(0, accountDAO.getAccountById(testAccount1.getId()).getBalance().compareTo(BigDecimal.valueOf(600.00)));
+
+        try (DeletionPurger purger = new DeletionPurger(ConnectionManager.getInstance().openConnection(), 1, 0)) {
+            assertEquals(3, purger.purge()); //expense deleted, transfer detached, account removed
+        }
+        assertEquals(0, count("SELECT COUNT(*) FROM transactions WHERE id = " + expense.getId()));
+        assertEquals(1, count("SELECT COUNT(*) FROM transactions WHERE id = " + transfer.getId() + " AND from_account_id IS NULL"));
+        assertEquals(0, count("SELECT COUNT(*) FROM accounts WHERE id = " + testAccount.getId()));
+        assertNotNull(transactionDAO.getById(transfer.getId()));
+    }
+
+    @Test
+    public void testDelete_StopsRecurringRules() {
+        recurringController.createRule(TransactionType.EXPENSE, testLedger, testAccount, null, food,
+                BigDecimal.valueOf(10.00), null, Frequency.DAILY, 1, LocalDate.of(2024, 1, 1), null, null);
+        Ledger otherLedger = ledgerController.createLedger("Other Ledger");
+        LedgerCategory otherSalary = new LedgerCategoryDAO(connection).getTreeByLedger(otherLedger).stream()
+                .filter(cat -> cat.getName().equals("Salary"))
+                .findFirst()
+                .orElse(null);
+        recurringController.createRule(TransactionType.INCOME, otherLedger, null, testAccount1, otherSalary,
+                BigDecimal.valueOf(10.00), null, Frequency.DAILY, 1, LocalDate.of(2024, 1, 1), null, null);
+
+        assertTrue(accountController.deleteAccount(testAccount));
+        assertTrue(ledgerController.deleteLedger(otherLedger));
+        assertTrue(recurringController.getRulesByLedger(testLedger).isEmpty());
+        assertEquals(0, recurringController.generateDueOccurrences(LocalDate.of(2024, 1, 31)));
+    }
+
+    @Test
+    public void testStart_PurgesInBackground() throws Exception {
+        transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10.00));
+        assertTrue(ledgerController.deleteLedger(testLedger));
+        try (DeletionPurger purger = new DeletionPurger(ConnectionManager.getInstance().openConnection(), 100, 0)) {
+            purger.start(10);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (count("SELECT COUNT(*) FROM ledgers WHERE id = " + testLedger.getId()) > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+        assertEquals(0, count("SELECT COUNT(*) FROM ledgers WHERE id = " + testLedger.getId()));
+        assertEquals(0, count("SELECT COUNT(*) FROM transactions"));
+    }
+}
@@ -0,0 +1,173 @@
+import com.ledger.BusinessLogic.*;
+import com.ledger.DbTransaction.DbTransactionManager;
+import com.ledger.DomainModel.*;
+import com.ledger.ORM.*;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JfrEventsTest {
+    private Connection connection;
+
+    private Ledger testLedger;
+    private Account testAccount;
+    private LedgerCategory food;
+    private TransactionController transactionController;
+    private ReportController reportController;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager= ConnectionManager.getInstance();
+        connection=connectionManager.getConnection();
+        readResetScript();
+        runSchemaScript();
+        readDataScript();
+
+        UserDAO userDAO = new UserDAO(connection);
+        LedgerDAO ledgerDAO = new LedgerDAO(connection);
+        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+        AccountDAO accountDAO = new AccountDAO(connection);
+        TransactionDAO transactionDAO = new TransactionDAO(connection);
+        CategoryDAO categoryDAO = new CategoryDAO(connection);
+        BudgetDAO budgetDAO = new BudgetDAO(connection);
+
+        UserController userController = new UserController(userDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
+        reportController = new ReportController(transactionDAO, accountDAO, budgetDAO, ledgerCategoryDAO, new SpendingStatsDAO(connection), new NetWorthDAO(connection));
+        LedgerController ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
+        AccountController accountController = new AccountController(accountDAO, transactionDAO);
+
+        userController.register("test user", "password123");
+        userController.login("test user", "password123");
+        testLedger = ledgerController.createLedger("Test Ledger");
+        testAccount = accountController.createAccount("Test Account", BigDecimal.valueOf(1000.00), true, true);
+        food = ledgerCategoryDAO.getTreeByLedger(testLedger).stream()
+                .filter(cat -> cat.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private void runSchemaScript() {
+        executeSqlFile("src/test/resources/schema.sql");
+    }
+
+    private void readResetScript() {
+        executeSqlFile("src/test/resources/reset.sql");
+    }
+
+    private void readDataScript() {
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    private List<RecordedEvent> record(Runnable work) throws Exception {
+        Path file = Files.createTempFile("ledger-jfr", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.ledger.DbTransaction").withThreshold(java.time.Duration.ZERO);
+            recording.enable("com.ledger.SqlQuery").withThreshold(java.time.Duration.ZERO);
+            recording.enable("com.ledger.ReportComputation").withThreshold(java.time.Duration.ZERO);
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .toList();
+    }
+
+    @Test
+    public void testDbTransactionEvents() throws Exception {
+        List<RecordedEvent> events = record(() -> {
+            transactionController.createExpense(testLedger, testAccount, food, "lunch", LocalDate.now(), BigDecimal.TEN);
+            DbTransactionManager.getInstance().execute(() -> {
+                throw new Exception("forced rollback");
+            });
+        });
+
+        List<RecordedEvent> transactions = ofType(events, "com.ledger.DbTransaction");
+        assertEquals(2, transactions.size());
+        RecordedEvent commit = transactions.get(0);
+        assertEquals("COMMIT", commit.getString("outcome"));
+        assertEquals("TransactionController.createExpense", commit.getString("operation"));
+        assertNull(commit.getStackTrace());
+        RecordedEvent rollback = transactions.get(1);
+        assertEquals("ROLLBACK", rollback.getString("outcome"));
+        assertEquals("forced rollback", rollback.getString("error"));
+    }
+
+    @Test
+    public void testSqlQueryEvents() throws Exception {
+        transactionController.createExpense(testLedger, testAccount, food, "lunch", LocalDate.now(), BigDecimal.TEN);
+        transactionController.createExpense(testLedger, testAccount, food, "dinner", LocalDate.now(), BigDecimal.ONE);
+
+        List<RecordedEvent> events = record(() ->
+                transactionController.getTransactionsByLedgerInRangeDate(testLedger, LocalDate.now().minusDays(1), LocalDate.now()));
+
+        RecordedEvent byLedger = ofType(events, "com.ledger.SqlQuery").stream()
+                .filter(e -> "TransactionDAO.find".equals(e.getString("dao")))
+                .filter(e -> e.getString("template").contains("FROM live_transactions"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(2, byLedger.getLong("rows"));
+        assertEquals(3, byLedger.getInt("bindCount"));
+        assertEquals("TransactionController.getTransactionsByLedgerInRangeDate", byLedger.getString("operation"));
+        assertNull(byLedger.getStackTrace());
+    }
+
+    @Test
+    public void testReportComputationEvents() throws Exception {
+        transactionController.createExpense(testLedger, testAccount, food, "lunch", LocalDate.now(), BigDecimal.TEN);
+        transactionController.createExpense(testLedger, testAccount, food, "dinner", LocalDate.now(), BigDecimal.ONE);
+
+        List<RecordedEvent> events = record(() ->
+                reportController.getTotalExpenseByLedger(testLedger, LocalDate.now().minusDays(1), LocalDate.now()));
+
+        List<RecordedEvent> computations = ofType(events, "com.ledger.ReportComputation");
+        assertEquals(1, computations.size());
+        RecordedEvent computation = computations.get(0);
+        assertEquals("ReportController.getTotalExpenseByLedger", computation.getString("computation"));
+        assertEquals(testLedger.getId(), computation.getLong("ledgerId"));
+        assertTrue(computation.getLong("rowsScanned") >= 2); //the two expenses plus whatever the mapping looks up
+    }
+}
@@ -9,6 +9,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.List;
@@ -34,6 +35,7 @@ public class LedgerCategoryControllerTest {
     private BudgetDAO budgetDAO;
     private TransactionDAO transactionDAO;
     private AccountDAO accountDAO;
+    private AccountController accountController;
 
     @BeforeEach
     public void setUp() {
@@ -53,9 +55,9 @@ public class LedgerCategoryControllerTest {
 
         UserController userController = new UserController(userDAO);
         ledgerCategoryController = new LedgerCategoryController(ledgerCategoryDAO, transactionDAO, budgetDAO, accountDAO);
-        transactionController = new TransactionController(transactionDAO, accountDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
         LedgerController ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
-        AccountController accountController= new AccountController(accountDAO, transactionDAO);
+        accountController= new AccountController(accountDAO, transactionDAO);
 
         userController.register("test user", "password123");
         userController.login("test user", "password123");
@@ -127,7 +129,6 @@ public class LedgerCategoryControllerTest {
         assertNull(ledgerCategoryController.createCategory("Food", null, CategoryType.INCOME)); //ledger is null
         assertNull(ledgerCategoryController.createCategory("Salary", testLedger, null)); //type is null
         assertNull(ledgerCategoryController.createCategory("Food", testLedger, CategoryType.EXPENSE)); //duplicate name
-        assertNull(ledgerCategoryController.createSubCategory("Snack", lunch)); //create subcategory of a subcategory
         assertNull(ledgerCategoryController.createSubCategory("Lunch", food)); //duplicate subcategory
     }
 
@@ -195,6 +196,20 @@ public class LedgerCategoryControllerTest {
         assertEquals(0, updatedAccount.getBalance().compareTo(BigDecimal.valueOf(1000.00)));
     }
 
+    @Test
+    public void testDeleteCategory_KeepsOtherTransactionsAndCheckpoints() {
+        Income income = transactionController.createIncome(testLedger, account, salary, null, LocalDate.of(2025, 1, 10), BigDecimal.valueOf(500.00));
+        assertNotNull(transactionController.createExpense(testLedger, account, lunch, null, LocalDate.of(2025, 2, 5), BigDecimal.valueOf(200.00)));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 4, 1)).compareTo(BigDecimal.valueOf(1300.00)));
+        assertEquals(3, countCheckpoints(account)); //January to March
+
+        assertTrue(ledgerCategoryController.deleteCategory(lunch));
+        assertEquals(1, countCheckpoints(account)); //February on are stale
+        assertNotNull(transactionDAO.getById(income.getId()));
+        assertEquals(0, accountDAO.getAccountById(account.getId()).getBalance().compareTo(BigDecimal.valueOf(1500.00)));
+        assertEquals(0, accountController.getBalanceAsOf(account, LocalDate.of(2025, 4, 1)).compareTo(BigDecimal.valueOf(1500.00)));
+    }
+
     //delete category with sub-categories
     @Test
     public void testDeleteCategory_Failure() {
@@ -280,9 +295,60 @@ public class LedgerCategoryControllerTest {
         assertFalse(ledgerCategoryController.demoteCategory(null, salary)); //category is null
         assertFalse(ledgerCategoryController.demoteCategory(salary, salary)); //same category
 
-        assertFalse(ledgerCategoryController.demoteCategory(shopping, lunch)); //parent is not top-level
+        assertFalse(ledgerCategoryController.demoteCategory(food, lunch)); //parent is below category
         assertFalse(ledgerCategoryController.demoteCategory(lunch, shopping)); //category is not top-level
-        assertFalse(ledgerCategoryController.demoteCategory(food, shopping)); //category has children
+    }
+
+    @Test
+    public void testDemote_MovesSubtree() {
+        transactionController.createExpense(testLedger, account, lunch, null, LocalDate.now(), BigDecimal.valueOf(25.00));
+        assertTrue(ledgerCategoryController.demoteCategory(food, shopping)); //food keeps its subcategories
+
+        List<LedgerCategory> categories = ledgerCategoryDAO.getTreeByLedger(testLedger);
+        LedgerCategory movedLunch = categories.stream().filter(cat -> cat.getId() == lunch.getId()).findFirst().orElseThrow();
+        assertEquals(food.getId(), movedLunch.getParent().getId());
+        assertEquals(shopping.getId(), movedLunch.getParent().getParent().getId());
+        assertTrue(categories.indexOf(movedLunch) > categories.indexOf(movedLunch.getParent())); //parents come first
+        assertTrue(ledgerCategoryDAO.isInSubtree(shopping, lunch));
+
+        assertEquals(0, budgetDAO.getBudgetByCategory(shopping, Period.MONTHLY).getSpent().compareTo(BigDecimal.valueOf(25.00)));
+        assertEquals(0, budgetDAO.getBudgetByCategory(food, Period.MONTHLY).getSpent().compareTo(BigDecimal.valueOf(25.00)));
+    }
+
+    @Test
+    public void testDeepHierarchy_RollsUp() {
+        LedgerCategory snack = ledgerCategoryController.createSubCategory("Snack", lunch); //subcategory of a subcategory
+        assertNotNull(snack);
+        LedgerCategory chips = ledgerCategoryController.createSubCategory("Chips", snack);
+        assertNotNull(chips);
+        assertTrue(ledgerCategoryDAO.isInSubtree(food, chips));
+        assertFalse(ledgerCategoryDAO.isInSubtree(chips, food));
+
+        transactionController.createExpense(testLedger, account, chips, null, LocalDate.now(), BigDecimal.valueOf(40.00));
+        for (LedgerCategory category : List.of(food, lunch, snack, chips)) {
+            assertEquals(0, budgetDAO.getBudgetByCategory(category, Period.MONTHLY).getSpent().compareTo(BigDecimal.valueOf(40.00)));
+        }
+        assertEquals(0, transactionDAO.sumAmount(TransactionQuery.create().category(food).includeSubcategories())
+                .compareTo(BigDecimal.valueOf(40.00)));
+
+        assertTrue(ledgerCategoryController.promoteSubCategory(snack)); //chips comes along
+        assertEquals(0, budgetDAO.getBudgetByCategory(food, Period.MONTHLY).getSpent().signum());
+        assertEquals(0, budgetDAO.getBudgetByCategory(lunch, Period.MONTHLY).getSpent().signum());
+        assertEquals(0, budgetDAO.getBudgetByCategory(snack, Period.MONTHLY).getSpent().compareTo(BigDecimal.valueOf(40.00)));
+        assertFalse(ledgerCategoryDAO.isInSubtree(food, chips));
+        assertTrue(ledgerCategoryDAO.isInSubtree(snack, chips));
+
+        assertTrue(ledgerCategoryController.demoteCategory(snack, lunch)); //back below food, two levels down
+        assertEquals(0, budgetDAO.getBudgetByCategory(food, Period.MONTHLY).getSpent().compareTo(BigDecimal.valueOf(40.00)));
+        assertEquals(0, transactionDAO.sumAmount(TransactionQuery.create().category(lunch).includeSubcategories())
+                .compareTo(BigDecimal.valueOf(40.00)));
+        assertFalse(ledgerCategoryController.changeParent(lunch, chips)); //cannot move below itself
+        assertEquals(food.getId(), ledgerCategoryDAO.getTreeByLedger(testLedger).stream()
+                .filter(cat -> cat.getId() == lunch.getId()).findFirst().orElseThrow().getParent().getId());
+
+        assertFalse(ledgerCategoryController.deleteCategory(snack)); //still has chips
+        assertTrue(ledgerCategoryController.deleteCategory(chips));
+        assertEquals(0, budgetDAO.getBudgetByCategory(food, Period.MONTHLY).getSpent().signum());
     }
 
     @Test
@@ -301,6 +367,16 @@ public class LedgerCategoryControllerTest {
         assertEquals(2, ledgerCategoryDAO.getCategoriesByParentId(food.getId(), testLedger).size()); //lunch removed from food's children
     }
 
+    @Test
+    public void testChangeParent_MovesBudgetSpending() {
+        transactionController.createExpense(testLedger, account, lunch, null, LocalDate.now(), BigDecimal.valueOf(40.00));
+        assertEquals(0, budgetDAO.getBudgetByCategory(food, Period.MONTHLY).getSpent().compareTo(BigDecimal.valueOf(40.00)));
+        assertTrue(ledgerCategoryController.changeParent(lunch, shopping));
+        assertEquals(0, budgetDAO.getBudgetByCategory(food, Period.MONTHLY).getSpent().signum());
+        assertEquals(0, budgetDAO.getBudgetByCategory(shopping, Period.MONTHLY).getSpent().compareTo(BigDecimal.valueOf(40.00)));
+        assertEquals(0, budgetDAO.getBudgetByLedger(testLedger, Period.MONTHLY).getSpent().compareTo(BigDecimal.valueOf(40.00)));
+    }
+
     //category and new parent are the same
     @Test
     public void testChangeParent_Failure() {
@@ -333,4 +409,14 @@ public class LedgerCategoryControllerTest {
                 .toList();
         assertEquals(9, expenseRootCategories.size());
     }
+
+    private int countCheckpoints(Account account) {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM account_balance_checkpoints WHERE account_id = " + account.getId())) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -1,4 +1,5 @@
 import com.ledger.BusinessLogic.AccountController;
+import com.ledger.BusinessLogic.DeletionPurger;
 import com.ledger.BusinessLogic.LedgerController;
 import com.ledger.BusinessLogic.TransactionController;
 import com.ledger.BusinessLogic.UserController;
@@ -57,7 +58,7 @@ public class LedgerControllerTest {
 
 
         UserController userController = new UserController(userDAO);
-        transactionController = new TransactionController(transactionDAO, accountDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
         ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
         AccountController accountController = new AccountController(accountDAO, transactionDAO);
 
@@ -161,12 +162,17 @@ public class LedgerControllerTest {
         assertNull(transactionDAO.getById(tx2.getId()));
         assertNull(transactionDAO.getById(tx3.getId()));
         assertEquals(0, transactionDAO.getByAccountId(account.getId()).size());
-        assertEquals(0, ledgerCategoryDAO.getTreeByLedger(testLedger).size()); //all categories should be deleted
 
         //verify balance of account
         Account updatedAccount = accountDAO.getAccountById(account.getId());
         assertEquals(0, updatedAccount.getBalance().compareTo(BigDecimal.valueOf(1000.00)));
 
+        //categories and budgets are removed by the purge
+        try (DeletionPurger purger = new DeletionPurger(ConnectionManager.getInstance().openConnection(), 100, 0)) {
+            assertTrue(purger.purge() > 0);
+        }
+        assertEquals(0, ledgerCategoryDAO.getTreeByLedger(testLedger).size()); //all categories should be deleted
+
         //delete budgets
         assertNull(budgetDAO.getBudgetByLedger(testLedger, Period.MONTHLY));
         assertNull(budgetDAO.getBudgetByLedger(testLedger, Period.YEARLY));
@@ -0,0 +1,130 @@
+import com.ledger.DomainModel.*;
+import com.ledger.ORM.*;
+import com.ledger.Util.LedgerDataGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LedgerDataGeneratorTest {
+    private Connection connection;
+    private AccountDAO accountDAO;
+    private LedgerCategoryDAO ledgerCategoryDAO;
+    private final LocalDate endDate = LocalDate.of(2025, 6, 30);
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager= ConnectionManager.getInstance();
+        connection=connectionManager.getConnection();
+        resetDatabase();
+        accountDAO = new AccountDAO(connection);
+        ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+    }
+
+    private void resetDatabase() {
+        executeSqlFile("src/test/resources/reset.sql");
+        executeSqlFile("src/test/resources/schema.sql");
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    //count, sum and a checksum over all transactions, independent of generated ids
+    private String fingerprint() throws SQLException {
+        String sql = "SELECT COUNT(*), SUM(t.amount), " +
+                "SUM(hashtext(t.transaction_date || t.type || t.amount || coalesce(c.name, '') || coalesce(t.note, ''))::numeric) " +
+                "FROM transactions t LEFT JOIN ledger_categories c ON t.category_id = c.id";
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1) + "/" + rs.getBigDecimal(2) + "/" + rs.getBigDecimal(3);
+        }
+    }
+
+    @Test
+    public void testGenerate_CreatesUsersLedgersAndTransactions() throws SQLException {
+        LedgerDataGenerator generator = new LedgerDataGenerator(connection, 7L, endDate);
+        LedgerDataGenerator.GeneratedData data = generator.generate(3, 500);
+
+        assertEquals(3, data.users().size());
+        assertEquals(12, data.accounts().size()); //4 accounts per user
+        assertTrue(data.ledgers().size() >= 3);
+        assertTrue(data.transactionCount() > 0);
+        assertTrue(data.transactionCount() <= 500L * data.ledgers().size() + 5L * data.ledgers().size());
+
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*), MIN(transaction_date), MAX(transaction_date) FROM transactions")) {
+            rs.next();
+            assertEquals(data.transactionCount(), rs.getLong(1));
+            assertFalse(rs.getObject(2, LocalDate.class).isBefore(endDate.minusDays(729)));
+            assertFalse(rs.getObject(3, LocalDate.class).isAfter(endDate));
+        }
+
+        //every ledger gets a copy of the global category tree and its budgets
+        Ledger ledger = data.ledgers().get(0);
+        List<LedgerCategory> categories = ledgerCategoryDAO.getTreeByLedger(ledger);
+        assertEquals(17, categories.size());
+        LedgerCategory lunch = categories.stream().filter(c -> c.getName().equals("Lunch")).findFirst().orElseThrow();
+        assertEquals("Food", lunch.getParent().getName());
+        assertNotNull(new BudgetDAO(connection).getBudgetByCategory(lunch, Period.MONTHLY));
+        assertNotNull(new BudgetDAO(connection).getBudgetByLedger(ledger, Period.YEARLY));
+    }
+
+    @Test
+    public void testGenerate_SameSeedSameData() throws SQLException {
+        new LedgerDataGenerator(connection, 11L, endDate).generate(2, 300);
+        String first = fingerprint();
+
+        resetDatabase();
+        new LedgerDataGenerator(connection, 11L, endDate).generate(2, 300);
+        assertEquals(first, fingerprint());
+
+        resetDatabase();
+        new LedgerDataGenerator(connection, 12L, endDate).generate(2, 300);
+        assertNotEquals(first, fingerprint());
+    }
+
+    @Test
+    public void testGenerate_StoredBalancesMatchResult() throws SQLException {
+        LedgerDataGenerator.GeneratedData data = new LedgerDataGenerator(connection, 3L, endDate).generate(1, 1000);
+        for (Account account : data.accounts()) {
+            Account stored = accountDAO.getAccountById(account.getId());
+            assertEquals(0, stored.getBalance().compareTo(account.getBalance()));
+        }
+
+        //a second generate on the same database adds users without touching the first ones
+        BigDecimal before = accountDAO.getAccountById(data.accounts().get(0).getId()).getBalance();
+        new LedgerDataGenerator(connection, 4L, endDate).generate(1, 100);
+        assertEquals(0, before.compareTo(accountDAO.getAccountById(data.accounts().get(0).getId()).getBalance()));
+    }
+}
@@ -0,0 +1,126 @@
+import com.ledger.BusinessLogic.AccountController;
+import com.ledger.BusinessLogic.UserController;
+import com.ledger.DomainModel.User;
+import com.ledger.Metrics.LatencyHistogram;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+import com.ledger.ORM.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+    private Connection connection;
+    private MetricsRegistry metricsRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager= ConnectionManager.getInstance();
+        connection=connectionManager.getConnection();
+        readResetScript();
+        runSchemaScript();
+        readDataScript();
+
+        metricsRegistry = MetricsRegistry.getInstance();
+        metricsRegistry.reset();
+    }
+
+    private void runSchemaScript() {
+        executeSqlFile("src/test/resources/schema.sql");
+    }
+
+    private void readResetScript() {
+        executeSqlFile("src/test/resources/reset.sql");
+    }
+
+    private void readDataScript() {
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000); //1us .. 1ms
+        }
+        assertEquals(1000, histogram.count());
+        long p50 = histogram.percentile(50);
+        long p99 = histogram.percentile(99);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125, "p50 was " + p50);
+        assertTrue(p99 >= 990_000 && p99 <= 990_000 * 1.125, "p99 was " + p99);
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+    }
+
+    @Test
+    public void testDaoAndControllerOperationsAreRecorded() {
+        UserDAO userDAO = new UserDAO(connection);
+        AccountDAO accountDAO = new AccountDAO(connection);
+        UserController userController = new UserController(userDAO);
+        AccountController accountController = new AccountController(accountDAO, new TransactionDAO(connection));
+
+        userController.register("test user", "password123");
+        User user = userController.login("test user", "password123");
+        accountController.createAccount("Account 1", BigDecimal.valueOf(100), true, true);
+        accountController.createAccount("Account 2", BigDecimal.valueOf(200), true, true);
+        assertEquals(2, accountController.getAccounts(user).size());
+
+        OperationMetrics getAccounts = metricsRegistry.controller("AccountController.getAccounts");
+        assertEquals(1, getAccounts.getCalls());
+        assertEquals(OperationMetrics.Kind.CONTROLLER, getAccounts.getKind());
+
+        OperationMetrics byOwner = metricsRegistry.dao("AccountDAO.getAccountsByOwner");
+        assertEquals(1, byOwner.getCalls());
+        assertEquals(2, byOwner.getRows());
+        assertTrue(byOwner.getTotalNanos() > 0);
+
+        assertEquals(2, metricsRegistry.dao("AccountDAO.insert").getCalls());
+
+        String dump = metricsRegistry.dump();
+        assertTrue(dump.contains("AccountDAO.getAccountsByOwner"));
+        assertTrue(dump.contains("[CONTROLLER]"));
+        assertFalse(dump.contains("LedgerDAO.insert")); //never called, not listed
+    }
+
+    @Test
+    public void testDbTransactionCommitAndRollbackCounts() {
+        com.ledger.DbTransaction.DbTransactionManager manager = com.ledger.DbTransaction.DbTransactionManager.getInstance();
+        manager.execute(() -> true);
+        manager.execute(() -> {
+            throw new Exception("forced rollback");
+        });
+        assertEquals(1, metricsRegistry.operation("DbTransactionManager.commit", OperationMetrics.Kind.DB_TRANSACTION).getCalls());
+        assertEquals(1, metricsRegistry.operation("DbTransactionManager.rollback", OperationMetrics.Kind.DB_TRANSACTION).getCalls());
+    }
+}
@@ -0,0 +1,229 @@
+import com.ledger.BusinessLogic.*;
+import com.ledger.DomainModel.*;
+import com.ledger.ORM.*;
+import com.ledger.Tracing.SqlTracer;
+import com.ledger.Tracing.TemplateStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecurringControllerTest {
+    private Connection connection;
+
+    private Ledger testLedger;
+    private Account testAccount;
+    private Account testAccount1;
+    private LedgerCategory salary;
+    private LedgerCategory food;
+
+    private AccountDAO accountDAO;
+    private TransactionDAO transactionDAO;
+    private RecurringRuleDAO recurringRuleDAO;
+
+    private RecurringController recurringController;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager= ConnectionManager.getInstance();
+        connection=connectionManager.getConnection();
+        readResetScript();
+        runSchemaScript();
+        readDataScript();
+
+        UserDAO userDAO = new UserDAO(connection);
+        LedgerDAO ledgerDAO = new LedgerDAO(connection);
+        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+        accountDAO = new AccountDAO(connection);
+        transactionDAO = new TransactionDAO(connection);
+        recurringRuleDAO = new RecurringRuleDAO(connection);
+        CategoryDAO categoryDAO = new CategoryDAO(connection);
+        BudgetDAO budgetDAO = new BudgetDAO(connection);
+
+        UserController userController = new UserController(userDAO);
+        LedgerController ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
+        AccountController accountController = new AccountController(accountDAO, transactionDAO);
+        recurringController = new RecurringController(recurringRuleDAO);
+
+        userController.register("test user", "password123");
+        userController.login("test user", "password123");
+
+        testLedger = ledgerController.createLedger("Test Ledger");
+
+        List<LedgerCategory> testCategories = ledgerCategoryDAO.getTreeByLedger(testLedger);
+        salary = testCategories.stream()
+                .filter(cat -> cat.getName().equals("Salary"))
+                .findFirst()
+                .orElse(null);
+        food = testCategories.stream()
+                .filter(cat -> cat.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+
+        testAccount = accountController.createAccount("Test Account", BigDecimal.valueOf(1000.00), true, true);
+        testAccount1 = accountController.createAccount("Test Account 1", BigDecimal.valueOf(500.00), true, true);
+    }
+
+    private void runSchemaScript() {
+        executeSqlFile("src/test/resources/schema.sql");
+    }
+
+    private void readResetScript() {
+        executeSqlFile("src/test/resources/reset.sql");
+    }
+
+    private void readDataScript() {
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    @Test
+    public void testCreateRule_Success() {
+        RecurringRule rule = recurringController.createRule(TransactionType.EXPENSE, testLedger, testAccount, null, food,
+                BigDecimal.valueOf(10.00), "coffee", Frequency.DAILY, 1, LocalDate.of(2024, 1, 1), null, null);
+        assertNotNull(rule);
+        List<RecurringRule> rules = recurringController.getRulesByLedger(testLedger);
+        assertEquals(1, rules.size());
+        RecurringRule loaded = rules.get(0);
+        assertEquals(TransactionType.EXPENSE, loaded.getType());
+        assertEquals(testAccount.getId(), loaded.getFromAccount().getId());
+        assertNull(loaded.getToAccount());
+        assertEquals(food.getId(), loaded.getCategory().getId());
+        assertEquals(LocalDate.of(2024, 1, 1), loaded.getNextDate());
+        assertNull(loaded.getMaxOccurrences());
+    }
+
+    @Test
+    public void testCreateRule_Failure() {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        assertNull(recurringController.createRule(TransactionType.EXPENSE, testLedger, testAccount, null, salary,
+                BigDecimal.TEN, null, Frequency.DAILY, 1, start, null, null)); //income category on expense
+        assertNull(recurringController.createRule(TransactionType.INCOME, testLedger, null, null, salary,
+                BigDecimal.TEN, null, Frequency.DAILY, 1, start, null, null)); //no account
+        assertNull(recurringController.createRule(TransactionType.TRANSFER, testLedger, testAccount, testAccount, null,
+                BigDecimal.TEN, null, Frequency.DAILY, 1, start, null, null)); //same account
+        assertNull(recurringController.createRule(TransactionType.EXPENSE, testLedger, testAccount, null, food,
+                BigDecimal.TEN, null, Frequency.DAILY, 0, start, null, null)); //interval 0
+        assertNull(recurringController.createRule(TransactionType.EXPENSE, testLedger, testAccount, null, food,
+                BigDecimal.TEN, null, Frequency.DAILY, 1, start, start.minusDays(1), null)); //ends before start
+        assertTrue(recurringController.getRulesByLedger(testLedger).isEmpty());
+    }
+
+    @Test
+    public void testGenerate_CatchUpInOneStatement() {
+        recurringController.createRule(TransactionType.EXPENSE, testLedger, testAccount, null, food,
+                BigDecimal.valueOf(10.00), "coffee", Frequency.DAILY, 1, LocalDate.of(2024, 1, 1), null, null);
+        recurringController.createRule(TransactionType.TRANSFER, testLedger, testAccount, testAccount1, null,
+                BigDecimal.valueOf(100.00), "savings", Frequency.WEEKLY, 1, LocalDate.of(2024, 1, 1), null, null);
+
+        SqlTracer sqlTracer = SqlTracer.getInstance();
+        sqlTracer.reset();
+        //31 daily + 5 weekly occurrences in January
+        assertEquals(36, recurringController.generateDueOccurrences(LocalDate.of(2024, 1, 31)));
+        //the whole catch-up is one insert statement, not one per occurrence
+        TemplateStats insert = sqlTracer.getTemplates().stream()
+                .filter(t -> t.getTemplate().contains("INSERT INTO transactions"))
+                .findFirst()
+                .orElse(null);
+        assertNotNull(insert);
+        assertEquals(1, insert.getExecutions());
+
+        assertEquals(36, transactionDAO.getByLedgerId(testLedger.getId()).size());
+        //1000 - 31*10 - 5*100 = 190, 500 + 5*100 = 1000
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(190.00)));
+        assertEquals(0, accountDAO.getAccountById(testAccount1.getId()).getBalance().compareTo(BigDecimal.valueOf(1000.00)));
+
+        List<RecurringRule> rules = recurringController.getRulesByLedger(testLedger);
+        assertEquals(LocalDate.of(2024, 2, 1), rules.get(0).getNextDate());
+        assertEquals(31, rules.get(0).getOccurrenceCount());
+        assertEquals(LocalDate.of(2024, 2, 5), rules.get(1).getNextDate());
+    }
+
+    @Test
+    public void testGenerate_Idempotent() {
+        RecurringRule rule = recurringController.createRule(TransactionType.INCOME, testLedger, null, testAccount, salary,
+                BigDecimal.valueOf(2000.00), "salary", Frequency.MONTHLY, 1, LocalDate.of(2024, 1, 25), null, null);
+        assertEquals(3, recurringController.generateDueOccurrences(LocalDate.of(2024, 3, 31)));
+        assertEquals(0, recurringController.generateDueOccurrences(LocalDate.of(2024, 3, 31)));
+
+        //a run that stored the transactions but not the rule's progress does not book them again
+        rule.setOccurrenceCount(0);
+        rule.setNextDate(rule.getStartDate());
+        assertTrue(recurringRuleDAO.updateProgress(List.of(rule)));
+        assertEquals(0, recurringController.generateDueOccurrences(LocalDate.of(2024, 3, 31)));
+
+        assertEquals(3, transactionDAO.getByLedgerId(testLedger.getId()).size());
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(7000.00)));
+        assertEquals(3, recurringController.getRulesByLedger(testLedger).get(0).getOccurrenceCount());
+    }
+
+    @Test
+    public void testGenerate_MaxOccurrencesAndEndDate() {
+        recurringController.createRule(TransactionType.EXPENSE, testLedger, testAccount, null, food,
+                BigDecimal.valueOf(10.00), "limited", Frequency.DAILY, 2, LocalDate.of(2024, 1, 1), null, 3);
+        recurringController.createRule(TransactionType.EXPENSE, testLedger, testAccount, null, food,
+                BigDecimal.valueOf(1.00), "ending", Frequency.WEEKLY, 1, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 20), null);
+
+        //1, 3, 5 Jan and 1, 8, 15 Jan
+        assertEquals(6, recurringController.generateDueOccurrences(LocalDate.of(2024, 6, 30)));
+        List<RecurringRule> rules = recurringController.getRulesByLedger(testLedger);
+        assertNull(rules.get(0).getNextDate());
+        assertNull(rules.get(1).getNextDate());
+        assertEquals(0, recurringController.generateDueOccurrences(LocalDate.of(2024, 12, 31)));
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(967.00)));
+    }
+
+    @Test
+    public void testGenerate_MonthEndClamp() {
+        recurringController.createRule(TransactionType.EXPENSE, testLedger, testAccount, null, food,
+                BigDecimal.valueOf(10.00), "rent", Frequency.MONTHLY, 1, LocalDate.of(2024, 1, 31), null, null);
+        assertEquals(4, recurringController.generateDueOccurrences(LocalDate.of(2024, 4, 30)));
+        List<LocalDate> dates = transactionDAO.getByLedgerId(testLedger.getId()).stream()
+                .map(Transaction::getDate)
+                .sorted()
+                .toList();
+        assertEquals(List.of(LocalDate.of(2024, 1, 31), LocalDate.of(2024, 2, 29),
+                LocalDate.of(2024, 3, 31), LocalDate.of(2024, 4, 30)), dates);
+    }
+
+    @Test
+    public void testDeleteRule_KeepsTransactions() {
+        RecurringRule rule = recurringController.createRule(TransactionType.EXPENSE, testLedger, testAccount, null, food,
+                BigDecimal.valueOf(10.00), "coffee", Frequency.DAILY, 1, LocalDate.of(2024, 1, 1), null, null);
+        assertEquals(5, recurringController.generateDueOccurrences(LocalDate.of(2024, 1, 5)));
+        assertTrue(recurringController.deleteRule(rule));
+        assertTrue(recurringController.getRulesByLedger(testLedger).isEmpty());
+        assertEquals(5, transactionDAO.getByLedgerId(testLedger.getId()).size());
+        assertEquals(0, recurringController.generateDueOccurrences(LocalDate.of(2024, 1, 10)));
+    }
+}
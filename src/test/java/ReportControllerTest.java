@@ -9,8 +9,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.Statement;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -35,6 +37,7 @@ public class ReportControllerTest {
     private TransactionController transactionController;
     private ReportController reportController;
     private AccountController accountController;
+    private LedgerCategoryController ledgerCategoryController;
 
     @BeforeEach
     public void setUp(){
@@ -53,10 +56,11 @@ public class ReportControllerTest {
         budgetDAO = new BudgetDAO(connection);
 
         budgetController = new BudgetController(budgetDAO, ledgerCategoryDAO);
-        transactionController = new TransactionController(transactionDAO, accountDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
         UserController userController = new UserController(userDAO);
         accountController = new AccountController(accountDAO, transactionDAO);
-        reportController = new ReportController(transactionDAO, accountDAO, budgetDAO, ledgerCategoryDAO);
+        ledgerCategoryController = new LedgerCategoryController(ledgerCategoryDAO, transactionDAO, budgetDAO, accountDAO);
+        reportController = new ReportController(transactionDAO, accountDAO, budgetDAO, ledgerCategoryDAO, new SpendingStatsDAO(connection), new NetWorthDAO(connection));
         LedgerController ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO,
                 accountDAO, budgetDAO);
 
@@ -240,4 +244,304 @@ public class ReportControllerTest {
         transactionController.createExpense(testLedger, testAccount, transport, "Taxi", LocalDate.now().withDayOfMonth(LocalDate.now().lengthOfMonth()), BigDecimal.valueOf(201.00));
         assertTrue(reportController.isOverBudget(budget1));
     }
+
+    @Test
+    public void testGetCategoryMonthReport() {
+        transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.of(2025, 1, 5), BigDecimal.valueOf(10.50));
+        transactionController.createExpense(testLedger, testAccount, lunch, null, LocalDate.of(2025, 1, 20), BigDecimal.valueOf(4.25)); //rolled up into food
+        transactionController.createExpense(testLedger, testAccount, transport, null, LocalDate.of(2025, 3, 31), BigDecimal.valueOf(30));
+        transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.of(2025, 12, 1), BigDecimal.valueOf(7));
+        transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.of(2026, 1, 1), BigDecimal.valueOf(100)); //outside
+        transactionController.createIncome(testLedger, testAccount, salary, null, LocalDate.of(2025, 1, 5), BigDecimal.valueOf(2000));
+
+        CategoryMonthReport report = reportController.getCategoryMonthReport(testLedger, CategoryType.EXPENSE,
+                LocalDate.of(2025, 1, 15), LocalDate.of(2025, 12, 31));
+        assertNotNull(report);
+        assertEquals(12, report.getMonthCount());
+        assertEquals(java.time.YearMonth.of(2025, 1), report.getMonth(0));
+        assertEquals(-1, report.rowOf(lunch.getId())); //top-level categories only
+        assertEquals(-1, report.rowOf(salary.getId()));
+        int foodRow = report.rowOf(food.getId());
+        int transportRow = report.rowOf(transport.getId());
+        int entertainmentRow = report.rowOf(entertainment.getId());
+        assertTrue(foodRow >= 0 && transportRow >= 0 && entertainmentRow >= 0);
+
+        assertEquals(0, report.getAmount(foodRow, 0).compareTo(BigDecimal.valueOf(14.75)));
+        assertEquals(0, report.getAmount(foodRow, 11).compareTo(BigDecimal.valueOf(7)));
+        assertEquals(0, report.getAmount(transportRow, 2).compareTo(BigDecimal.valueOf(30)));
+        assertEquals(0, report.getCategoryTotal(entertainmentRow).compareTo(BigDecimal.ZERO));
+        assertEquals(0, report.getMonthTotal(0).compareTo(BigDecimal.valueOf(14.75)));
+        assertEquals(0, report.getTotal().compareTo(BigDecimal.valueOf(51.75)));
+
+        CategoryMonthReport income = reportController.getCategoryMonthReport(testLedger, CategoryType.INCOME,
+                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31));
+        assertEquals(1, income.getMonthCount());
+        assertEquals(0, income.getTotal().compareTo(BigDecimal.valueOf(2000)));
+
+        assertNull(reportController.getCategoryMonthReport(testLedger, CategoryType.EXPENSE,
+                LocalDate.of(2025, 2, 1), LocalDate.of(2025, 1, 1)));
+    }
+
+    @Test
+    public void testTopSpending() {
+        Account card = accountController.createAccount("Card", BigDecimal.valueOf(500), true, true);
+        transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.of(2025, 1, 5), BigDecimal.valueOf(20));
+        transactionController.createExpense(testLedger, testAccount, lunch, "big lunch", LocalDate.of(2025, 1, 6), BigDecimal.valueOf(45)); //counts for food
+        transactionController.createExpense(testLedger, card, transport, null, LocalDate.of(2025, 1, 7), BigDecimal.valueOf(50));
+        transactionController.createExpense(testLedger, card, entertainment, null, LocalDate.of(2025, 1, 8), BigDecimal.valueOf(5));
+        transactionController.createExpense(testLedger, card, entertainment, null, LocalDate.of(2025, 2, 1), BigDecimal.valueOf(500)); //outside
+        transactionController.createIncome(testLedger, testAccount, salary, null, LocalDate.of(2025, 1, 5), BigDecimal.valueOf(2000));
+
+        LocalDate startDate = LocalDate.of(2025, 1, 1);
+        LocalDate endDate = LocalDate.of(2025, 1, 31);
+        List<RankedTotal> categories = reportController.getTopCategories(testLedger, startDate, endDate, 2);
+        assertEquals(2, categories.size());
+        assertEquals(food.getId(), categories.get(0).id());
+        assertEquals(0, categories.get(0).total().compareTo(BigDecimal.valueOf(65)));
+        assertEquals(2, categories.get(0).transactions());
+        assertEquals(transport.getId(), categories.get(1).id());
+
+        List<RankedTotal> accounts = reportController.getTopAccounts(testLedger, startDate, endDate, 5);
+        assertEquals(2, accounts.size());
+        assertEquals(testAccount.getId(), accounts.get(0).id());
+        assertEquals(0, accounts.get(1).total().compareTo(BigDecimal.valueOf(55)));
+
+        List<TransactionRow> largest = reportController.getLargestExpenses(testLedger, startDate, endDate, 2);
+        assertEquals(2, largest.size());
+        assertEquals(0, largest.get(0).amount().compareTo(BigDecimal.valueOf(50)));
+        assertEquals("big lunch", largest.get(1).note());
+
+        assertTrue(reportController.getTopCategories(testLedger, startDate, endDate, 0).isEmpty());
+    }
+
+    @Test
+    public void testGetSpendingStats() {
+        LocalDate january = LocalDate.of(2025, 1, 1);
+        for (int amount : new int[]{10, 20, 30, 40}) {
+            assertNotNull(transactionController.createExpense(testLedger, testAccount, food, null, january.plusDays(amount), BigDecimal.valueOf(amount)));
+        }
+        Expense big = transactionController.createExpense(testLedger, testAccount, lunch, null, LocalDate.of(2025, 2, 3), BigDecimal.valueOf(100));
+        assertNotNull(big);
+
+        SpendingStats stats = reportController.getSpendingStats(food, january, LocalDate.of(2025, 2, 28));
+        assertEquals(5, stats.getCount());
+        assertEquals(0, stats.getMean().compareTo(BigDecimal.valueOf(40)));
+        assertEquals(0, stats.getVariance().compareTo(BigDecimal.valueOf(1250))); //sample variance of 10..40 and 100
+        assertEquals(30, stats.getMedian().doubleValue(), 30 * SpendingStats.RELATIVE_ACCURACY);
+        assertEquals(40, stats.getQuantile(0.9).doubleValue(), 40 * SpendingStats.RELATIVE_ACCURACY);
+        assertEquals(100, stats.getQuantile(1).doubleValue(), 100 * SpendingStats.RELATIVE_ACCURACY);
+        assertTrue(stats.getZScore(BigDecimal.valueOf(100)) > 1);
+
+        //one month, one subcategory
+        SpendingStats february = reportController.getSpendingStats(lunch, LocalDate.of(2025, 2, 1), LocalDate.of(2025, 2, 1));
+        assertEquals(1, february.getCount());
+        assertNull(february.getVariance());
+
+        SpendingStats empty = reportController.getSpendingStats(transport, january, LocalDate.of(2025, 12, 31));
+        assertEquals(0, empty.getCount());
+        assertNull(empty.getMedian());
+    }
+
+    @Test
+    public void testSpendingStatsFollowWrites() {
+        Account card = accountController.createAccount("Card", BigDecimal.valueOf(500), true, true);
+        Expense expense = transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.of(2025, 1, 5), BigDecimal.valueOf(20));
+        transactionController.createExpense(testLedger, testAccount, lunch, null, LocalDate.of(2025, 1, 6), BigDecimal.valueOf(0));
+        Expense other = transactionController.createExpense(testLedger, card, transport, null, LocalDate.of(2025, 2, 7), BigDecimal.valueOf(50));
+        transactionController.createExpense(testLedger, card, entertainment, null, LocalDate.of(2025, 3, 8), BigDecimal.valueOf(5.55));
+        transactionController.createIncome(testLedger, testAccount, salary, null, LocalDate.of(2025, 1, 5), BigDecimal.valueOf(2000));
+        assertStatsMatchTransactions();
+
+        assertTrue(transactionController.updateExpense(expense, testAccount, transport, null, LocalDate.of(2025, 4, 1), BigDecimal.valueOf(25), testLedger));
+        assertStatsMatchTransactions();
+        assertTrue(transactionController.deleteTransaction(other));
+        assertStatsMatchTransactions();
+        assertNotNull(transactionController.bulkRecategorize(TransactionQuery.create().ledger(testLedger).category(transport), entertainment));
+        assertStatsMatchTransactions();
+        assertTrue(accountController.deleteAccount(card));
+        assertStatsMatchTransactions();
+
+        SpendingStats stats = reportController.getSpendingStats(entertainment, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31));
+        assertEquals(1, stats.getCount()); //the card's expense went with the card
+        assertEquals(0, stats.getTotal().compareTo(BigDecimal.valueOf(25)));
+    }
+
+    @Test
+    public void testGetNetWorthHistory() {
+        Account card = accountController.createAccount("Card", BigDecimal.valueOf(500), true, true);
+        Account cash = accountController.createAccount("Cash", BigDecimal.valueOf(200), false, true);
+        LocalDate today = LocalDate.now();
+        transactionController.createIncome(testLedger, testAccount, salary, null, today.minusDays(10), BigDecimal.valueOf(2000));
+        transactionController.createExpense(testLedger, card, food, null, today.minusDays(5), BigDecimal.valueOf(100));
+        transactionController.createTransfer(testLedger, testAccount, card, null, today.minusDays(3), BigDecimal.valueOf(300)); //no change
+        transactionController.createTransfer(testLedger, testAccount, cash, null, today.minusDays(2), BigDecimal.valueOf(50));
+
+        List<NetWorthPoint> history = reportController.getNetWorthHistory(testUser, today.minusDays(20), today, ChronoUnit.DAYS);
+        assertNotNull(history);
+        assertEquals(4, history.size());
+        assertEquals(new NetWorthPoint(today.minusDays(20), new BigDecimal("1500.00")), history.get(0));
+        assertEquals(new NetWorthPoint(today.minusDays(10), new BigDecimal("3500.00")), history.get(1));
+        assertEquals(new NetWorthPoint(today.minusDays(5), new BigDecimal("3400.00")), history.get(2));
+        assertEquals(new NetWorthPoint(today.minusDays(2), new BigDecimal("3350.00")), history.get(3));
+        assertEquals(0, history.get(3).netWorth().compareTo(reportController.getTotalAssets(testUser)));
+        assertEquals(3, count("SELECT COUNT(*) FROM net_worth_history"));
+
+        //starting between two changes gives the value carried from the last one
+        history = reportController.getNetWorthHistory(testUser, today.minusDays(4), today, ChronoUnit.DAYS);
+        assertEquals(new NetWorthPoint(today.minusDays(4), new BigDecimal("3400.00")), history.get(0));
+        assertEquals(2, history.size());
+    }
+
+    @Test
+    public void testNetWorthHistoryFollowsWrites() {
+        LocalDate today = LocalDate.now();
+        transactionController.createIncome(testLedger, testAccount, salary, null, today.minusDays(10), BigDecimal.valueOf(2000));
+        Expense expense = transactionController.createExpense(testLedger, testAccount, food, null, today.minusDays(5), BigDecimal.valueOf(100));
+        assertNotNull(reportController.getNetWorthHistory(testUser, today.minusDays(20), today, ChronoUnit.DAYS));
+        assertEquals(2, count("SELECT COUNT(*) FROM net_worth_history"));
+
+        //a backdated write drops only the days from its date on
+        transactionController.createExpense(testLedger, testAccount, food, null, today.minusDays(7), BigDecimal.valueOf(40));
+        assertEquals(1, count("SELECT COUNT(*) FROM net_worth_history"));
+        assertHistoryMatchesBalances(today);
+
+        assertTrue(transactionController.updateExpense(expense, testAccount, food, null, today.minusDays(12), BigDecimal.valueOf(60), testLedger));
+        assertEquals(0, count("SELECT COUNT(*) FROM net_worth_history"));
+        assertHistoryMatchesBalances(today);
+
+        //an account leaving the assets changes every day
+        Account card = accountController.createAccount("Card", BigDecimal.valueOf(500), true, true);
+        transactionController.createExpense(testLedger, card, food, null, today.minusDays(1), BigDecimal.valueOf(20));
+        assertHistoryMatchesBalances(today);
+        assertTrue(accountController.editAccount(card, "Card", card.getBalance(), false, true));
+        assertEquals(0, count("SELECT COUNT(*) FROM net_worth_history"));
+        assertHistoryMatchesBalances(today);
+        assertTrue(accountController.editAccount(testAccount, "Test Account", BigDecimal.valueOf(5000), true, true));
+        assertHistoryMatchesBalances(today);
+        assertTrue(accountController.deleteAccount(testAccount));
+        List<NetWorthPoint> history = reportController.getNetWorthHistory(testUser, today.minusDays(20), today, ChronoUnit.DAYS);
+        assertEquals(1, history.size());
+        assertEquals(0, history.get(0).netWorth().signum());
+    }
+
+    @Test
+    public void testNetWorthHistoryFollowsCategoryDelete() {
+        LocalDate today = LocalDate.now();
+        transactionController.createIncome(testLedger, testAccount, salary, null, today.minusDays(10), BigDecimal.valueOf(2000));
+        transactionController.createExpense(testLedger, testAccount, lunch, null, today.minusDays(5), BigDecimal.valueOf(100));
+        assertNotNull(reportController.getNetWorthHistory(testUser, today.minusDays(20), today, ChronoUnit.DAYS));
+        assertEquals(2, count("SELECT COUNT(*) FROM net_worth_history"));
+
+        //the category's transactions leave the history from the first of their dates on
+        assertTrue(ledgerCategoryController.deleteCategory(lunch));
+        assertEquals(1, count("SELECT COUNT(*) FROM net_worth_history"));
+        assertHistoryMatchesBalances(today);
+        List<NetWorthPoint> history = reportController.getNetWorthHistory(testUser, today.minusDays(20), today, ChronoUnit.DAYS);
+        assertEquals(new NetWorthPoint(today.minusDays(10), new BigDecimal("3000.00")), history.get(history.size() - 1));
+    }
+
+    @Test
+    public void testNetWorthHistoryByMonth() {
+        transactionController.createIncome(testLedger, testAccount, salary, null, LocalDate.of(2025, 1, 10), BigDecimal.valueOf(2000));
+        transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.of(2025, 1, 20), BigDecimal.valueOf(100));
+        transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.of(2025, 3, 5), BigDecimal.valueOf(400));
+
+        List<NetWorthPoint> history = reportController.getNetWorthHistory(testUser, LocalDate.of(2024, 12, 31),
+                LocalDate.of(2025, 6, 30), ChronoUnit.MONTHS);
+        assertEquals(3, history.size()); //February and the months after March did not change
+        assertEquals(new NetWorthPoint(LocalDate.of(2024, 12, 31), new BigDecimal("1000.00")), history.get(0));
+        assertEquals(new NetWorthPoint(LocalDate.of(2025, 1, 20), new BigDecimal("2900.00")), history.get(1));
+        assertEquals(new NetWorthPoint(LocalDate.of(2025, 3, 5), new BigDecimal("2500.00")), history.get(2));
+        assertNull(reportController.getNetWorthHistory(testUser, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 6, 30), ChronoUnit.HOURS));
+    }
+
+    //the last point of the history up to today is the current total of the balances in assets
+    private void assertHistoryMatchesBalances(LocalDate today) {
+        List<NetWorthPoint> history = reportController.getNetWorthHistory(testUser, today.minusDays(30), today, ChronoUnit.DAYS);
+        assertNotNull(history);
+        assertEquals(0, history.get(history.size() - 1).netWorth().compareTo(reportController.getTotalAssets(testUser)));
+    }
+
+    @Test
+    public void testGetBudgetForecasts() {
+        List<Budget> budgets = budgetController.getActiveBudgets(testLedger, Period.MONTHLY);
+        Budget ledgerBudget = budgets.get(0);
+        Budget foodBudget = budgetOf(budgets, food);
+        Budget lunchBudget = budgetOf(budgets, lunch);
+        budgetController.editBudget(ledgerBudget, BigDecimal.valueOf(100));
+        budgetController.editBudget(foodBudget, BigDecimal.valueOf(300));
+        budgetController.editBudget(lunchBudget, BigDecimal.valueOf(1000));
+
+        LocalDate periodStart = ledgerBudget.getStartDate();
+        LocalDate today = periodStart.plusDays(9);
+        long remaining = ChronoUnit.DAYS.between(today, ledgerBudget.getEndDate());
+        transactionController.createExpense(testLedger, testAccount, food, null, periodStart, BigDecimal.valueOf(100));
+        transactionController.createExpense(testLedger, testAccount, lunch, null, periodStart.plusDays(5), BigDecimal.valueOf(50));
+        transactionController.createIncome(testLedger, testAccount, salary, null, periodStart, BigDecimal.valueOf(2000));
+
+        List<BudgetForecast> forecasts = reportController.getBudgetForecasts(budgets, today);
+        assertEquals(budgets.size(), forecasts.size());
+        //150 in 10 days: 15 a day
+        BudgetForecast ledgerForecast = forecasts.get(0);
+        assertEquals(0, ledgerForecast.spent().compareTo(BigDecimal.valueOf(150)));
+        assertEquals(periodStart.plusDays(5), ledgerForecast.exceedsOn()); //already over
+        BudgetForecast foodForecast = forecasts.get(budgets.indexOf(foodBudget));
+        assertEquals(0, foodForecast.projected().compareTo(BigDecimal.valueOf(150 + 15 * remaining)));
+        assertEquals(periodStart.plusDays(20), foodForecast.exceedsOn()); //300 reached after 10 more days
+        BudgetForecast lunchForecast = forecasts.get(budgets.indexOf(lunchBudget));
+        assertEquals(0, lunchForecast.projected().compareTo(BigDecimal.valueOf(50 + 5 * remaining)));
+        assertFalse(lunchForecast.willExceed());
+        BudgetForecast transportForecast = forecasts.get(budgets.indexOf(budgetOf(budgets, transport)));
+        assertEquals(0, transportForecast.projected().signum());
+        assertFalse(transportForecast.willExceed());
+
+        //the same period last year spent 600 after the same day: half of it joins the current pace
+        transactionController.createExpense(testLedger, testAccount, food, null, periodStart.minusYears(1).plusDays(2), BigDecimal.valueOf(40));
+        transactionController.createExpense(testLedger, testAccount, food, null, periodStart.minusYears(1).plusDays(20), BigDecimal.valueOf(600));
+        forecasts = reportController.getBudgetForecasts(budgets, today);
+        foodForecast = forecasts.get(budgets.indexOf(foodBudget));
+        assertEquals(0, foodForecast.projected().compareTo(BigDecimal.valueOf(150 + (15 * remaining + 600) / 2.0)));
+        assertEquals(0, forecasts.get(0).spent().compareTo(BigDecimal.valueOf(150)));
+
+        //spending already recorded for later days is a floor for the rest of the period
+        transactionController.createExpense(testLedger, testAccount, lunch, null, periodStart.plusDays(15), BigDecimal.valueOf(5000));
+        lunchForecast = reportController.getBudgetForecasts(budgets, today).get(budgets.indexOf(lunchBudget));
+        assertEquals(0, lunchForecast.projected().compareTo(BigDecimal.valueOf(5050)));
+        assertTrue(lunchForecast.willExceed());
+    }
+
+    private Budget budgetOf(List<Budget> budgets, LedgerCategory category) {
+        return budgets.stream()
+                .filter(b -> b.getCategory() != null && b.getCategory().getId() == category.getId())
+                .findFirst()
+                .orElse(null);
+    }
+
+    //the stored cells are exactly what a full recomputation from the visible transactions gives
+    private void assertStatsMatchTransactions() {
+        String expected = "SELECT ledger_id, category_id, date_trunc('month', transaction_date)::date, COUNT(*), SUM(amount), SUM(amount * amount) " +
+                "FROM live_transactions WHERE category_id IS NOT NULL GROUP BY 1, 2, 3";
+        String stored = "SELECT ledger_id, category_id, month, count, total, total_squares FROM spending_stats WHERE count <> 0";
+        assertEquals(0, count("SELECT COUNT(*) FROM ((" + expected + " EXCEPT " + stored + ") UNION ALL (" + stored + " EXCEPT " + expected + ")) d"));
+        String expectedBuckets = "SELECT ledger_id, category_id, date_trunc('month', transaction_date)::date, " +
+                "CASE WHEN amount > 0 THEN CEIL(LN(amount) / LN(1.01 / 0.99))::int ELSE -2147483648 END, COUNT(*) " +
+                "FROM live_transactions WHERE category_id IS NOT NULL GROUP BY 1, 2, 3, 4";
+        String storedBuckets = "SELECT ledger_id, category_id, month, bucket, count FROM spending_sketch WHERE count <> 0";
+        assertEquals(0, count("SELECT COUNT(*) FROM ((" + expectedBuckets + " EXCEPT " + storedBuckets + ") UNION ALL (" +
+                storedBuckets + " EXCEPT " + expectedBuckets + ")) d"));
+        String expectedDays = "SELECT ledger_id, category_id, transaction_date, COUNT(*), SUM(amount) " +
+                "FROM live_transactions WHERE category_id IS NOT NULL GROUP BY 1, 2, 3";
+        String storedDays = "SELECT ledger_id, category_id, day, count, total FROM spending_daily WHERE count <> 0";
+        assertEquals(0, count("SELECT COUNT(*) FROM ((" + expectedDays + " EXCEPT " + storedDays + ") UNION ALL (" +
+                storedDays + " EXCEPT " + expectedDays + ")) d"));
+    }
+
+    private int count(String sql) {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
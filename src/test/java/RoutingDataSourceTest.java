@@ -0,0 +1,204 @@
+import com.ledger.BusinessLogic.*;
+import com.ledger.DomainModel.*;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+import com.ledger.ORM.*;
+import com.ledger.Routing.RoutingDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//the replica is ledger.test.replicaUrl, a streaming standby of the test database; by default the test database
+//itself stands in for it, a replica that is never behind
+public class RoutingDataSourceTest {
+    private static final OperationMetrics READ = MetricsRegistry.getInstance().readController("RoutingDataSourceTest.read");
+    private static final OperationMetrics WRITE = MetricsRegistry.getInstance().controller("RoutingDataSourceTest.write");
+
+    private Connection connection;
+    private RoutingDataSource originalDataSource;
+    private RoutingDataSource dataSource;
+
+    private User testUser;
+    private Ledger testLedger;
+    private Account testAccount;
+    private LedgerCategory food;
+    private TransactionController transactionController;
+    private ReportController reportController;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager = ConnectionManager.getInstance();
+        originalDataSource = connectionManager.getDataSource();
+        String replicaUrl = System.getProperty("ledger.test.replicaUrl", originalDataSource.getPrimaryUrl());
+        useReplicas(List.of(replicaUrl));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ConnectionManager.getInstance().setDataSource(originalDataSource);
+    }
+
+    private void useReplicas(List<String> replicaUrls) {
+        ConnectionManager connectionManager = ConnectionManager.getInstance();
+        dataSource = originalDataSource.withReplicas(replicaUrls, 5000, 0);
+        connectionManager.setDataSource(dataSource);
+        connection = connectionManager.getConnection();
+        readResetScript();
+        runSchemaScript();
+        readDataScript();
+
+        UserDAO userDAO = new UserDAO(connection);
+        LedgerDAO ledgerDAO = new LedgerDAO(connection);
+        AccountDAO accountDAO = new AccountDAO(connection);
+        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+        TransactionDAO transactionDAO = new TransactionDAO(connection);
+        CategoryDAO categoryDAO = new CategoryDAO(connection);
+        BudgetDAO budgetDAO = new BudgetDAO(connection);
+
+        UserController userController = new UserController(userDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
+        reportController = new ReportController(transactionDAO, accountDAO, budgetDAO, ledgerCategoryDAO,
+                new SpendingStatsDAO(connection), new NetWorthDAO(connection));
+        LedgerController ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO,
+                accountDAO, budgetDAO);
+        AccountController accountController = new AccountController(accountDAO, transactionDAO);
+
+        userController.register("test user", "password123");
+        testUser = userController.login("test user", "password123");
+        testLedger = ledgerController.createLedger("Test Ledger");
+        food = ledgerCategoryDAO.getTreeByLedger(testLedger).stream()
+                .filter(c -> c.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+        testAccount = accountController.createAccount("Test Account", BigDecimal.valueOf(1000.00), true, true);
+    }
+
+    private void runSchemaScript() {
+        executeSqlFile("src/test/resources/schema.sql");
+    }
+
+    private void readResetScript() {
+        executeSqlFile("src/test/resources/reset.sql");
+    }
+
+    private void readDataScript() {
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    //application_name of the connection a statement goes to
+    private String server() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT current_setting('application_name')")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private String serverForRead() throws SQLException {
+        long start = READ.begin();
+        try {
+            return server();
+        } finally {
+            READ.end(start);
+        }
+    }
+
+    //a replica catches up within a few seconds, until then reads stay on the primary
+    private String awaitReplica() throws SQLException, InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        String server = serverForRead();
+        while (!server.equals("ledger-replica") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            server = serverForRead();
+        }
+        return server;
+    }
+
+    @Test
+    public void testReadOnlyOperation_GoesToReplica() throws Exception {
+        assertEquals("ledger-primary", server()); //outside any controller method
+        assertEquals("ledger-replica", awaitReplica());
+        assertTrue(dataSource.getReplicaReads() > 0);
+    }
+
+    @Test
+    public void testWritesAndTransactions_StayOnPrimary() throws Exception {
+        assertEquals("ledger-replica", awaitReplica());
+
+        long start = WRITE.begin();
+        try {
+            assertEquals("ledger-primary", serverForRead()); //nested in a method that writes
+        } finally {
+            WRITE.end(start);
+        }
+
+        connection.setAutoCommit(false);
+        try {
+            assertEquals("ledger-primary", serverForRead()); //in a db transaction
+        } finally {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Test
+    public void testReports_ReadOwnWrites() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 1; i <= 5; i++) {
+            transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.now(), BigDecimal.valueOf(10L * i));
+            total = total.add(BigDecimal.valueOf(10L * i));
+            //served by the primary or by a replica that replayed the expense, never by one that missed it
+            BigDecimal reported = reportController.getTotalExpenseByLedger(testLedger, LocalDate.now(), LocalDate.now());
+            assertEquals(0, reported.compareTo(total));
+        }
+        assertTrue(dataSource.getWritePosition(testUser.getId()) > 0);
+        assertEquals(5, dataSource.getReplicaReads() + dataSource.getPrimaryReads());
+    }
+
+    @Test
+    public void testUnreachableReplica_FallsBackToPrimary() throws Exception {
+        useReplicas(List.of("jdbc:postgresql://localhost:1/ledger_db"));
+        transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.now(), BigDecimal.valueOf(25.00));
+
+        BigDecimal reported = reportController.getTotalExpenseByLedger(testLedger, LocalDate.now(), LocalDate.now());
+        assertEquals(0, reported.compareTo(BigDecimal.valueOf(25.00)));
+        assertEquals("ledger-primary", serverForRead());
+        assertEquals(0, dataSource.getReplicaReads());
+        assertTrue(dataSource.getPrimaryReads() >= 2);
+    }
+}
@@ -0,0 +1,116 @@
+import com.ledger.ORM.*;
+import com.ledger.Tracing.SqlTracer;
+import com.ledger.Tracing.TemplateStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigratorTest {
+    private Connection connection;
+    private SchemaMigrator schemaMigrator;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager= ConnectionManager.getInstance();
+        connection=connectionManager.getConnection();
+        readResetScript();
+
+        schemaMigrator = new SchemaMigrator(connection);
+    }
+
+    private void runSchemaScript() {
+        executeSqlFile("src/test/resources/schema.sql");
+    }
+
+    private void readResetScript() {
+        executeSqlFile("src/test/resources/reset.sql");
+    }
+
+    private void readDataScript() {
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    private long count(String sql) throws Exception {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    public void testMigrate_EmptyDatabase() throws Exception {
+        assertTrue(schemaMigrator.migrate());
+
+        assertEquals(SchemaMigrator.latestVersion(), count("SELECT max(version) FROM schema_version"));
+        assertEquals(17, count("SELECT COUNT(*) FROM global_categories"));
+        assertEquals(5, count("SELECT COUNT(*) FROM global_categories WHERE parent_id IS NOT NULL"));
+        assertEquals(0, count("SELECT COUNT(*) FROM users"));
+    }
+
+    @Test
+    public void testMigrate_UpToDateRunsSingleQuery() {
+        assertTrue(schemaMigrator.migrate());
+
+        SqlTracer sqlTracer = SqlTracer.getInstance();
+        sqlTracer.reset();
+        assertTrue(new SchemaMigrator(connection).migrate());
+
+        List<TemplateStats> statements = sqlTracer.getTemplates();
+        assertEquals(1, statements.size());
+        assertTrue(statements.get(0).getTemplate().startsWith("SELECT version, checksum FROM schema_version"));
+    }
+
+    @Test
+    public void testMigrate_ExistingDatabaseWithoutVersionTable() throws Exception {
+        //database created by the old schema.sql/data.sql startup
+        runSchemaScript();
+        readDataScript();
+
+        assertTrue(schemaMigrator.migrate());
+        assertEquals(17, count("SELECT COUNT(*) FROM global_categories"));
+        assertEquals(SchemaMigrator.latestVersion(), count("SELECT COUNT(*) FROM schema_version"));
+    }
+
+    @Test
+    public void testMigrate_ChangedMigrationIsRejected() throws Exception {
+        assertTrue(schemaMigrator.migrate());
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("UPDATE schema_version SET checksum = checksum + 1");
+        }
+
+        assertFalse(schemaMigrator.migrate());
+        assertTrue(connection.getAutoCommit());
+    }
+}
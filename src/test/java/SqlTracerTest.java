@@ -0,0 +1,203 @@
+import com.ledger.BusinessLogic.*;
+import com.ledger.DomainModel.*;
+import com.ledger.ORM.*;
+import com.ledger.Tracing.SqlTracer;
+import com.ledger.Tracing.TemplateStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlTracerTest {
+    private Connection connection;
+    private SqlTracer sqlTracer;
+
+    private Ledger testLedger;
+    private Account testAccount;
+    private LedgerCategory food;
+    private TransactionController transactionController;
+    private LedgerCategoryController ledgerCategoryController;
+    private BudgetController budgetController;
+    private BudgetDAO budgetDAO;
+    private LedgerController ledgerController;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager= ConnectionManager.getInstance();
+        connection=connectionManager.getConnection();
+        readResetScript();
+        runSchemaScript();
+        readDataScript();
+
+        UserDAO userDAO = new UserDAO(connection);
+        LedgerDAO ledgerDAO = new LedgerDAO(connection);
+        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+        AccountDAO accountDAO = new AccountDAO(connection);
+        TransactionDAO transactionDAO = new TransactionDAO(connection);
+        CategoryDAO categoryDAO = new CategoryDAO(connection);
+        budgetDAO = new BudgetDAO(connection);
+
+        UserController userController = new UserController(userDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
+        ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
+        AccountController accountController = new AccountController(accountDAO, transactionDAO);
+        ledgerCategoryController = new LedgerCategoryController(ledgerCategoryDAO, transactionDAO, budgetDAO, accountDAO);
+        budgetController = new BudgetController(budgetDAO, ledgerCategoryDAO);
+
+        userController.register("test user", "password123");
+        userController.login("test user", "password123");
+        testLedger = ledgerController.createLedger("Test Ledger");
+        testAccount = accountController.createAccount("Test Account", BigDecimal.valueOf(1000.00), true, true);
+        food = ledgerCategoryDAO.getTreeByLedger(testLedger).stream()
+                .filter(cat -> cat.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+
+        sqlTracer = SqlTracer.getInstance();
+        sqlTracer.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sqlTracer.setSlowQueryThresholdMillis(200);
+        sqlTracer.setNPlusOneThreshold(5);
+    }
+
+    private void runSchemaScript() {
+        executeSqlFile("src/test/resources/schema.sql");
+    }
+
+    private void readResetScript() {
+        executeSqlFile("src/test/resources/reset.sql");
+    }
+
+    private void readDataScript() {
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    @Test
+    public void testTemplateStats_BindsAndRows() {
+        assertTrue(sqlTracer.isEnabled());
+        for (int i = 0; i < 3; i++) {
+            transactionController.createExpense(testLedger, testAccount, food, "lunch", LocalDate.now(), BigDecimal.TEN);
+        }
+        sqlTracer.reset();
+
+        List<Transaction> transactions = transactionController.getTransactionsByLedgerInRangeDate(testLedger,
+                LocalDate.now().minusDays(1), LocalDate.now());
+        assertEquals(3, transactions.size());
+
+        TemplateStats byLedger = sqlTracer.getTemplates().stream()
+                .filter(t -> t.getTemplate().contains("FROM live_transactions") && t.getTemplate().contains("t.ledger_id = ANY(?)"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(1, byLedger.getExecutions());
+        assertEquals(3, byLedger.getRows());
+        assertEquals(3, byLedger.getBindCount()); //ledger and date range
+        assertTrue(byLedger.getTotalNanos() > 0);
+    }
+
+    @Test
+    public void testNPlusOne_ReportedWithControllerMethod() {
+        sqlTracer.reset();
+
+        //the ledger budget is merged with one budget query per top-level expense category
+        budgetController.mergeBudgets(budgetDAO.getBudgetByLedger(testLedger, Period.MONTHLY));
+
+        List<SqlTracer.NPlusOneWarning> warnings = sqlTracer.getNPlusOneWarnings();
+        assertFalse(warnings.isEmpty());
+        assertTrue(warnings.stream().allMatch(w -> w.operation().equals("BudgetController.mergeBudgets")));
+        assertTrue(warnings.stream().anyMatch(w -> w.template().contains("WHERE category_id = ?") && w.executions() >= 5));
+    }
+
+    @Test
+    public void testCategoryTree_NoPerParentQueries() {
+        sqlTracer.reset();
+
+        ledgerCategoryController.getCategoryTreeByLedger(testLedger);
+
+        assertTrue(sqlTracer.getNPlusOneWarnings().isEmpty());
+    }
+
+    @Test
+    public void testCreateLedger_NoPerCategoryStatements() {
+        sqlTracer.reset();
+
+        assertNotNull(ledgerController.createLedger("Second Ledger"));
+
+        assertTrue(sqlTracer.getNPlusOneWarnings().isEmpty());
+        //name check, ledger, categories with their closure, budgets
+        assertEquals(4, sqlTracer.getTemplates().stream().mapToLong(TemplateStats::getExecutions).sum());
+    }
+
+    @Test
+    public void testTransactionList_NoPerRowQueries() {
+        for (int i = 0; i < 6; i++) {
+            transactionController.createExpense(testLedger, testAccount, food, "lunch", LocalDate.now(), BigDecimal.TEN);
+        }
+        sqlTracer.reset();
+
+        List<Transaction> transactions = transactionController.getTransactionsByLedgerInRangeDate(testLedger,
+                LocalDate.now().minusDays(1), LocalDate.now());
+        assertEquals(6, transactions.size());
+        assertEquals(testAccount.getId(), transactions.get(0).getFromAccount().getId());
+        assertEquals(food.getId(), transactions.get(0).getCategory().getId());
+        assertEquals(testLedger.getId(), transactions.get(0).getCategory().getLedger().getId());
+        assertTrue(sqlTracer.getNPlusOneWarnings().isEmpty());
+        assertEquals(1, sqlTracer.getTemplates().stream().mapToLong(TemplateStats::getExecutions).sum());
+    }
+
+    @Test
+    public void testNPlusOne_BelowThresholdNotReported() {
+        transactionController.createExpense(testLedger, testAccount, food, "lunch", LocalDate.now(), BigDecimal.TEN);
+        sqlTracer.reset();
+
+        transactionController.getTransactionsByLedgerInRangeDate(testLedger, LocalDate.now().minusDays(1), LocalDate.now());
+        assertTrue(sqlTracer.getNPlusOneWarnings().isEmpty());
+    }
+
+    @Test
+    public void testSlowQueryLog() {
+        sqlTracer.setSlowQueryThresholdMillis(0);
+        transactionController.createExpense(testLedger, testAccount, food, "lunch", LocalDate.now(), BigDecimal.TEN);
+
+        List<SqlTracer.SlowQuery> slowQueries = sqlTracer.getSlowQueries();
+        assertFalse(slowQueries.isEmpty());
+        assertTrue(slowQueries.stream().anyMatch(q -> q.trace().template().startsWith("INSERT INTO transactions")
+                && "TransactionController.createExpense".equals(q.trace().operation())
+                && q.trace().rows() == 1));
+        assertTrue(sqlTracer.dump().contains("INSERT INTO transactions"));
+    }
+}
@@ -0,0 +1,167 @@
+import com.ledger.BusinessLogic.*;
+import com.ledger.DomainModel.*;
+import com.ledger.ORM.*;
+import com.ledger.Pooling.StatementCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementCacheTest {
+    private Connection connection;
+    private StatementCache statementCache;
+
+    private Ledger testLedger;
+    private Account testAccount;
+    private LedgerCategory food;
+    private TransactionController transactionController;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager= ConnectionManager.getInstance();
+        connection=connectionManager.getConnection();
+        readResetScript();
+        runSchemaScript();
+        readDataScript();
+
+        UserDAO userDAO = new UserDAO(connection);
+        LedgerDAO ledgerDAO = new LedgerDAO(connection);
+        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+        AccountDAO accountDAO = new AccountDAO(connection);
+        TransactionDAO transactionDAO = new TransactionDAO(connection);
+        CategoryDAO categoryDAO = new CategoryDAO(connection);
+        BudgetDAO budgetDAO = new BudgetDAO(connection);
+
+        UserController userController = new UserController(userDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
+        LedgerController ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
+        AccountController accountController = new AccountController(accountDAO, transactionDAO);
+
+        userController.register("test user", "password123");
+        userController.login("test user", "password123");
+        testLedger = ledgerController.createLedger("Test Ledger");
+        testAccount = accountController.createAccount("Test Account", BigDecimal.valueOf(1000.00), true, true);
+        food = ledgerCategoryDAO.getTreeByLedger(testLedger).stream()
+                .filter(cat -> cat.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+
+        statementCache = StatementCache.getInstance();
+        statementCache.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        statementCache.setMaxSize(100);
+    }
+
+    private void runSchemaScript() {
+        executeSqlFile("src/test/resources/schema.sql");
+    }
+
+    private void readResetScript() {
+        executeSqlFile("src/test/resources/reset.sql");
+    }
+
+    private void readDataScript() {
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    @Test
+    public void testRepeatedCalls_HitCache() {
+        for (int i = 0; i < 10; i++) {
+            transactionController.createExpense(testLedger, testAccount, food, "lunch", LocalDate.now(), BigDecimal.TEN);
+        }
+        //every expense prepares the same insert and account update again
+        assertTrue(statementCache.getHits() >= 18);
+        assertTrue(statementCache.getHitRate() > 0.5);
+        assertTrue(statementCache.dump().contains("hit rate"));
+        assertEquals(10, transactionController.getTransactionRowsByLedger(testLedger, null, null).size());
+    }
+
+    @Test
+    public void testClose_ReturnsStatementAndClearsParameters() throws SQLException {
+        String sql = "SELECT count(*) FROM accounts WHERE id = ?";
+        PreparedStatement first = connection.prepareStatement(sql);
+        first.setLong(1, testAccount.getId());
+        try (ResultSet rs = first.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getLong(1));
+        }
+        first.close();
+        assertTrue(first.isClosed());
+        assertThrows(SQLException.class, first::executeQuery);
+
+        long hits = statementCache.getHits();
+        try (PreparedStatement second = connection.prepareStatement(sql)) {
+            assertEquals(hits + 1, statementCache.getHits());
+            //parameters of the previous borrower are gone
+            assertThrows(SQLException.class, second::executeQuery);
+        }
+    }
+
+    @Test
+    public void testSameSqlBorrowedTwice_SecondIsNotShared() throws SQLException {
+        String sql = "SELECT id FROM accounts WHERE id = ?";
+        try (PreparedStatement outer = connection.prepareStatement(sql);
+             PreparedStatement inner = connection.prepareStatement(sql)) {
+            outer.setLong(1, testAccount.getId());
+            inner.setLong(1, -1L);
+            try (ResultSet rs = outer.executeQuery()) {
+                assertTrue(rs.next());
+            }
+            try (ResultSet rs = inner.executeQuery()) {
+                assertFalse(rs.next());
+            }
+        }
+        assertEquals(2, statementCache.getMisses());
+    }
+
+    @Test
+    public void testLruEviction() throws SQLException {
+        statementCache.setMaxSize(2);
+        for (String table : new String[]{"users", "ledgers", "accounts", "users"}) {
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT count(*) FROM " + table)) {
+                stmt.executeQuery().close();
+            }
+        }
+        //users was the least recently returned when accounts came back
+        assertTrue(statementCache.getEvictions() >= 2);
+        assertTrue(statementCache.getCached() <= 2);
+        assertEquals(0, statementCache.getHits());
+    }
+}
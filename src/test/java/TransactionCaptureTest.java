@@ -0,0 +1,238 @@
+import com.ledger.BusinessLogic.*;
+import com.ledger.DomainModel.*;
+import com.ledger.Metrics.MetricsRegistry;
+import com.ledger.Metrics.OperationMetrics;
+import com.ledger.ORM.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionCaptureTest {
+    private Connection connection;
+
+    private Ledger testLedger;
+    private Account testAccount;
+    private Account testAccount1;
+    private LedgerCategory salary;
+    private LedgerCategory food;
+
+    private AccountDAO accountDAO;
+    private TransactionDAO transactionDAO;
+
+    private TransactionCapture capture;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionManager connectionManager= ConnectionManager.getInstance();
+        connection=connectionManager.getConnection();
+        readResetScript();
+        runSchemaScript();
+        readDataScript();
+
+        UserDAO userDAO = new UserDAO(connection);
+        LedgerDAO ledgerDAO = new LedgerDAO(connection);
+        LedgerCategoryDAO ledgerCategoryDAO = new LedgerCategoryDAO(connection);
+        accountDAO = new AccountDAO(connection);
+        transactionDAO = new TransactionDAO(connection);
+        CategoryDAO categoryDAO = new CategoryDAO(connection);
+        BudgetDAO budgetDAO = new BudgetDAO(connection);
+
+        UserController userController = new UserController(userDAO);
+        LedgerController ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
+        AccountController accountController = new AccountController(accountDAO, transactionDAO);
+
+        userController.register("test user", "password123");
+        userController.login("test user", "password123");
+
+        testLedger = ledgerController.createLedger("Test Ledger");
+
+        List<LedgerCategory> testCategories = ledgerCategoryDAO.getTreeByLedger(testLedger);
+        salary = testCategories.stream()
+                .filter(cat -> cat.getName().equals("Salary"))
+                .findFirst()
+                .orElse(null);
+        food = testCategories.stream()
+                .filter(cat -> cat.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+
+        testAccount = accountController.createAccount("Test Account", BigDecimal.valueOf(1000.00), true, true);
+        testAccount1 = accountController.createAccount("Test Account 1", BigDecimal.valueOf(500.00), true, true);
+
+        MetricsRegistry.getInstance().reset();
+        capture = new TransactionCapture(connectionManager.openConnection(), 50, 50, 1000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        capture.close();
+    }
+
+    private void runSchemaScript() {
+        executeSqlFile("src/test/resources/schema.sql");
+    }
+
+    private void readResetScript() {
+        executeSqlFile("src/test/resources/reset.sql");
+    }
+
+    private void readDataScript() {
+        executeSqlFile("src/test/resources/data.sql");
+    }
+
+    private void executeSqlFile(String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            String sql;
+            try (Stream<String> lines = Files.lines(path)) {
+                sql = lines.collect(Collectors.joining("\n"));
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String s : sql.split(";")) {
+                    if (!s.trim().isEmpty()) {
+                        stmt.execute(s);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute " + filePath, e);
+        }
+    }
+
+    private OperationMetrics groupCommits() {
+        return MetricsRegistry.getInstance().getOperations().stream()
+                .filter(op -> op.getName().equals("TransactionCapture.groupCommit"))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    public void testCapture_GroupsConcurrentCallers() throws Exception {
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<Expense>> expenses = new ArrayList<>();
+        List<CompletableFuture<Transfer>> transfers = new ArrayList<>();
+        List<Future<?>> submitted = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            submitted.add(producers.submit(() -> {
+                List<CompletableFuture<Expense>> mine = new ArrayList<>();
+                List<CompletableFuture<Transfer>> mineTransfers = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    mine.add(capture.captureExpense(testLedger, testAccount, food, "lunch", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(2.00)));
+                    if (i % 10 == 0) {
+                        mineTransfers.add(capture.captureTransfer(testLedger, testAccount, testAccount1, "move", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(5.00)));
+                    }
+                }
+                synchronized (expenses) {
+                    expenses.addAll(mine);
+                    transfers.addAll(mineTransfers);
+                }
+            }));
+        }
+        for (Future<?> f : submitted) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        producers.shutdown();
+
+        for (CompletableFuture<Expense> future : expenses) {
+            Expense expense = future.get(10, TimeUnit.SECONDS);
+            assertNotNull(expense);
+            assertTrue(expense.getId() > 0);
+        }
+        for (CompletableFuture<Transfer> future : transfers) {
+            assertNotNull(future.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(220, transactionDAO.getByLedgerId(testLedger.getId()).size());
+        //1000 - 200*2 - 20*5 = 500, 500 + 20*5 = 600
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(500.00)));
+        assertEquals(0, accountDAO.getAccountById(testAccount1.getId()).getBalance().compareTo(BigDecimal.valueOf(600.00)));
+
+        //far fewer commits than transactions
+        OperationMetrics commits = groupCommits();
+        assertEquals(220, commits.getRows());
+        assertTrue(commits.getCalls() <= 22, "group commits: " + commits.getCalls());
+    }
+
+    @Test
+    public void testCapture_InvalidCompletesWithNull() throws Exception {
+        assertNull(capture.captureIncome(testLedger, testAccount, food, "wrong category", null, BigDecimal.TEN).get());
+        assertNull(capture.captureExpense(testLedger, null, food, "no account", null, BigDecimal.TEN).get());
+        assertNull(capture.captureTransfer(testLedger, testAccount, testAccount, "same account", null, BigDecimal.TEN).get());
+        assertNull(capture.captureExpense(testLedger, testAccount, food, "negative", null, BigDecimal.valueOf(-1)).get());
+        assertTrue(transactionDAO.getByLedgerId(testLedger.getId()).isEmpty());
+    }
+
+    @Test
+    public void testCapture_FailedTransactionDoesNotFailGroup() throws Exception {
+        Account missing = new Account();
+        missing.setId(Long.MAX_VALUE);
+        missing.setName("Missing");
+        missing.setSelectable(true);
+
+        CompletableFuture<Income> first = capture.captureIncome(testLedger, testAccount, salary, "ok", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(100.00));
+        CompletableFuture<Expense> bad = capture.captureExpense(testLedger, missing, food, "bad", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10.00));
+        CompletableFuture<Expense> last = capture.captureExpense(testLedger, testAccount, food, "ok", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(30.00));
+
+        assertNotNull(first.get(10, TimeUnit.SECONDS));
+        assertNull(bad.get(10, TimeUnit.SECONDS));
+        assertNotNull(last.get(10, TimeUnit.SECONDS));
+        assertEquals(2, transactionDAO.getByLedgerId(testLedger.getId()).size());
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(1070.00)));
+    }
+
+    @Test
+    public void testCapture_ExceptionFailsOnlyItsGroup() throws Exception {
+        Ledger broken = new Ledger("Broken", testLedger.getOwner()) {
+            @Override
+            public long getId() {
+                throw new IllegalStateException("broken ledger");
+            }
+        };
+
+        CompletableFuture<Expense> bad = capture.captureExpense(broken, testAccount, food, "bad", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10.00));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> bad.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+
+        //the writer is still running and nothing of the failed group was committed
+        Expense next = capture.captureExpense(testLedger, testAccount, food, "ok", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(30.00))
+                .get(10, TimeUnit.SECONDS);
+        assertNotNull(next);
+        assertEquals(1, transactionDAO.getByLedgerId(testLedger.getId()).size());
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(970.00)));
+    }
+
+    @Test
+    public void testClose_CommitsQueued() throws Exception {
+        List<CompletableFuture<Expense>> futures = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(capture.captureExpense(testLedger, testAccount, food, "queued", LocalDate.of(2024, 6, 1), BigDecimal.ONE));
+        }
+        capture.close();
+        for (CompletableFuture<Expense> future : futures) {
+            assertTrue(future.isDone());
+            assertNotNull(future.get());
+        }
+        assertNull(capture.captureExpense(testLedger, testAccount, food, "after close", null, BigDecimal.ONE).get());
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(970.00)));
+    }
+}
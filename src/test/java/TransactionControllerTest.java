@@ -1,6 +1,9 @@
 import com.ledger.BusinessLogic.*;
 import com.ledger.DomainModel.*;
 import com.ledger.ORM.*;
+import com.ledger.Session.UserSession;
+import com.ledger.Tracing.SqlTracer;
+import com.ledger.Tracing.TemplateStats;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -11,6 +14,7 @@ import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.Statement;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -31,6 +35,7 @@ public class TransactionControllerTest {
     private AccountDAO accountDAO;
     private TransactionDAO transactionDAO;
     private LedgerCategoryDAO ledgerCategoryDAO;
+    private BudgetDAO budgetDAO;
 
     private TransactionController transactionController;
     private LedgerController ledgerController;
@@ -49,10 +54,10 @@ public class TransactionControllerTest {
         accountDAO = new AccountDAO(connection);
         transactionDAO = new TransactionDAO(connection);
         CategoryDAO categoryDAO = new CategoryDAO(connection);
-        BudgetDAO budgetDAO = new BudgetDAO(connection);
+        budgetDAO = new BudgetDAO(connection);
 
         UserController userController = new UserController(userDAO);
-        transactionController = new TransactionController(transactionDAO, accountDAO);
+        transactionController = new TransactionController(transactionDAO, accountDAO, budgetDAO);
         ledgerController = new LedgerController(ledgerDAO, transactionDAO, categoryDAO, ledgerCategoryDAO, accountDAO, budgetDAO);
         AccountController accountController = new AccountController(accountDAO, transactionDAO);
 
@@ -793,5 +798,398 @@ public class TransactionControllerTest {
         }
     }
 
-}
+    @Test
+    public void testGetTransactionRowsByLedger() {
+        LocalDate startDate = LocalDate.of(2024, 6, 1);
+        LocalDate endDate = LocalDate.of(2024, 6, 30);
+        transactionController.createExpense(testLedger, testAccount, food, "Dinner", startDate, BigDecimal.valueOf(30.00));
+        transactionController.createTransfer(testLedger, testAccount, testAccount1, null, endDate, BigDecimal.valueOf(100.00));
+        transactionController.createIncome(testLedger, testAccount, salary, "Monthly Salary", endDate.plusDays(1), BigDecimal.valueOf(3000.00));
+
+        List<TransactionRow> rows = transactionController.getTransactionRowsByLedger(testLedger, startDate, endDate);
+        assertEquals(2, rows.size());
+        TransactionRow transfer = rows.get(0); //newest first
+        assertEquals(TransactionType.TRANSFER, transfer.type());
+        assertEquals(endDate, transfer.date());
+        assertEquals(0, transfer.amount().compareTo(BigDecimal.valueOf(100.00)));
+        assertNull(transfer.note());
+        assertNull(transfer.categoryName());
+        assertEquals("Test Account", transfer.fromAccountName());
+        assertEquals("Test Account 1", transfer.toAccountName());
+
+        TransactionRow expense = rows.get(1);
+        assertEquals(TransactionType.EXPENSE, expense.type());
+        assertEquals("Food", expense.categoryName());
+        assertEquals("Dinner", expense.note());
+        assertNull(expense.toAccountName());
+
+        assertEquals(3, transactionController.getTransactionRowsByLedger(testLedger, null, null).size());
+        assertEquals(1, transactionController.getTransactionRowsByLedger(testLedger, endDate.plusDays(1), null).size());
+    }
+
+    @Test
+    public void testGetTransactionRowsByAccount() {
+        LocalDate date = LocalDate.of(2024, 6, 15);
+        transactionController.createExpense(testLedger, testAccount, food, "Dinner", date, BigDecimal.valueOf(30.00));
+        transactionController.createTransfer(testLedger, testAccount1, testAccount, "In", date, BigDecimal.valueOf(100.00));
+        transactionController.createExpense(testLedger, testAccount2, food, "Other account", date, BigDecimal.valueOf(10.00));
+
+        List<TransactionRow> rows = transactionController.getTransactionRowsByAccount(testAccount, date, date);
+        assertEquals(2, rows.size());
+        assertTrue(rows.stream().allMatch(r -> "Test Account".equals(r.fromAccountName()) || "Test Account".equals(r.toAccountName())));
+        assertTrue(transactionController.getTransactionRowsByAccount(testAccount, date.plusDays(1), null).isEmpty());
+    }
+
+    @Test
+    public void testGetTransactionById_FromRow() {
+        Transaction expense = transactionController.createExpense(testLedger, testAccount, food, "Dinner", LocalDate.of(2024, 6, 15), BigDecimal.valueOf(30.00));
+        TransactionRow row = transactionController.getTransactionRowsByLedger(testLedger, null, null).get(0);
+        assertEquals(expense.getId(), row.id());
+
+        Transaction loaded = transactionController.getTransactionById(row.id());
+        assertInstanceOf(Expense.class, loaded);
+        assertEquals(testAccount.getId(), loaded.getFromAccount().getId());
+        assertEquals(food.getId(), loaded.getCategory().getId());
+        assertEquals(testLedger.getId(), loaded.getLedger().getId());
+        assertTrue(transactionController.deleteTransaction(loaded));
+        assertNull(transactionController.getTransactionById(row.id()));
+    }
+
+
+    @Test
+    public void testSearchTransactions_WordPrefixesAndFilters() {
+        transactionController.createExpense(testLedger, testAccount, food, "Coffee at the station bar", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(3.50));
+        transactionController.createExpense(testLedger, testAccount, food, "coffee beans", LocalDate.of(2024, 6, 10), BigDecimal.valueOf(12.00));
+        transactionController.createExpense(testLedger, testAccount, shopping, "Shoes", LocalDate.of(2024, 6, 12), BigDecimal.valueOf(80.00));
+        Ledger otherLedger = ledgerController.createLedger("Other Ledger");
+        LedgerCategory otherFood = ledgerCategoryDAO.getByNameAndLedger("Food", otherLedger);
+        transactionController.createExpense(otherLedger, testAccount, otherFood, "Coffee with friends", LocalDate.of(2024, 6, 20), BigDecimal.valueOf(4.00));
+
+        //all ledgers of the user, newest first
+        List<TransactionRow> rows = transactionController.searchTransactions(TransactionSearch.of("COFF"), null, 10);
+        assertEquals(3, rows.size());
+        assertEquals("Coffee with friends", rows.get(0).note());
+
+        rows = transactionController.searchTransactions(TransactionSearch.of("coffee bar").inLedger(testLedger), null, 10);
+        assertEquals(1, rows.size());
+        assertEquals("Coffee at the station bar", rows.get(0).note());
+
+        rows = transactionController.searchTransactions(TransactionSearch.of("coffee").inLedger(testLedger)
+                .between(LocalDate.of(2024, 6, 5), null)
+                .amountBetween(BigDecimal.TEN, BigDecimal.valueOf(20)), null, 10);
+        assertEquals(1, rows.size());
+        assertEquals("coffee beans", rows.get(0).note());
+        assertEquals("Food", rows.get(0).categoryName());
+
+        //operators of the tsquery syntax are not passed through
+        assertTrue(transactionController.searchTransactions(TransactionSearch.of("shoes | coffee"), null, 10).isEmpty());
+        assertTrue(transactionController.searchTransactions(TransactionSearch.of("!&:*"), null, 10).isEmpty());
+    }
+
+    @Test
+    public void testSearchTransactions_Fuzzy() {
+        transactionController.createExpense(testLedger, testAccount, food, "Restaurant dinner", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(45.00));
+
+        assertTrue(transactionController.searchTransactions(TransactionSearch.of("restaurnt"), null, 10).isEmpty());
+        List<TransactionRow> rows = transactionController.searchTransactions(
+                TransactionSearch.of("restaurnt").withFuzzy(true).inLedger(testLedger), null, 10);
+        assertEquals(1, rows.size());
+        assertEquals("Restaurant dinner", rows.get(0).note());
+    }
+
+    @Test
+    public void testSearchTransactions_KeysetPages() {
+        LocalDate date = LocalDate.of(2024, 6, 1);
+        for (int i = 0; i < 7; i++) {
+            //two per day so that the id breaks ties within a date
+            transactionController.createExpense(testLedger, testAccount, food, "lunch " + i, date.plusDays(i / 2), BigDecimal.TEN);
+        }
+
+        TransactionSearch search = TransactionSearch.of("lunch").inLedger(testLedger);
+        List<TransactionRow> first = transactionController.searchTransactions(search, null, 3);
+        List<TransactionRow> second = transactionController.searchTransactions(search, first.get(2), 3);
+        List<TransactionRow> third = transactionController.searchTransactions(search, second.get(2), 3);
+        assertEquals(3, first.size());
+        assertEquals(3, second.size());
+        assertEquals(1, third.size());
+
+        List<String> notes = Stream.of(first, second, third).flatMap(List::stream).map(TransactionRow::note).toList();
+        assertEquals(List.of("lunch 6", "lunch 5", "lunch 4", "lunch 3", "lunch 2", "lunch 1", "lunch 0"), notes);
+    }
+
+    @Test
+    public void testFindTransactions_CombinedFilters() {
+        transactionController.createExpense(testLedger, testAccount, food, "groceries", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(50.00));
+        transactionController.createExpense(testLedger, testAccount1, shopping, "shirt", LocalDate.of(2024, 6, 5), BigDecimal.valueOf(25.00));
+        transactionController.createIncome(testLedger, testAccount, salary, "june salary", LocalDate.of(2024, 6, 10), BigDecimal.valueOf(2000.00));
+        transactionController.createTransfer(testLedger, testAccount, testAccount2, "savings", LocalDate.of(2024, 6, 15), BigDecimal.valueOf(100.00));
+        transactionController.createExpense(testLedger, testAccount, food, "groceries again", LocalDate.of(2024, 7, 1), BigDecimal.valueOf(60.00));
+
+        List<Transaction> june = transactionController.findTransactions(TransactionQuery.create()
+                .ledger(testLedger)
+                .between(LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 30)));
+        assertEquals(4, june.size());
+        assertEquals("savings", june.get(0).getNote()); //newest first
+
+        List<TransactionRow> rows = transactionController.findTransactionRows(TransactionQuery.create()
+                .account(testAccount)
+                .types(TransactionType.EXPENSE, TransactionType.TRANSFER)
+                .amountBetween(BigDecimal.valueOf(55), null)
+                .sort(TransactionQuery.Sort.LARGEST_FIRST));
+        assertEquals(2, rows.size());
+        assertEquals("savings", rows.get(0).note());
+        assertEquals("groceries again", rows.get(1).note());
+
+        rows = transactionController.findTransactionRows(TransactionQuery.create()
+                .accounts(List.of(testAccount1, testAccount2))
+                .sort(TransactionQuery.Sort.OLDEST_FIRST)
+                .limit(1));
+        assertEquals(1, rows.size());
+        assertEquals("shirt", rows.get(0).note());
+
+        rows = transactionController.findTransactionRows(TransactionQuery.create().noteContains("grocer"));
+        assertEquals(2, rows.size());
+    }
 
+    @Test
+    public void testFindTransactions_CategorySubtree() {
+        LedgerCategory lunch = ledgerCategoryDAO.getTreeByLedger(testLedger).stream()
+                .filter(cat -> cat.getName().equals("Lunch"))
+                .findFirst()
+                .orElse(null);
+        assertNotNull(lunch);
+        transactionController.createExpense(testLedger, testAccount, food, "market", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(20.00));
+        transactionController.createExpense(testLedger, testAccount, lunch, "sandwich", LocalDate.of(2024, 6, 2), BigDecimal.valueOf(8.00));
+        transactionController.createExpense(testLedger, testAccount, shopping, "shoes", LocalDate.of(2024, 6, 3), BigDecimal.valueOf(70.00));
+
+        assertEquals(1, transactionController.findTransactions(TransactionQuery.create().category(food)).size());
+        List<Transaction> subtree = transactionController.findTransactions(TransactionQuery.create()
+                .category(food)
+                .includeSubcategories());
+        assertEquals(2, subtree.size());
+        assertEquals("Lunch", subtree.get(0).getCategory().getName());
+    }
+
+    @Test
+    public void testFindTransactions_SameShapeSharesStatement() {
+        transactionController.createExpense(testLedger, testAccount, food, "a", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(20.00));
+        Ledger otherLedger = ledgerController.createLedger("Other Ledger");
+
+        SqlTracer sqlTracer = SqlTracer.getInstance();
+        sqlTracer.reset();
+        transactionController.findTransactionRows(TransactionQuery.create().ledger(testLedger).types(TransactionType.EXPENSE));
+        transactionController.findTransactionRows(TransactionQuery.create().ledgers(List.of(testLedger, otherLedger))
+                .types(TransactionType.INCOME, TransactionType.TRANSFER));
+        //different values and list lengths, one template
+        List<TemplateStats> templates = sqlTracer.getTemplates();
+        assertEquals(1, templates.size());
+        assertEquals(2, templates.get(0).getExecutions());
+        assertEquals(2, templates.get(0).getBindCount());
+    }
+
+    @Test
+    public void testBulkRecategorize() {
+        transactionController.createExpense(testLedger, testAccount, food, "coffee beans", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(12.00));
+        transactionController.createExpense(testLedger, testAccount, food, "coffee shop", LocalDate.of(2024, 6, 2), BigDecimal.valueOf(4.00));
+        transactionController.createExpense(testLedger, testAccount, food, "bread", LocalDate.of(2024, 6, 3), BigDecimal.valueOf(3.00));
+        transactionController.createIncome(testLedger, testAccount, salary, "coffee refund", LocalDate.of(2024, 6, 4), BigDecimal.valueOf(5.00));
+
+        BulkResult result = transactionController.bulkRecategorize(TransactionQuery.create()
+                .ledger(testLedger)
+                .noteContains("coffee"), shopping);
+        assertNotNull(result);
+        assertEquals(2, result.transactions()); //the income cannot take an expense category
+        assertEquals(0, result.accounts());
+
+        assertEquals(2, transactionController.findTransactions(TransactionQuery.create().category(shopping)).size());
+        assertEquals("bread", transactionController.findTransactions(TransactionQuery.create().category(food)).get(0).getNote());
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(986.00)));
+    }
+
+    @Test
+    public void testBulkMoveToLedger() {
+        Ledger otherLedger = ledgerController.createLedger("Other Ledger");
+        transactionController.createExpense(testLedger, testAccount, food, "june food", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10.00));
+        transactionController.createTransfer(testLedger, testAccount, testAccount1, "june transfer", LocalDate.of(2024, 6, 2), BigDecimal.valueOf(50.00));
+        transactionController.createExpense(testLedger, testAccount, food, "july food", LocalDate.of(2024, 7, 1), BigDecimal.valueOf(20.00));
+
+        BulkResult result = transactionController.bulkMoveToLedger(TransactionQuery.create()
+                .ledger(testLedger)
+                .between(LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 30)), otherLedger);
+        assertNotNull(result);
+        assertEquals(2, result.transactions());
+        assertEquals(0, result.accounts());
+
+        List<Transaction> moved = transactionController.findTransactions(TransactionQuery.create().ledger(otherLedger));
+        assertEquals(2, moved.size());
+        Transaction movedFood = moved.stream().filter(t -> t.getNote().equals("june food")).findFirst().orElseThrow();
+        assertEquals("Food", movedFood.getCategory().getName());
+        assertEquals(otherLedger.getId(), movedFood.getCategory().getLedger().getId());
+        assertEquals(1, transactionController.findTransactions(TransactionQuery.create().ledger(testLedger)).size());
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(920.00)));
+    }
+
+    @Test
+    public void testBulkReassignAccount() {
+        transactionController.createExpense(testLedger, testAccount, food, "lunch", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10.00));
+        transactionController.createIncome(testLedger, testAccount, salary, "salary", LocalDate.of(2024, 6, 2), BigDecimal.valueOf(200.00));
+        transactionController.createTransfer(testLedger, testAccount1, testAccount, "topup", LocalDate.of(2024, 6, 3), BigDecimal.valueOf(30.00));
+        transactionController.createTransfer(testLedger, testAccount, testAccount2, "savings", LocalDate.of(2024, 6, 4), BigDecimal.valueOf(40.00));
+        //1000 - 10 + 200 + 30 - 40
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(1180.00)));
+
+        BulkResult result = transactionController.bulkReassignAccount(TransactionQuery.create().ledger(testLedger),
+                testAccount, testAccount2);
+        assertNotNull(result);
+        assertEquals(3, result.transactions()); //"savings" would go from testAccount2 to itself
+        assertEquals(2, result.accounts());
+
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(960.00)));
+        assertEquals(0, accountDAO.getAccountById(testAccount1.getId()).getBalance().compareTo(BigDecimal.valueOf(470.00)));
+        assertEquals(0, accountDAO.getAccountById(testAccount2.getId()).getBalance().compareTo(BigDecimal.valueOf(560.00)));
+        assertEquals(1, transactionController.findTransactions(TransactionQuery.create().account(testAccount)).size());
+
+        assertNull(transactionController.bulkReassignAccount(TransactionQuery.create(), testAccount, testAccount));
+    }
+
+    @Test
+    public void testBulkDelete() {
+        transactionController.createExpense(testLedger, testAccount, food, "a", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10.00));
+        transactionController.createIncome(testLedger, testAccount1, salary, "b", LocalDate.of(2024, 6, 2), BigDecimal.valueOf(100.00));
+        transactionController.createTransfer(testLedger, testAccount, testAccount2, "c", LocalDate.of(2024, 6, 3), BigDecimal.valueOf(50.00));
+        transactionController.createExpense(testLedger, testAccount, food, "d", LocalDate.of(2024, 7, 1), BigDecimal.valueOf(5.00));
+
+        BulkResult result = transactionController.bulkDelete(TransactionQuery.create()
+                .ledger(testLedger)
+                .between(null, LocalDate.of(2024, 6, 30)));
+        assertNotNull(result);
+        assertEquals(3, result.transactions());
+        assertEquals(3, result.accounts());
+
+        assertEquals(0, accountDAO.getAccountById(testAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(995.00)));
+        assertEquals(0, accountDAO.getAccountById(testAccount1.getId()).getBalance().compareTo(BigDecimal.valueOf(500.00)));
+        assertEquals(0, accountDAO.getAccountById(testAccount2.getId()).getBalance().compareTo(BigDecimal.valueOf(300.00)));
+        assertEquals(1, transactionController.findTransactions(TransactionQuery.create().ledger(testLedger)).size());
+    }
+
+    @Test
+    public void testBulkDelete_OnlyOwnLedgers() {
+        UserController userController = new UserController(new UserDAO(connection));
+        userController.register("other user", "password123");
+        userController.login("other user", "password123");
+        Ledger othersLedger = ledgerController.createLedger("Others Ledger");
+        LedgerCategory othersFood = ledgerCategoryDAO.getTreeByLedger(othersLedger).stream()
+                .filter(cat -> cat.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+        Account othersAccount = new AccountController(accountDAO, transactionDAO)
+                .createAccount("Others Account", BigDecimal.valueOf(100.00), true, true);
+        transactionController.createExpense(othersLedger, othersAccount, othersFood, "theirs", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10.00));
+
+        userController.login("test user", "password123");
+        transactionController.createExpense(testLedger, testAccount, food, "mine", LocalDate.of(2024, 6, 1), BigDecimal.valueOf(10.00));
+        BulkResult result = transactionController.bulkDelete(TransactionQuery.create());
+        assertNotNull(result);
+        assertEquals(1, result.transactions());
+        assertEquals(1, transactionController.findTransactions(TransactionQuery.create().ledger(othersLedger)).size());
+        assertEquals(0, accountDAO.getAccountById(othersAccount.getId()).getBalance().compareTo(BigDecimal.valueOf(90.00)));
+    }
+
+    //the counters of the budget, its parent category's and the ledger's follow every write
+    @Test
+    public void testBudgetCountersFollowWrites() {
+        LedgerCategory lunch = ledgerCategoryDAO.getTreeByLedger(testLedger).stream()
+                .filter(cat -> cat.getName().equals("Lunch"))
+                .findFirst()
+                .orElse(null);
+        LocalDate today = LocalDate.now();
+        Expense expense = transactionController.createExpense(testLedger, testAccount, lunch, null, today, BigDecimal.valueOf(30.00));
+        transactionController.createExpense(testLedger, testAccount, food, null, today, BigDecimal.valueOf(20.00));
+        transactionController.createExpense(testLedger, testAccount, shopping, null, today.minusYears(1), BigDecimal.valueOf(500.00)); //old period
+        transactionController.createIncome(testLedger, testAccount, salary, null, today, BigDecimal.valueOf(1000.00));
+        assertSpent(lunch, 30);
+        assertSpent(food, 50);
+        assertSpent(null, 50);
+
+        assertTrue(transactionController.updateExpense(expense, testAccount, shopping, null, today, BigDecimal.valueOf(35.00), testLedger));
+        assertSpent(lunch, 0);
+        assertSpent(food, 20);
+        assertSpent(shopping, 35);
+        assertSpent(null, 55);
+
+        assertTrue(transactionController.deleteTransaction(expense));
+        assertSpent(shopping, 0);
+        assertSpent(null, 20);
+    }
+
+    @Test
+    public void testBudgetAlerts() {
+        List<BudgetAlert> alerts = new ArrayList<>();
+        transactionController.addBudgetAlertListener(alerts::add);
+        Budget foodBudget = budgetDAO.getBudgetByCategory(food, Period.MONTHLY);
+        foodBudget.setAmount(BigDecimal.valueOf(100.00));
+        budgetDAO.update(foodBudget);
+        LocalDate today = LocalDate.now();
+
+        transactionController.createExpense(testLedger, testAccount, food, null, today, BigDecimal.valueOf(50.00));
+        assertTrue(alerts.isEmpty());
+        transactionController.createExpense(testLedger, testAccount, food, null, today, BigDecimal.valueOf(35.00));
+        assertEquals(1, alerts.size()); //not the ledger budget: it has no amount
+        assertEquals(foodBudget.getId(), alerts.get(0).budgetId());
+        assertEquals(80, alerts.get(0).threshold());
+        assertEquals(0, alerts.get(0).spent().compareTo(BigDecimal.valueOf(85)));
+
+        Expense over = transactionController.createExpense(testLedger, testAccount, food, null, today, BigDecimal.valueOf(20.00));
+        assertEquals(2, alerts.size());
+        assertEquals(100, alerts.get(1).threshold());
+        transactionController.createExpense(testLedger, testAccount, food, null, today, BigDecimal.valueOf(1.00));
+        assertEquals(2, alerts.size()); //no new threshold
+
+        //falling back under a threshold and crossing it again alerts again
+        assertTrue(transactionController.deleteTransaction(over));
+        assertEquals(2, alerts.size());
+        transactionController.createExpense(testLedger, testAccount, food, null, today, BigDecimal.valueOf(30.00));
+        assertEquals(3, alerts.size());
+        assertEquals(100, alerts.get(2).threshold());
+        assertTrue(budgetDAO.takeAlerts(UserSession.getInstance().getCurrentUser().getId()).isEmpty()); //all delivered
+    }
+
+    @Test
+    public void testBudgetAlerts_OnlyOwnBudgets() throws Exception {
+        List<BudgetAlert> alerts = new ArrayList<>();
+        transactionController.addBudgetAlertListener(alerts::add);
+        Budget foodBudget = budgetDAO.getBudgetByCategory(food, Period.MONTHLY);
+        foodBudget.setAmount(BigDecimal.valueOf(100.00));
+        budgetDAO.update(foodBudget);
+
+        //raised by a write that delivers no alerts
+        try (TransactionCapture capture = new TransactionCapture(ConnectionManager.getInstance().openConnection())) {
+            assertNotNull(capture.captureExpense(testLedger, testAccount, food, null, LocalDate.now(), BigDecimal.valueOf(90.00)).get());
+        }
+
+        UserController userController = new UserController(new UserDAO(connection));
+        AccountController accountController = new AccountController(accountDAO, transactionDAO);
+        userController.register("other user", "password123");
+        userController.login("other user", "password123");
+        Ledger otherLedger = ledgerController.createLedger("Other Ledger");
+        Account otherAccount = accountController.createAccount("Other Account", BigDecimal.valueOf(100.00), true, true);
+        LedgerCategory otherFood = ledgerCategoryDAO.getTreeByLedger(otherLedger).stream()
+                .filter(cat -> cat.getName().equals("Food"))
+                .findFirst()
+                .orElse(null);
+        assertNotNull(transactionController.createExpense(otherLedger, otherAccount, otherFood, null, LocalDate.now(), BigDecimal.valueOf(10.00)));
+        assertTrue(alerts.isEmpty()); //not the other user's
+
+        userController.login("test user", "password123");
+        assertNotNull(transactionController.createExpense(testLedger, testAccount, food, null, LocalDate.now(), BigDecimal.valueOf(5.00)));
+        assertEquals(1, alerts.size());
+        assertEquals(foodBudget.getId(), alerts.get(0).budgetId());
+        assertEquals(80, alerts.get(0).threshold());
+    }
+
+    private void assertSpent(LedgerCategory category, long expected) {
+        Budget budget = category == null ? budgetDAO.getBudgetByLedger(testLedger, Period.MONTHLY)
+                : budgetDAO.getBudgetByCategory(category, Period.MONTHLY);
+        assertEquals(0, budget.getSpent().compareTo(BigDecimal.valueOf(expected)));
+    }
+}
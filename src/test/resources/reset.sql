@@ -1,10 +1,20 @@
+DROP VIEW IF EXISTS live_transactions;
+DROP TABLE IF EXISTS account_balance_checkpoints CASCADE;
+DROP TABLE IF EXISTS spending_stats CASCADE;
+DROP TABLE IF EXISTS spending_sketch CASCADE;
+DROP TABLE IF EXISTS spending_daily CASCADE;
+DROP TABLE IF EXISTS net_worth_history CASCADE;
+DROP TABLE IF EXISTS budget_alerts CASCADE;
+DROP TABLE IF EXISTS category_closure CASCADE;
 DROP TABLE IF EXISTS accounts CASCADE;
 DROP TABLE IF EXISTS transactions CASCADE;
+DROP TABLE IF EXISTS recurring_rules CASCADE;
 DROP TABLE IF EXISTS budgets CASCADE;
 DROP TABLE IF EXISTS ledger_categories CASCADE;
 DROP TABLE IF EXISTS ledgers CASCADE;
 DROP TABLE IF EXISTS global_categories CASCADE;
 DROP TABLE IF EXISTS users CASCADE;
+DROP TABLE IF EXISTS schema_version CASCADE;
 
 
 
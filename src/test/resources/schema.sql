@@ -1,3 +1,5 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
 -- users table
 CREATE TABLE IF NOT EXISTS users (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -10,8 +12,10 @@ CREATE TABLE IF NOT EXISTS ledgers (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     user_id BIGINT NOT NULL,
     name VARCHAR(50) NOT NULL,
+    deleted_at TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
+CREATE INDEX IF NOT EXISTS idx_ledgers_deleted ON ledgers (id) WHERE deleted_at IS NOT NULL;
 
 -- ledger_categories table
 CREATE TABLE IF NOT EXISTS ledger_categories (
@@ -25,16 +29,30 @@ CREATE TABLE IF NOT EXISTS ledger_categories (
     FOREIGN KEY (parent_id) REFERENCES ledger_categories(id)
 );
 
+-- category_closure table
+CREATE TABLE IF NOT EXISTS category_closure (
+    ancestor_id BIGINT NOT NULL,
+    descendant_id BIGINT NOT NULL,
+    depth INT NOT NULL,
+    PRIMARY KEY (ancestor_id, descendant_id),
+    FOREIGN KEY (ancestor_id) REFERENCES ledger_categories(id) ON DELETE CASCADE,
+    FOREIGN KEY (descendant_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
+);
+CREATE INDEX IF NOT EXISTS idx_category_closure_descendant ON category_closure (descendant_id, depth);
+
 --accounts table
 CREATE TABLE IF NOT EXISTS accounts (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     name VARCHAR(50) NOT NULL,
     balance DECIMAL(15,2) DEFAULT 0.00,
+    opening_balance DECIMAL(15,2) NOT NULL DEFAULT 0.00,
     user_id BIGINT NOT NULL,
     included_in_asset BOOLEAN DEFAULT TRUE,
     selectable BOOLEAN DEFAULT TRUE,
+    deleted_at TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
+CREATE INDEX IF NOT EXISTS idx_accounts_deleted ON accounts (id) WHERE deleted_at IS NOT NULL;
 
 --transaction table
 CREATE TABLE IF NOT EXISTS transactions (
@@ -46,12 +64,109 @@ CREATE TABLE IF NOT EXISTS transactions (
     category_id BIGINT,
     amount DECIMAL(15,2) NOT NULL,
     note TEXT,
+    note_tsv tsvector GENERATED ALWAYS AS (to_tsvector('simple', coalesce(note, ''))) STORED,
     transaction_date DATE NOT NULL,
+    recurring_rule_id BIGINT,
+    occurrence_date DATE,
     FOREIGN KEY (ledger_id) REFERENCES ledgers(id) ON DELETE CASCADE,
     FOREIGN KEY (from_account_id) REFERENCES accounts(id) ON DELETE SET NULL,
     FOREIGN KEY (to_account_id) REFERENCES accounts(id) ON DELETE SET NULL,
     FOREIGN KEY (category_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
 );
+CREATE INDEX IF NOT EXISTS idx_transactions_ledger_date ON transactions (ledger_id, transaction_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_from_account ON transactions (from_account_id, transaction_date DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_to_account ON transactions (to_account_id, transaction_date DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_note_tsv ON transactions USING GIN (note_tsv);
+CREATE INDEX IF NOT EXISTS idx_transactions_note_trgm ON transactions USING GIN (note gin_trgm_ops);
+
+-- account_balance_checkpoints table
+CREATE TABLE IF NOT EXISTS account_balance_checkpoints (
+    account_id BIGINT NOT NULL,
+    period_end DATE NOT NULL,
+    net DECIMAL(17,2) NOT NULL,
+    PRIMARY KEY (account_id, period_end),
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+);
+
+-- spending_stats table
+CREATE TABLE IF NOT EXISTS spending_stats (
+    ledger_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL,
+    month DATE NOT NULL,
+    count BIGINT NOT NULL,
+    total NUMERIC NOT NULL,
+    total_squares NUMERIC NOT NULL,
+    PRIMARY KEY (ledger_id, category_id, month),
+    FOREIGN KEY (ledger_id) REFERENCES ledgers(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
+);
+
+-- spending_sketch table
+CREATE TABLE IF NOT EXISTS spending_sketch (
+    ledger_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL,
+    month DATE NOT NULL,
+    bucket INT NOT NULL,
+    count BIGINT NOT NULL,
+    PRIMARY KEY (ledger_id, category_id, month, bucket),
+    FOREIGN KEY (ledger_id) REFERENCES ledgers(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
+);
+
+-- spending_daily table
+CREATE TABLE IF NOT EXISTS spending_daily (
+    ledger_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL,
+    day DATE NOT NULL,
+    count BIGINT NOT NULL,
+    total NUMERIC NOT NULL,
+    PRIMARY KEY (ledger_id, category_id, day),
+    FOREIGN KEY (ledger_id) REFERENCES ledgers(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
+);
+
+-- net_worth_history table
+CREATE TABLE IF NOT EXISTS net_worth_history (
+    user_id BIGINT NOT NULL,
+    day DATE NOT NULL,
+    net_worth DECIMAL(17,2) NOT NULL,
+    PRIMARY KEY (user_id, day),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- recurring_rules table
+CREATE TABLE IF NOT EXISTS recurring_rules (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    type VARCHAR(10) NOT NULL CHECK ( type IN ('INCOME','EXPENSE','TRANSFER') ),
+    ledger_id BIGINT NOT NULL,
+    from_account_id BIGINT,
+    to_account_id BIGINT,
+    category_id BIGINT,
+    amount DECIMAL(15,2) NOT NULL,
+    note TEXT,
+    frequency VARCHAR(10) NOT NULL CHECK (frequency IN ('DAILY','WEEKLY','MONTHLY','YEARLY')),
+    interval_count INT NOT NULL DEFAULT 1 CHECK (interval_count > 0),
+    start_date DATE NOT NULL,
+    end_date DATE,
+    max_occurrences INT CHECK (max_occurrences > 0),
+    occurrence_count INT NOT NULL DEFAULT 0,
+    next_date DATE,
+    FOREIGN KEY (ledger_id) REFERENCES ledgers(id) ON DELETE CASCADE,
+    FOREIGN KEY (from_account_id) REFERENCES accounts(id) ON DELETE CASCADE,
+    FOREIGN KEY (to_account_id) REFERENCES accounts(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES ledger_categories(id) ON DELETE CASCADE
+);
+CREATE INDEX IF NOT EXISTS idx_recurring_rules_next_date ON recurring_rules (next_date) WHERE next_date IS NOT NULL;
+
+ALTER TABLE transactions ADD FOREIGN KEY (recurring_rule_id) REFERENCES recurring_rules(id) ON DELETE SET NULL;
+CREATE UNIQUE INDEX IF NOT EXISTS uq_transactions_rule_occurrence ON transactions (recurring_rule_id, occurrence_date);
+
+-- transactions outside deleted ledgers and with at least one live account
+CREATE OR REPLACE VIEW live_transactions AS
+SELECT t.* FROM transactions t
+WHERE t.ledger_id NOT IN (SELECT id FROM ledgers WHERE deleted_at IS NOT NULL)
+  AND (t.from_account_id NOT IN (SELECT id FROM accounts WHERE deleted_at IS NOT NULL)
+       OR t.to_account_id NOT IN (SELECT id FROM accounts WHERE deleted_at IS NOT NULL));
 
 -- budgets table
 CREATE TABLE IF NOT EXISTS budgets (
@@ -62,10 +177,22 @@ CREATE TABLE IF NOT EXISTS budgets (
     ledger_id BIGINT NOT NULL,
     start_date DATE NOT NULL,
     end_date DATE NOT NULL,
+    spent NUMERIC NOT NULL DEFAULT 0,
     FOREIGN KEY (category_id) REFERENCES ledger_categories(id) ON DELETE CASCADE,
     FOREIGN KEY (ledger_id) REFERENCES ledgers(id) ON DELETE CASCADE
 );
 
+-- budget_alerts table
+CREATE TABLE IF NOT EXISTS budget_alerts (
+    budget_id BIGINT NOT NULL,
+    threshold INT NOT NULL,
+    spent NUMERIC NOT NULL,
+    amount DECIMAL(15,2) NOT NULL,
+    raised_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (budget_id, threshold),
+    FOREIGN KEY (budget_id) REFERENCES budgets(id) ON DELETE CASCADE
+);
+
 -- global_categories table
 CREATE TABLE IF NOT EXISTS global_categories (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,